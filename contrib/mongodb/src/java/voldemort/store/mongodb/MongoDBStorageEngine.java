@@ -121,6 +121,10 @@ public class MongoDBStorageEngine implements StorageEngine<ByteArray, byte[]> {
         }
     }
 
+    public List<Version> getVersions(ByteArray key) throws VoldemortException {
+        return StoreUtils.getVersions(this, key);
+    }
+
     public List<Versioned<byte[]>> get(ByteArray key) throws VoldemortException {
         StoreUtils.assertValidKey(key);
         DirectBufferTLS tls = getTLS();
@@ -175,6 +179,30 @@ public class MongoDBStorageEngine implements StorageEngine<ByteArray, byte[]> {
     }
 
     public void put(ByteArray key, Versioned<byte[]> value) throws VoldemortException {
+        put(key, value, false, null, null);
+    }
+
+    public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries)
+            throws VoldemortException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        return StoreUtils.putAll(this, entries);
+    }
+
+    public void putIfCurrent(ByteArray key, Versioned<byte[]> value, Version expected)
+            throws VoldemortException {
+        put(key, value, true, expected, null);
+    }
+
+    public void putSuperseding(ByteArray key, Versioned<byte[]> value, Version superseded)
+            throws VoldemortException {
+        put(key, value, false, null, superseded);
+    }
+
+    private void put(ByteArray key,
+                     Versioned<byte[]> value,
+                     boolean conditional,
+                     Version expected,
+                     Version superseded) throws VoldemortException {
         StoreUtils.assertValidKey(key);
         getTLS();
 
@@ -197,6 +225,12 @@ public class MongoDBStorageEngine implements StorageEngine<ByteArray, byte[]> {
             for(Doc d: cur) {
 
                 VectorClock existingClock = new VectorClock(d.getBytes(CLOCK));
+                if(conditional)
+                    StoreUtils.assertCurrent(strKey, existingClock, expected);
+                if(StoreUtils.isSuperseded(existingClock, superseded)) {
+                    _coll.remove(new MongoSelector(d));
+                    continue;
+                }
                 Occured occured = value.getVersion().compare(existingClock);
 
                 // if my new one occured before the one from the db....
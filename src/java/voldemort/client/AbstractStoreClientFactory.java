@@ -21,12 +21,18 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.log4j.Logger;
 
+import voldemort.cluster.AdaptiveFailureDetector;
 import voldemort.cluster.Cluster;
+import voldemort.cluster.FailureDetector;
 import voldemort.cluster.Node;
+import voldemort.cluster.NodeVerifier;
 import voldemort.routing.ConsistentRoutingStrategy;
 import voldemort.routing.RoutingStrategy;
 import voldemort.serialization.Serializer;
@@ -34,8 +40,11 @@ import voldemort.serialization.SerializerFactory;
 import voldemort.serialization.StringSerializer;
 import voldemort.store.Store;
 import voldemort.store.StoreDefinition;
+import voldemort.store.UnreachableStoreException;
+import voldemort.store.cache.NearCacheStore;
 import voldemort.store.logging.LoggingStore;
 import voldemort.store.metadata.MetadataStore;
+import voldemort.store.routed.ReadRepairQueue;
 import voldemort.store.routed.RoutedStore;
 import voldemort.store.serialized.SerializingStore;
 import voldemort.store.versioned.InconsistencyResolvingStore;
@@ -63,6 +72,8 @@ public abstract class AbstractStoreClientFactory implements StoreClientFactory {
     public static final int DEFAULT_ROUTING_TIMEOUT_MS = 5000;
     public static final int DEFAULT_NODE_BANNAGE_MS = 10000;
 
+    private static final ByteArray PROBE_KEY = ByteArray.valueOf("__voldemort.probe__");
+
     private static final ClusterMapper clusterMapper = new ClusterMapper();
     private static final StoreDefinitionsMapper storeMapper = new StoreDefinitionsMapper();
     private static final Logger logger = Logger.getLogger(AbstractStoreClientFactory.class);
@@ -73,6 +84,13 @@ public abstract class AbstractStoreClientFactory implements StoreClientFactory {
     private final ExecutorService threadPool;
     private final SerializerFactory serializerFactory;
     private final boolean enableVerboseLogging;
+    private final ConcurrentMap<Integer, Store<ByteArray, byte[]>> probeStores;
+    private final FailureDetector failureDetector;
+    private ReadRepairQueue readRepairQueue;
+    private volatile int maxInFlightPerNode;
+    private volatile int nearCacheMaxEntries;
+    private volatile long nearCacheTtlMs;
+    private volatile boolean nearCacheRevalidate;
 
     public AbstractStoreClientFactory(ExecutorService threadPool,
                                       SerializerFactory serializerFactory,
@@ -85,6 +103,12 @@ public abstract class AbstractStoreClientFactory implements StoreClientFactory {
         this.routingTimeoutMs = routingTimeoutMs;
         this.nodeBannageMs = nodeBannageMs;
         this.enableVerboseLogging = true;
+        this.probeStores = new ConcurrentHashMap<Integer, Store<ByteArray, byte[]>>();
+        this.failureDetector = createFailureDetector();
+        this.maxInFlightPerNode = 0;
+        this.nearCacheMaxEntries = 0;
+        this.nearCacheTtlMs = 0;
+        this.nearCacheRevalidate = false;
     }
 
     public <K, V> StoreClient<K, V> getStoreClient(String storeName) {
@@ -116,25 +140,37 @@ public abstract class AbstractStoreClientFactory implements StoreClientFactory {
             Store<ByteArray, byte[]> store = getStore(storeDef.getName(),
                                                       node.getHost(),
                                                       getPort(node));
+            probeStores.putIfAbsent(node.getId(), store);
             if(enableVerboseLogging)
                 store = new LoggingStore(store);
             clientMapping.put(node.getId(), store);
         }
 
-        Store<ByteArray, byte[]> store = new RoutedStore(storeName,
-                                                         clientMapping,
-                                                         routingStrategy,
-                                                         storeDef.getPreferredReads() == null ? storeDef.getRequiredReads()
-                                                                                             : storeDef.getPreferredReads(),
-                                                         storeDef.getRequiredReads(),
-                                                         storeDef.getPreferredWrites() == null ? storeDef.getRequiredWrites()
-                                                                                              : storeDef.getPreferredWrites(),
-                                                         storeDef.getRequiredWrites(),
-                                                         true,
-                                                         threadPool,
-                                                         routingTimeoutMs,
-                                                         nodeBannageMs,
-                                                         SystemTime.INSTANCE);
+        RoutedStore routedStore = new RoutedStore(storeName,
+                                                  clientMapping,
+                                                  routingStrategy,
+                                                  storeDef.getPreferredReads() == null ? storeDef.getRequiredReads()
+                                                                                      : storeDef.getPreferredReads(),
+                                                  storeDef.getRequiredReads(),
+                                                  storeDef.getPreferredWrites() == null ? storeDef.getRequiredWrites()
+                                                                                       : storeDef.getPreferredWrites(),
+                                                  storeDef.getRequiredWrites(),
+                                                  true,
+                                                  threadPool,
+                                                  routingTimeoutMs,
+                                                  failureDetector,
+                                                  getMaxInFlightPerNode(),
+                                                  getReadRepairQueue(),
+                                                  SystemTime.INSTANCE);
+        routedStore.setClockPruning(storeDef.getClockPruning());
+        Store<ByteArray, byte[]> store = routedStore;
+
+        if(nearCacheMaxEntries > 0)
+            store = new NearCacheStore<ByteArray, byte[]>(store,
+                                                          nearCacheMaxEntries,
+                                                          nearCacheTtlMs,
+                                                          nearCacheRevalidate,
+                                                          SystemTime.INSTANCE);
 
         Serializer<K> keySerializer = (Serializer<K>) serializerFactory.getSerializer(storeDef.getKeySerializer());
         Serializer<V> valueSerializer = (Serializer<V>) serializerFactory.getSerializer(storeDef.getValueSerializer());
@@ -156,6 +192,106 @@ public abstract class AbstractStoreClientFactory implements StoreClientFactory {
                                             routingStrategy);
     }
 
+    /*
+     * Create the failure detector shared by every store client of this
+     * factory. Nodes that are marked down are probed in the background with a
+     * get of a dummy key against the first store opened on them, and are
+     * retried at least every nodeBannageMs.
+     */
+    private FailureDetector createFailureDetector() {
+        return new AdaptiveFailureDetector(new NodeVerifier() {
+
+            public void verify(Node node) throws Exception {
+                Store<ByteArray, byte[]> store = probeStores.get(node.getId());
+                if(store == null)
+                    throw new UnreachableStoreException("No store to probe node " + node.getId()
+                                                        + " with.");
+                store.get(PROBE_KEY);
+            }
+        }, nodeBannageMs);
+    }
+
+    /**
+     * Get the failure detector shared by the store clients of this factory
+     */
+    public FailureDetector getFailureDetector() {
+        return failureDetector;
+    }
+
+    /**
+     * The maximum number of requests that may be outstanding against a single
+     * node before further requests to it fail fast. This is the value given
+     * to {@link #setMaxInFlightPerNode(int)} if any, otherwise half the
+     * routing threads (rounded up) so that one slow node can never hold every
+     * thread. Transports with a bounded number of connections per node should
+     * cap this at that bound.
+     */
+    protected int getMaxInFlightPerNode() {
+        if(maxInFlightPerNode > 0)
+            return maxInFlightPerNode;
+        return getDefaultMaxInFlightPerNode(threadPool);
+    }
+
+    /**
+     * Limit the number of requests outstanding against a single node in each
+     * store client created after this call.
+     * 
+     * @param maxInFlightPerNode The limit, zero or less for the default
+     */
+    public void setMaxInFlightPerNode(int maxInFlightPerNode) {
+        this.maxInFlightPerNode = maxInFlightPerNode;
+    }
+
+    /**
+     * The default per node request limit for the given routing thread pool,
+     * zero (no limit) if the size of the pool is unknown or unbounded
+     */
+    public static int getDefaultMaxInFlightPerNode(ExecutorService threadPool) {
+        if(!(threadPool instanceof ThreadPoolExecutor))
+            return 0;
+        int threads = ((ThreadPoolExecutor) threadPool).getMaximumPoolSize();
+        if(threads == Integer.MAX_VALUE)
+            return 0;
+        return Math.max(1, (threads + 1) / 2);
+    }
+
+    /**
+     * Cache the results of gets in each store client created after this call.
+     * Puts and deletes made through a client invalidate its cache, changes
+     * made by anyone else become visible when the entry expires.
+     * 
+     * @param maxEntries The maximum number of keys to cache per store client,
+     *        zero to disable caching
+     * @param ttlMs How long a cached value may be served
+     * @param revalidate If true an expired value is renewed when its versions
+     *        are unchanged, instead of being fetched again
+     */
+    public void setNearCache(int maxEntries, long ttlMs, boolean revalidate) {
+        this.nearCacheMaxEntries = maxEntries;
+        this.nearCacheTtlMs = ttlMs;
+        this.nearCacheRevalidate = revalidate;
+    }
+
+    /**
+     * The maximum rate at which the store clients of this factory write back
+     * read repairs, between them
+     */
+    protected int getMaxRepairsPerSecond() {
+        return ReadRepairQueue.DEFAULT_MAX_REPAIRS_PER_SECOND;
+    }
+
+    /**
+     * Get the read repair queue shared by the store clients of this factory,
+     * its thread is started with the first store client
+     */
+    public synchronized ReadRepairQueue getReadRepairQueue() {
+        if(readRepairQueue == null)
+            readRepairQueue = new ReadRepairQueue(ReadRepairQueue.DEFAULT_MAX_PENDING_REPAIRS,
+                                                  getMaxRepairsPerSecond(),
+                                                  SystemTime.INSTANCE);
+        return readRepairQueue;
+    }
+
     private String bootstrapMetadata(String key, URI[] urls) {
         for(URI url: urls) {
             try {
@@ -230,4 +366,16 @@ public abstract class AbstractStoreClientFactory implements StoreClientFactory {
         return enableVerboseLogging;
     }
 
+    /**
+     * Stop the background work shared by the store clients of this factory.
+     * Subclasses that override this must call it.
+     */
+    public void close() {
+        this.failureDetector.close();
+        synchronized(this) {
+            if(readRepairQueue != null)
+                readRepairQueue.close();
+        }
+    }
+
 }
@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import voldemort.VoldemortException;
 import voldemort.annotations.concurrency.Threadsafe;
 import voldemort.cluster.Node;
 import voldemort.routing.RoutingStrategy;
@@ -47,8 +48,6 @@ import com.google.common.collect.Maps;
 @Threadsafe
 public class DefaultStoreClient<K, V> implements StoreClient<K, V> {
 
-    private final Versioned<V> NOT_FOUND = new Versioned<V>(null, null);
-
     private final Store<K, V> store;
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
@@ -65,10 +64,10 @@ public class DefaultStoreClient<K, V> implements StoreClient<K, V> {
     }
 
     public boolean delete(K key) {
-        Versioned<V> versioned = get(key);
-        if(versioned == null)
+        VectorClock clock = getCurrentClock(key);
+        if(clock == null)
             return false;
-        return store.delete(key, versioned.getVersion());
+        return store.delete(key, clock);
     }
 
     public boolean delete(K key, Version version) {
@@ -118,11 +117,25 @@ public class DefaultStoreClient<K, V> implements StoreClient<K, V> {
     }
 
     public void put(K key, V value) {
-        Versioned<V> versioned = get(key, NOT_FOUND);
-        if(versioned == NOT_FOUND)
-            versioned = new Versioned<V>(value, new VectorClock());
-        versioned.setObject(value);
-        store.put(key, versioned);
+        VectorClock clock = getCurrentClock(key);
+        if(clock == null)
+            clock = new VectorClock();
+        store.put(key, new Versioned<V>(value, clock));
+    }
+
+    /*
+     * Blind writes only need the current version, not the current value. If
+     * there are concurrent versions the write supersedes all of them.
+     */
+    private VectorClock getCurrentClock(K key) {
+        VectorClock clock = null;
+        for(Version version: store.getVersions(key)) {
+            if(clock == null)
+                clock = ((VectorClock) version).clone();
+            else
+                clock = clock.merge((VectorClock) version);
+        }
+        return clock;
     }
 
     public boolean putIfNotObsolete(K key, Versioned<V> versioned) {
@@ -134,6 +147,14 @@ public class DefaultStoreClient<K, V> implements StoreClient<K, V> {
         }
     }
 
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<V>> entries) {
+        return store.putAll(entries);
+    }
+
+    public void putIfCurrent(K key, Versioned<V> versioned) throws ObsoleteVersionException {
+        store.putIfCurrent(key, versioned, versioned.getVersion());
+    }
+
     public void put(K key, Versioned<V> versioned) throws ObsoleteVersionException {
         store.put(key, versioned);
     }
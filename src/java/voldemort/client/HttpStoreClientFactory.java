@@ -57,6 +57,8 @@ public class HttpStoreClientFactory extends AbstractStoreClientFactory {
 
     private final HttpClient httpClient;
     private final MultiThreadedHttpConnectionManager connectionManager;
+    private final int maxSingleHostConnections;
+    private volatile boolean wireCompression = false;
 
     public HttpStoreClientFactory(int numThreads, String... bootstrapUrls) {
         this(numThreads,
@@ -111,6 +113,7 @@ public class HttpStoreClientFactory extends AbstractStoreClientFactory {
               routingTimeoutMs,
               nodeBannageMs,
               bootstrapUrls);
+        this.maxSingleHostConnections = maxSingleHostConnections;
         HostConfiguration hostConfig = new HostConfiguration();
         hostConfig.getParams().setParameter("http.protocol.version", HttpVersion.HTTP_1_1);
         this.connectionManager = new MultiThreadedHttpConnectionManager();
@@ -132,9 +135,19 @@ public class HttpStoreClientFactory extends AbstractStoreClientFactory {
                                                maxSingleHostConnections);
     }
 
+    /**
+     * Deflate large put bodies sent by stores created from now on. Only turn
+     * this on when every server accepts a deflated request body.
+     */
+    public void setWireCompression(boolean wireCompression) {
+        this.wireCompression = wireCompression;
+    }
+
     @Override
     protected Store<ByteArray, byte[]> getStore(String name, String host, int port) {
-        return new HttpStore(name, host, port, httpClient);
+        HttpStore store = new HttpStore(name, host, port, httpClient);
+        store.setWireCompression(wireCompression);
+        return store;
     }
 
     @Override
@@ -142,6 +155,16 @@ public class HttpStoreClientFactory extends AbstractStoreClientFactory {
         return node.getHttpPort();
     }
 
+    /**
+     * A request to a node beyond the connection limit would only block a
+     * client thread waiting for a connection, so fail it instead.
+     */
+    @Override
+    protected int getMaxInFlightPerNode() {
+        int limit = super.getMaxInFlightPerNode();
+        return limit > 0 ? Math.min(limit, maxSingleHostConnections) : maxSingleHostConnections;
+    }
+
     @Override
     protected void validateUrl(URI url) {
         if(!URL_SCHEME.equals(url.getScheme()))
@@ -152,8 +175,10 @@ public class HttpStoreClientFactory extends AbstractStoreClientFactory {
                                                + url.getScheme() + "'.");
     }
 
+    @Override
     public void close() {
-    // should timeout connections on its own
+        // connections should timeout on their own
+        super.close();
     }
 
 }
@@ -22,6 +22,8 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import voldemort.client.protocol.RequestFormatType;
+import voldemort.client.protocol.WireCompression;
 import voldemort.cluster.Node;
 import voldemort.serialization.DefaultSerializerFactory;
 import voldemort.serialization.SerializerFactory;
@@ -51,6 +53,7 @@ public class SocketStoreClientFactory extends AbstractStoreClientFactory {
     public static final int DEFAULT_SOCKET_BUFFER_SIZE = 32 * 1024;
 
     private SocketPool socketPool;
+    private int maxConnectionsPerNode;
 
     public SocketStoreClientFactory(String bootstrapUrl) {
         this(DEFAULT_NUM_THREADS,
@@ -127,6 +130,7 @@ public class SocketStoreClientFactory extends AbstractStoreClientFactory {
                                     SerializerFactory serializerFactory,
                                     String... boostrapUrls) {
         super(service, serializerFactory, routingTimeoutMs, defaultNodeBannageMs, boostrapUrls);
+        this.maxConnectionsPerNode = maxConnectionsPerNode;
         this.socketPool = new SocketPool(maxConnectionsPerNode,
                                          maxTotalConnections,
                                          socketTimeoutMs,
@@ -143,12 +147,30 @@ public class SocketStoreClientFactory extends AbstractStoreClientFactory {
                                     SerializerFactory serializerFactory,
                                     String... boostrapUrls) {
         super(service, serializerFactory, routingTimeoutMs, defaultNodeBannageMs, boostrapUrls);
+        this.maxConnectionsPerNode = maxConnectionsPerNode;
         this.socketPool = new SocketPool(maxConnectionsPerNode,
                                          maxTotalConnections,
                                          socketTimeoutMs,
                                          socketBufferSize);
     }
 
+    /**
+     * Use the given request format for connections opened from now on. A
+     * server that doesn't speak it is talked to in the native format.
+     */
+    public void setRequestFormatType(RequestFormatType requestFormatType) {
+        this.socketPool.setRequestFormatType(requestFormatType);
+    }
+
+    /**
+     * Compress values sent over connections opened from now on, for servers
+     * that support it. Values below {@link WireCompression#DEFAULT_THRESHOLD_BYTES}
+     * are sent as they are.
+     */
+    public void setWireCompression(boolean wireCompression) {
+        this.socketPool.setWireCompression(wireCompression);
+    }
+
     @Override
     protected Store<ByteArray, byte[]> getStore(String storeName, String host, int port) {
         return new SocketStore(Utils.notNull(storeName), Utils.notNull(host), port, socketPool);
@@ -159,6 +181,16 @@ public class SocketStoreClientFactory extends AbstractStoreClientFactory {
         return node.getSocketPort();
     }
 
+    /**
+     * A request to a node beyond the socket pool limit would only block a
+     * client thread waiting for a connection, so fail it instead.
+     */
+    @Override
+    protected int getMaxInFlightPerNode() {
+        int limit = super.getMaxInFlightPerNode();
+        return limit > 0 ? Math.min(limit, maxConnectionsPerNode) : maxConnectionsPerNode;
+    }
+
     @Override
     protected void validateUrl(URI url) {
         if(!URL_SCHEME.equals(url.getScheme()))
@@ -169,7 +201,9 @@ public class SocketStoreClientFactory extends AbstractStoreClientFactory {
                                                + url.getScheme() + "'.");
     }
 
+    @Override
     public void close() {
+        super.close();
         this.socketPool.close();
         this.getThreadPool().shutdown();
     }
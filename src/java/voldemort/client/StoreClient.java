@@ -18,6 +18,7 @@ package voldemort.client;
 
 import java.util.Map;
 
+import voldemort.VoldemortException;
 import voldemort.annotations.concurrency.Threadsafe;
 import voldemort.versioning.ObsoleteVersionException;
 import voldemort.versioning.Version;
@@ -118,6 +119,34 @@ public interface StoreClient<K, V> {
      */
     public boolean putIfNotObsolete(K key, Versioned<V> versioned);
 
+    /**
+     * Put each of the given Versioned values as by
+     * {@link #put(Object, Versioned)}, sending the writes in batches rather
+     * than one request per key. A failure for one key does not stop the
+     * others.
+     * 
+     * @param entries The keys with their values and versions
+     * @return The keys that could not be put mapped to the reason, for example
+     *         an ObsoleteVersionException. Keys absent from the result were
+     *         put.
+     */
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<V>> entries);
+
+    /**
+     * Put the given Versioned value only if no other value has been written
+     * for the key since the version it carries was read. Unlike
+     * {@link #put(Object, Versioned)} a concurrent write is treated as a
+     * conflict, and the check is done by the server so a losing update fails
+     * without being written to the replicas. This is the put to use inside an
+     * {@link UpdateAction}.
+     * 
+     * @param key The key
+     * @param versioned The new value, carrying the version it was based on (a
+     *        new VectorClock if the key had no value)
+     * @throws ObsoleteVersionException If the key has changed since
+     */
+    public void putIfCurrent(K key, Versioned<V> versioned) throws ObsoleteVersionException;
+
     /**
      * Apply the given action repeatedly until no ObsoleteVersionException is
      * thrown. This is useful for implementing a read-modify-store loop that
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.client.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import voldemort.VoldemortException;
+import voldemort.serialization.VoldemortOpCode;
+import voldemort.store.ErrorCodeMapper;
+import voldemort.utils.ByteArray;
+import voldemort.utils.Pair;
+import voldemort.versioning.VectorClock;
+import voldemort.versioning.Version;
+import voldemort.versioning.Versioned;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+/**
+ * The client side of the protocol buffers request format.
+ * 
+ * The first request for a store on a connection names the store, and the
+ * server answers with a small integer id that later requests send in its place.
+ * The ids are only good for the connection they were handed out on.
+ */
+public class ProtoBufRequestFormat implements RequestFormat {
+
+    private final ErrorCodeMapper errorCodeMapper = new ErrorCodeMapper();
+    private final Map<String, Integer> storeIds = new HashMap<String, Integer>();
+    private final WireCompression compression;
+
+    /* The store named in the outstanding request, if it has no id yet */
+    private String pendingStore;
+
+    public ProtoBufRequestFormat() {
+        this(null);
+    }
+
+    /**
+     * @param compression The compression agreed for values on this connection,
+     *        or null for none
+     */
+    public ProtoBufRequestFormat(WireCompression compression) {
+        this.compression = compression;
+    }
+
+    public void writeGetRequest(DataOutputStream output, String storeName, ByteArray key)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream request = startRequest(bytes, VoldemortOpCode.GET_OP_CODE, storeName);
+        ProtoBufUtils.writeBytes(request, ProtoBufUtils.REQUEST_KEY, key.get());
+        finishRequest(output, bytes, request);
+    }
+
+    public List<Versioned<byte[]>> readGetResponse(DataInputStream input) throws IOException {
+        Response response = readResponse(input);
+        List<Versioned<byte[]>> results = new ArrayList<Versioned<byte[]>>(response.versioned.size());
+        for(byte[] versioned: response.versioned)
+            results.add(decompress(ProtoBufUtils.decodeVersioned(versioned)));
+        return results;
+    }
+
+    public void writeGetVersionsRequest(DataOutputStream output, String storeName, ByteArray key)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream request = startRequest(bytes,
+                                                 VoldemortOpCode.GET_VERSION_OP_CODE,
+                                                 storeName);
+        ProtoBufUtils.writeBytes(request, ProtoBufUtils.REQUEST_KEY, key.get());
+        finishRequest(output, bytes, request);
+    }
+
+    public List<Version> readGetVersionsResponse(DataInputStream input) throws IOException {
+        Response response = readResponse(input);
+        List<Version> results = new ArrayList<Version>(response.versions.size());
+        for(byte[] version: response.versions)
+            results.add(new VectorClock(version));
+        return results;
+    }
+
+    public void writePutRequest(DataOutputStream output,
+                                String storeName,
+                                ByteArray key,
+                                Versioned<byte[]> value,
+                                Version expected) throws IOException {
+        writePutRequest(output,
+                        expected == null ? VoldemortOpCode.PUT_OP_CODE
+                                        : VoldemortOpCode.PUT_IF_CURRENT_OP_CODE,
+                        storeName,
+                        key,
+                        value,
+                        expected);
+    }
+
+    public void writePutSupersedingRequest(DataOutputStream output,
+                                           String storeName,
+                                           ByteArray key,
+                                           Versioned<byte[]> value,
+                                           Version superseded) throws IOException {
+        writePutRequest(output,
+                        VoldemortOpCode.PUT_SUPERSEDING_OP_CODE,
+                        storeName,
+                        key,
+                        value,
+                        superseded);
+    }
+
+    private void writePutRequest(DataOutputStream output,
+                                 byte type,
+                                 String storeName,
+                                 ByteArray key,
+                                 Versioned<byte[]> value,
+                                 Version version) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream request = startRequest(bytes, type, storeName);
+        ProtoBufUtils.writeBytes(request, ProtoBufUtils.REQUEST_KEY, key.get());
+        ProtoBufUtils.writeBytes(request,
+                                 ProtoBufUtils.REQUEST_VERSIONED,
+                                 ProtoBufUtils.encodeVersioned(compress(value)));
+        if(version != null)
+            ProtoBufUtils.writeBytes(request,
+                                     ProtoBufUtils.REQUEST_VERSION,
+                                     ((VectorClock) version).toBytes());
+        finishRequest(output, bytes, request);
+    }
+
+    public void readPutResponse(DataInputStream input) throws IOException {
+        readResponse(input);
+    }
+
+    public void writePutAllRequest(DataOutputStream output,
+                                   String storeName,
+                                   Map<ByteArray, Versioned<byte[]>> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream request = startRequest(bytes, VoldemortOpCode.PUT_ALL_OP_CODE, storeName);
+        for(Map.Entry<ByteArray, Versioned<byte[]>> entry: entries.entrySet()) {
+            byte[] versioned = ProtoBufUtils.encodeVersioned(compress(entry.getValue()));
+            ProtoBufUtils.writeBytes(request,
+                                     ProtoBufUtils.REQUEST_ENTRY,
+                                     ProtoBufUtils.encodeKeyed(entry.getKey(), versioned));
+        }
+        finishRequest(output, bytes, request);
+    }
+
+    public Map<ByteArray, VoldemortException> readPutAllResponse(DataInputStream input)
+            throws IOException {
+        Response response = readResponse(input);
+        Map<ByteArray, VoldemortException> failures = new HashMap<ByteArray, VoldemortException>(response.keyedErrors.size());
+        for(byte[] keyedError: response.keyedErrors) {
+            Pair<ByteArray, byte[]> failure = ProtoBufUtils.decodeKeyed(keyedError);
+            failures.put(failure.getFirst(), ProtoBufUtils.decodeError(failure.getSecond(),
+                                                                       errorCodeMapper));
+        }
+        return failures;
+    }
+
+    public void writeDeleteRequest(DataOutputStream output,
+                                   String storeName,
+                                   ByteArray key,
+                                   Version version) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream request = startRequest(bytes, VoldemortOpCode.DELETE_OP_CODE, storeName);
+        ProtoBufUtils.writeBytes(request, ProtoBufUtils.REQUEST_KEY, key.get());
+        ProtoBufUtils.writeBytes(request,
+                                 ProtoBufUtils.REQUEST_VERSION,
+                                 ((VectorClock) version).toBytes());
+        finishRequest(output, bytes, request);
+    }
+
+    public boolean readDeleteResponse(DataInputStream input) throws IOException {
+        return readResponse(input).success;
+    }
+
+    private Versioned<byte[]> compress(Versioned<byte[]> versioned) {
+        if(compression == null)
+            return versioned;
+        return new Versioned<byte[]>(compression.encode(versioned.getValue()),
+                                     versioned.getVersion());
+    }
+
+    private Versioned<byte[]> decompress(Versioned<byte[]> versioned) throws IOException {
+        if(compression == null)
+            return versioned;
+        return new Versioned<byte[]>(compression.decode(versioned.getValue()),
+                                     versioned.getVersion());
+    }
+
+    private CodedOutputStream startRequest(ByteArrayOutputStream bytes,
+                                           byte opCode,
+                                           String storeName) throws IOException {
+        CodedOutputStream request = CodedOutputStream.newInstance(bytes);
+        request.writeEnum(ProtoBufUtils.REQUEST_TYPE, opCode);
+        Integer storeId = storeIds.get(storeName);
+        if(storeId == null) {
+            request.writeString(ProtoBufUtils.REQUEST_STORE, storeName);
+            pendingStore = storeName;
+        } else {
+            request.writeInt32(ProtoBufUtils.REQUEST_STORE_ID, storeId);
+            pendingStore = null;
+        }
+        return request;
+    }
+
+    private void finishRequest(DataOutputStream output,
+                               ByteArrayOutputStream bytes,
+                               CodedOutputStream request) throws IOException {
+        request.flush();
+        ProtoBufUtils.writeMessage(output, bytes);
+    }
+
+    private Response readResponse(DataInputStream input) throws IOException {
+        CodedInputStream message = ProtoBufUtils.readMessage(input);
+        Response response = new Response();
+        byte[] error = null;
+        for(int tag = message.readTag(); tag != 0; tag = message.readTag()) {
+            switch(ProtoBufUtils.getFieldNumber(tag)) {
+                case ProtoBufUtils.RESPONSE_STORE_ID:
+                    int storeId = message.readInt32();
+                    if(pendingStore != null)
+                        storeIds.put(pendingStore, storeId);
+                    break;
+                case ProtoBufUtils.RESPONSE_ERROR:
+                    error = ProtoBufUtils.readBytes(message);
+                    break;
+                case ProtoBufUtils.RESPONSE_VERSIONED:
+                    response.versioned.add(ProtoBufUtils.readBytes(message));
+                    break;
+                case ProtoBufUtils.RESPONSE_VERSION:
+                    response.versions.add(ProtoBufUtils.readBytes(message));
+                    break;
+                case ProtoBufUtils.RESPONSE_SUCCESS:
+                    response.success = message.readBool();
+                    break;
+                case ProtoBufUtils.RESPONSE_KEYED_ERROR:
+                    response.keyedErrors.add(ProtoBufUtils.readBytes(message));
+                    break;
+                default:
+                    message.skipField(tag);
+            }
+        }
+        pendingStore = null;
+        if(error != null)
+            throw ProtoBufUtils.decodeError(error, errorCodeMapper);
+        return response;
+    }
+
+    /**
+     * The still-encoded repeated fields of a VoldemortResponse
+     */
+    private static class Response {
+
+        private final List<byte[]> versioned = new ArrayList<byte[]>();
+        private final List<byte[]> versions = new ArrayList<byte[]>();
+        private final List<byte[]> keyedErrors = new ArrayList<byte[]>();
+        private boolean success;
+    }
+
+}
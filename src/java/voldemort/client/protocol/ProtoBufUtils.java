@@ -0,0 +1,209 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.client.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import voldemort.VoldemortException;
+import voldemort.store.ErrorCodeMapper;
+import voldemort.utils.ByteArray;
+import voldemort.utils.ByteUtils;
+import voldemort.utils.Pair;
+import voldemort.versioning.VectorClock;
+import voldemort.versioning.Versioned;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+/**
+ * Field numbers and encoding helpers for the protocol buffers request format.
+ * The messages are described in src/proto/voldemort-client.proto; they are
+ * encoded by hand with the protobuf coded streams so the build needs no
+ * generated code.
+ * 
+ * Every message travels as a four byte length followed by the encoded bytes.
+ */
+public final class ProtoBufUtils {
+
+    public static final int WIRETYPE_VARINT = 0;
+    public static final int WIRETYPE_LENGTH_DELIMITED = 2;
+
+    /* VoldemortRequest fields */
+    public static final int REQUEST_TYPE = 1;
+    public static final int REQUEST_STORE = 2;
+    public static final int REQUEST_STORE_ID = 3;
+    public static final int REQUEST_KEY = 4;
+    public static final int REQUEST_VERSIONED = 5;
+    public static final int REQUEST_VERSION = 6;
+    public static final int REQUEST_ENTRY = 7;
+
+    /* VoldemortResponse fields */
+    public static final int RESPONSE_STORE_ID = 1;
+    public static final int RESPONSE_ERROR = 2;
+    public static final int RESPONSE_VERSIONED = 3;
+    public static final int RESPONSE_VERSION = 4;
+    public static final int RESPONSE_SUCCESS = 5;
+    public static final int RESPONSE_KEYED_ERROR = 6;
+
+    /* Versioned fields */
+    private static final int VERSIONED_VERSION = 1;
+    private static final int VERSIONED_VALUE = 2;
+
+    /* Error fields */
+    private static final int ERROR_CODE = 1;
+    private static final int ERROR_MESSAGE = 2;
+
+    /* KeyedVersioned and KeyedError fields */
+    private static final int KEYED_KEY = 1;
+    private static final int KEYED_MESSAGE = 2;
+
+    private ProtoBufUtils() {}
+
+    public static CodedInputStream readMessage(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        ByteUtils.read(input, bytes);
+        return CodedInputStream.newInstance(bytes);
+    }
+
+    public static void writeMessage(DataOutputStream output, ByteArrayOutputStream message)
+            throws IOException {
+        output.writeInt(message.size());
+        message.writeTo(output);
+    }
+
+    public static int getFieldNumber(int tag) {
+        return WireFormat.getTagFieldNumber(tag);
+    }
+
+    public static void writeBytes(CodedOutputStream output, int field, byte[] bytes)
+            throws IOException {
+        output.writeTag(field, WIRETYPE_LENGTH_DELIMITED);
+        output.writeRawVarint32(bytes.length);
+        output.writeRawBytes(bytes);
+    }
+
+    public static byte[] readBytes(CodedInputStream input) throws IOException {
+        return input.readRawBytes(input.readRawVarint32());
+    }
+
+    public static byte[] encodeVersioned(Versioned<byte[]> versioned) throws IOException {
+        byte[] version = ((VectorClock) versioned.getVersion()).toBytes();
+        byte[] value = versioned.getValue();
+        byte[] bytes = new byte[sizeOf(VERSIONED_VERSION, version.length)
+                                + sizeOf(VERSIONED_VALUE, value.length)];
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        writeBytes(output, VERSIONED_VERSION, version);
+        writeBytes(output, VERSIONED_VALUE, value);
+        output.checkNoSpaceLeft();
+        return bytes;
+    }
+
+    public static Versioned<byte[]> decodeVersioned(byte[] bytes) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(bytes);
+        VectorClock version = new VectorClock();
+        byte[] value = new byte[0];
+        for(int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            switch(getFieldNumber(tag)) {
+                case VERSIONED_VERSION:
+                    version = new VectorClock(readBytes(input));
+                    break;
+                case VERSIONED_VALUE:
+                    value = readBytes(input);
+                    break;
+                default:
+                    input.skipField(tag);
+            }
+        }
+        return new Versioned<byte[]>(value, version);
+    }
+
+    public static byte[] encodeError(short code, String message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        output.writeInt32(ERROR_CODE, code);
+        if(message != null)
+            output.writeString(ERROR_MESSAGE, message);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    public static VoldemortException decodeError(byte[] bytes, ErrorCodeMapper mapper)
+            throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(bytes);
+        short code = 0;
+        String message = null;
+        for(int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            switch(getFieldNumber(tag)) {
+                case ERROR_CODE:
+                    code = (short) input.readInt32();
+                    break;
+                case ERROR_MESSAGE:
+                    message = input.readString();
+                    break;
+                default:
+                    input.skipField(tag);
+            }
+        }
+        return mapper.getError(code, message);
+    }
+
+    /**
+     * Encode a KeyedVersioned or KeyedError message from its key and the
+     * already encoded inner message
+     */
+    public static byte[] encodeKeyed(ByteArray key, byte[] message) throws IOException {
+        byte[] bytes = new byte[sizeOf(KEYED_KEY, key.length())
+                                + sizeOf(KEYED_MESSAGE, message.length)];
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        writeBytes(output, KEYED_KEY, key.get());
+        writeBytes(output, KEYED_MESSAGE, message);
+        output.checkNoSpaceLeft();
+        return bytes;
+    }
+
+    public static Pair<ByteArray, byte[]> decodeKeyed(byte[] bytes) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(bytes);
+        ByteArray key = null;
+        byte[] message = null;
+        for(int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            switch(getFieldNumber(tag)) {
+                case KEYED_KEY:
+                    key = new ByteArray(readBytes(input));
+                    break;
+                case KEYED_MESSAGE:
+                    message = readBytes(input);
+                    break;
+                default:
+                    input.skipField(tag);
+            }
+        }
+        if(key == null || message == null)
+            throw new IOException("Incomplete keyed message.");
+        return Pair.create(key, message);
+    }
+
+    private static int sizeOf(int field, int length) {
+        return CodedOutputStream.computeTagSize(field)
+               + CodedOutputStream.computeRawVarint32Size(length) + length;
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.client.protocol;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import voldemort.VoldemortException;
+import voldemort.utils.ByteArray;
+import voldemort.versioning.Version;
+import voldemort.versioning.Versioned;
+
+/**
+ * The client side of a wire protocol: writes each request and reads back its
+ * response. An instance belongs to a single connection and is only used by one
+ * thread at a time, so implementations may keep per-connection state.
+ * 
+ * Each read method throws the error the server reported, if any.
+ */
+public interface RequestFormat {
+
+    public void writeGetRequest(DataOutputStream output, String storeName, ByteArray key)
+            throws IOException;
+
+    public List<Versioned<byte[]>> readGetResponse(DataInputStream input) throws IOException;
+
+    public void writeGetVersionsRequest(DataOutputStream output, String storeName, ByteArray key)
+            throws IOException;
+
+    public List<Version> readGetVersionsResponse(DataInputStream input) throws IOException;
+
+    /**
+     * Write a put, which is conditional on the stored versions if expected is
+     * not null
+     */
+    public void writePutRequest(DataOutputStream output,
+                                String storeName,
+                                ByteArray key,
+                                Versioned<byte[]> value,
+                                Version expected) throws IOException;
+
+    /**
+     * Write a put that also removes the stored versions before or equal to the
+     * superseded version. The response is read with
+     * {@link #readPutResponse(DataInputStream)}.
+     */
+    public void writePutSupersedingRequest(DataOutputStream output,
+                                           String storeName,
+                                           ByteArray key,
+                                           Versioned<byte[]> value,
+                                           Version superseded) throws IOException;
+
+    public void readPutResponse(DataInputStream input) throws IOException;
+
+    public void writePutAllRequest(DataOutputStream output,
+                                   String storeName,
+                                   Map<ByteArray, Versioned<byte[]>> entries) throws IOException;
+
+    public Map<ByteArray, VoldemortException> readPutAllResponse(DataInputStream input)
+            throws IOException;
+
+    public void writeDeleteRequest(DataOutputStream output,
+                                   String storeName,
+                                   ByteArray key,
+                                   Version version) throws IOException;
+
+    public boolean readDeleteResponse(DataInputStream input) throws IOException;
+
+}
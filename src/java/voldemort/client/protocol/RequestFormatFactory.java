@@ -0,0 +1,47 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.client.protocol;
+
+/**
+ * Creates the client side of each request format
+ */
+public class RequestFormatFactory {
+
+    private RequestFormatFactory() {}
+
+    public static RequestFormat getRequestFormat(RequestFormatType type) {
+        return getRequestFormat(type, null);
+    }
+
+    /**
+     * @param type The request format
+     * @param compression The compression agreed for values, or null for none
+     */
+    public static RequestFormat getRequestFormat(RequestFormatType type,
+                                                 WireCompression compression) {
+        switch(type) {
+            case VOLDEMORT_NATIVE:
+                return new VoldemortNativeRequestFormat(compression);
+            case PROTOCOL_BUFFERS:
+                return new ProtoBufRequestFormat(compression);
+            default:
+                throw new IllegalArgumentException("Unknown request format type " + type);
+        }
+    }
+
+}
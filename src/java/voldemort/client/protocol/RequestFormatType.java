@@ -0,0 +1,52 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.client.protocol;
+
+/**
+ * The wire formats a socket client can speak to a server. The native format is
+ * what a connection speaks unless it opens with a handshake naming another
+ * format by its three byte code.
+ */
+public enum RequestFormatType {
+    VOLDEMORT_NATIVE("vn0", "voldemort-native-v0"),
+    PROTOCOL_BUFFERS("pb0", "protocol-buffers-v0");
+
+    private final String code;
+    private final String displayName;
+
+    private RequestFormatType(String code, String display) {
+        this.code = code;
+        this.displayName = display;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public static RequestFormatType fromCode(String code) {
+        for(RequestFormatType type: RequestFormatType.values())
+            if(type.getCode().equals(code))
+                return type;
+        throw new IllegalArgumentException("No request format '" + code + "' found.");
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.client.protocol;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import voldemort.utils.ByteUtils;
+import voldemort.versioning.VectorClock;
+import voldemort.versioning.Versioned;
+
+/**
+ * Reads the vector clocks and clock-then-value pairs of the native request
+ * protocol. Clocks are read into a scratch buffer that is reused from call to
+ * call and parsed in place, so reading a versioned value allocates only the
+ * value itself and no intermediate copy.
+ * 
+ * Not thread safe, keep one per connection.
+ */
+public class VersionedReader {
+
+    /* entry count, then the width of each version */
+    private static final int CLOCK_HEADER_SIZE = ByteUtils.SIZE_OF_SHORT + 1;
+    private static final int INITIAL_BUFFER_SIZE = 64;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    /**
+     * Read a clock serialized in exactly the given number of bytes
+     */
+    public VectorClock readClock(DataInputStream input, int size) throws IOException {
+        ensureCapacity(size);
+        input.readFully(buffer, 0, size);
+        return new VectorClock(buffer, 0);
+    }
+
+    /**
+     * Read a clock followed by a value, the two together taking the given
+     * number of bytes
+     */
+    public Versioned<byte[]> readVersioned(DataInputStream input, int size) throws IOException {
+        return readVersioned(input, size, null);
+    }
+
+    /**
+     * Read a clock followed by a value encoded with the given compression, or
+     * a plain value if compression is null
+     */
+    public Versioned<byte[]> readVersioned(DataInputStream input,
+                                           int size,
+                                           WireCompression compression) throws IOException {
+        int clockSize = readClockBytes(input);
+        if(clockSize > size)
+            throw new IOException("Vector clock of " + clockSize
+                                  + " bytes does not fit in a value of " + size + " bytes.");
+        VectorClock clock = new VectorClock(buffer, 0);
+        byte[] value;
+        if(compression == null) {
+            value = new byte[size - clockSize];
+            input.readFully(value);
+        } else {
+            value = compression.read(input, size - clockSize);
+        }
+        return new Versioned<byte[]>(value, clock);
+    }
+
+    /*
+     * Read a clock into the buffer, using its header to tell where it ends,
+     * and return its size
+     */
+    private int readClockBytes(DataInputStream input) throws IOException {
+        input.readFully(buffer, 0, CLOCK_HEADER_SIZE);
+        int numEntries = ByteUtils.readShort(buffer, 0);
+        int versionSize = buffer[ByteUtils.SIZE_OF_SHORT];
+        int size = CLOCK_HEADER_SIZE + numEntries * (ByteUtils.SIZE_OF_SHORT + versionSize)
+                   + ByteUtils.SIZE_OF_LONG;
+        ensureCapacity(size);
+        input.readFully(buffer, CLOCK_HEADER_SIZE, size - CLOCK_HEADER_SIZE);
+        return size;
+    }
+
+    private void ensureCapacity(int size) {
+        if(buffer.length < size) {
+            byte[] bigger = new byte[Math.max(size, 2 * buffer.length)];
+            System.arraycopy(buffer, 0, bigger, 0, CLOCK_HEADER_SIZE);
+            buffer = bigger;
+        }
+    }
+
+}
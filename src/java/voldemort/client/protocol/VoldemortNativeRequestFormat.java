@@ -0,0 +1,210 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.client.protocol;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import voldemort.VoldemortException;
+import voldemort.serialization.VoldemortOpCode;
+import voldemort.store.ErrorCodeMapper;
+import voldemort.utils.ByteArray;
+import voldemort.utils.ByteUtils;
+import voldemort.versioning.VectorClock;
+import voldemort.versioning.Version;
+import voldemort.versioning.Versioned;
+
+/**
+ * The original hand-rolled protocol: an op code, the store name and the key
+ * followed by the arguments of the operation.
+ */
+public class VoldemortNativeRequestFormat implements RequestFormat {
+
+    private final ErrorCodeMapper errorCodeMapper = new ErrorCodeMapper();
+    private final VersionedReader versionedReader = new VersionedReader();
+    private final WireCompression compression;
+
+    public VoldemortNativeRequestFormat() {
+        this(null);
+    }
+
+    /**
+     * @param compression The compression agreed for values on this connection,
+     *        or null for none
+     */
+    public VoldemortNativeRequestFormat(WireCompression compression) {
+        this.compression = compression;
+    }
+
+    public void writeGetRequest(DataOutputStream outputStream, String storeName, ByteArray key)
+            throws IOException {
+        writeHeader(outputStream, VoldemortOpCode.GET_OP_CODE, storeName, key);
+    }
+
+    public List<Versioned<byte[]>> readGetResponse(DataInputStream inputStream)
+            throws IOException {
+        checkException(inputStream);
+        int resultSize = inputStream.readInt();
+        List<Versioned<byte[]>> results = new ArrayList<Versioned<byte[]>>(resultSize);
+        for(int i = 0; i < resultSize; i++)
+            results.add(versionedReader.readVersioned(inputStream,
+                                                     inputStream.readInt(),
+                                                     compression));
+        return results;
+    }
+
+    public void writeGetVersionsRequest(DataOutputStream outputStream,
+                                        String storeName,
+                                        ByteArray key) throws IOException {
+        writeHeader(outputStream, VoldemortOpCode.GET_VERSION_OP_CODE, storeName, key);
+    }
+
+    public List<Version> readGetVersionsResponse(DataInputStream inputStream) throws IOException {
+        checkException(inputStream);
+        int resultSize = inputStream.readInt();
+        List<Version> results = new ArrayList<Version>(resultSize);
+        for(int i = 0; i < resultSize; i++)
+            results.add(versionedReader.readClock(inputStream, inputStream.readInt()));
+        return results;
+    }
+
+    public void writePutRequest(DataOutputStream outputStream,
+                                String storeName,
+                                ByteArray key,
+                                Versioned<byte[]> value,
+                                Version expected) throws IOException {
+        writePutRequest(outputStream,
+                        expected == null ? VoldemortOpCode.PUT_OP_CODE
+                                        : VoldemortOpCode.PUT_IF_CURRENT_OP_CODE,
+                        storeName,
+                        key,
+                        value,
+                        expected);
+    }
+
+    public void writePutSupersedingRequest(DataOutputStream outputStream,
+                                           String storeName,
+                                           ByteArray key,
+                                           Versioned<byte[]> value,
+                                           Version superseded) throws IOException {
+        writePutRequest(outputStream,
+                        VoldemortOpCode.PUT_SUPERSEDING_OP_CODE,
+                        storeName,
+                        key,
+                        value,
+                        superseded);
+    }
+
+    /*
+     * A put followed by the version the op code needs, if any
+     */
+    private void writePutRequest(DataOutputStream outputStream,
+                                 byte opCode,
+                                 String storeName,
+                                 ByteArray key,
+                                 Versioned<byte[]> value,
+                                 Version version) throws IOException {
+        writeHeader(outputStream, opCode, storeName, key);
+        writeVersioned(outputStream, value);
+        if(version != null) {
+            VectorClock clock = (VectorClock) version;
+            outputStream.writeShort(clock.sizeInBytes());
+            outputStream.write(clock.toBytes());
+        }
+    }
+
+    public void readPutResponse(DataInputStream inputStream) throws IOException {
+        checkException(inputStream);
+    }
+
+    public void writePutAllRequest(DataOutputStream outputStream,
+                                   String storeName,
+                                   Map<ByteArray, Versioned<byte[]>> entries) throws IOException {
+        outputStream.writeByte(VoldemortOpCode.PUT_ALL_OP_CODE);
+        outputStream.writeUTF(storeName);
+        outputStream.writeInt(entries.size());
+        for(Map.Entry<ByteArray, Versioned<byte[]>> entry: entries.entrySet()) {
+            ByteArray key = entry.getKey();
+            outputStream.writeInt(key.length());
+            outputStream.write(key.get());
+            writeVersioned(outputStream, entry.getValue());
+        }
+    }
+
+    public Map<ByteArray, VoldemortException> readPutAllResponse(DataInputStream inputStream)
+            throws IOException {
+        checkException(inputStream);
+        int numFailures = inputStream.readInt();
+        Map<ByteArray, VoldemortException> failures = new HashMap<ByteArray, VoldemortException>(numFailures);
+        for(int i = 0; i < numFailures; i++) {
+            ByteArray key = new ByteArray(new byte[inputStream.readInt()]);
+            ByteUtils.read(inputStream, key.get());
+            short code = inputStream.readShort();
+            failures.put(key, errorCodeMapper.getError(code, inputStream.readUTF()));
+        }
+        return failures;
+    }
+
+    public void writeDeleteRequest(DataOutputStream outputStream,
+                                   String storeName,
+                                   ByteArray key,
+                                   Version version) throws IOException {
+        writeHeader(outputStream, VoldemortOpCode.DELETE_OP_CODE, storeName, key);
+        VectorClock clock = (VectorClock) version;
+        outputStream.writeShort(clock.sizeInBytes());
+        outputStream.write(clock.toBytes());
+    }
+
+    public boolean readDeleteResponse(DataInputStream inputStream) throws IOException {
+        checkException(inputStream);
+        return inputStream.readBoolean();
+    }
+
+    private void writeHeader(DataOutputStream outputStream,
+                             byte opCode,
+                             String storeName,
+                             ByteArray key) throws IOException {
+        outputStream.writeByte(opCode);
+        outputStream.writeUTF(storeName);
+        outputStream.writeInt(key.length());
+        outputStream.write(key.get());
+    }
+
+    private void writeVersioned(DataOutputStream outputStream, Versioned<byte[]> value)
+            throws IOException {
+        byte[] clock = ((VectorClock) value.getVersion()).toBytes();
+        byte[] bytes = compression == null ? value.getValue() : compression.encode(value.getValue());
+        outputStream.writeInt(clock.length + bytes.length);
+        outputStream.write(clock);
+        outputStream.write(bytes);
+    }
+
+    private void checkException(DataInputStream inputStream) throws IOException {
+        short retCode = inputStream.readShort();
+        if(retCode != 0) {
+            String error = inputStream.readUTF();
+            throw errorCodeMapper.getError(retCode, error);
+        }
+    }
+
+}
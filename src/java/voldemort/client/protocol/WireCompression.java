@@ -0,0 +1,207 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.client.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import voldemort.utils.ByteUtils;
+
+/**
+ * Compression of values on the wire, agreed on per connection. Each value is
+ * sent as a flag byte followed either by the raw value or by its length and
+ * its deflated bytes. Values below the threshold, and values that don't shrink,
+ * are sent raw, so the reader never needs to know the writer's threshold.
+ * 
+ * Keeps its deflater, inflater and scratch buffer from value to value, so an
+ * instance is not thread safe; keep one per connection.
+ */
+public class WireCompression {
+
+    /* The handshake code a socket client sends to ask for compression */
+    public static final String DEFLATE_CODE = "df0";
+    /* The HTTP content coding used for compressed bodies */
+    public static final String HTTP_CONTENT_ENCODING = "deflate";
+    public static final int DEFAULT_THRESHOLD_BYTES = 1024;
+
+    private static final byte RAW = 0;
+    private static final byte DEFLATED = 1;
+    private static final int DEFLATED_HEADER_SIZE = 1 + ByteUtils.SIZE_OF_INT;
+
+    private final int thresholdBytes;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private byte[] buffer = new byte[0];
+
+    public WireCompression() {
+        this(DEFAULT_THRESHOLD_BYTES);
+    }
+
+    public WireCompression(int thresholdBytes) {
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    public int getThresholdBytes() {
+        return thresholdBytes;
+    }
+
+    /**
+     * Encode a value for the wire
+     */
+    public byte[] encode(byte[] value) {
+        if(value.length >= thresholdBytes && value.length > DEFLATED_HEADER_SIZE) {
+            // give up as soon as the output is no smaller than the raw value
+            ensureCapacity(value.length);
+            deflater.reset();
+            deflater.setInput(value);
+            deflater.finish();
+            int length = DEFLATED_HEADER_SIZE;
+            while(!deflater.finished() && length < value.length)
+                length += deflater.deflate(buffer, length, value.length - length);
+            if(deflater.finished()) {
+                buffer[0] = DEFLATED;
+                ByteUtils.writeInt(buffer, value.length, 1);
+                return ByteUtils.copy(buffer, 0, length);
+            }
+        }
+        byte[] encoded = new byte[value.length + 1];
+        encoded[0] = RAW;
+        System.arraycopy(value, 0, encoded, 1, value.length);
+        return encoded;
+    }
+
+    /**
+     * Deflate a whole message body, as for an HTTP "deflate" content coding
+     */
+    public static byte[] deflateBody(byte[] body) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteArrayOutputStream deflated = new ByteArrayOutputStream(body.length / 2 + 16);
+            DeflaterOutputStream output = new DeflaterOutputStream(deflated, deflater);
+            output.write(body);
+            output.close();
+            return deflated.toByteArray();
+        } catch(IOException e) {
+            // impossible, it is all in memory
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Inflate a message body deflated by {@link #deflateBody(byte[])}
+     */
+    public static InputStream inflateBody(InputStream body) {
+        return new InflaterInputStream(body);
+    }
+
+    /**
+     * The size of a raw value once encoded
+     */
+    public static int getRawEncodedSize(int size) {
+        return size + 1;
+    }
+
+    /**
+     * Write the flag of a raw value, for a writer that sends the value itself
+     * some other way
+     */
+    public static void writeRawFlag(DataOutputStream output) throws IOException {
+        output.writeByte(RAW);
+    }
+
+    /**
+     * Decode a value encoded by {@link #encode(byte[])}
+     */
+    public byte[] decode(byte[] encoded) throws IOException {
+        if(encoded.length == 0)
+            throw new IOException("Encoded value is missing its flag.");
+        if(encoded[0] == RAW)
+            return ByteUtils.copy(encoded, 1, encoded.length);
+        checkDeflated(encoded[0], encoded.length);
+        return inflate(encoded,
+                       DEFLATED_HEADER_SIZE,
+                       encoded.length - DEFLATED_HEADER_SIZE,
+                       ByteUtils.readInt(encoded, 1));
+    }
+
+    /**
+     * Read and decode a value of the given encoded size from the stream. A raw
+     * value is read straight into its own array.
+     */
+    public byte[] read(DataInputStream input, int size) throws IOException {
+        if(size < 1)
+            throw new IOException("Encoded value is missing its flag.");
+        byte flag = input.readByte();
+        if(flag == RAW) {
+            byte[] value = new byte[size - 1];
+            input.readFully(value);
+            return value;
+        }
+        checkDeflated(flag, size);
+        int originalSize = input.readInt();
+        int deflatedSize = size - DEFLATED_HEADER_SIZE;
+        ensureCapacity(deflatedSize);
+        input.readFully(buffer, 0, deflatedSize);
+        return inflate(buffer, 0, deflatedSize, originalSize);
+    }
+
+    private byte[] inflate(byte[] bytes, int offset, int length, int originalSize)
+            throws IOException {
+        if(originalSize < 0)
+            throw new IOException("Invalid value size " + originalSize + ".");
+        byte[] value = new byte[originalSize];
+        inflater.reset();
+        inflater.setInput(bytes, offset, length);
+        try {
+            int inflated = 0;
+            while(inflated < originalSize) {
+                int count = inflater.inflate(value, inflated, originalSize - inflated);
+                if(count == 0 && (inflater.finished() || inflater.needsInput()))
+                    throw new IOException("Deflated value ended after " + inflated + " of "
+                                          + originalSize + " bytes.");
+                inflated += count;
+            }
+        } catch(DataFormatException e) {
+            throw new IOException("Invalid deflated value: " + e.getMessage());
+        }
+        return value;
+    }
+
+    private void checkDeflated(byte flag, int size) throws IOException {
+        if(flag != DEFLATED)
+            throw new IOException("Unknown value encoding " + flag + ".");
+        if(size < DEFLATED_HEADER_SIZE)
+            throw new IOException("Deflated value is missing its size.");
+    }
+
+    private void ensureCapacity(int size) {
+        if(buffer.length < size)
+            buffer = new byte[Math.max(size, 2 * buffer.length)];
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.cluster;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import voldemort.annotations.concurrency.Threadsafe;
+import voldemort.client.DaemonThreadFactory;
+import voldemort.utils.SystemTime;
+import voldemort.utils.Time;
+import voldemort.utils.Utils;
+
+/**
+ * A FailureDetector that tracks the ratio of successful requests to each node
+ * over a window of time. A node is marked down when its success ratio drops
+ * below a threshold (or immediately, if the connection was refused outright).
+ * 
+ * Once a node is down no client traffic is sent to it. Instead a background
+ * thread probes the node using the given {@link NodeVerifier}, backing off
+ * exponentially between failed probes, and the node is brought back as soon as
+ * a probe succeeds.
+ * 
+ * State is kept by node id rather than on the {@link Node} objects themselves,
+ * so one detector can be shared by clients that each bootstrapped their own
+ * copy of the cluster.
+ */
+@Threadsafe
+public class AdaptiveFailureDetector implements FailureDetector {
+
+    public static final double DEFAULT_SUCCESS_THRESHOLD = 0.8;
+    public static final int DEFAULT_MINIMUM_REQUESTS = 10;
+    public static final long DEFAULT_WINDOW_MS = 30 * Time.MS_PER_SECOND;
+    public static final long DEFAULT_MIN_BACKOFF_MS = 500;
+
+    private static final Logger logger = Logger.getLogger(AdaptiveFailureDetector.class);
+
+    private final NodeVerifier verifier;
+    private final double successThreshold;
+    private final int minimumRequests;
+    private final long windowMs;
+    private final long minBackoffMs;
+    private final long maxBackoffMs;
+    private final Time time;
+    private final ConcurrentMap<Integer, NodeHealth> healthByNode;
+    private final ScheduledExecutorService prober;
+
+    public AdaptiveFailureDetector(NodeVerifier verifier, long maxBackoffMs) {
+        this(verifier,
+             DEFAULT_SUCCESS_THRESHOLD,
+             DEFAULT_MINIMUM_REQUESTS,
+             DEFAULT_WINDOW_MS,
+             Math.min(DEFAULT_MIN_BACKOFF_MS, maxBackoffMs),
+             maxBackoffMs,
+             SystemTime.INSTANCE);
+    }
+
+    /**
+     * Create an AdaptiveFailureDetector
+     * 
+     * @param verifier The verifier used to probe nodes that are down
+     * @param successThreshold The fraction of requests in a window that must
+     *        succeed for the node to stay up
+     * @param minimumRequests The number of requests that must be seen in a
+     *        window before the success ratio is acted on
+     * @param windowMs The length of the window over which the success ratio is
+     *        computed
+     * @param minBackoffMs The delay before the first probe of a down node
+     * @param maxBackoffMs The maximum delay between probes of a down node
+     * @param time The time implementation to use for the window
+     */
+    public AdaptiveFailureDetector(NodeVerifier verifier,
+                                   double successThreshold,
+                                   int minimumRequests,
+                                   long windowMs,
+                                   long minBackoffMs,
+                                   long maxBackoffMs,
+                                   Time time) {
+        if(successThreshold < 0.0 || successThreshold > 1.0)
+            throw new IllegalArgumentException("successThreshold must be between 0 and 1.");
+        if(minimumRequests < 1)
+            throw new IllegalArgumentException("minimumRequests must be at least 1.");
+        if(windowMs < 1)
+            throw new IllegalArgumentException("windowMs must be at least 1 ms.");
+        if(minBackoffMs < 1)
+            throw new IllegalArgumentException("minBackoffMs must be at least 1 ms.");
+        if(maxBackoffMs < minBackoffMs)
+            throw new IllegalArgumentException("maxBackoffMs must be greater or equal to minBackoffMs.");
+        this.verifier = Utils.notNull(verifier);
+        this.successThreshold = successThreshold;
+        this.minimumRequests = minimumRequests;
+        this.windowMs = windowMs;
+        this.minBackoffMs = minBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.time = Utils.notNull(time);
+        this.healthByNode = new ConcurrentHashMap<Integer, NodeHealth>();
+        this.prober = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("voldemort-failure-detector-"));
+    }
+
+    public boolean isAvailable(Node node) {
+        return !isDown(getNodeHealth(node));
+    }
+
+    public void recordSuccess(Node node) {
+        NodeHealth health = getNodeHealth(node);
+        synchronized(health) {
+            health.roll(time.getMilliseconds());
+            health.successes++;
+        }
+        // a success on a node that is down (say from a request that was
+        // already in flight) is as good as a probe
+        if(isDown(health))
+            markAvailable(node);
+    }
+
+    public void recordException(Node node, Exception e) {
+        NodeHealth health = getNodeHealth(node);
+        boolean markDown;
+        synchronized(health) {
+            health.roll(time.getMilliseconds());
+            health.failures++;
+            int total = health.successes + health.failures;
+            markDown = isCatastrophic(e)
+                       || (total >= minimumRequests && health.successes < successThreshold * total);
+        }
+        logger.debug(e);
+        if(markDown)
+            markUnavailable(node);
+    }
+
+    public double getHealth(Node node) {
+        NodeHealth health = getNodeHealth(node);
+        synchronized(health) {
+            if(health.probing)
+                return 0.0;
+            health.roll(time.getMilliseconds());
+            int total = health.successes + health.failures;
+            return total == 0 ? 1.0 : health.successes / (double) total;
+        }
+    }
+
+    public void close() {
+        this.prober.shutdownNow();
+    }
+
+    private void markUnavailable(Node node) {
+        NodeHealth health = getNodeHealth(node);
+        synchronized(health) {
+            // only the first thread to notice the failure schedules a probe
+            if(health.probing)
+                return;
+            health.probing = true;
+            health.backoffMs = minBackoffMs;
+            node.getStatus().setUnavailable();
+        }
+        logger.warn("Marking node " + node.getId() + " at " + node.getHost()
+                    + " as unavailable, will probe again in " + minBackoffMs + " ms.");
+        scheduleProbe(node, minBackoffMs);
+    }
+
+    private void markAvailable(Node node) {
+        NodeHealth health = getNodeHealth(node);
+        synchronized(health) {
+            health.probing = false;
+            health.backoffMs = minBackoffMs;
+            health.reset(time.getMilliseconds());
+            node.getStatus().setAvailable();
+        }
+        logger.info("Node " + node.getId() + " at " + node.getHost() + " is available again.");
+    }
+
+    private void scheduleProbe(final Node node, long delayMs) {
+        if(prober.isShutdown())
+            return;
+        prober.schedule(new Runnable() {
+
+            public void run() {
+                probe(node);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    void probe(Node node) {
+        NodeHealth health = getNodeHealth(node);
+        synchronized(health) {
+            if(!health.probing)
+                return;
+        }
+        try {
+            verifier.verify(node);
+            markAvailable(node);
+        } catch(Exception e) {
+            long backoffMs;
+            synchronized(health) {
+                health.backoffMs = Math.min(2 * health.backoffMs, maxBackoffMs);
+                backoffMs = health.backoffMs;
+            }
+            if(logger.isDebugEnabled())
+                logger.debug("Probe of node " + node.getId() + " failed, will try again in "
+                             + backoffMs + " ms.", e);
+            scheduleProbe(node, backoffMs);
+        }
+    }
+
+    private boolean isDown(NodeHealth health) {
+        synchronized(health) {
+            return health.probing;
+        }
+    }
+
+    long getBackoffMs(Node node) {
+        NodeHealth health = getNodeHealth(node);
+        synchronized(health) {
+            return health.backoffMs;
+        }
+    }
+
+    private NodeHealth getNodeHealth(Node node) {
+        NodeHealth health = healthByNode.get(node.getId());
+        if(health == null) {
+            healthByNode.putIfAbsent(node.getId(), new NodeHealth(time.getMilliseconds(),
+                                                                  minBackoffMs));
+            health = healthByNode.get(node.getId());
+        }
+        return health;
+    }
+
+    /*
+     * A refused or unroutable connection means the process or host is gone,
+     * there is no point waiting for more failures to accumulate.
+     */
+    private boolean isCatastrophic(Throwable t) {
+        for(; t != null; t = t.getCause()) {
+            if(t instanceof ConnectException || t instanceof NoRouteToHostException
+               || t instanceof UnknownHostException)
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * The request counts for a node in the current window. Guarded by the
+     * instance lock.
+     */
+    private class NodeHealth {
+
+        private long windowStart;
+        private int successes;
+        private int failures;
+        private boolean probing;
+        private long backoffMs;
+
+        public NodeHealth(long now, long backoffMs) {
+            this.windowStart = now;
+            this.backoffMs = backoffMs;
+        }
+
+        public void roll(long now) {
+            if(now - windowStart >= windowMs)
+                reset(now);
+        }
+
+        public void reset(long now) {
+            this.windowStart = now;
+            this.successes = 0;
+            this.failures = 0;
+        }
+    }
+
+}
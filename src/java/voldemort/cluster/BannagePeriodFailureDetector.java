@@ -0,0 +1,65 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.cluster;
+
+import org.apache.log4j.Logger;
+
+import voldemort.annotations.concurrency.Threadsafe;
+
+/**
+ * A FailureDetector that bans a node for a fixed period of time after any
+ * failure. Once the bannage expires live traffic is sent to the node again,
+ * and the first request acts as the test of whether the node has come back.
+ */
+@Threadsafe
+public class BannagePeriodFailureDetector implements FailureDetector {
+
+    private static final Logger logger = Logger.getLogger(BannagePeriodFailureDetector.class);
+
+    private final long nodeBannageMs;
+
+    public BannagePeriodFailureDetector(long nodeBannageMs) {
+        this.nodeBannageMs = nodeBannageMs;
+    }
+
+    public boolean isAvailable(Node node) {
+        return !node.getStatus().isUnavailable(nodeBannageMs);
+    }
+
+    public void recordSuccess(Node node) {
+        node.getStatus().setAvailable();
+    }
+
+    public void recordException(Node node, Exception e) {
+        logger.warn("Could not connect to node " + node.getId() + " at " + node.getHost()
+                    + " marking as unavailable for " + nodeBannageMs + " ms.");
+        logger.debug(e);
+        node.getStatus().setUnavailable();
+    }
+
+    public double getHealth(Node node) {
+        return isAvailable(node) ? 1.0 : 0.0;
+    }
+
+    public void close() {}
+
+    public long getNodeBannageMs() {
+        return nodeBannageMs;
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.cluster;
+
+import voldemort.annotations.concurrency.Threadsafe;
+
+/**
+ * A FailureDetector decides which nodes in the cluster should receive traffic.
+ * The routing layer reports the outcome of each operation it performs against
+ * a node, and asks the detector whether a node is available before sending it
+ * any more requests.
+ */
+@Threadsafe
+public interface FailureDetector {
+
+    /**
+     * Check whether requests should be sent to the given node
+     * 
+     * @param node The node to check
+     * @return true if the node is believed to be up
+     */
+    public boolean isAvailable(Node node);
+
+    /**
+     * Record that an operation against the given node succeeded
+     * 
+     * @param node The node that served the request
+     */
+    public void recordSuccess(Node node);
+
+    /**
+     * Record that an operation against the given node failed because the node
+     * could not be reached
+     * 
+     * @param node The node that could not be reached
+     * @param e The exception that was thrown
+     */
+    public void recordException(Node node, Exception e);
+
+    /**
+     * Get a score for the health of the node, from 0.0 (down) to 1.0 (every
+     * recent request succeeded)
+     * 
+     * @param node The node to check
+     * @return The health score of the node
+     */
+    public double getHealth(Node node);
+
+    /**
+     * Stop any background work being done by this detector
+     */
+    public void close();
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.cluster;
+
+/**
+ * A check of whether a node is up, done out-of-band from client traffic. Used
+ * by a {@link voldemort.cluster.FailureDetector FailureDetector} to decide when
+ * a node that has been marked down can receive requests again.
+ */
+public interface NodeVerifier {
+
+    /**
+     * Make a lightweight request against the node
+     * 
+     * @param node The node to check
+     * @throws Exception If the node could not service the request
+     */
+    public void verify(Node node) throws Exception;
+
+}
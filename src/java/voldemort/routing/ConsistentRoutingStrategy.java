@@ -76,8 +76,30 @@ public class ConsistentRoutingStrategy implements RoutingStrategy {
     }
 
     public List<Node> routeRequest(byte[] key) {
+        return routePartition(getMasterPartition(key));
+    }
+
+    /**
+     * Get the partition the key hashes to, this is the first partition in the
+     * key's preference list
+     * 
+     * @param key The key
+     * @return The partition id
+     */
+    public int getMasterPartition(byte[] key) {
+        return Math.abs(hash.hash(key)) % this.partitionToNode.length;
+    }
+
+    /**
+     * Get the preference list for all keys whose master partition is the given
+     * partition
+     * 
+     * @param partition The master partition
+     * @return The nodes that hold replicas of that partition
+     */
+    public List<Node> routePartition(int partition) {
         List<Node> preferenceList = new ArrayList<Node>(numResults);
-        int index = Math.abs(hash.hash(key)) % this.partitionToNode.length;
+        int index = partition;
         for(int i = 0; i < partitionToNode.length; i++) {
             // add this one if we haven't already
             if(!preferenceList.contains(partitionToNode[index]))
@@ -94,6 +116,10 @@ public class ConsistentRoutingStrategy implements RoutingStrategy {
         return preferenceList;
     }
 
+    public int getNumPartitions() {
+        return partitionToNode.length;
+    }
+
     public Set<Node> getNodes() {
         Set<Node> s = Sets.newHashSetWithExpectedSize(partitionToNode.length);
         for(Node n: this.partitionToNode)
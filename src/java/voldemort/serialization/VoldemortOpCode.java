@@ -21,4 +21,8 @@ public class VoldemortOpCode {
     public static final byte GET_OP_CODE = 1;
     public static final byte PUT_OP_CODE = 2;
     public static final byte DELETE_OP_CODE = 3;
+    public static final byte GET_VERSION_OP_CODE = 4;
+    public static final byte PUT_IF_CURRENT_OP_CODE = 5;
+    public static final byte PUT_ALL_OP_CODE = 6;
+    public static final byte PUT_SUPERSEDING_OP_CODE = 7;
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.serialization.json;
+
+import voldemort.utils.ByteUtils;
+
+/**
+ * A growable byte array that serialized values are written into when they are
+ * parsed straight from JSON text. Unlike a stream it allows earlier bytes to
+ * be patched and ranges to be reordered, which is what writing a list count
+ * or sorting object fields requires.
+ */
+class BinaryBuffer {
+
+    private byte[] bytes;
+    private int size;
+
+    public BinaryBuffer(int capacity) {
+        this.bytes = new byte[capacity];
+        this.size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    public byte[] toByteArray() {
+        byte[] copy = new byte[size];
+        System.arraycopy(bytes, 0, copy, 0, size);
+        return copy;
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) value;
+    }
+
+    public void writeShort(int value) {
+        ensureCapacity(2);
+        ByteUtils.writeShort(bytes, (short) value, size);
+        size += 2;
+    }
+
+    public void writeInt(int value) {
+        ensureCapacity(4);
+        ByteUtils.writeInt(bytes, value, size);
+        size += 4;
+    }
+
+    public void writeLong(long value) {
+        ensureCapacity(8);
+        ByteUtils.writeLong(bytes, value, size);
+        size += 8;
+    }
+
+    public void write(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, bytes, size, value.length);
+        size += value.length;
+    }
+
+    /**
+     * Overwrite two bytes written earlier
+     */
+    public void setShort(int position, int value) {
+        ByteUtils.writeShort(bytes, (short) value, position);
+    }
+
+    /**
+     * Rearrange the given ranges, which together exactly cover the bytes from
+     * start to the end of the buffer, into the given order
+     */
+    public void reorder(int start, int[] starts, int[] ends) {
+        int length = size - start;
+        byte[] copy = new byte[length];
+        System.arraycopy(bytes, start, copy, 0, length);
+        int position = start;
+        for(int i = 0; i < starts.length; i++) {
+            int rangeLength = ends[i] - starts[i];
+            System.arraycopy(copy, starts[i] - start, bytes, position, rangeLength);
+            position += rangeLength;
+        }
+    }
+
+    private void ensureCapacity(int needed) {
+        if(size + needed > bytes.length) {
+            byte[] grown = new byte[Math.max(bytes.length * 2, size + needed)];
+            System.arraycopy(bytes, 0, grown, 0, size);
+            this.bytes = grown;
+        }
+    }
+
+}
@@ -26,16 +26,28 @@ import java.util.Map;
 import voldemort.serialization.SerializationException;
 
 /**
- * Read in JSON objects from a java.io.Reader
+ * Read in JSON objects from a java.io.Reader. Characters are read from the
+ * underlying reader a buffer at a time, so it may read past the last object
+ * parsed.
  * 
  * @author jay
  * 
  */
 public class JsonReader {
 
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+
     // The java.io.Reader to use to get characters
     private final Reader reader;
 
+    // characters read from the reader, and the range not yet consumed
+    private final char[] buffer;
+    private int bufferPosition;
+    private int bufferLimit;
+
+    // scratch space for parsing numbers
+    private final StringBuilder numberBuffer;
+
     // the character to use to count line breaks
     private final char lineBreak;
 
@@ -62,7 +74,15 @@ public class JsonReader {
     }
 
     public JsonReader(Reader reader, int contextBufferSize) {
+        this(reader, contextBufferSize, DEFAULT_BUFFER_SIZE);
+    }
+
+    public JsonReader(Reader reader, int contextBufferSize, int bufferSize) {
         this.reader = reader;
+        this.buffer = new char[bufferSize];
+        this.bufferPosition = 0;
+        this.bufferLimit = 0;
+        this.numberBuffer = new StringBuilder();
         String newline = System.getProperty("line.separator");
         if(newline.contains("\n"))
             lineBreak = '\n';
@@ -320,6 +340,90 @@ public class JsonReader {
         return val;
     }
 
+    /**
+     * Skip any whitespace and return the next character without consuming it,
+     * or -1 at the end of the input
+     */
+    public int peek() {
+        skipWhitespace();
+        return current();
+    }
+
+    /**
+     * Consume the given character, and any whitespace around it
+     */
+    public void expect(char c) {
+        skipWhitespace();
+        skip(c);
+        skipWhitespace();
+    }
+
+    /**
+     * Consume the separator after an element of an object or array
+     * 
+     * @param close The character that ends the object or array
+     * @return true if another element follows, false if the close character
+     *         was reached (which is not consumed)
+     */
+    public boolean readSeparator(char close) {
+        skipWhitespace();
+        if(current() == ',') {
+            next();
+            skipWhitespace();
+            return true;
+        } else if(current() == close) {
+            return false;
+        } else {
+            throw new SerializationException("Unexpected character '" + currentChar()
+                                             + "', expected '" + close + "' or ',' but found: "
+                                             + getCurrentContext());
+        }
+    }
+
+    /**
+     * Read an integer number into a primitive long, without boxing
+     */
+    public long readLong() {
+        skipWhitespace();
+        numberBuffer.setLength(0);
+        if(current() == '-' || current() == '+') {
+            if(current() == '-')
+                numberBuffer.append('-');
+            next();
+        }
+        while(Character.isDigit(current())) {
+            numberBuffer.append(currentChar());
+            next();
+        }
+        if(!isTerminator(current()))
+            throw new SerializationException("Invalid integer on line " + getCurrentLineNumber()
+                                             + ": " + getCurrentContext());
+        try {
+            return Long.parseLong(numberBuffer.toString());
+        } catch(NumberFormatException e) {
+            throw new SerializationException("Invalid integer on line " + getCurrentLineNumber()
+                                             + ": " + getCurrentContext(), e);
+        }
+    }
+
+    /**
+     * Read any number into a primitive double, without boxing
+     */
+    public double readDouble() {
+        skipWhitespace();
+        numberBuffer.setLength(0);
+        while(!isTerminator(current())) {
+            numberBuffer.append(currentChar());
+            next();
+        }
+        try {
+            return Double.parseDouble(numberBuffer.toString());
+        } catch(NumberFormatException e) {
+            throw new SerializationException("Invalid number on line " + getCurrentLineNumber()
+                                             + ": " + getCurrentContext(), e);
+        }
+    }
+
     private int current() {
         return this.current;
     }
@@ -329,22 +433,37 @@ public class JsonReader {
     }
 
     private int next() {
-        try {
-            // read a character
-            this.current = this.reader.read();
-
-            // increment the character count and maybe line number
-            this.charsRead++;
-            this.lineOffset++;
-            if(this.current == this.lineBreak) {
-                this.line++;
-                this.lineOffset = 1;
-            }
-            // add to context buffer
-            this.contextBuffer[this.contextOffset] = (char) this.current;
-            this.contextOffset = (contextOffset + 1) % this.contextBuffer.length;
+        // read a character
+        if(bufferPosition < bufferLimit || fill())
+            this.current = buffer[bufferPosition++];
+        else
+            this.current = -1;
+
+        // increment the character count and maybe line number
+        this.charsRead++;
+        this.lineOffset++;
+        if(this.current == this.lineBreak) {
+            this.line++;
+            this.lineOffset = 1;
+        }
+        // add to context buffer
+        this.contextBuffer[this.contextOffset] = (char) this.current;
+        this.contextOffset = (contextOffset + 1) % this.contextBuffer.length;
 
-            return this.current;
+        return this.current;
+    }
+
+    private boolean fill() {
+        try {
+            int read;
+            do {
+                read = this.reader.read(buffer, 0, buffer.length);
+            } while(read == 0);
+            if(read < 0)
+                return false;
+            this.bufferPosition = 0;
+            this.bufferLimit = read;
+            return true;
         } catch(IOException e) {
             throw new SerializationException("Error reading from JSON stream.", e);
         }
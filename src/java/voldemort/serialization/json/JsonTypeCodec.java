@@ -0,0 +1,933 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.serialization.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import voldemort.serialization.SerializationException;
+import voldemort.utils.ByteUtils;
+
+/**
+ * A reader and writer for one node of a type definition. A definition is
+ * compiled once into a tree of these, so serializing an object follows the
+ * tree directly instead of inspecting the definition again for every value.
+ */
+abstract class JsonTypeCodec {
+
+    private final Object type;
+    private final int fixedSize;
+
+    private JsonTypeCodec(Object type) {
+        this(type, -1);
+    }
+
+    private JsonTypeCodec(Object type, int fixedSize) {
+        this.type = type;
+        this.fixedSize = fixedSize;
+    }
+
+    /**
+     * Compile the given (validated) type into a codec
+     */
+    @SuppressWarnings("unchecked")
+    public static JsonTypeCodec compile(Object type) {
+        if(type instanceof Map)
+            return new MapCodec((Map<String, Object>) type);
+        else if(type instanceof List)
+            return new ListCodec((List<Object>) type);
+        else if(type instanceof JsonTypes)
+            return compile((JsonTypes) type);
+        else
+            throw new SerializationException("Unknown type of class " + type.getClass());
+    }
+
+    public final void write(DataOutputStream output, Object object) throws IOException {
+        try {
+            writeValue(output, object);
+        } catch(ClassCastException e) {
+            // simpler than doing every test
+            throw new SerializationException("Expected type " + type
+                                             + " but got object of incompatible type "
+                                             + object.getClass().getName() + ".", e);
+        }
+    }
+
+    public abstract Object read(DataInputStream input) throws IOException;
+
+    protected abstract void writeValue(DataOutputStream output, Object object) throws IOException;
+
+    /**
+     * Parse the next JSON value from the reader and write it in serialized
+     * form, without building the intermediate object
+     */
+    public abstract void writeJson(JsonReader reader, BinaryBuffer output);
+
+    /**
+     * Read the value serialized at the given offset. Maps are returned as a
+     * {@link LazyJsonMap} that decodes each field only when it is asked for.
+     */
+    public Object readLazy(byte[] bytes, int offset) {
+        try {
+            return read(new DataInputStream(new ByteArrayInputStream(bytes,
+                                                                     offset,
+                                                                     bytes.length - offset)));
+        } catch(IOException e) {
+            throw new SerializationException(e);
+        }
+    }
+
+    /**
+     * Find the end of the value serialized at the given offset without
+     * decoding it
+     * 
+     * @return The offset just past the value
+     */
+    public int skip(byte[] bytes, int offset) {
+        return checkBounds(bytes, offset + fixedSize);
+    }
+
+    private static int checkBounds(byte[] bytes, int end) {
+        if(end > bytes.length)
+            throw new SerializationException("Unexpected end of serialized value at " + end
+                                             + " of " + bytes.length + " bytes.");
+        return end;
+    }
+
+    private static boolean isJsonNull(JsonReader reader) {
+        if(reader.peek() != 'n')
+            return false;
+        reader.readNull();
+        return true;
+    }
+
+    private static String readJsonString(JsonReader reader) {
+        int c = reader.peek();
+        if(c != '"' && c != '\'')
+            throw new SerializationException("Expected a string but found: "
+                                             + reader.getCurrentContext());
+        return reader.readString();
+    }
+
+    private static long readJsonInteger(JsonReader reader, long min, long max) {
+        long value = reader.readLong();
+        if(value == min)
+            throw new SerializationException("Underflow: attempt to store " + min
+                                             + ", but that value is reserved for null.");
+        if(value < min || value > max)
+            throw new SerializationException("Value " + value + " is outside the range " + min
+                                             + " to " + max + ".");
+        return value;
+    }
+
+    private static void writeJsonBytes(BinaryBuffer output, String s) {
+        byte[] b;
+        try {
+            b = s.getBytes("UTF-8");
+        } catch(UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        if(b.length >= Short.MAX_VALUE)
+            throw new SerializationException("Array has length " + b.length
+                                             + " which is too large to serialize.");
+        output.writeShort(b.length);
+        output.write(b);
+    }
+
+    private static int skipBytes(byte[] bytes, int offset) {
+        checkBounds(bytes, offset + 2);
+        int size = ByteUtils.readShort(bytes, offset);
+        return checkBounds(bytes, offset + 2 + Math.max(size, 0));
+    }
+
+    static final class MapCodec extends JsonTypeCodec {
+
+        private final Map<String, Object> type;
+        private final String[] names;
+        private final JsonTypeCodec[] codecs;
+        private final Map<String, Integer> indexes;
+
+        public MapCodec(Map<String, Object> type) {
+            super(type);
+            this.type = type;
+            this.names = new String[type.size()];
+            this.codecs = new JsonTypeCodec[type.size()];
+            this.indexes = new HashMap<String, Integer>(type.size());
+            int i = 0;
+            for(Map.Entry<String, Object> entry: type.entrySet()) {
+                names[i] = entry.getKey();
+                codecs[i] = compile(entry.getValue());
+                indexes.put(names[i], i);
+                i++;
+            }
+        }
+
+        int getFieldCount() {
+            return names.length;
+        }
+
+        String getFieldName(int index) {
+            return names[index];
+        }
+
+        JsonTypeCodec getFieldCodec(int index) {
+            return codecs[index];
+        }
+
+        /**
+         * @return The position of the named field, or -1 if there is none
+         */
+        int getFieldIndex(Object name) {
+            Integer index = indexes.get(name);
+            return index == null ? -1 : index;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void writeValue(DataOutputStream output, Object value) throws IOException {
+            if(value == null) {
+                output.writeByte(-1);
+                return;
+            }
+            if(!(value instanceof Map))
+                throw new SerializationException("Expected Map, but got " + value.getClass() + ": "
+                                                 + value);
+            Map<String, Object> object = (Map<String, Object>) value;
+            output.writeByte(1);
+            if(object.size() != names.length)
+                throw new SerializationException("Invalid map for serialization, expected: " + type
+                                                 + " but got " + object);
+            for(int i = 0; i < names.length; i++) {
+                Object property = object.get(names[i]);
+                if(property == null && !object.containsKey(names[i]))
+                    throw new SerializationException("Missing property: " + names[i] + " in "
+                                                     + type);
+                try {
+                    codecs[i].write(output, property);
+                } catch(SerializationException e) {
+                    throw new SerializationException("Fail to write property: " + names[i], e);
+                }
+            }
+        }
+
+        @Override
+        public Object read(DataInputStream input) throws IOException {
+            if(input.readByte() == -1)
+                return null;
+            Map<String, Object> m = new HashMap<String, Object>(names.length);
+            for(int i = 0; i < names.length; i++)
+                m.put(names[i], codecs[i].read(input));
+            return m;
+        }
+
+        @Override
+        public void writeJson(JsonReader reader, BinaryBuffer output) {
+            if(isJsonNull(reader)) {
+                output.writeByte(-1);
+                return;
+            }
+            output.writeByte(1);
+            int start = output.size();
+            int[] starts = new int[names.length];
+            int[] ends = new int[names.length];
+            Arrays.fill(starts, -1);
+            boolean ordered = true;
+            int previous = -1;
+            int found = 0;
+            reader.expect('{');
+            if(reader.peek() != '}') {
+                do {
+                    String name = readJsonString(reader);
+                    int index = getFieldIndex(name);
+                    if(index < 0)
+                        throw new SerializationException("Unknown property: " + name + " in "
+                                                         + type);
+                    if(starts[index] >= 0)
+                        throw new SerializationException("Duplicate property: " + name);
+                    reader.expect(':');
+                    starts[index] = output.size();
+                    try {
+                        codecs[index].writeJson(reader, output);
+                    } catch(SerializationException e) {
+                        throw new SerializationException("Fail to write property: " + name, e);
+                    }
+                    ends[index] = output.size();
+                    ordered &= index > previous;
+                    previous = index;
+                    found++;
+                } while(reader.readSeparator('}'));
+            }
+            reader.expect('}');
+            if(found != names.length) {
+                for(int i = 0; i < names.length; i++)
+                    if(starts[i] < 0)
+                        throw new SerializationException("Missing property: " + names[i] + " in "
+                                                         + type);
+            }
+            // fields must be written in the order of the type definition
+            if(!ordered)
+                output.reorder(start, starts, ends);
+        }
+
+        @Override
+        public Object readLazy(byte[] bytes, int offset) {
+            checkBounds(bytes, offset + 1);
+            if(bytes[offset] == -1)
+                return null;
+            return new LazyJsonMap(this, bytes, offset + 1);
+        }
+
+        @Override
+        public int skip(byte[] bytes, int offset) {
+            checkBounds(bytes, offset + 1);
+            if(bytes[offset] == -1)
+                return offset + 1;
+            int end = offset + 1;
+            for(int i = 0; i < codecs.length; i++)
+                end = codecs[i].skip(bytes, end);
+            return end;
+        }
+    }
+
+    private static final class ListCodec extends JsonTypeCodec {
+
+        private final JsonTypeCodec entryCodec;
+
+        public ListCodec(List<Object> type) {
+            super(type);
+            if(type.size() != 1)
+                throw new SerializationException("Invalid type: expected single value type in list: "
+                                                 + type);
+            this.entryCodec = compile(type.get(0));
+        }
+
+        @Override
+        protected void writeValue(DataOutputStream output, Object value) throws IOException {
+            if(value == null) {
+                output.writeShort(-1);
+                return;
+            }
+            if(!(value instanceof List))
+                throw new SerializationException("Expected List but got " + value.getClass()
+                                                 + ": " + value);
+            List<?> objects = (List<?>) value;
+            if(objects.size() >= Short.MAX_VALUE)
+                throw new SerializationException("List has length " + objects.size()
+                                                 + " which is too large to serialize.");
+            output.writeShort(objects.size());
+            for(Object o: objects)
+                entryCodec.write(output, o);
+        }
+
+        @Override
+        public Object read(DataInputStream input) throws IOException {
+            int size = input.readShort();
+            if(size < 0)
+                return null;
+            List<Object> items = new ArrayList<Object>(size);
+            for(int i = 0; i < size; i++)
+                items.add(entryCodec.read(input));
+            return items;
+        }
+
+        @Override
+        public void writeJson(JsonReader reader, BinaryBuffer output) {
+            if(isJsonNull(reader)) {
+                output.writeShort(-1);
+                return;
+            }
+            int countPosition = output.size();
+            output.writeShort(0);
+            int count = 0;
+            reader.expect('[');
+            if(reader.peek() != ']') {
+                do {
+                    entryCodec.writeJson(reader, output);
+                    count++;
+                } while(reader.readSeparator(']'));
+            }
+            reader.expect(']');
+            if(count >= Short.MAX_VALUE)
+                throw new SerializationException("List has length " + count
+                                                 + " which is too large to serialize.");
+            output.setShort(countPosition, count);
+        }
+
+        @Override
+        public int skip(byte[] bytes, int offset) {
+            checkBounds(bytes, offset + 2);
+            int size = ByteUtils.readShort(bytes, offset);
+            int end = offset + 2;
+            if(entryCodec.fixedSize >= 0)
+                return checkBounds(bytes, end + Math.max(size, 0) * entryCodec.fixedSize);
+            for(int i = 0; i < size; i++)
+                end = entryCodec.skip(bytes, end);
+            return end;
+        }
+    }
+
+    private static JsonTypeCodec compile(JsonTypes type) {
+        switch(type) {
+            case BOOLEAN:
+                return new JsonTypeCodec(type, 1) {
+
+                    @Override
+                    protected void writeValue(DataOutputStream output, Object object)
+                            throws IOException {
+                        writeBoolean(output, (Boolean) object);
+                    }
+
+                    @Override
+                    public Object read(DataInputStream input) throws IOException {
+                        return readBoolean(input);
+                    }
+
+                    @Override
+                    public void writeJson(JsonReader reader, BinaryBuffer output) {
+                        if(reader.peek() == 'n') {
+                            reader.readNull();
+                            output.writeByte(-1);
+                        } else if(reader.peek() == 't' || reader.peek() == 'f') {
+                            output.writeByte(reader.readBoolean() ? 1 : 0);
+                        } else {
+                            throw new SerializationException("Expected a boolean but found: "
+                                                             + reader.getCurrentContext());
+                        }
+                    }
+                };
+            case STRING:
+                return new JsonTypeCodec(type) {
+
+                    @Override
+                    protected void writeValue(DataOutputStream output, Object object)
+                            throws IOException {
+                        writeString(output, (String) object);
+                    }
+
+                    @Override
+                    public Object read(DataInputStream input) throws IOException {
+                        return readString(input);
+                    }
+
+                    @Override
+                    public int skip(byte[] bytes, int offset) {
+                        return skipBytes(bytes, offset);
+                    }
+
+                    @Override
+                    public void writeJson(JsonReader reader, BinaryBuffer output) {
+                        if(reader.peek() == 'n') {
+                            reader.readNull();
+                            output.writeShort(-1);
+                        } else {
+                            writeJsonBytes(output, readJsonString(reader));
+                        }
+                    }
+                };
+            case INT8:
+                return new JsonTypeCodec(type, 1) {
+
+                    @Override
+                    protected void writeValue(DataOutputStream output, Object object)
+                            throws IOException {
+                        writeInt8(output, (Byte) object);
+                    }
+
+                    @Override
+                    public Object read(DataInputStream input) throws IOException {
+                        return readInt8(input);
+                    }
+
+                    @Override
+                    public void writeJson(JsonReader reader, BinaryBuffer output) {
+                        if(isJsonNull(reader))
+                            output.writeByte(Byte.MIN_VALUE);
+                        else
+                            output.writeByte((int) readJsonInteger(reader,
+                                                                   Byte.MIN_VALUE,
+                                                                   Byte.MAX_VALUE));
+                    }
+                };
+            case INT16:
+                return new JsonTypeCodec(type, 2) {
+
+                    @Override
+                    protected void writeValue(DataOutputStream output, Object object)
+                            throws IOException {
+                        writeInt16(output, coerceToShort(object));
+                    }
+
+                    @Override
+                    public Object read(DataInputStream input) throws IOException {
+                        return readInt16(input);
+                    }
+
+                    @Override
+                    public void writeJson(JsonReader reader, BinaryBuffer output) {
+                        if(isJsonNull(reader))
+                            output.writeShort(Short.MIN_VALUE);
+                        else
+                            output.writeShort((int) readJsonInteger(reader,
+                                                                    Short.MIN_VALUE,
+                                                                    Short.MAX_VALUE));
+                    }
+                };
+            case INT32:
+                return new JsonTypeCodec(type, 4) {
+
+                    @Override
+                    protected void writeValue(DataOutputStream output, Object object)
+                            throws IOException {
+                        writeInt32(output, coerceToInteger(object));
+                    }
+
+                    @Override
+                    public Object read(DataInputStream input) throws IOException {
+                        return readInt32(input);
+                    }
+
+                    @Override
+                    public void writeJson(JsonReader reader, BinaryBuffer output) {
+                        if(isJsonNull(reader))
+                            output.writeInt(Integer.MIN_VALUE);
+                        else
+                            output.writeInt((int) readJsonInteger(reader,
+                                                                  Integer.MIN_VALUE,
+                                                                  Integer.MAX_VALUE));
+                    }
+                };
+            case INT64:
+                return new JsonTypeCodec(type, 8) {
+
+                    @Override
+                    protected void writeValue(DataOutputStream output, Object object)
+                            throws IOException {
+                        writeInt64(output, coerceToLong(object));
+                    }
+
+                    @Override
+                    public Object read(DataInputStream input) throws IOException {
+                        return readInt64(input);
+                    }
+
+                    @Override
+                    public void writeJson(JsonReader reader, BinaryBuffer output) {
+                        if(isJsonNull(reader))
+                            output.writeLong(Long.MIN_VALUE);
+                        else
+                            output.writeLong(readJsonInteger(reader, Long.MIN_VALUE, Long.MAX_VALUE));
+                    }
+                };
+            case FLOAT32:
+                return new JsonTypeCodec(type, 4) {
+
+                    @Override
+                    protected void writeValue(DataOutputStream output, Object object)
+                            throws IOException {
+                        writeFloat32(output, coerceToFloat(object));
+                    }
+
+                    @Override
+                    public Object read(DataInputStream input) throws IOException {
+                        return readFloat32(input);
+                    }
+
+                    @Override
+                    public void writeJson(JsonReader reader, BinaryBuffer output) {
+                        if(isJsonNull(reader)) {
+                            output.writeInt(Float.floatToIntBits(Float.MIN_VALUE));
+                        } else {
+                            float f = (float) reader.readDouble();
+                            if(f == Float.MIN_VALUE)
+                                throw new SerializationException("Underflow: attempt to store "
+                                                                 + Float.MIN_VALUE
+                                                                 + " in float32, but that value is reserved for null.");
+                            output.writeInt(Float.floatToIntBits(f));
+                        }
+                    }
+                };
+            case FLOAT64:
+                return new JsonTypeCodec(type, 8) {
+
+                    @Override
+                    protected void writeValue(DataOutputStream output, Object object)
+                            throws IOException {
+                        writeFloat64(output, coerceToDouble(object));
+                    }
+
+                    @Override
+                    public Object read(DataInputStream input) throws IOException {
+                        return readFloat64(input);
+                    }
+
+                    @Override
+                    public void writeJson(JsonReader reader, BinaryBuffer output) {
+                        if(isJsonNull(reader)) {
+                            output.writeLong(Double.doubleToLongBits(Double.MIN_VALUE));
+                        } else {
+                            double d = reader.readDouble();
+                            if(d == Double.MIN_VALUE)
+                                throw new SerializationException("Underflow: attempt to store "
+                                                                 + Double.MIN_VALUE
+                                                                 + " in float64, but that value is reserved for null.");
+                            output.writeLong(Double.doubleToLongBits(d));
+                        }
+                    }
+                };
+            case DATE:
+                return new JsonTypeCodec(type, 8) {
+
+                    @Override
+                    protected void writeValue(DataOutputStream output, Object object)
+                            throws IOException {
+                        writeDate(output, coerceToDate(object));
+                    }
+
+                    @Override
+                    public Object read(DataInputStream input) throws IOException {
+                        return readDate(input);
+                    }
+
+                    @Override
+                    public void writeJson(JsonReader reader, BinaryBuffer output) {
+                        if(isJsonNull(reader))
+                            output.writeLong(Long.MIN_VALUE);
+                        else
+                            output.writeLong(readJsonInteger(reader, Long.MIN_VALUE, Long.MAX_VALUE));
+                    }
+                };
+            case BYTES:
+                return new JsonTypeCodec(type) {
+
+                    @Override
+                    protected void writeValue(DataOutputStream output, Object object)
+                            throws IOException {
+                        writeBytes(output, (byte[]) object);
+                    }
+
+                    @Override
+                    public Object read(DataInputStream input) throws IOException {
+                        return readBytes(input);
+                    }
+
+                    @Override
+                    public int skip(byte[] bytes, int offset) {
+                        return skipBytes(bytes, offset);
+                    }
+
+                    @Override
+                    public void writeJson(JsonReader reader, BinaryBuffer output) {
+                        throw new SerializationException("Values of type " + JsonTypes.BYTES
+                                                         + " cannot be read from JSON.");
+                    }
+                };
+            default:
+                throw new SerializationException("Unknown type: " + type);
+        }
+    }
+
+    private static void writeBoolean(DataOutputStream output, Boolean b) throws IOException {
+        if(b == null)
+            output.writeByte(-1);
+        else if(b.booleanValue())
+            output.writeByte(1);
+        else
+            output.write(0);
+    }
+
+    private static Boolean readBoolean(DataInputStream stream) throws IOException {
+        byte b = stream.readByte();
+        if(b < 0)
+            return null;
+        else if(b == 0)
+            return false;
+        else
+            return true;
+    }
+
+    private static Short coerceToShort(Object o) {
+        if(o == null)
+            return null;
+        Class<?> c = o.getClass();
+        if(c == Short.class)
+            return (Short) o;
+        else if(c == Byte.class)
+            return ((Byte) o).shortValue();
+        else
+            throw new SerializationException("Object of type " + c.getName()
+                                             + " cannot be coerced to type " + JsonTypes.INT16
+                                             + " as the schema specifies.");
+    }
+
+    private static Integer coerceToInteger(Object o) {
+        if(o == null)
+            return null;
+        Class<?> c = o.getClass();
+        if(c == Integer.class)
+            return (Integer) o;
+        else if(c == Byte.class)
+            return ((Byte) o).intValue();
+        else if(c == Short.class)
+            return ((Short) o).intValue();
+        else
+            throw new SerializationException("Object of type " + c.getName()
+                                             + " cannot be coerced to type " + JsonTypes.INT32
+                                             + " as the schema specifies.");
+    }
+
+    private static Long coerceToLong(Object o) {
+        if(o == null)
+            return null;
+        Class<?> c = o.getClass();
+        if(c == Long.class)
+            return (Long) o;
+        else if(c == Byte.class)
+            return ((Byte) o).longValue();
+        else if(c == Short.class)
+            return ((Short) o).longValue();
+        else if(c == Integer.class)
+            return ((Integer) o).longValue();
+        else
+            throw new SerializationException("Object of type " + c.getName()
+                                             + " cannot be coerced to type " + JsonTypes.INT64
+                                             + " as the schema specifies.");
+    }
+
+    private static Float coerceToFloat(Object o) {
+        if(o == null)
+            return null;
+        Class<?> c = o.getClass();
+        if(c == Float.class)
+            return (Float) o;
+        else if(c == Byte.class)
+            return ((Byte) o).floatValue();
+        else if(c == Short.class)
+            return ((Short) o).floatValue();
+        else if(c == Integer.class)
+            return ((Integer) o).floatValue();
+        else
+            throw new SerializationException("Object of type " + c.getName()
+                                             + " cannot be coerced to type " + JsonTypes.FLOAT32
+                                             + " as the schema specifies.");
+    }
+
+    private static Double coerceToDouble(Object o) {
+        if(o == null)
+            return null;
+        Class<?> c = o.getClass();
+        if(c == Double.class)
+            return (Double) o;
+        else if(c == Byte.class)
+            return ((Byte) o).doubleValue();
+        else if(c == Short.class)
+            return ((Short) o).doubleValue();
+        else if(c == Integer.class)
+            return ((Integer) o).doubleValue();
+        else if(c == Float.class)
+            return ((Float) o).doubleValue();
+        else
+            throw new SerializationException("Object of type " + c.getName()
+                                             + " cannot be coerced to type " + JsonTypes.FLOAT32
+                                             + " as the schema specifies.");
+    }
+
+    private static void writeString(DataOutputStream stream, String s) throws IOException {
+        writeBytes(stream, s == null ? null : s.getBytes("UTF-8"));
+    }
+
+    private static String readString(DataInputStream stream) throws IOException {
+        byte[] bytes = readBytes(stream);
+        if(bytes == null)
+            return null;
+        else
+            return new String(bytes, "UTF-8");
+    }
+
+    private static Byte readInt8(DataInputStream stream) throws IOException {
+        byte b = stream.readByte();
+        if(b == Byte.MIN_VALUE)
+            return null;
+        else
+            return b;
+    }
+
+    private static void writeInt8(DataOutputStream output, Byte b) throws IOException {
+        if(b == null)
+            output.writeByte(Byte.MIN_VALUE);
+        else if(b.byteValue() == Byte.MIN_VALUE)
+            throw new SerializationException("Underflow: attempt to store " + Byte.MIN_VALUE
+                                             + " in int8, but minimum value is "
+                                             + (Byte.MIN_VALUE - 1) + ".");
+        else
+            output.writeByte(b.byteValue());
+    }
+
+    private static Short readInt16(DataInputStream stream) throws IOException {
+        short s = stream.readShort();
+        if(s == Short.MIN_VALUE)
+            return null;
+        else
+            return s;
+    }
+
+    private static void writeInt16(DataOutputStream output, Short s) throws IOException {
+        if(s == null)
+            output.writeShort(Short.MIN_VALUE);
+        else if(s.shortValue() == Short.MIN_VALUE)
+            throw new SerializationException("Underflow: attempt to store " + Short.MIN_VALUE
+                                             + " in int16, but minimum value is "
+                                             + (Short.MIN_VALUE - 1) + ".");
+        else
+            output.writeShort(s.shortValue());
+    }
+
+    private static Integer readInt32(DataInputStream stream) throws IOException {
+        int i = stream.readInt();
+        if(i == Integer.MIN_VALUE)
+            return null;
+        else
+            return i;
+    }
+
+    private static void writeInt32(DataOutputStream output, Integer i) throws IOException {
+        if(i == null)
+            output.writeInt(Integer.MIN_VALUE);
+        else if(i.intValue() == Integer.MIN_VALUE)
+            throw new SerializationException("Underflow: attempt to store " + Integer.MIN_VALUE
+                                             + " in int32, but minimum value is "
+                                             + (Integer.MIN_VALUE - 1) + ".");
+        else
+            output.writeInt(i.intValue());
+    }
+
+    private static Long readInt64(DataInputStream stream) throws IOException {
+        long l = stream.readLong();
+        if(l == Long.MIN_VALUE)
+            return null;
+        else
+            return l;
+    }
+
+    private static void writeInt64(DataOutputStream output, Long l) throws IOException {
+        if(l == null)
+            output.writeLong(Long.MIN_VALUE);
+        else if(l.longValue() == Long.MIN_VALUE)
+            throw new SerializationException("Underflow: attempt to store " + Long.MIN_VALUE
+                                             + " in int64, but minimum value is "
+                                             + (Long.MIN_VALUE - 1) + ".");
+        else
+            output.writeLong(l.longValue());
+    }
+
+    private static Float readFloat32(DataInputStream stream) throws IOException {
+        float f = stream.readFloat();
+        if(f == Float.MIN_VALUE)
+            return null;
+        else
+            return f;
+    }
+
+    private static void writeFloat32(DataOutputStream output, Float f) throws IOException {
+        if(f == null)
+            output.writeFloat(Float.MIN_VALUE);
+        else if(f.floatValue() == Float.MIN_VALUE)
+            throw new SerializationException("Underflow: attempt to store " + Float.MIN_VALUE
+                                             + " in float32, but that value is reserved for null.");
+        else
+            output.writeFloat(f.floatValue());
+    }
+
+    private static Double readFloat64(DataInputStream stream) throws IOException {
+        double d = stream.readDouble();
+        if(d == Double.MIN_VALUE)
+            return null;
+        else
+            return d;
+    }
+
+    private static void writeFloat64(DataOutputStream output, Double d) throws IOException {
+        if(d == null)
+            output.writeDouble(Double.MIN_VALUE);
+        else if(d.doubleValue() == Double.MIN_VALUE)
+            throw new SerializationException("Underflow: attempt to store " + Double.MIN_VALUE
+                                             + " in float64, but that value is reserved for null.");
+        else
+            output.writeDouble(d.doubleValue());
+    }
+
+    private static Date coerceToDate(Object o) {
+        if(o == null)
+            return null;
+        else if(o instanceof Date)
+            return (Date) o;
+        else if(o instanceof Number)
+            return new Date(((Number) o).longValue());
+        else
+            throw new SerializationException("Object of type " + o.getClass()
+                                             + " can not be coerced to type " + JsonTypes.DATE);
+    }
+
+    private static Date readDate(DataInputStream stream) throws IOException {
+        long l = stream.readLong();
+        if(l == Long.MIN_VALUE)
+            return null;
+        else
+            return new Date(l);
+    }
+
+    private static void writeDate(DataOutputStream output, Date d) throws IOException {
+        if(d == null)
+            output.writeLong(Long.MIN_VALUE);
+        else if(d.getTime() == Long.MIN_VALUE)
+            throw new SerializationException("Underflow: attempt to store "
+                                             + new Date(Long.MIN_VALUE)
+                                             + " in date, but that value is reserved for null.");
+        else
+            output.writeLong(d.getTime());
+    }
+
+    private static byte[] readBytes(DataInputStream stream) throws IOException {
+        int size = stream.readShort();
+        if(size < 0)
+            return null;
+        byte[] bytes = new byte[size];
+        ByteUtils.read(stream, bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(DataOutputStream output, byte[] b) throws IOException {
+        if(b == null) {
+            output.writeShort(-1);
+        } else if(b.length < Short.MAX_VALUE) {
+            output.writeShort(b.length);
+            output.write(b);
+        } else {
+            throw new SerializationException("Array has length " + b.length
+                                             + " which is too large to serialize.");
+        }
+    }
+
+}
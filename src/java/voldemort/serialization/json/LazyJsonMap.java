@@ -0,0 +1,173 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.serialization.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only view of a serialized JSON object that decodes each field only
+ * when it is first asked for. The offset of every field is found on first
+ * access by skipping over the serialized fields, which costs no allocation
+ * beyond the offset table itself; fixed width fields are skipped in constant
+ * time. Nested objects are themselves lazy.
+ * 
+ * Not thread safe, and holds a reference to the serialized bytes, which must
+ * not be modified.
+ */
+class LazyJsonMap extends AbstractMap<String, Object> {
+
+    private static final Object NOT_DECODED = new Object();
+
+    private final JsonTypeCodec.MapCodec codec;
+    private final byte[] bytes;
+    private final int start;
+    private int[] offsets;
+    private Object[] values;
+
+    LazyJsonMap(JsonTypeCodec.MapCodec codec, byte[] bytes, int start) {
+        this.codec = codec;
+        this.bytes = bytes;
+        this.start = start;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = codec.getFieldIndex(key);
+        if(index < 0)
+            return null;
+        return getField(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return codec.getFieldIndex(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return codec.getFieldCount();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+
+            @Override
+            public int size() {
+                return codec.getFieldCount();
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Iterator<Map.Entry<String, Object>>() {
+
+                    private int index = 0;
+
+                    public boolean hasNext() {
+                        return index < codec.getFieldCount();
+                    }
+
+                    public Map.Entry<String, Object> next() {
+                        if(!hasNext())
+                            throw new NoSuchElementException();
+                        Map.Entry<String, Object> entry = new Field(codec.getFieldName(index),
+                                                                                   getField(index));
+                        index++;
+                        return entry;
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException("LazyJsonMap is read-only.");
+                    }
+                };
+            }
+        };
+    }
+
+    private Object getField(int index) {
+        if(offsets == null)
+            computeOffsets();
+        Object value = values[index];
+        if(value == NOT_DECODED) {
+            value = codec.getFieldCodec(index).readLazy(bytes, offsets[index]);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    private void computeOffsets() {
+        int count = codec.getFieldCount();
+        int[] found = new int[count];
+        int offset = start;
+        for(int i = 0; i < count; i++) {
+            found[i] = offset;
+            offset = codec.getFieldCodec(i).skip(bytes, offset);
+        }
+        this.values = new Object[count];
+        for(int i = 0; i < count; i++)
+            values[i] = NOT_DECODED;
+        this.offsets = found;
+    }
+
+    private static final class Field implements Map.Entry<String, Object> {
+
+        private final String key;
+        private final Object value;
+
+        public Field(String key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException("LazyJsonMap is read-only.");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return key.equals(e.getKey())
+                   && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+}
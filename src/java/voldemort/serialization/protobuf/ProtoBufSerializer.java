@@ -1,5 +1,7 @@
 package voldemort.serialization.protobuf;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
@@ -45,6 +47,8 @@ public class ProtoBufSerializer<T extends Message> implements Serializer<T> {
                 throw new IllegalArgumentException("Class provided should be a subtype of Message");
 
             parseFromMethod = messageClass.getMethod("parseFrom", byte[].class);
+            // skip the access check on every parse
+            parseFromMethod.setAccessible(true);
         } catch(NoSuchMethodException e) {
             throw new IllegalArgumentException("No parseFrom static method found, the provided class is not a Message.",
                                                e);
@@ -72,6 +76,17 @@ public class ProtoBufSerializer<T extends Message> implements Serializer<T> {
         return object.toByteArray();
     }
 
+    /**
+     * Serialize the object directly into the given stream
+     * 
+     * @param object The object to serialize
+     * @param output The stream to write to
+     * @throws IOException If writing to the stream fails
+     */
+    public void writeTo(T object, OutputStream output) throws IOException {
+        object.writeTo(output);
+    }
+
     public T toObject(byte[] bytes) {
         try {
             return messageClass.cast(parseFromMethod.invoke(null, bytes));
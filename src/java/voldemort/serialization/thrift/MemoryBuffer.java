@@ -1,17 +1,58 @@
 package voldemort.serialization.thrift;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 
 import com.facebook.thrift.transport.TTransport;
 import com.facebook.thrift.transport.TTransportException;
 
+/**
+ * An in-memory thrift transport. Writes go to a growable internal buffer;
+ * reads come either from that buffer or from an array given to
+ * {@link #reset(byte[])}, which is read in place without copying. Instances
+ * can be reset and reused.
+ * 
+ * Not thread safe.
+ */
 public class MemoryBuffer extends TTransport {
 
-    protected ByteArrayOutputStream buffer;
-    private int curPos;
+    /* Buffers larger than this are dropped on reset rather than retained */
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+    private final int initialCapacity;
+    private byte[] buffer;
+    private int size;
+    private byte[] input;
+    private int position;
 
     public MemoryBuffer() {
-        this.buffer = new ByteArrayOutputStream();
+        this(256);
+    }
+
+    public MemoryBuffer(int initialCapacity) {
+        this.initialCapacity = initialCapacity;
+        this.buffer = new byte[initialCapacity];
+    }
+
+    /**
+     * Discard any written bytes and any input
+     */
+    public void reset() {
+        if(buffer.length > MAX_RETAINED_SIZE)
+            buffer = new byte[initialCapacity];
+        size = 0;
+        input = null;
+        position = 0;
+    }
+
+    /**
+     * Discard any written bytes and read from the given array
+     * 
+     * @param bytes The bytes to read, which are not copied
+     */
+    public void reset(byte[] bytes) {
+        reset();
+        input = bytes;
     }
 
     @Override
@@ -31,21 +72,38 @@ public class MemoryBuffer extends TTransport {
 
     @Override
     public int read(byte[] buf, int off, int len) throws TTransportException {
-        byte[] src = buffer.toByteArray();
-        int amtToRead = (len > src.length - curPos ? src.length - curPos : len);
+        byte[] src = input == null ? buffer : input;
+        int limit = input == null ? size : input.length;
+        int amtToRead = (len > limit - position ? limit - position : len);
         if(amtToRead > 0) {
-            System.arraycopy(src, curPos, buf, off, amtToRead);
-            curPos += amtToRead;
+            System.arraycopy(src, position, buf, off, amtToRead);
+            position += amtToRead;
         }
         return amtToRead;
     }
 
     @Override
     public void write(byte[] buf, int off, int len) throws TTransportException {
-        buffer.write(buf, off, len);
+        if(size + len > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, size + len)];
+            System.arraycopy(buffer, 0, newBuffer, 0, size);
+            buffer = newBuffer;
+        }
+        System.arraycopy(buf, off, buffer, size, len);
+        size += len;
+    }
+
+    public int size() {
+        return size;
     }
 
     public byte[] toByteArray() {
-        return buffer.toByteArray();
+        byte[] bytes = new byte[size];
+        System.arraycopy(buffer, 0, bytes, 0, size);
+        return bytes;
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        output.write(buffer, 0, size);
     }
 }
@@ -1,5 +1,10 @@
 package voldemort.serialization.thrift;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
 import voldemort.serialization.SerializationException;
 import voldemort.serialization.Serializer;
 
@@ -10,7 +15,6 @@ import com.facebook.thrift.protocol.TJSONProtocol;
 import com.facebook.thrift.protocol.TProtocol;
 import com.facebook.thrift.protocol.TSimpleJSONProtocol;
 import com.facebook.thrift.transport.TTransport;
-import com.facebook.thrift.transport.TTransportException;
 
 /**
  * ThriftSerializer uses one of the Thrift protocols (binary, json and
@@ -45,8 +49,21 @@ public class ThriftSerializer<T extends TBase> implements Serializer<T> {
     }
 
     private Class<T> messageClass;
+    private Constructor<T> messageConstructor;
     private ThriftProtocol protocol;
 
+    /*
+     * Each thread gets its own buffer, and for the binary protocol, which keeps
+     * no state between messages, its own protocol
+     */
+    private final ThreadLocal<ThriftContext> contexts = new ThreadLocal<ThriftContext>() {
+
+        @Override
+        protected ThriftContext initialValue() {
+            return new ThriftContext();
+        }
+    };
+
     @SuppressWarnings("unchecked")
     public ThriftSerializer(String schemaInfo) {
         String[] thriftInfo = parseSchemaInfo(schemaInfo);
@@ -64,55 +81,67 @@ public class ThriftSerializer<T extends TBase> implements Serializer<T> {
         }
         try {
             this.messageClass = (Class<T>) Class.forName(thriftInfo[0]);
-            Object msgObj = messageClass.newInstance();
-            if(!(msgObj instanceof TBase)) {
+            if(!TBase.class.isAssignableFrom(messageClass)) {
                 throw new IllegalArgumentException(thriftInfo[0]
                                                    + " is not a subtype of com.facebook.thrift.TBase");
             }
+            this.messageConstructor = messageClass.getConstructor();
+            this.messageConstructor.setAccessible(true);
         } catch(ClassNotFoundException e) {
             throw new IllegalArgumentException(e);
         } catch(SecurityException e) {
             throw new IllegalArgumentException(e);
-        } catch(InstantiationException e) {
-            throw new IllegalArgumentException(e);
-        } catch(IllegalAccessException e) {
+        } catch(NoSuchMethodException e) {
             throw new IllegalArgumentException(e);
         }
     }
 
     public byte[] toBytes(T object) {
-        MemoryBuffer buffer = new MemoryBuffer();
-        TProtocol protocol = createThriftProtocol(buffer);
+        ThriftContext context = contexts.get();
+        write(object, context);
+        return context.buffer.toByteArray();
+    }
+
+    /**
+     * Serialize the object directly into the given stream
+     * 
+     * @param object The object to serialize
+     * @param output The stream to write to
+     * @throws IOException If writing to the stream fails
+     */
+    public void writeTo(T object, OutputStream output) throws IOException {
+        ThriftContext context = contexts.get();
+        write(object, context);
+        context.buffer.writeTo(output);
+    }
+
+    private void write(T object, ThriftContext context) {
+        context.buffer.reset();
         try {
-            object.write(protocol);
+            object.write(context.getProtocol());
         } catch(TException e) {
             throw new SerializationException(e);
         }
-        return buffer.toByteArray();
     }
 
     public T toObject(byte[] bytes) {
-        MemoryBuffer buffer = new MemoryBuffer();
-        try {
-            buffer.write(bytes);
-        } catch(TTransportException e) {
-            throw new SerializationException(e);
-        }
-        TProtocol protocol = createThriftProtocol(buffer);
-
-        T msg = null;
+        ThriftContext context = contexts.get();
+        context.buffer.reset(bytes);
         try {
-            msg = messageClass.newInstance();
-            msg.read(protocol);
+            T msg = messageConstructor.newInstance();
+            msg.read(context.getProtocol());
+            return msg;
         } catch(InstantiationException e) {
             throw new SerializationException(e);
         } catch(IllegalAccessException e) {
             throw new SerializationException(e);
+        } catch(InvocationTargetException e) {
+            throw new SerializationException(e.getCause());
         } catch(TException e) {
             throw new SerializationException(e);
+        } finally {
+            context.buffer.reset();
         }
-
-        return msg;
     }
 
     protected String[] parseSchemaInfo(String schemaInfo) {
@@ -168,4 +197,17 @@ public class ThriftSerializer<T extends TBase> implements Serializer<T> {
                 throw new IllegalArgumentException("Unknown Thrift Protocol.");
         }
     }
+
+    private class ThriftContext {
+
+        private final MemoryBuffer buffer = new MemoryBuffer();
+        private final TProtocol binaryProtocol = protocol == ThriftProtocol.BINARY ? createThriftProtocol(buffer)
+                                                                                    : null;
+
+        public TProtocol getProtocol() {
+            // the json protocols track nesting state, so start each message
+            // fresh
+            return binaryProtocol != null ? binaryProtocol : createThriftProtocol(buffer);
+        }
+    }
 }
@@ -22,6 +22,7 @@ import java.io.Serializable;
 import java.util.List;
 import java.util.Properties;
 
+import voldemort.server.antientropy.HashTree;
 import voldemort.store.bdb.BdbStorageConfiguration;
 import voldemort.store.memory.CacheStorageConfiguration;
 import voldemort.store.memory.InMemoryStorageConfiguration;
@@ -86,7 +87,13 @@ public class VoldemortConfig implements Serializable {
 
     private int schedulerThreads;
 
+    private long antiEntropyIntervalMs;
+    private int antiEntropyTreeDepth;
+    private int antiEntropyPortOffset;
+
     private boolean enableSlopDetection;
+    private boolean enableAntiEntropy;
+    private boolean enableReadOnlyZeroCopy;
     private boolean enableGui;
     private boolean enableHttpServer;
     private boolean enableSocketServer;
@@ -134,6 +141,7 @@ public class VoldemortConfig implements Serializable {
                                                                              + File.separator
                                                                              + "read-only");
         this.readOnlyCacheSize = props.getInt("readonly.cache.size", 100 * 1000 * 1000);
+        this.enableReadOnlyZeroCopy = props.getBoolean("readonly.zero.copy.enable", false);
 
         this.slopStoreType = props.getString("slop.store.engine", BdbStorageConfiguration.TYPE_NAME);
 
@@ -162,6 +170,11 @@ public class VoldemortConfig implements Serializable {
 
         this.schedulerThreads = props.getInt("scheduler.threads", 3);
 
+        this.enableAntiEntropy = props.getBoolean("anti.entropy.enable", false);
+        this.antiEntropyIntervalMs = props.getLong("anti.entropy.interval.ms", 60 * 60 * 1000L);
+        this.antiEntropyTreeDepth = props.getInt("anti.entropy.tree.depth", 10);
+        this.antiEntropyPortOffset = props.getInt("anti.entropy.port.offset", 1);
+
         this.storageConfigurations = props.getList("storage.configs",
                                                    ImmutableList.of(BdbStorageConfiguration.class.getName(),
                                                                     InMemoryStorageConfiguration.class.getName(),
@@ -190,6 +203,13 @@ public class VoldemortConfig implements Serializable {
         if(schedulerThreads < 1)
             throw new ConfigurationException("Must have at least 1 scheduler thread, "
                                              + this.schedulerThreads + " set.");
+        if(antiEntropyIntervalMs < 1)
+            throw new ConfigurationException("anti.entropy.interval.ms cannot be less than 1.");
+        if(antiEntropyTreeDepth < 0 || antiEntropyTreeDepth > HashTree.MAX_DEPTH)
+            throw new ConfigurationException("anti.entropy.tree.depth must be between 0 and "
+                                             + HashTree.MAX_DEPTH + ".");
+        if(antiEntropyPortOffset == 0)
+            throw new ConfigurationException("anti.entropy.port.offset cannot be 0.");
     }
 
     private int getIntEnvVariable(String name) {
@@ -516,6 +536,61 @@ public class VoldemortConfig implements Serializable {
         this.schedulerThreads = schedulerThreads;
     }
 
+    /**
+     * Whether the socket server sends read-only values straight from their
+     * data files. These gets skip the verbose logging and stat tracking
+     * wrappers.
+     */
+    public boolean isReadOnlyZeroCopyEnabled() {
+        return enableReadOnlyZeroCopy;
+    }
+
+    public void setEnableReadOnlyZeroCopy(boolean enableReadOnlyZeroCopy) {
+        this.enableReadOnlyZeroCopy = enableReadOnlyZeroCopy;
+    }
+
+    public boolean isAntiEntropyEnabled() {
+        return enableAntiEntropy;
+    }
+
+    public void setEnableAntiEntropy(boolean enableAntiEntropy) {
+        this.enableAntiEntropy = enableAntiEntropy;
+    }
+
+    public long getAntiEntropyIntervalMs() {
+        return antiEntropyIntervalMs;
+    }
+
+    public void setAntiEntropyIntervalMs(long antiEntropyIntervalMs) {
+        this.antiEntropyIntervalMs = antiEntropyIntervalMs;
+    }
+
+    /**
+     * The depth of the hash trees compared by the anti-entropy service. A
+     * tree of depth d has 2^d leaves per partition; deeper trees transfer
+     * fewer entries per difference at the cost of more hashes.
+     */
+    public int getAntiEntropyTreeDepth() {
+        return antiEntropyTreeDepth;
+    }
+
+    public void setAntiEntropyTreeDepth(int antiEntropyTreeDepth) {
+        this.antiEntropyTreeDepth = antiEntropyTreeDepth;
+    }
+
+    /**
+     * Replicas exchange hash trees over a socket server of their own, on each
+     * node's socket port plus this offset, so that it is not reachable through
+     * the client port.
+     */
+    public int getAntiEntropyPortOffset() {
+        return antiEntropyPortOffset;
+    }
+
+    public void setAntiEntropyPortOffset(int antiEntropyPortOffset) {
+        this.antiEntropyPortOffset = antiEntropyPortOffset;
+    }
+
     public String getReadOnlyDataStorageDirectory() {
         return this.readOnlyStorageDir;
     }
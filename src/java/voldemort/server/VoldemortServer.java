@@ -30,6 +30,7 @@ import org.apache.log4j.Logger;
 import voldemort.VoldemortException;
 import voldemort.cluster.Cluster;
 import voldemort.cluster.Node;
+import voldemort.server.antientropy.AntiEntropyService;
 import voldemort.server.http.HttpService;
 import voldemort.server.jmx.JmxService;
 import voldemort.server.scheduler.SchedulerService;
@@ -37,6 +38,7 @@ import voldemort.server.socket.SocketService;
 import voldemort.server.storage.StorageService;
 import voldemort.store.Store;
 import voldemort.store.metadata.MetadataStore;
+import voldemort.store.readonly.RandomAccessFileStore;
 import voldemort.utils.ByteArray;
 import voldemort.utils.Props;
 import voldemort.utils.SystemTime;
@@ -88,10 +90,17 @@ public class VoldemortServer extends AbstractService {
                                                           voldemortConfig.getSchedulerThreads(),
                                                           SystemTime.INSTANCE);
         services.add(scheduler);
-        services.add(new StorageService("storage-service",
-                                        this.storeMap,
-                                        scheduler,
-                                        voldemortConfig));
+        StorageService storageService = new StorageService("storage-service",
+                                                           this.storeMap,
+                                                           scheduler,
+                                                           voldemortConfig);
+        // services start in reverse order, so this starts after storage
+        if(voldemortConfig.isAntiEntropyEnabled())
+            services.add(new AntiEntropyService("anti-entropy-service",
+                                                voldemortConfig,
+                                                storageService,
+                                                scheduler));
+        services.add(storageService);
         if(voldemortConfig.isHttpServerEnabled())
             services.add(new HttpService("http-service",
                                          this,
@@ -100,6 +109,8 @@ public class VoldemortServer extends AbstractService {
         if(voldemortConfig.isSocketServerEnabled())
             services.add(new SocketService("socket-service",
                                            storeMap,
+                                           voldemortConfig.isReadOnlyZeroCopyEnabled() ? storageService.getReadOnlyStores()
+                                                                                       : Collections.<String, RandomAccessFileStore> emptyMap(),
                                            identityNode.getSocketPort(),
                                            voldemortConfig.getCoreThreads(),
                                            voldemortConfig.getMaxThreads(),
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.server.antientropy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+import org.apache.log4j.Logger;
+
+import voldemort.VoldemortException;
+import voldemort.store.StorageEngine;
+import voldemort.store.Store;
+import voldemort.utils.ByteArray;
+import voldemort.utils.Pair;
+import voldemort.utils.Utils;
+import voldemort.versioning.ObsoleteVersionException;
+import voldemort.versioning.Versioned;
+
+/**
+ * Repair the local replicas of each store from the other replicas.
+ * 
+ * For each peer the hash trees of the partitions both nodes replicate are
+ * compared top down, one level at a time, so only the subtrees that differ are
+ * ever transferred. The entries in the differing leaves are then fetched from
+ * the peer, page by page from a single scan of its storage engine, and put into
+ * the local storage engine; versions that are older than
+ * what is stored locally are simply rejected. The exchange is pull only: each
+ * node repairs itself, and since every replica runs the job the repair is
+ * symmetric.
+ * 
+ * Deletes are not tracked, so a key deleted on one replica but still present
+ * on another will be copied back.
+ */
+public class AntiEntropyJob implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(AntiEntropyJob.class);
+
+    private final AntiEntropyStore localStore;
+    private final Map<String, ? extends StorageEngine<ByteArray, byte[]>> engines;
+    private final Map<Integer, ? extends Store<ByteArray, byte[]>> peerStores;
+    private final Semaphore permits;
+
+    /**
+     * Create an anti-entropy job
+     * 
+     * @param localStore The anti-entropy store of this node
+     * @param engines The local storage engines to repair, by store name
+     * @param peerStores The anti-entropy stores of the other nodes, by node id
+     */
+    public AntiEntropyJob(AntiEntropyStore localStore,
+                          Map<String, ? extends StorageEngine<ByteArray, byte[]>> engines,
+                          Map<Integer, ? extends Store<ByteArray, byte[]>> peerStores) {
+        this.localStore = Utils.notNull(localStore);
+        this.engines = Utils.notNull(engines);
+        this.peerStores = Utils.notNull(peerStores);
+        this.permits = new Semaphore(1);
+    }
+
+    public void run() {
+        if(!permits.tryAcquire()) {
+            logger.info("Previous anti-entropy run is still in progress, skipping this one.");
+            return;
+        }
+        try {
+            for(String storeName: localStore.getStoreNames()) {
+                if(Thread.currentThread().isInterrupted()) {
+                    logger.info("Anti-entropy job halted.");
+                    return;
+                }
+                Map<Integer, HashTree> trees = localStore.getHashTrees(storeName, true);
+                for(int peerId: localStore.getPeers(storeName)) {
+                    Store<ByteArray, byte[]> peer = peerStores.get(peerId);
+                    if(peer == null)
+                        continue;
+                    try {
+                        repair(storeName, trees, peerId, peer);
+                    } catch(VoldemortException e) {
+                        logger.warn("Anti-entropy exchange with node " + peerId + " for store '"
+                                    + storeName + "' failed.", e);
+                    }
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Repair the local copy of the given store from one peer
+     * 
+     * @return The number of entries that were updated locally
+     */
+    int repair(String storeName,
+               Map<Integer, HashTree> trees,
+               int peerId,
+               Store<ByteArray, byte[]> peer) {
+        Set<Integer> shared = localStore.getSharedPartitions(storeName, peerId);
+        Map<Integer, List<Integer>> differingLeaves = findDifferingLeaves(storeName,
+                                                                          trees,
+                                                                          shared,
+                                                                          peer);
+        int leaves = 0;
+        for(List<Integer> partitionLeaves: differingLeaves.values())
+            leaves += partitionLeaves.size();
+        if(leaves == 0) {
+            logger.debug("Store '" + storeName + "' is in sync with node " + peerId + ".");
+            return 0;
+        }
+
+        StorageEngine<ByteArray, byte[]> engine = engines.get(storeName);
+        int fetched = 0;
+        int updated = 0;
+        List<Pair<ByteArray, Versioned<byte[]>>> entries = new ArrayList<Pair<ByteArray, Versioned<byte[]>>>();
+        ByteArray request = AntiEntropyStore.entriesRequest(storeName,
+                                                            localStore.getDepth(),
+                                                            differingLeaves);
+        while(request != null) {
+            entries.clear();
+            long scanId = AntiEntropyStore.readEntries(getResponse(peer, request), entries);
+            for(Pair<ByteArray, Versioned<byte[]>> entry: entries) {
+                fetched++;
+                try {
+                    engine.put(entry.getFirst(), entry.getSecond());
+                    updated++;
+                } catch(ObsoleteVersionException e) {
+                    // we already have this version or a later one
+                }
+            }
+            request = scanId == 0 ? null : AntiEntropyStore.moreEntriesRequest(storeName,
+                                                                               localStore.getDepth(),
+                                                                               scanId);
+        }
+        logger.info("Anti-entropy for store '" + storeName + "' with node " + peerId + ": "
+                    + leaves + " leaves differed, " + fetched + " entries fetched, " + updated
+                    + " updated.");
+        return updated;
+    }
+
+    private Map<Integer, List<Integer>> findDifferingLeaves(String storeName,
+                                                            Map<Integer, HashTree> trees,
+                                                            Set<Integer> partitions,
+                                                            Store<ByteArray, byte[]> peer) {
+        Map<Integer, List<Integer>> differing = new LinkedHashMap<Integer, List<Integer>>();
+        Map<Integer, List<Integer>> level = new LinkedHashMap<Integer, List<Integer>>();
+        for(int partition: partitions) {
+            if(trees.containsKey(partition)) {
+                List<Integer> root = new ArrayList<Integer>(1);
+                root.add(0);
+                level.put(partition, root);
+            }
+        }
+
+        while(!level.isEmpty()) {
+            ByteArray request = AntiEntropyStore.hashesRequest(storeName,
+                                                               localStore.getDepth(),
+                                                               level);
+            Map<Integer, long[]> remoteHashes = AntiEntropyStore.readHashes(getResponse(peer,
+                                                                                        request),
+                                                                            level);
+            Map<Integer, List<Integer>> next = new LinkedHashMap<Integer, List<Integer>>();
+            for(Map.Entry<Integer, List<Integer>> entry: level.entrySet()) {
+                HashTree tree = trees.get(entry.getKey());
+                long[] hashes = remoteHashes.get(entry.getKey());
+                List<Integer> nodes = entry.getValue();
+                for(int i = 0; i < nodes.size(); i++) {
+                    int node = nodes.get(i);
+                    if(tree.getHash(node) == hashes[i])
+                        continue;
+                    if(tree.isLeafNode(node)) {
+                        addTo(differing, entry.getKey(), tree.getLeaf(node));
+                    } else {
+                        addTo(next, entry.getKey(), tree.getLeftChild(node));
+                        addTo(next, entry.getKey(), tree.getRightChild(node));
+                    }
+                }
+            }
+            level = next;
+        }
+        return differing;
+    }
+
+    private void addTo(Map<Integer, List<Integer>> map, int partition, int value) {
+        List<Integer> values = map.get(partition);
+        if(values == null) {
+            values = new ArrayList<Integer>();
+            map.put(partition, values);
+        }
+        values.add(value);
+    }
+
+    private byte[] getResponse(Store<ByteArray, byte[]> peer, ByteArray request) {
+        List<Versioned<byte[]>> response = peer.get(request);
+        if(response.size() != 1)
+            throw new VoldemortException("Expected one anti-entropy response but got "
+                                         + response.size() + ".");
+        return response.get(0).getValue();
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.server.antientropy;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanOperationInfo;
+
+import org.apache.log4j.Logger;
+
+import voldemort.VoldemortException;
+import voldemort.annotations.jmx.JmxGetter;
+import voldemort.annotations.jmx.JmxManaged;
+import voldemort.annotations.jmx.JmxOperation;
+import voldemort.cluster.Cluster;
+import voldemort.cluster.Node;
+import voldemort.server.AbstractService;
+import voldemort.server.VoldemortConfig;
+import voldemort.server.scheduler.SchedulerService;
+import voldemort.server.socket.SocketServer;
+import voldemort.server.storage.StorageService;
+import voldemort.store.StorageEngine;
+import voldemort.store.Store;
+import voldemort.store.socket.SocketPool;
+import voldemort.store.socket.SocketStore;
+import voldemort.utils.ByteArray;
+import voldemort.utils.SystemTime;
+import voldemort.utils.Time;
+
+/**
+ * A service that periodically compares the hash trees of each store with the
+ * other replicas and repairs any differences it finds. This catches the
+ * divergence that read repair never sees: keys that are written but never
+ * read, and replicas that missed writes while they were down.
+ * 
+ * The hash trees are served to the other replicas by a socket server of this
+ * service's own, on the socket port of each node plus
+ * {@link VoldemortConfig#getAntiEntropyPortOffset()}, rather than by the
+ * client facing socket server.
+ * 
+ * The service must be started after the storage service, since it needs the
+ * open storage engines.
+ */
+@JmxManaged(description = "Repairs replicas by comparing hash trees with the other nodes.")
+public class AntiEntropyService extends AbstractService {
+
+    private static final Logger logger = Logger.getLogger(AntiEntropyService.class);
+
+    private final VoldemortConfig voldemortConfig;
+    private final StorageService storageService;
+    private final SchedulerService scheduler;
+    private final Time time;
+    private SocketPool socketPool;
+    private SocketServer server;
+    private AntiEntropyStore store;
+    private AntiEntropyJob job;
+
+    public AntiEntropyService(String name,
+                              VoldemortConfig voldemortConfig,
+                              StorageService storageService,
+                              SchedulerService scheduler) {
+        super(name);
+        this.voldemortConfig = voldemortConfig;
+        this.storageService = storageService;
+        this.scheduler = scheduler;
+        this.time = SystemTime.INSTANCE;
+    }
+
+    @Override
+    protected void startInner() {
+        Cluster cluster = storageService.getMetadataStore().getCluster();
+        Map<String, StorageEngine<ByteArray, byte[]>> engines = new HashMap<String, StorageEngine<ByteArray, byte[]>>(storageService.getRawEngines());
+        // read-only stores are never written, so there is nothing to repair
+        for(String name: storageService.getReadOnlyStores().keySet())
+            engines.remove(name);
+        // dictionaries differ between nodes, so exchange those values inflated
+        engines.putAll(storageService.getDictionaryCompressedEngines());
+
+        this.store = new AntiEntropyStore(voldemortConfig.getNodeId(),
+                                          cluster,
+                                          storageService.getMetadataStore().getStores(),
+                                          engines,
+                                          voldemortConfig.getAntiEntropyTreeDepth(),
+                                          voldemortConfig.getAntiEntropyIntervalMs(),
+                                          time);
+        ConcurrentMap<String, AntiEntropyStore> storeMap = new ConcurrentHashMap<String, AntiEntropyStore>();
+        storeMap.put(store.getName(), store);
+        int portOffset = voldemortConfig.getAntiEntropyPortOffset();
+        Node localNode = cluster.getNodeById(voldemortConfig.getNodeId());
+        this.server = new SocketServer(storeMap,
+                                       localNode.getSocketPort() + portOffset,
+                                       1,
+                                       cluster.getNumberOfNodes(),
+                                       voldemortConfig.getSocketBufferSize());
+        this.server.start();
+        this.server.awaitStartupCompletion();
+
+        this.socketPool = new SocketPool(2,
+                                         2 * cluster.getNumberOfNodes(),
+                                         voldemortConfig.getSocketTimeoutMs(),
+                                         voldemortConfig.getSocketBufferSize());
+        Map<Integer, Store<ByteArray, byte[]>> peerStores = new HashMap<Integer, Store<ByteArray, byte[]>>();
+        for(Node node: cluster.getNodes()) {
+            if(node.getId() != voldemortConfig.getNodeId())
+                peerStores.put(node.getId(), new SocketStore(store.getName(),
+                                                             node.getHost(),
+                                                             node.getSocketPort() + portOffset,
+                                                             socketPool));
+        }
+
+        this.job = new AntiEntropyJob(store, engines, peerStores);
+        long intervalMs = voldemortConfig.getAntiEntropyIntervalMs();
+        logger.info("Scheduling anti-entropy repair every " + intervalMs + " ms.");
+        scheduler.schedule(job, new Date(time.getMilliseconds() + intervalMs), intervalMs);
+    }
+
+    @Override
+    protected void stopInner() {
+        if(socketPool != null)
+            socketPool.close();
+        if(server != null)
+            server.shutdown();
+        if(store != null)
+            store.close();
+    }
+
+    @JmxGetter(name = "treeDepth", description = "The depth of the hash trees that are compared.")
+    public int getTreeDepth() {
+        return voldemortConfig.getAntiEntropyTreeDepth();
+    }
+
+    @JmxOperation(impact = MBeanOperationInfo.ACTION, description = "Run an anti-entropy repair now.")
+    public void repairNow() {
+        if(job == null)
+            throw new VoldemortException("The anti-entropy service has not been started.");
+        scheduler.scheduleNow(job);
+    }
+
+}
@@ -0,0 +1,606 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.server.antientropy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import voldemort.VoldemortException;
+import voldemort.cluster.Cluster;
+import voldemort.cluster.Node;
+import voldemort.routing.ConsistentRoutingStrategy;
+import voldemort.serialization.IdentitySerializer;
+import voldemort.serialization.VersionedSerializer;
+import voldemort.store.StorageEngine;
+import voldemort.store.Store;
+import voldemort.store.StoreDefinition;
+import voldemort.store.StoreUtils;
+import voldemort.utils.ByteArray;
+import voldemort.utils.ByteUtils;
+import voldemort.utils.ClosableIterator;
+import voldemort.utils.Pair;
+import voldemort.utils.Time;
+import voldemort.utils.Utils;
+import voldemort.versioning.VectorClock;
+import voldemort.versioning.Version;
+import voldemort.versioning.Versioned;
+
+/**
+ * A read-only store through which replicas exchange hash trees. It is served
+ * over the native socket protocol by a server of its own, apart from the
+ * client facing stores; the key of a get is an encoded request and the single
+ * value returned is the encoded response.
+ * 
+ * Two kinds of request are supported: fetch the hashes of some nodes of the
+ * hash trees of some partitions, and fetch all the entries that fall in some
+ * leaves of those trees. The trees for a store are built by a full scan of its
+ * storage engine and cached for a while, since every replica of every
+ * partition will ask for them.
+ * 
+ * Entries are fetched with a single scan of the storage engine per request
+ * for leaves. The scan is returned a page at a time, each page at most about
+ * maxResponseBytes, and the caller asks for the next page by the id of the
+ * scan. Scans that are not continued within a while are closed.
+ */
+public class AntiEntropyStore implements Store<ByteArray, byte[]> {
+
+    public static final String ANTI_ENTROPY_STORE_NAME = "anti-entropy";
+
+    static final byte HASHES_REQUEST = 1;
+    static final byte ENTRIES_REQUEST = 2;
+    static final byte MORE_ENTRIES_REQUEST = 3;
+
+    public static final int DEFAULT_MAX_RESPONSE_BYTES = 1024 * 1024;
+    public static final long MAX_SCAN_IDLE_MS = 60 * Time.MS_PER_SECOND;
+
+    private static final Logger logger = Logger.getLogger(AntiEntropyStore.class);
+    private static final VersionedSerializer<byte[]> versionedSerializer = new VersionedSerializer<byte[]>(new IdentitySerializer());
+
+    private final int nodeId;
+    private final Cluster cluster;
+    private final Map<String, StoreDefinition> storeDefs;
+    private final Map<String, ? extends StorageEngine<ByteArray, byte[]>> engines;
+    private final int depth;
+    private final long maxTreeAgeMs;
+    private final Time time;
+    private final int maxResponseBytes;
+    private final ConcurrentMap<String, TreeCache> treeCaches;
+    private final ConcurrentMap<Long, EntryScan> scans;
+    private final AtomicLong nextScanId;
+
+    /**
+     * Create an AntiEntropyStore
+     * 
+     * @param nodeId The id of this node
+     * @param cluster The cluster
+     * @param storeDefs The definitions of the stores to serve trees for
+     * @param engines The storage engines by store name
+     * @param depth The depth of each hash tree
+     * @param maxTreeAgeMs How long a tree may be served before it is rebuilt
+     * @param time The time implementation
+     */
+    public AntiEntropyStore(int nodeId,
+                            Cluster cluster,
+                            List<StoreDefinition> storeDefs,
+                            Map<String, ? extends StorageEngine<ByteArray, byte[]>> engines,
+                            int depth,
+                            long maxTreeAgeMs,
+                            Time time) {
+        this(nodeId,
+             cluster,
+             storeDefs,
+             engines,
+             depth,
+             maxTreeAgeMs,
+             DEFAULT_MAX_RESPONSE_BYTES,
+             time);
+    }
+
+    /**
+     * Create an AntiEntropyStore
+     * 
+     * @param nodeId The id of this node
+     * @param cluster The cluster
+     * @param storeDefs The definitions of the stores to serve trees for
+     * @param engines The storage engines by store name
+     * @param depth The depth of each hash tree
+     * @param maxTreeAgeMs How long a tree may be served before it is rebuilt
+     * @param maxResponseBytes The size at which a page of entries is cut off
+     * @param time The time implementation
+     */
+    public AntiEntropyStore(int nodeId,
+                            Cluster cluster,
+                            List<StoreDefinition> storeDefs,
+                            Map<String, ? extends StorageEngine<ByteArray, byte[]>> engines,
+                            int depth,
+                            long maxTreeAgeMs,
+                            int maxResponseBytes,
+                            Time time) {
+        if(maxResponseBytes < 1)
+            throw new IllegalArgumentException("maxResponseBytes must be at least 1.");
+        this.nodeId = nodeId;
+        this.cluster = Utils.notNull(cluster);
+        this.storeDefs = new LinkedHashMap<String, StoreDefinition>();
+        for(StoreDefinition def: storeDefs)
+            this.storeDefs.put(def.getName(), def);
+        this.engines = Utils.notNull(engines);
+        this.depth = depth;
+        this.maxTreeAgeMs = maxTreeAgeMs;
+        this.time = Utils.notNull(time);
+        this.maxResponseBytes = maxResponseBytes;
+        this.treeCaches = new ConcurrentHashMap<String, TreeCache>();
+        this.scans = new ConcurrentHashMap<Long, EntryScan>();
+        this.nextScanId = new AtomicLong(1);
+    }
+
+    public String getName() {
+        return ANTI_ENTROPY_STORE_NAME;
+    }
+
+    public List<Versioned<byte[]>> get(ByteArray key) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(key.get()));
+            byte requestType = input.readByte();
+            String storeName = input.readUTF();
+            int requestDepth = input.readInt();
+            if(requestDepth != depth)
+                throw new VoldemortException("Hash tree depth " + requestDepth
+                                             + " requested, but this node uses " + depth + ".");
+            Map<Integer, List<Integer>> nodes = readPartitionMap(input);
+
+            closeIdleScans();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(response);
+            if(requestType == HASHES_REQUEST)
+                writeHashes(output, storeName, nodes);
+            else if(requestType == ENTRIES_REQUEST)
+                writeEntries(output, startScan(storeName, nodes));
+            else if(requestType == MORE_ENTRIES_REQUEST)
+                writeEntries(output, getScan(input.readLong(), storeName));
+            else
+                throw new VoldemortException("Unknown anti-entropy request type " + requestType
+                                             + ".");
+            output.flush();
+            return Collections.singletonList(new Versioned<byte[]>(response.toByteArray()));
+        } catch(IOException e) {
+            throw new VoldemortException("Invalid anti-entropy request.", e);
+        }
+    }
+
+    public List<Version> getVersions(ByteArray key) throws VoldemortException {
+        return StoreUtils.getVersions(this, key);
+    }
+
+    public Map<ByteArray, List<Versioned<byte[]>>> getAll(Iterable<ByteArray> keys)
+            throws VoldemortException {
+        StoreUtils.assertValidKeys(keys);
+        return StoreUtils.getAll(this, keys);
+    }
+
+    public void put(ByteArray key, Versioned<byte[]> value) throws VoldemortException {
+        throw new VoldemortException("The anti-entropy store is read-only.");
+    }
+
+    public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries)
+            throws VoldemortException {
+        throw new VoldemortException("The anti-entropy store is read-only.");
+    }
+
+    public void putIfCurrent(ByteArray key, Versioned<byte[]> value, Version expected)
+            throws VoldemortException {
+        throw new VoldemortException("The anti-entropy store is read-only.");
+    }
+
+    public void putSuperseding(ByteArray key, Versioned<byte[]> value, Version superseded)
+            throws VoldemortException {
+        throw new VoldemortException("The anti-entropy store is read-only.");
+    }
+
+    public boolean delete(ByteArray key, Version version) throws VoldemortException {
+        throw new VoldemortException("The anti-entropy store is read-only.");
+    }
+
+    public void close() throws VoldemortException {
+        treeCaches.clear();
+        for(Long scanId: scans.keySet())
+            closeScan(scanId);
+    }
+
+    /**
+     * @return The names of the stores that have hash trees, that is the stores
+     *         that are open and writable
+     */
+    public List<String> getStoreNames() {
+        List<String> names = new ArrayList<String>();
+        for(String name: storeDefs.keySet())
+            if(engines.containsKey(name))
+                names.add(name);
+        return names;
+    }
+
+    /**
+     * Get the hash trees for every partition of the store this node holds a
+     * replica of
+     * 
+     * @param storeName The store
+     * @param rebuild If true build new trees even if the cached ones are fresh
+     * @return A map of master partition id to the hash tree for that partition
+     */
+    public Map<Integer, HashTree> getHashTrees(String storeName, boolean rebuild) {
+        TreeCache cache = treeCaches.get(storeName);
+        if(cache == null) {
+            treeCaches.putIfAbsent(storeName, new TreeCache());
+            cache = treeCaches.get(storeName);
+        }
+        synchronized(cache) {
+            if(rebuild || cache.trees == null
+               || time.getMilliseconds() - cache.builtMs > maxTreeAgeMs) {
+                cache.trees = buildHashTrees(storeName);
+                cache.builtMs = time.getMilliseconds();
+            }
+            return cache.trees;
+        }
+    }
+
+    /**
+     * @return The partitions of the store that are replicated on both this
+     *         node and the given node
+     */
+    public Set<Integer> getSharedPartitions(String storeName, int peerId) {
+        Set<Integer> shared = new HashSet<Integer>();
+        ConsistentRoutingStrategy routing = getRoutingStrategy(storeName);
+        for(int partition = 0; partition < routing.getNumPartitions(); partition++) {
+            List<Node> replicas = routing.routePartition(partition);
+            if(containsNode(replicas, nodeId) && containsNode(replicas, peerId))
+                shared.add(partition);
+        }
+        return shared;
+    }
+
+    /**
+     * @return The other nodes that share at least one partition of the store
+     *         with this node
+     */
+    public Set<Integer> getPeers(String storeName) {
+        Set<Integer> peers = new HashSet<Integer>();
+        ConsistentRoutingStrategy routing = getRoutingStrategy(storeName);
+        for(int partition = 0; partition < routing.getNumPartitions(); partition++) {
+            List<Node> replicas = routing.routePartition(partition);
+            if(containsNode(replicas, nodeId)) {
+                for(Node node: replicas)
+                    if(node.getId() != nodeId)
+                        peers.add(node.getId());
+            }
+        }
+        return peers;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    private Map<Integer, HashTree> buildHashTrees(String storeName) {
+        StorageEngine<ByteArray, byte[]> engine = getEngine(storeName);
+        ConsistentRoutingStrategy routing = getRoutingStrategy(storeName);
+        Map<Integer, HashTree> trees = new HashMap<Integer, HashTree>();
+        for(int partition = 0; partition < routing.getNumPartitions(); partition++)
+            if(containsNode(routing.routePartition(partition), nodeId))
+                trees.put(partition, new HashTree(depth));
+
+        long start = time.getMilliseconds();
+        int count = 0;
+        ClosableIterator<Pair<ByteArray, Versioned<byte[]>>> iterator = engine.entries();
+        try {
+            while(iterator.hasNext()) {
+                Pair<ByteArray, Versioned<byte[]>> entry = iterator.next();
+                byte[] key = entry.getFirst().get();
+                HashTree tree = trees.get(routing.getMasterPartition(key));
+                if(tree != null) {
+                    tree.add(key, ((VectorClock) entry.getSecond().getVersion()).toBytes());
+                    count++;
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        // compute the inner hashes now, the trees are read concurrently later
+        for(HashTree tree: trees.values())
+            tree.getRootHash();
+        logger.info("Built " + trees.size() + " hash trees over " + count
+                    + " entries for store '" + storeName + "' in "
+                    + (time.getMilliseconds() - start) + " ms.");
+        return trees;
+    }
+
+    private void writeHashes(DataOutputStream output,
+                             String storeName,
+                             Map<Integer, List<Integer>> nodes) throws IOException {
+        Map<Integer, HashTree> trees = getHashTrees(storeName, false);
+        for(Map.Entry<Integer, List<Integer>> entry: nodes.entrySet()) {
+            HashTree tree = trees.get(entry.getKey());
+            if(tree == null)
+                throw new VoldemortException("Node " + nodeId + " has no replica of partition "
+                                             + entry.getKey() + " of store '" + storeName + "'.");
+            for(int node: entry.getValue())
+                output.writeLong(tree.getHash(node));
+        }
+    }
+
+    private EntryScan startScan(String storeName, Map<Integer, List<Integer>> leaves) {
+        Map<Integer, Set<Integer>> leafSets = new HashMap<Integer, Set<Integer>>();
+        for(Map.Entry<Integer, List<Integer>> entry: leaves.entrySet())
+            leafSets.put(entry.getKey(), new HashSet<Integer>(entry.getValue()));
+        EntryScan scan = new EntryScan(nextScanId.getAndIncrement(),
+                                       storeName,
+                                       leafSets,
+                                       getRoutingStrategy(storeName),
+                                       getEngine(storeName).entries(),
+                                       time.getMilliseconds());
+        scans.put(scan.id, scan);
+        return scan;
+    }
+
+    private EntryScan getScan(long scanId, String storeName) {
+        EntryScan scan = scans.get(scanId);
+        if(scan == null || !scan.storeName.equals(storeName))
+            throw new VoldemortException("No open anti-entropy scan " + scanId + " of store '"
+                                         + storeName + "', it may have expired.");
+        return scan;
+    }
+
+    /*
+     * Write the next page of the scan: the id to continue the scan with (or
+     * zero if it is done), then each entry preceded by a true, then a false.
+     */
+    private void writeEntries(DataOutputStream output, EntryScan scan) throws IOException {
+        synchronized(scan) {
+            if(scan.iterator == null)
+                throw new VoldemortException("Anti-entropy scan " + scan.id + " is closed.");
+            ByteArrayOutputStream page = new ByteArrayOutputStream();
+            DataOutputStream pageOutput = new DataOutputStream(page);
+            while(page.size() < maxResponseBytes && scan.iterator.hasNext()) {
+                Pair<ByteArray, Versioned<byte[]>> entry = scan.iterator.next();
+                byte[] key = entry.getFirst().get();
+                Set<Integer> partitionLeaves = scan.leaves.get(scan.routing.getMasterPartition(key));
+                if(partitionLeaves == null
+                   || !partitionLeaves.contains(HashTree.getLeaf(key, depth)))
+                    continue;
+                byte[] versioned = versionedSerializer.toBytes(entry.getSecond());
+                pageOutput.writeBoolean(true);
+                pageOutput.writeInt(key.length);
+                pageOutput.write(key);
+                pageOutput.writeInt(versioned.length);
+                pageOutput.write(versioned);
+            }
+            pageOutput.writeBoolean(false);
+            pageOutput.flush();
+
+            boolean done = !scan.iterator.hasNext();
+            if(done)
+                closeScan(scan.id);
+            else
+                scan.lastUsedMs = time.getMilliseconds();
+            output.writeLong(done ? 0 : scan.id);
+            page.writeTo(output);
+        }
+    }
+
+    private void closeIdleScans() {
+        long now = time.getMilliseconds();
+        for(EntryScan scan: scans.values()) {
+            if(now - scan.lastUsedMs > MAX_SCAN_IDLE_MS) {
+                logger.info("Closing anti-entropy scan " + scan.id + " of store '"
+                            + scan.storeName + "' after " + (now - scan.lastUsedMs)
+                            + " ms without a request.");
+                closeScan(scan.id);
+            }
+        }
+    }
+
+    private void closeScan(long scanId) {
+        EntryScan scan = scans.remove(scanId);
+        if(scan == null)
+            return;
+        synchronized(scan) {
+            if(scan.iterator != null) {
+                scan.iterator.close();
+                scan.iterator = null;
+            }
+        }
+    }
+
+    int getOpenScans() {
+        return scans.size();
+    }
+
+    private StorageEngine<ByteArray, byte[]> getEngine(String storeName) {
+        StorageEngine<ByteArray, byte[]> engine = engines.get(storeName);
+        if(engine == null || !storeDefs.containsKey(storeName))
+            throw new VoldemortException("No store named '" + storeName + "'.");
+        return engine;
+    }
+
+    private ConsistentRoutingStrategy getRoutingStrategy(String storeName) {
+        StoreDefinition def = storeDefs.get(storeName);
+        if(def == null)
+            throw new VoldemortException("No store named '" + storeName + "'.");
+        return new ConsistentRoutingStrategy(cluster.getNodes(), def.getReplicationFactor());
+    }
+
+    private boolean containsNode(List<Node> nodes, int id) {
+        for(Node node: nodes)
+            if(node.getId() == id)
+                return true;
+        return false;
+    }
+
+    /*
+     * Request and response encoding, used by the anti-entropy job on the other
+     * side
+     */
+
+    static ByteArray hashesRequest(String storeName, int depth, Map<Integer, List<Integer>> nodes) {
+        return makeRequest(HASHES_REQUEST, storeName, depth, nodes);
+    }
+
+    static ByteArray entriesRequest(String storeName, int depth, Map<Integer, List<Integer>> leaves) {
+        return makeRequest(ENTRIES_REQUEST, storeName, depth, leaves);
+    }
+
+    static ByteArray moreEntriesRequest(String storeName, int depth, long scanId) {
+        byte[] header = makeRequest(MORE_ENTRIES_REQUEST,
+                                    storeName,
+                                    depth,
+                                    Collections.<Integer, List<Integer>> emptyMap()).get();
+        byte[] request = new byte[header.length + 8];
+        System.arraycopy(header, 0, request, 0, header.length);
+        ByteUtils.writeLong(request, scanId, header.length);
+        return new ByteArray(request);
+    }
+
+    static Map<Integer, long[]> readHashes(byte[] response, Map<Integer, List<Integer>> nodes) {
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(response));
+            Map<Integer, long[]> hashes = new HashMap<Integer, long[]>();
+            for(Map.Entry<Integer, List<Integer>> entry: nodes.entrySet()) {
+                long[] partitionHashes = new long[entry.getValue().size()];
+                for(int i = 0; i < partitionHashes.length; i++)
+                    partitionHashes[i] = input.readLong();
+                hashes.put(entry.getKey(), partitionHashes);
+            }
+            return hashes;
+        } catch(IOException e) {
+            throw new VoldemortException("Invalid anti-entropy response.", e);
+        }
+    }
+
+    /**
+     * Read a page of entries into the given list
+     * 
+     * @return The id of the scan to ask for the next page with, or zero if
+     *         there are no more entries
+     */
+    static long readEntries(byte[] response, List<Pair<ByteArray, Versioned<byte[]>>> entries) {
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(response));
+            long scanId = input.readLong();
+            while(input.readBoolean()) {
+                byte[] key = new byte[input.readInt()];
+                ByteUtils.read(input, key);
+                byte[] versioned = new byte[input.readInt()];
+                ByteUtils.read(input, versioned);
+                entries.add(Pair.create(new ByteArray(key),
+                                        versionedSerializer.toObject(versioned)));
+            }
+            return scanId;
+        } catch(IOException e) {
+            throw new VoldemortException("Invalid anti-entropy response.", e);
+        }
+    }
+
+    private static ByteArray makeRequest(byte requestType,
+                                         String storeName,
+                                         int depth,
+                                         Map<Integer, List<Integer>> nodes) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeByte(requestType);
+            output.writeUTF(storeName);
+            output.writeInt(depth);
+            output.writeInt(nodes.size());
+            for(Map.Entry<Integer, List<Integer>> entry: nodes.entrySet()) {
+                output.writeInt(entry.getKey());
+                output.writeInt(entry.getValue().size());
+                for(int node: entry.getValue())
+                    output.writeInt(node);
+            }
+            output.flush();
+            return new ByteArray(bytes.toByteArray());
+        } catch(IOException e) {
+            throw new VoldemortException(e);
+        }
+    }
+
+    private static Map<Integer, List<Integer>> readPartitionMap(DataInputStream input)
+            throws IOException {
+        int numPartitions = input.readInt();
+        Map<Integer, List<Integer>> nodes = new LinkedHashMap<Integer, List<Integer>>(numPartitions);
+        for(int i = 0; i < numPartitions; i++) {
+            int partition = input.readInt();
+            int count = input.readInt();
+            List<Integer> indexes = new ArrayList<Integer>(count);
+            for(int j = 0; j < count; j++)
+                indexes.add(input.readInt());
+            nodes.put(partition, indexes);
+        }
+        return nodes;
+    }
+
+    private static class TreeCache {
+
+        private Map<Integer, HashTree> trees;
+        private long builtMs;
+    }
+
+    /*
+     * A scan for the entries in some leaves that is returned a page at a time.
+     * Guarded by its own lock.
+     */
+    private static class EntryScan {
+
+        private final long id;
+        private final String storeName;
+        private final Map<Integer, Set<Integer>> leaves;
+        private final ConsistentRoutingStrategy routing;
+        private ClosableIterator<Pair<ByteArray, Versioned<byte[]>>> iterator;
+        private volatile long lastUsedMs;
+
+        public EntryScan(long id,
+                         String storeName,
+                         Map<Integer, Set<Integer>> leaves,
+                         ConsistentRoutingStrategy routing,
+                         ClosableIterator<Pair<ByteArray, Versioned<byte[]>>> iterator,
+                         long now) {
+            this.id = id;
+            this.storeName = storeName;
+            this.leaves = leaves;
+            this.routing = routing;
+            this.iterator = iterator;
+            this.lastUsedMs = now;
+        }
+    }
+
+}
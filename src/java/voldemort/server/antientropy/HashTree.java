@@ -0,0 +1,133 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.server.antientropy;
+
+import voldemort.annotations.concurrency.NotThreadsafe;
+import voldemort.utils.ByteUtils;
+
+/**
+ * A hash tree (or Merkle tree) summarizing a set of key/version pairs.
+ * 
+ * Each key is assigned to one of 2^depth leaf buckets based on a hash of the
+ * key alone, so the same key always lands in the same leaf on every replica.
+ * The hash of a leaf is the sum of the hashes of its key/version pairs, which
+ * makes it independent of the order in which entries are added. The hash of
+ * an inner node is a hash of its two children. Two trees built over identical
+ * data have identical roots, and when the data differs only the subtrees that
+ * contain a difference need to be compared.
+ * 
+ * Nodes are stored in an array in heap order: the root is node 0 and the
+ * children of node i are 2i + 1 and 2i + 2.
+ */
+@NotThreadsafe
+public class HashTree {
+
+    public static final int MAX_DEPTH = 20;
+
+    private final int depth;
+    private final int numLeaves;
+    private final long[] hashes;
+    private boolean isDirty;
+
+    public HashTree(int depth) {
+        if(depth < 0 || depth > MAX_DEPTH)
+            throw new IllegalArgumentException("Depth must be between 0 and " + MAX_DEPTH + ".");
+        this.depth = depth;
+        this.numLeaves = 1 << depth;
+        this.hashes = new long[2 * numLeaves - 1];
+        this.isDirty = false;
+    }
+
+    /**
+     * Add an entry to the tree
+     * 
+     * @param key The key
+     * @param version The serialized version of the value stored for the key
+     */
+    public void add(byte[] key, byte[] version) {
+        long entryHash = ByteUtils.readLong(ByteUtils.md5(ByteUtils.cat(key, version)), 0);
+        hashes[getLeafNode(getLeaf(key))] += entryHash;
+        isDirty = true;
+    }
+
+    /**
+     * Get the leaf bucket (from 0 to 2^depth - 1) that the key belongs to
+     */
+    public int getLeaf(byte[] key) {
+        return getLeaf(key, depth);
+    }
+
+    public static int getLeaf(byte[] key, int depth) {
+        if(depth == 0)
+            return 0;
+        return ByteUtils.readInt(ByteUtils.md5(key), 0) >>> (Integer.SIZE - depth);
+    }
+
+    public long getHash(int node) {
+        if(isDirty)
+            computeInnerHashes();
+        return hashes[node];
+    }
+
+    public long getRootHash() {
+        return getHash(0);
+    }
+
+    public boolean isLeafNode(int node) {
+        return node >= numLeaves - 1;
+    }
+
+    public int getLeafNode(int leaf) {
+        return numLeaves - 1 + leaf;
+    }
+
+    public int getLeaf(int leafNode) {
+        return leafNode - (numLeaves - 1);
+    }
+
+    public int getLeftChild(int node) {
+        return 2 * node + 1;
+    }
+
+    public int getRightChild(int node) {
+        return 2 * node + 2;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getNumLeaves() {
+        return numLeaves;
+    }
+
+    public int getNumNodes() {
+        return hashes.length;
+    }
+
+    private void computeInnerHashes() {
+        byte[] buffer = new byte[2 * ByteUtils.SIZE_OF_LONG];
+        for(int node = numLeaves - 2; node >= 0; node--) {
+            ByteUtils.writeLong(buffer, hashes[getLeftChild(node)], 0);
+            ByteUtils.writeLong(buffer, hashes[getRightChild(node)], ByteUtils.SIZE_OF_LONG);
+            hashes[node] = ByteUtils.readLong(ByteUtils.md5(buffer), 0);
+        }
+        isDirty = false;
+    }
+
+}
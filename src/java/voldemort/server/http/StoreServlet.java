@@ -16,6 +16,8 @@
 
 package voldemort.server.http;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
@@ -32,8 +34,10 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
 
 import voldemort.VoldemortException;
+import voldemort.client.protocol.WireCompression;
 import voldemort.server.VoldemortServer;
 import voldemort.store.Store;
 import voldemort.store.http.HttpResponseCodeErrorMapper;
@@ -42,6 +46,7 @@ import voldemort.utils.ByteUtils;
 import voldemort.utils.Pair;
 import voldemort.utils.Utils;
 import voldemort.versioning.VectorClock;
+import voldemort.versioning.Version;
 import voldemort.versioning.Versioned;
 
 import com.google.common.base.Join;
@@ -58,6 +63,10 @@ public class StoreServlet extends HttpServlet {
     private static final Pattern SLASH_PATTERN = Pattern.compile("/");
     private static final long serialVersionUID = 1;
     private static final String VERSION_EXTENSION = "X-vldmt-version";
+    private static final String EXPECTED_VERSION_EXTENSION = "X-vldmt-expected-version";
+    private static final String SUPERSEDED_VERSION_EXTENSION = "X-vldmt-superseded-version";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
     private static final HttpResponseCodeErrorMapper httpResponseCodeErrorMapper = new HttpResponseCodeErrorMapper();
     private static final Hex urlCodec = new Hex();
 
@@ -95,9 +104,10 @@ public class StoreServlet extends HttpServlet {
         String[] path = SLASH_PATTERN.split(request.getPathInfo());
         Pair<ByteArray, String> keyAndStore = getKeyAndStore(path);
         Store<ByteArray, byte[]> store = getStore(keyAndStore.getSecond());
-        DataOutputStream stream = new DataOutputStream(response.getOutputStream());
         try {
             List<Versioned<byte[]>> values = store.get(keyAndStore.getFirst());
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream stream = new DataOutputStream(body);
             for(Versioned<byte[]> versioned: values) {
                 byte[] clock = ((VectorClock) versioned.getVersion()).toBytes();
                 byte[] value = versioned.getValue();
@@ -105,6 +115,18 @@ public class StoreServlet extends HttpServlet {
                 stream.write(clock);
                 stream.write(value);
             }
+            stream.flush();
+            byte[] bytes = body.toByteArray();
+            if(bytes.length >= WireCompression.DEFAULT_THRESHOLD_BYTES
+               && acceptsDeflate(request.getHeader(ACCEPT_ENCODING))) {
+                byte[] deflated = WireCompression.deflateBody(bytes);
+                if(deflated.length < bytes.length) {
+                    response.setHeader(CONTENT_ENCODING, WireCompression.HTTP_CONTENT_ENCODING);
+                    bytes = deflated;
+                }
+            }
+            response.setContentLength(bytes.length);
+            response.getOutputStream().write(bytes);
         } catch(VoldemortException v) {
             HttpResponseCodeErrorMapper.ResponseCode code = httpResponseCodeErrorMapper.mapErrorToResponseCode(v);
             response.setContentType("text/xml");
@@ -112,6 +134,28 @@ public class StoreServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Return only the versions of the key, one header per version
+     */
+    @Override
+    protected void doHead(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String[] path = SLASH_PATTERN.split(request.getPathInfo());
+        Pair<ByteArray, String> keyAndStore = getKeyAndStore(path);
+        Store<ByteArray, byte[]> store = getStore(keyAndStore.getSecond());
+        try {
+            List<Version> versions = store.getVersions(keyAndStore.getFirst());
+            for(Version version: versions) {
+                byte[] clock = ((VectorClock) version).toBytes();
+                response.addHeader(VERSION_EXTENSION, new String(Base64.encodeBase64(clock),
+                                                                 "UTF-8"));
+            }
+        } catch(VoldemortException v) {
+            HttpResponseCodeErrorMapper.ResponseCode code = httpResponseCodeErrorMapper.mapErrorToResponseCode(v);
+            response.sendError(code.getCode(), code.getText());
+        }
+    }
+
     @Override
     protected void doPut(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
@@ -121,10 +165,29 @@ public class StoreServlet extends HttpServlet {
         int size = request.getContentLength();
         byte[] contents = new byte[size];
         ByteUtils.read(request.getInputStream(), contents);
+        if(WireCompression.HTTP_CONTENT_ENCODING.equals(request.getHeader(CONTENT_ENCODING)))
+            contents = IOUtils.toByteArray(WireCompression.inflateBody(new ByteArrayInputStream(contents)));
         try {
             VectorClock clock = new VectorClock(Base64.decodeBase64(request.getHeader(VERSION_EXTENSION)
                                                                            .getBytes()));
-            store.put(keyAndStore.getFirst(), new Versioned<byte[]>(contents, clock));
+            String expected = request.getHeader(EXPECTED_VERSION_EXTENSION);
+            String superseded = request.getHeader(SUPERSEDED_VERSION_EXTENSION);
+            if(expected != null) {
+                VectorClock expectedClock = new VectorClock(Base64.decodeBase64(expected.getBytes()));
+                store.putIfCurrent(keyAndStore.getFirst(),
+                                   new Versioned<byte[]>(contents, clock),
+                                   expectedClock);
+                // echo the condition so the client knows it was honoured
+                response.setHeader(EXPECTED_VERSION_EXTENSION, expected);
+            } else if(superseded != null) {
+                VectorClock supersededClock = new VectorClock(Base64.decodeBase64(superseded.getBytes()));
+                store.putSuperseding(keyAndStore.getFirst(),
+                                     new Versioned<byte[]>(contents, clock),
+                                     supersededClock);
+                response.setHeader(SUPERSEDED_VERSION_EXTENSION, superseded);
+            } else {
+                store.put(keyAndStore.getFirst(), new Versioned<byte[]>(contents, clock));
+            }
         } catch(VoldemortException v) {
             HttpResponseCodeErrorMapper.ResponseCode code = httpResponseCodeErrorMapper.mapErrorToResponseCode(v);
             response.setContentType("text/xml");
@@ -151,6 +214,20 @@ public class StoreServlet extends HttpServlet {
         }
     }
 
+    private static boolean acceptsDeflate(String acceptEncoding) {
+        if(acceptEncoding == null)
+            return false;
+        for(String coding: acceptEncoding.split(",")) {
+            String name = coding.trim();
+            int semicolon = name.indexOf(';');
+            if(semicolon >= 0)
+                name = name.substring(0, semicolon).trim();
+            if(WireCompression.HTTP_CONTENT_ENCODING.equalsIgnoreCase(name))
+                return true;
+        }
+        return false;
+    }
+
     public static String getKey(String url) {
         String[] path = url.split("/");
         return path[path.length - 1];
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.server.socket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import voldemort.VoldemortException;
+import voldemort.client.protocol.ProtoBufUtils;
+import voldemort.client.protocol.WireCompression;
+import voldemort.serialization.VoldemortOpCode;
+import voldemort.store.ErrorCodeMapper;
+import voldemort.store.Store;
+import voldemort.utils.ByteArray;
+import voldemort.utils.Pair;
+import voldemort.versioning.VectorClock;
+import voldemort.versioning.Version;
+import voldemort.versioning.Versioned;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+/**
+ * Handles requests in the protocol buffers format. Each store gets an id the
+ * first time a connection names it, and the id is sent back with that response
+ * so the client can use it instead of the name from then on.
+ */
+public class ProtoBufRequestHandler implements RequestHandler {
+
+    private final DataInputStream inputStream;
+    private final DataOutputStream outputStream;
+    private final ConcurrentMap<String, ? extends Store<ByteArray, byte[]>> storeMap;
+    private final ErrorCodeMapper errorMapper = new ErrorCodeMapper();
+    private final WireCompression compression;
+
+    /* The stores this connection has been given ids for, indexed by id */
+    private final List<String> storeNames = new ArrayList<String>();
+    private final Map<String, Integer> storeIds = new HashMap<String, Integer>();
+
+    public ProtoBufRequestHandler(ConcurrentMap<String, ? extends Store<ByteArray, byte[]>> storeMap,
+                                  DataInputStream inputStream,
+                                  DataOutputStream outputStream) {
+        this(storeMap, inputStream, outputStream, null);
+    }
+
+    /**
+     * @param compression The compression agreed for values on this connection,
+     *        or null for none
+     */
+    public ProtoBufRequestHandler(ConcurrentMap<String, ? extends Store<ByteArray, byte[]>> storeMap,
+                                  DataInputStream inputStream,
+                                  DataOutputStream outputStream,
+                                  WireCompression compression) {
+        this.inputStream = inputStream;
+        this.outputStream = outputStream;
+        this.storeMap = storeMap;
+        this.compression = compression;
+    }
+
+    public void handleRequest() throws IOException {
+        CodedInputStream message = ProtoBufUtils.readMessage(inputStream);
+        int type = -1;
+        String storeName = null;
+        int storeId = -1;
+        ByteArray key = null;
+        byte[] versioned = null;
+        byte[] version = null;
+        List<byte[]> entries = new ArrayList<byte[]>();
+        for(int tag = message.readTag(); tag != 0; tag = message.readTag()) {
+            switch(ProtoBufUtils.getFieldNumber(tag)) {
+                case ProtoBufUtils.REQUEST_TYPE:
+                    type = message.readEnum();
+                    break;
+                case ProtoBufUtils.REQUEST_STORE:
+                    storeName = message.readString();
+                    break;
+                case ProtoBufUtils.REQUEST_STORE_ID:
+                    storeId = message.readInt32();
+                    break;
+                case ProtoBufUtils.REQUEST_KEY:
+                    key = new ByteArray(ProtoBufUtils.readBytes(message));
+                    break;
+                case ProtoBufUtils.REQUEST_VERSIONED:
+                    versioned = ProtoBufUtils.readBytes(message);
+                    break;
+                case ProtoBufUtils.REQUEST_VERSION:
+                    version = ProtoBufUtils.readBytes(message);
+                    break;
+                case ProtoBufUtils.REQUEST_ENTRY:
+                    entries.add(ProtoBufUtils.readBytes(message));
+                    break;
+                default:
+                    message.skipField(tag);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream response = CodedOutputStream.newInstance(bytes);
+        Store<ByteArray, byte[]> store = null;
+        if(storeName != null) {
+            store = storeMap.get(storeName);
+            if(store != null)
+                response.writeInt32(ProtoBufUtils.RESPONSE_STORE_ID, getStoreId(storeName));
+        } else if(storeId >= 0 && storeId < storeNames.size()) {
+            storeName = storeNames.get(storeId);
+            store = storeMap.get(storeName);
+        }
+
+        if(store == null) {
+            writeError(response,
+                       new VoldemortException(storeName == null ? "No store with id " + storeId
+                                                                 + "." : "No store named '"
+                                                                         + storeName + "'."));
+        } else {
+            try {
+                switch(type) {
+                    case VoldemortOpCode.GET_OP_CODE:
+                        handleGet(response, store, required(key, "key"));
+                        break;
+                    case VoldemortOpCode.GET_VERSION_OP_CODE:
+                        handleGetVersion(response, store, required(key, "key"));
+                        break;
+                    case VoldemortOpCode.PUT_OP_CODE:
+                        store.put(required(key, "key"), decodeVersioned(required(versioned,
+                                                                                 "value")));
+                        break;
+                    case VoldemortOpCode.PUT_IF_CURRENT_OP_CODE:
+                        store.putIfCurrent(required(key, "key"),
+                                           decodeVersioned(required(versioned, "value")),
+                                           new VectorClock(required(version, "expected version")));
+                        break;
+                    case VoldemortOpCode.PUT_SUPERSEDING_OP_CODE:
+                        store.putSuperseding(required(key, "key"),
+                                             decodeVersioned(required(versioned, "value")),
+                                             new VectorClock(required(version,
+                                                                      "superseded version")));
+                        break;
+                    case VoldemortOpCode.PUT_ALL_OP_CODE:
+                        handlePutAll(response, store, entries);
+                        break;
+                    case VoldemortOpCode.DELETE_OP_CODE:
+                        boolean succeeded = store.delete(required(key, "key"),
+                                                         new VectorClock(required(version,
+                                                                                  "version")));
+                        response.writeBool(ProtoBufUtils.RESPONSE_SUCCESS, succeeded);
+                        break;
+                    default:
+                        throw new IOException("Unknown op code: " + type);
+                }
+            } catch(VoldemortException e) {
+                writeError(response, e);
+            }
+        }
+        response.flush();
+        ProtoBufUtils.writeMessage(outputStream, bytes);
+        outputStream.flush();
+    }
+
+    private void handleGet(CodedOutputStream response,
+                           Store<ByteArray, byte[]> store,
+                           ByteArray key) throws IOException {
+        List<Versioned<byte[]>> results = store.get(key);
+        for(Versioned<byte[]> versioned: results)
+            ProtoBufUtils.writeBytes(response,
+                                     ProtoBufUtils.RESPONSE_VERSIONED,
+                                     encodeVersioned(versioned));
+    }
+
+    private void handleGetVersion(CodedOutputStream response,
+                                  Store<ByteArray, byte[]> store,
+                                  ByteArray key) throws IOException {
+        List<Version> results = store.getVersions(key);
+        for(Version version: results)
+            ProtoBufUtils.writeBytes(response,
+                                     ProtoBufUtils.RESPONSE_VERSION,
+                                     ((VectorClock) version).toBytes());
+    }
+
+    private void handlePutAll(CodedOutputStream response,
+                              Store<ByteArray, byte[]> store,
+                              List<byte[]> encodedEntries) throws IOException {
+        Map<ByteArray, Versioned<byte[]>> entries = new HashMap<ByteArray, Versioned<byte[]>>(encodedEntries.size());
+        for(byte[] encoded: encodedEntries) {
+            Pair<ByteArray, byte[]> entry = ProtoBufUtils.decodeKeyed(encoded);
+            entries.put(entry.getFirst(), decodeVersioned(entry.getSecond()));
+        }
+        Map<ByteArray, VoldemortException> failures = store.putAll(entries);
+        for(Map.Entry<ByteArray, VoldemortException> failure: failures.entrySet()) {
+            VoldemortException e = failure.getValue();
+            byte[] error = ProtoBufUtils.encodeError(errorMapper.getNearestCode(e),
+                                                     e.getMessage());
+            ProtoBufUtils.writeBytes(response,
+                                     ProtoBufUtils.RESPONSE_KEYED_ERROR,
+                                     ProtoBufUtils.encodeKeyed(failure.getKey(), error));
+        }
+    }
+
+    private byte[] encodeVersioned(Versioned<byte[]> versioned) throws IOException {
+        if(compression != null)
+            versioned = new Versioned<byte[]>(compression.encode(versioned.getValue()),
+                                              versioned.getVersion());
+        return ProtoBufUtils.encodeVersioned(versioned);
+    }
+
+    private Versioned<byte[]> decodeVersioned(byte[] bytes) throws IOException {
+        Versioned<byte[]> versioned = ProtoBufUtils.decodeVersioned(bytes);
+        if(compression == null)
+            return versioned;
+        return new Versioned<byte[]>(compression.decode(versioned.getValue()),
+                                     versioned.getVersion());
+    }
+
+    private void writeError(CodedOutputStream response, VoldemortException e) throws IOException {
+        byte[] error = ProtoBufUtils.encodeError(errorMapper.getNearestCode(e), e.getMessage());
+        ProtoBufUtils.writeBytes(response, ProtoBufUtils.RESPONSE_ERROR, error);
+    }
+
+    private <T> T required(T field, String name) throws IOException {
+        if(field == null)
+            throw new IOException("Request is missing its " + name + ".");
+        return field;
+    }
+
+    private int getStoreId(String storeName) {
+        Integer id = storeIds.get(storeName);
+        if(id == null) {
+            id = storeNames.size();
+            storeNames.add(storeName);
+            storeIds.put(storeName, id);
+        }
+        return id;
+    }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.server.socket;
+
+import java.io.IOException;
+
+/**
+ * The server side of a wire protocol, bound to the streams of one connection
+ */
+public interface RequestHandler {
+
+    /**
+     * Read a single request from the connection, execute it, and write the
+     * response
+     * 
+     * @throws IOException If the connection fails or the request is garbled,
+     *         in which case the connection should be dropped
+     */
+    public void handleRequest() throws IOException;
+
+}
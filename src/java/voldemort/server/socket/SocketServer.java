@@ -27,6 +27,10 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
@@ -40,7 +44,10 @@ import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 
 import voldemort.VoldemortException;
+import voldemort.client.protocol.RequestFormatType;
+import voldemort.client.protocol.WireCompression;
 import voldemort.store.Store;
+import voldemort.store.readonly.RandomAccessFileStore;
 import voldemort.utils.ByteArray;
 
 /**
@@ -57,6 +64,7 @@ public class SocketServer extends Thread {
     private final Random random = new Random();
     private final int port;
     private final ConcurrentMap<String, ? extends Store<ByteArray, byte[]>> storeMap;
+    private final Map<String, RandomAccessFileStore> transferableStores;
     private final ThreadGroup threadGroup;
     private final CountDownLatch isStarted = new CountDownLatch(1);
     private final int socketBufferSize;
@@ -93,6 +101,25 @@ public class SocketServer extends Thread {
                         int defaultThreads,
                         int maxThreads,
                         int socketBufferSize) {
+        this(storeMap,
+             Collections.<String, RandomAccessFileStore> emptyMap(),
+             port,
+             defaultThreads,
+             maxThreads,
+             socketBufferSize);
+    }
+
+    /**
+     * Create a server that sends the values of the given read-only stores
+     * straight from their data files when serving native gets
+     */
+    public SocketServer(ConcurrentMap<String, ? extends Store<ByteArray, byte[]>> storeMap,
+                        Map<String, RandomAccessFileStore> transferableStores,
+                        int port,
+                        int defaultThreads,
+                        int maxThreads,
+                        int socketBufferSize) {
+        this.transferableStores = transferableStores;
         this.port = port;
         this.socketBufferSize = socketBufferSize;
         this.threadGroup = new ThreadGroup("voldemort-socket-server");
@@ -110,7 +137,9 @@ public class SocketServer extends Thread {
     public void run() {
         logger.info("Starting voldemort socket server on port " + port + ".");
         try {
-            serverSocket = new ServerSocket();
+            // opened through a channel so accepted sockets have channels to
+            // transfer file regions to
+            serverSocket = ServerSocketChannel.open().socket();
             serverSocket.bind(new InetSocketAddress(port));
             serverSocket.setReceiveBufferSize(this.socketBufferSize);
             isStarted.countDown();
@@ -126,6 +155,10 @@ public class SocketServer extends Thread {
             // If we have been manually shutdown, ignore
             if(!isInterrupted())
                 logger.error("Error in server: ", e);
+        } catch(ClosedChannelException e) {
+            // the same, but reported by the channel
+            if(!isInterrupted())
+                logger.error("Error in server: ", e);
         } catch(IOException e) {
             throw new VoldemortException(e);
         } finally {
@@ -200,16 +233,19 @@ public class SocketServer extends Thread {
         public void run() {
             try {
                 logger.info("Client " + socket.getRemoteSocketAddress() + " connected.");
-                StreamStoreRequestHandler handler = new StreamStoreRequestHandler(storeMap,
-                                                                                  new DataInputStream(new BufferedInputStream(socket.getInputStream(),
-                                                                                                                              1000)),
-                                                                                  new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
-                                                                                                                                1000)));
+                DataInputStream inputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream(),
+                                                                                          socketBufferSize));
+                DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
+                                                                                              socketBufferSize));
+                RequestHandler handler = negotiate(inputStream, outputStream);
                 while(!Thread.currentThread().isInterrupted()) {
                     handler.handleRequest();
                 }
             } catch(EOFException e) {
                 logger.info("Client " + socket.getRemoteSocketAddress() + " disconnected.");
+            } catch(ClosedChannelException e) {
+                logger.info("Connection to " + socket.getRemoteSocketAddress()
+                            + " closed during shutdown.");
             } catch(IOException e) {
                 logger.error(e);
             } finally {
@@ -220,6 +256,55 @@ public class SocketServer extends Thread {
                 }
             }
         }
+
+        /*
+         * Native requests open with an op code, and protocol buffers requests
+         * with the high byte of their length, neither of which is a letter. So
+         * as long as the next byte is a letter the client is still
+         * negotiating: each three byte code names a request format or asks for
+         * compression. The client is told "ok" for each code we know and "no"
+         * for the rest, which it must do without.
+         */
+        private RequestHandler negotiate(DataInputStream inputStream,
+                                         DataOutputStream outputStream) throws IOException {
+            RequestFormatType type = RequestFormatType.VOLDEMORT_NATIVE;
+            WireCompression compression = null;
+            while(true) {
+                inputStream.mark(1);
+                byte first = inputStream.readByte();
+                inputStream.reset();
+                if(!Character.isLetter((char) first))
+                    break;
+
+                byte[] bytes = new byte[3];
+                inputStream.readFully(bytes);
+                String code = new String(bytes, "UTF-8");
+                boolean known = true;
+                if(WireCompression.DEFLATE_CODE.equals(code)) {
+                    compression = new WireCompression();
+                } else {
+                    try {
+                        type = RequestFormatType.fromCode(code);
+                    } catch(IllegalArgumentException e) {
+                        logger.info("Client " + socket.getRemoteSocketAddress()
+                                    + " asked for unknown protocol option '" + code + "'.");
+                        known = false;
+                    }
+                }
+                outputStream.write((known ? "ok" : "no").getBytes("UTF-8"));
+                outputStream.flush();
+            }
+
+            if(type == RequestFormatType.PROTOCOL_BUFFERS)
+                return new ProtoBufRequestHandler(storeMap, inputStream, outputStream, compression);
+            else
+                return new StreamStoreRequestHandler(storeMap,
+                                                     transferableStores,
+                                                     inputStream,
+                                                     outputStream,
+                                                     socket.getChannel(),
+                                                     compression);
+        }
     }
 
 }
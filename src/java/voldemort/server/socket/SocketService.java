@@ -16,6 +16,8 @@
 
 package voldemort.server.socket;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 
 import voldemort.annotations.jmx.JmxGetter;
@@ -23,6 +25,7 @@ import voldemort.annotations.jmx.JmxManaged;
 import voldemort.server.AbstractService;
 import voldemort.server.VoldemortService;
 import voldemort.store.Store;
+import voldemort.store.readonly.RandomAccessFileStore;
 import voldemort.utils.ByteArray;
 
 /**
@@ -42,8 +45,25 @@ public class SocketService extends AbstractService implements VoldemortService {
                          int coreConnections,
                          int maxConnections,
                          int socketBufferSize) {
+        this(name,
+             storeMap,
+             Collections.<String, RandomAccessFileStore> emptyMap(),
+             port,
+             coreConnections,
+             maxConnections,
+             socketBufferSize);
+    }
+
+    public SocketService(String name,
+                         ConcurrentMap<String, ? extends Store<ByteArray, byte[]>> storeMap,
+                         Map<String, RandomAccessFileStore> transferableStores,
+                         int port,
+                         int coreConnections,
+                         int maxConnections,
+                         int socketBufferSize) {
         super(name);
         this.server = new SocketServer(storeMap,
+                                       transferableStores,
                                        port,
                                        coreConnections,
                                        maxConnections,
@@ -18,46 +18,99 @@ package voldemort.server.socket;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 
 import voldemort.VoldemortException;
+import voldemort.client.protocol.VersionedReader;
+import voldemort.client.protocol.WireCompression;
 import voldemort.serialization.VoldemortOpCode;
 import voldemort.store.ErrorCodeMapper;
 import voldemort.store.Store;
+import voldemort.store.readonly.FileRegionSink;
+import voldemort.store.readonly.RandomAccessFileStore;
 import voldemort.utils.ByteArray;
 import voldemort.utils.ByteUtils;
 import voldemort.utils.StringOutputStream;
 import voldemort.versioning.VectorClock;
+import voldemort.versioning.Version;
 import voldemort.versioning.Versioned;
 
 /**
- * Responsible for interpreting and handling a single request stream
+ * Responsible for interpreting and handling a single request stream in the
+ * native format
  * 
  * @author jay
  * 
  */
-public class StreamStoreRequestHandler {
+public class StreamStoreRequestHandler implements RequestHandler {
 
     private final DataInputStream inputStream;
     private final DataOutputStream outputStream;
     private final ConcurrentMap<String, ? extends Store<ByteArray, byte[]>> storeMap;
+    private final Map<String, RandomAccessFileStore> transferableStores;
+    private final WritableByteChannel channel;
+    private final WireCompression compression;
 
     private ErrorCodeMapper errorMapper = new ErrorCodeMapper();
+    private final VersionedReader versionedReader = new VersionedReader();
 
     public StreamStoreRequestHandler(ConcurrentMap<String, ? extends Store<ByteArray, byte[]>> storeMap,
                                      DataInputStream inputStream,
                                      DataOutputStream outputStream) {
+        this(storeMap,
+             Collections.<String, RandomAccessFileStore> emptyMap(),
+             inputStream,
+             outputStream,
+             null,
+             null);
+    }
+
+    /**
+     * Create a handler that serves gets on the given read-only stores by
+     * transferring their values from the data file straight to the channel
+     * 
+     * @param storeMap The stores to serve
+     * @param transferableStores Read-only stores, by name, whose gets bypass the
+     *        store in storeMap
+     * @param inputStream The request stream
+     * @param outputStream The response stream
+     * @param channel The channel underlying outputStream, or null to disable
+     *        transfers
+     * @param compression The compression agreed for values on this
+     *        connection, or null for none
+     */
+    public StreamStoreRequestHandler(ConcurrentMap<String, ? extends Store<ByteArray, byte[]>> storeMap,
+                                     Map<String, RandomAccessFileStore> transferableStores,
+                                     DataInputStream inputStream,
+                                     DataOutputStream outputStream,
+                                     WritableByteChannel channel,
+                                     WireCompression compression) {
         this.inputStream = inputStream;
         this.outputStream = outputStream;
         this.storeMap = storeMap;
+        this.transferableStores = transferableStores;
+        this.channel = channel;
+        this.compression = compression;
     }
 
     public void handleRequest() throws IOException {
         byte opCode = inputStream.readByte();
         String storeName = inputStream.readUTF();
+        if(opCode == VoldemortOpCode.PUT_ALL_OP_CODE) {
+            // a batch has no single key, each entry carries its own
+            handlePutAll(storeName);
+            outputStream.flush();
+            return;
+        }
         int keySize = inputStream.readInt();
         ByteArray key = new ByteArray(new byte[keySize]);
         ByteUtils.read(inputStream, key.get());
@@ -68,7 +121,11 @@ public class StreamStoreRequestHandler {
         } else {
             switch(opCode) {
                 case VoldemortOpCode.GET_OP_CODE:
-                    handleGet(store, key);
+                    RandomAccessFileStore readOnlyStore = transferableStores.get(storeName);
+                    if(readOnlyStore != null && channel != null)
+                        handleTransferGet(readOnlyStore, key);
+                    else
+                        handleGet(store, key);
                     break;
                 case VoldemortOpCode.PUT_OP_CODE:
                     handlePut(store, key);
@@ -76,6 +133,15 @@ public class StreamStoreRequestHandler {
                 case VoldemortOpCode.DELETE_OP_CODE:
                     handleDelete(store, key);
                     break;
+                case VoldemortOpCode.GET_VERSION_OP_CODE:
+                    handleGetVersion(store, key);
+                    break;
+                case VoldemortOpCode.PUT_IF_CURRENT_OP_CODE:
+                    handlePutIfCurrent(store, key);
+                    break;
+                case VoldemortOpCode.PUT_SUPERSEDING_OP_CODE:
+                    handlePutSuperseding(store, key);
+                    break;
                 default:
                     throw new IOException("Unknown op code: " + opCode);
             }
@@ -96,32 +162,156 @@ public class StreamStoreRequestHandler {
         outputStream.writeInt(results.size());
         for(Versioned<byte[]> v: results) {
             byte[] clock = ((VectorClock) v.getVersion()).toBytes();
-            byte[] value = v.getValue();
+            byte[] value = compression == null ? v.getValue() : compression.encode(v.getValue());
             outputStream.writeInt(clock.length + value.length);
             outputStream.write(clock);
             outputStream.write(value);
         }
     }
 
+    /*
+     * Same response as handleGet, but the value goes from the data file to the
+     * socket without passing through the heap
+     */
+    private void handleTransferGet(RandomAccessFileStore store, ByteArray key)
+            throws IOException {
+        // read-only values are unversioned
+        final byte[] clock = new VectorClock().toBytes();
+        boolean found;
+        try {
+            found = store.transferValue(key, new FileRegionSink() {
+
+                public void transfer(FileChannel data, long position, int size)
+                        throws IOException {
+                    outputStream.writeShort(0);
+                    outputStream.writeInt(1);
+                    if(compression == null) {
+                        outputStream.writeInt(clock.length + size);
+                        outputStream.write(clock);
+                    } else {
+                        // sent raw, compressing would mean reading it in
+                        outputStream.writeInt(clock.length
+                                              + WireCompression.getRawEncodedSize(size));
+                        outputStream.write(clock);
+                        WireCompression.writeRawFlag(outputStream);
+                    }
+                    outputStream.flush();
+                    long transferred = 0;
+                    while(transferred < size) {
+                        long count = data.transferTo(position + transferred,
+                                                     size - transferred,
+                                                     channel);
+                        if(count <= 0)
+                            throw new EOFException("Data file ended " + (size - transferred)
+                                                   + " bytes before the end of a value.");
+                        transferred += count;
+                    }
+                }
+            });
+        } catch(VoldemortException e) {
+            writeException(outputStream, e);
+            return;
+        }
+        if(!found) {
+            outputStream.writeShort(0);
+            outputStream.writeInt(0);
+        }
+    }
+
+    private void handleGetVersion(Store<ByteArray, byte[]> store, ByteArray key)
+            throws IOException {
+        List<Version> results = null;
+        try {
+            results = store.getVersions(key);
+            outputStream.writeShort(0);
+        } catch(VoldemortException e) {
+            writeException(outputStream, e);
+            return;
+        }
+        outputStream.writeInt(results.size());
+        for(Version v: results) {
+            byte[] clock = ((VectorClock) v).toBytes();
+            outputStream.writeInt(clock.length);
+            outputStream.write(clock);
+        }
+    }
+
     private void handlePut(Store<ByteArray, byte[]> store, ByteArray key) throws IOException {
-        int valueSize = inputStream.readInt();
-        byte[] bytes = new byte[valueSize];
-        ByteUtils.read(inputStream, bytes);
-        VectorClock clock = new VectorClock(bytes);
-        byte[] value = ByteUtils.copy(bytes, clock.sizeInBytes(), bytes.length);
+        Versioned<byte[]> versioned = versionedReader.readVersioned(inputStream,
+                                                                    inputStream.readInt(),
+                                                                    compression);
         try {
-            store.put(key, new Versioned<byte[]>(value, clock));
+            store.put(key, versioned);
             outputStream.writeShort(0);
         } catch(VoldemortException e) {
             writeException(outputStream, e);
         }
     }
 
+    private void handlePutIfCurrent(Store<ByteArray, byte[]> store, ByteArray key)
+            throws IOException {
+        Versioned<byte[]> versioned = versionedReader.readVersioned(inputStream,
+                                                                    inputStream.readInt(),
+                                                                    compression);
+        VectorClock expected = versionedReader.readClock(inputStream, inputStream.readShort());
+        try {
+            store.putIfCurrent(key, versioned, expected);
+            outputStream.writeShort(0);
+        } catch(VoldemortException e) {
+            writeException(outputStream, e);
+        }
+    }
+
+    private void handlePutSuperseding(Store<ByteArray, byte[]> store, ByteArray key)
+            throws IOException {
+        Versioned<byte[]> versioned = versionedReader.readVersioned(inputStream,
+                                                                    inputStream.readInt(),
+                                                                    compression);
+        VectorClock superseded = versionedReader.readClock(inputStream, inputStream.readShort());
+        try {
+            store.putSuperseding(key, versioned, superseded);
+            outputStream.writeShort(0);
+        } catch(VoldemortException e) {
+            writeException(outputStream, e);
+        }
+    }
+
+    private void handlePutAll(String storeName) throws IOException {
+        int count = inputStream.readInt();
+        Map<ByteArray, Versioned<byte[]>> entries = new HashMap<ByteArray, Versioned<byte[]>>(count);
+        for(int i = 0; i < count; i++) {
+            ByteArray key = new ByteArray(new byte[inputStream.readInt()]);
+            ByteUtils.read(inputStream, key.get());
+            entries.put(key, versionedReader.readVersioned(inputStream,
+                                                           inputStream.readInt(),
+                                                           compression));
+        }
+        Store<ByteArray, byte[]> store = storeMap.get(storeName);
+        if(store == null) {
+            writeException(outputStream, new VoldemortException("No store named '" + storeName
+                                                                + "'."));
+            return;
+        }
+        Map<ByteArray, VoldemortException> failures = null;
+        try {
+            failures = store.putAll(entries);
+            outputStream.writeShort(0);
+        } catch(VoldemortException e) {
+            writeException(outputStream, e);
+            return;
+        }
+        outputStream.writeInt(failures.size());
+        for(Map.Entry<ByteArray, VoldemortException> failure: failures.entrySet()) {
+            outputStream.writeInt(failure.getKey().length());
+            outputStream.write(failure.getKey().get());
+            outputStream.writeShort(errorMapper.getCode(failure.getValue()));
+            String message = failure.getValue().getMessage();
+            outputStream.writeUTF(message == null ? "" : message);
+        }
+    }
+
     private void handleDelete(Store<ByteArray, byte[]> store, ByteArray key) throws IOException {
-        int versionSize = inputStream.readShort();
-        byte[] versionBytes = new byte[versionSize];
-        ByteUtils.read(inputStream, versionBytes);
-        VectorClock version = new VectorClock(versionBytes);
+        VectorClock version = versionedReader.readClock(inputStream, inputStream.readShort());
         try {
             boolean succeeded = store.delete(key, version);
             outputStream.writeShort(0);
@@ -49,6 +49,11 @@ import voldemort.store.StorageConfiguration;
 import voldemort.store.StorageEngine;
 import voldemort.store.Store;
 import voldemort.store.StoreDefinition;
+import voldemort.store.compress.CompressingStorageEngine;
+import voldemort.store.compress.CompressingStore;
+import voldemort.store.compress.CompressionDefinition;
+import voldemort.store.compress.DictionaryCompressionStrategy;
+import voldemort.store.compress.DictionaryTrainer;
 import voldemort.store.logging.LoggingStore;
 import voldemort.store.metadata.MetadataStore;
 import voldemort.store.readonly.RandomAccessFileStorageConfiguration;
@@ -80,6 +85,8 @@ public class StorageService extends AbstractService {
     private final ConcurrentMap<String, StorageConfiguration> storageConfigurations;
     private final SchedulerService scheduler;
     private final Map<String, RandomAccessFileStore> readOnlyStores;
+    private final Map<String, CompressingStorageEngine<ByteArray>> dictionaryCompressedStores;
+    private final Map<String, DictionaryCompressionStrategy> dictionaries;
     private MetadataStore metadataStore;
     private Store<ByteArray, Slop> slopStore;
 
@@ -95,6 +102,8 @@ public class StorageService extends AbstractService {
         this.storageConfigurations = initStorageConfigurations(config);
         this.metadataStore = new MetadataStore(new File(config.getMetadataDirectory()));
         this.readOnlyStores = new ConcurrentHashMap<String, RandomAccessFileStore>();
+        this.dictionaryCompressedStores = new ConcurrentHashMap<String, CompressingStorageEngine<ByteArray>>();
+        this.dictionaries = new ConcurrentHashMap<String, DictionaryCompressionStrategy>();
     }
 
     private ConcurrentMap<String, StorageConfiguration> initStorageConfigurations(VoldemortConfig config) {
@@ -141,6 +150,12 @@ public class StorageService extends AbstractService {
 
                 /* Now add any store wrappers that are enabled */
                 Store<ByteArray, byte[]> store = engine;
+                if(def.hasValueCompression()) {
+                    if(this.readOnlyStores.containsKey(engine.getName()))
+                        throw new ConfigurationException("Store '" + def.getName()
+                                                         + "' is read-only and cannot be compressed.");
+                    store = openCompressingStore(engine, def);
+                }
                 if(voldemortConfig.isSlopDetectionEnabled()) {
                     RoutingStrategy routingStrategy = new ConsistentRoutingStrategy(cluster.getNodes(),
                                                                                     def.getReplicationFactor());
@@ -162,6 +177,24 @@ public class StorageService extends AbstractService {
         scheduleCleanupJobs(storeDefs, rawEngines);
     }
 
+    private Store<ByteArray, byte[]> openCompressingStore(StorageEngine<ByteArray, byte[]> engine,
+                                                         StoreDefinition def) {
+        CompressionDefinition compression = def.getValueCompression();
+        if(!compression.getType().equals(DictionaryCompressionStrategy.TYPE_NAME))
+            return new CompressingStore<ByteArray>(engine, compression);
+
+        DictionaryCompressionStrategy strategy = new DictionaryCompressionStrategy(def.getName(),
+                                                                                   metadataStore);
+        CompressingStorageEngine<ByteArray> compressed = new CompressingStorageEngine<ByteArray>(engine,
+                                                                                                strategy,
+                                                                                                compression.getMinSize());
+        logger.info("Compressing store '" + def.getName() + "' with dictionary "
+                    + strategy.getCurrentDictionaryId() + ".");
+        this.dictionaries.put(def.getName(), strategy);
+        this.dictionaryCompressedStores.put(def.getName(), compressed);
+        return compressed;
+    }
+
     private void scheduleCleanupJobs(List<StoreDefinition> storeDefs,
                                      Map<String, StorageEngine<ByteArray, byte[]>> engines) {
         // Schedule data retention cleanup jobs
@@ -257,6 +290,24 @@ public class StorageService extends AbstractService {
     // RebalancingJob(voldemortConfig.getNodeId(), this.rawEngines));
     }
 
+    @JmxOperation(impact = MBeanOperationInfo.ACTION, description = "Train a new compression dictionary from a sample of the store's values and compress new values with it.")
+    public int trainCompressionDictionary(String storeName) {
+        DictionaryCompressionStrategy strategy = dictionaries.get(storeName);
+        if(strategy == null)
+            throw new IllegalArgumentException("Store '" + storeName
+                                               + "' does not use dictionary compression.");
+        List<byte[]> samples = DictionaryTrainer.sample(rawEngines.get(storeName).entries(),
+                                                        dictionaryCompressedStores.get(storeName),
+                                                        DictionaryTrainer.DEFAULT_SAMPLE_SIZE);
+        byte[] dictionary = DictionaryTrainer.train(samples,
+                                                    DictionaryTrainer.DEFAULT_DICTIONARY_SIZE);
+        int id = strategy.addDictionary(dictionary);
+        logger.info("Trained compression dictionary " + id + " of " + dictionary.length
+                    + " bytes for store '" + storeName + "' from " + samples.size()
+                    + " values.");
+        return id;
+    }
+
     public StorageConfiguration getStorageConfiguration(String type) {
         return storageConfigurations.get(type);
     }
@@ -265,6 +316,20 @@ public class StorageService extends AbstractService {
         return this.metadataStore;
     }
 
+    public Map<String, StorageEngine<ByteArray, byte[]>> getRawEngines() {
+        return this.rawEngines;
+    }
+
+    /**
+     * Get the engines of the stores compressed with this node's own
+     * dictionaries, wrapped so that values go in and come out uncompressed.
+     * Values must be copied to another node through these, since the other
+     * node may not have the dictionary a stored value names.
+     */
+    public Map<String, CompressingStorageEngine<ByteArray>> getDictionaryCompressedEngines() {
+        return this.dictionaryCompressedStores;
+    }
+
     public Map<String, RandomAccessFileStore> getReadOnlyStores() {
         return this.readOnlyStores;
     }
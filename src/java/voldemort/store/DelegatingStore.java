@@ -60,6 +60,11 @@ public class DelegatingStore<K, V> implements Store<K, V> {
         return innerStore.get(key);
     }
 
+    public List<Version> getVersions(K key) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        return innerStore.getVersions(key);
+    }
+
     public String getName() {
         return innerStore.getName();
     }
@@ -69,6 +74,24 @@ public class DelegatingStore<K, V> implements Store<K, V> {
         innerStore.put(key, value);
     }
 
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<V>> entries)
+            throws VoldemortException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        return innerStore.putAll(entries);
+    }
+
+    public void putIfCurrent(K key, Versioned<V> value, Version expected)
+            throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        innerStore.putIfCurrent(key, value, expected);
+    }
+
+    public void putSuperseding(K key, Versioned<V> value, Version superseded)
+            throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        innerStore.putSuperseding(key, value, superseded);
+    }
+
     public Store<K, V> getInnerStore() {
         return innerStore;
     }
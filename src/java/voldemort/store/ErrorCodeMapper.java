@@ -67,4 +67,17 @@ public class ErrorCodeMapper {
             return code;
     }
 
+    /**
+     * Like {@link #getCode(VoldemortException)}, but an exception without a
+     * code of its own gets the code of its nearest superclass that has one.
+     */
+    public short getNearestCode(VoldemortException e) {
+        for(Class<?> klass = e.getClass(); klass != null; klass = klass.getSuperclass()) {
+            Short code = exceptionToCode.get(klass);
+            if(code != null)
+                return code;
+        }
+        throw new IllegalArgumentException("No mapping code for " + e.getClass());
+    }
+
 }
@@ -16,7 +16,9 @@
 
 package voldemort.store;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import voldemort.VoldemortException;
 import voldemort.routing.RoutingStrategy;
@@ -71,6 +73,45 @@ public class InvalidMetadataCheckingStore extends DelegatingStore<ByteArray, byt
         getInnerStore().put(key, value);
     }
 
+    /**
+     * Keys this node does not hold fail individually, the rest are put.
+     */
+    @Override
+    public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries)
+            throws VoldemortException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        Map<ByteArray, VoldemortException> failures = new HashMap<ByteArray, VoldemortException>();
+        Map<ByteArray, Versioned<byte[]>> valid = new HashMap<ByteArray, Versioned<byte[]>>(entries);
+        for(ByteArray key: entries.keySet()) {
+            try {
+                StoreUtils.assertValidMetadata(key, routingStratgey, node);
+            } catch(InvalidMetadataException e) {
+                failures.put(key, e);
+                valid.remove(key);
+            }
+        }
+        failures.putAll(getInnerStore().putAll(valid));
+        return failures;
+    }
+
+    @Override
+    public void putIfCurrent(ByteArray key, Versioned<byte[]> value, Version expected)
+            throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        StoreUtils.assertValidMetadata(key, routingStratgey, node);
+
+        getInnerStore().putIfCurrent(key, value, expected);
+    }
+
+    @Override
+    public void putSuperseding(ByteArray key, Versioned<byte[]> value, Version superseded)
+            throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        StoreUtils.assertValidMetadata(key, routingStratgey, node);
+
+        getInnerStore().putSuperseding(key, value, superseded);
+    }
+
     @Override
     public List<Versioned<byte[]>> get(ByteArray key) throws VoldemortException {
         StoreUtils.assertValidKey(key);
@@ -79,6 +120,14 @@ public class InvalidMetadataCheckingStore extends DelegatingStore<ByteArray, byt
         return getInnerStore().get(key);
     }
 
+    @Override
+    public List<Version> getVersions(ByteArray key) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        StoreUtils.assertValidMetadata(key, routingStratgey, node);
+
+        return getInnerStore().getVersions(key);
+    }
+
     public RoutingStrategy getRoutingStrategy() {
         return routingStratgey;
     }
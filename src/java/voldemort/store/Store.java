@@ -21,6 +21,7 @@ import java.util.Map;
 
 import voldemort.VoldemortException;
 import voldemort.annotations.concurrency.Threadsafe;
+import voldemort.versioning.ObsoleteVersionException;
 import voldemort.versioning.Version;
 import voldemort.versioning.Versioned;
 
@@ -59,6 +60,18 @@ public interface Store<K, V> {
      */
     public Map<K, List<Versioned<V>>> getAll(Iterable<K> keys) throws VoldemortException;
 
+    /**
+     * Get the versions associated with the given key without fetching the
+     * values. This is what a read-modify-write needs when it will overwrite the
+     * value anyway.
+     * 
+     * @param key The key to check for
+     * @return The versions associated with the key or an empty list if no
+     *         values are found.
+     * @throws VoldemortException
+     */
+    public List<Version> getVersions(K key) throws VoldemortException;
+
     /**
      * Associate the value with the key and version in this store
      * 
@@ -67,6 +80,51 @@ public interface Store<K, V> {
      */
     public void put(K key, Versioned<V> value) throws VoldemortException;
 
+    /**
+     * Associate each value with its key and version. Each entry is put as by
+     * {@link #put(Object, Versioned)}, but the store may apply the batch in a
+     * single request or transaction. A failure for one key does not stop the
+     * others from being put.
+     * 
+     * @param entries The keys to put with their values and versions
+     * @return The keys that could not be put, mapped to the reason. Keys
+     *         absent from the result were put.
+     * @throws VoldemortException If the batch as a whole failed
+     */
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<V>> entries)
+            throws VoldemortException;
+
+    /**
+     * Associate the value with the key, but only if nothing has been written
+     * to the key since the expected version was read. The check and the write
+     * happen atomically in the store, so a read-modify-write does not have to
+     * race other writers.
+     * 
+     * @param key The key to use
+     * @param value The value to store and its version.
+     * @param expected The version the new value was based on. Every version
+     *        currently stored for the key must be before or equal to it; an
+     *        empty clock expects the key to have no value.
+     * @throws ObsoleteVersionException If the key has changed since the
+     *         expected version
+     */
+    public void putIfCurrent(K key, Versioned<V> value, Version expected)
+            throws VoldemortException;
+
+    /**
+     * Associate the value with the key and, in the same operation, remove
+     * every version stored for the key that is before or equal to the
+     * superseded version. Those are removed even if the new version does not
+     * come after them, which lets a value replace the versions it was based on
+     * with a clock that no longer covers them, such as a pruned one.
+     * 
+     * @param key The key to use
+     * @param value The value to store and its version.
+     * @param superseded The version the new value replaces
+     */
+    public void putSuperseding(K key, Versioned<V> value, Version superseded)
+            throws VoldemortException;
+
     /**
      * Delete all entries prior to the given version
      * 
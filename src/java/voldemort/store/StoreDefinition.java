@@ -20,6 +20,8 @@ import java.io.Serializable;
 
 import voldemort.client.RoutingTier;
 import voldemort.serialization.SerializerDefinition;
+import voldemort.store.compress.CompressionDefinition;
+import voldemort.store.routed.ClockPruningDefinition;
 import voldemort.utils.Utils;
 
 import com.google.common.base.Objects;
@@ -45,6 +47,8 @@ public class StoreDefinition implements Serializable {
     private final Integer preferredReads;
     private final int requiredReads;
     private final Integer retentionPeriodDays;
+    private final CompressionDefinition valueCompression;
+    private final ClockPruningDefinition clockPruning;
 
     public StoreDefinition(String name,
                            String type,
@@ -57,6 +61,60 @@ public class StoreDefinition implements Serializable {
                            Integer preferredWrites,
                            int requiredWrites,
                            Integer retentionDays) {
+        this(name,
+             type,
+             keySerializer,
+             valueSerializer,
+             routingPolicy,
+             replicationFactor,
+             preferredReads,
+             requiredReads,
+             preferredWrites,
+             requiredWrites,
+             retentionDays,
+             null);
+    }
+
+    public StoreDefinition(String name,
+                           String type,
+                           SerializerDefinition keySerializer,
+                           SerializerDefinition valueSerializer,
+                           RoutingTier routingPolicy,
+                           int replicationFactor,
+                           Integer preferredReads,
+                           int requiredReads,
+                           Integer preferredWrites,
+                           int requiredWrites,
+                           Integer retentionDays,
+                           CompressionDefinition valueCompression) {
+        this(name,
+             type,
+             keySerializer,
+             valueSerializer,
+             routingPolicy,
+             replicationFactor,
+             preferredReads,
+             requiredReads,
+             preferredWrites,
+             requiredWrites,
+             retentionDays,
+             valueCompression,
+             null);
+    }
+
+    public StoreDefinition(String name,
+                           String type,
+                           SerializerDefinition keySerializer,
+                           SerializerDefinition valueSerializer,
+                           RoutingTier routingPolicy,
+                           int replicationFactor,
+                           Integer preferredReads,
+                           int requiredReads,
+                           Integer preferredWrites,
+                           int requiredWrites,
+                           Integer retentionDays,
+                           CompressionDefinition valueCompression,
+                           ClockPruningDefinition clockPruning) {
         this.name = Utils.notNull(name);
         this.type = Utils.notNull(type);
         this.replicationFactor = replicationFactor;
@@ -68,6 +126,8 @@ public class StoreDefinition implements Serializable {
         this.keySerializer = Utils.notNull(keySerializer);
         this.valueSerializer = Utils.notNull(valueSerializer);
         this.retentionPeriodDays = retentionDays;
+        this.valueCompression = valueCompression;
+        this.clockPruning = clockPruning;
         checkParameterLegality();
     }
 
@@ -147,6 +207,30 @@ public class StoreDefinition implements Serializable {
         return this.retentionPeriodDays;
     }
 
+    public boolean hasValueCompression() {
+        return this.valueCompression != null;
+    }
+
+    /**
+     * The compression applied to values by the server before storing them, or
+     * null if they are stored as they are
+     */
+    public CompressionDefinition getValueCompression() {
+        return this.valueCompression;
+    }
+
+    public boolean hasClockPruning() {
+        return this.clockPruning != null;
+    }
+
+    /**
+     * The pruning applied to vector clocks when routed puts are written, or
+     * null if clocks are never pruned
+     */
+    public ClockPruningDefinition getClockPruning() {
+        return this.clockPruning;
+    }
+
     @Override
     public boolean equals(Object o) {
         if(this == o)
@@ -166,7 +250,9 @@ public class StoreDefinition implements Serializable {
                && getKeySerializer().equals(def.getKeySerializer())
                && getValueSerializer().equals(def.getValueSerializer())
                && getRoutingPolicy() == def.getRoutingPolicy()
-               && Objects.equal(getRetentionDays(), def.getRetentionDays());
+               && Objects.equal(getRetentionDays(), def.getRetentionDays())
+               && Objects.equal(getValueCompression(), def.getValueCompression())
+               && Objects.equal(getClockPruning(), def.getClockPruning());
     }
 
     @Override
@@ -181,6 +267,8 @@ public class StoreDefinition implements Serializable {
                                 getRequiredWrites(),
                                 getPreferredReads(),
                                 getPreferredWrites(),
-                                getRetentionDays());
+                                getRetentionDays(),
+                                getValueCompression(),
+                                getClockPruning());
     }
 }
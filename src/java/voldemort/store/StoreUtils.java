@@ -18,6 +18,7 @@ package voldemort.store;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -26,12 +27,16 @@ import java.util.Map;
 
 import org.apache.log4j.Logger;
 
+import voldemort.VoldemortException;
 import voldemort.cluster.Node;
 import voldemort.routing.RoutingStrategy;
 import voldemort.serialization.Serializer;
 import voldemort.serialization.SerializerDefinition;
 import voldemort.serialization.SerializerFactory;
 import voldemort.utils.ByteArray;
+import voldemort.versioning.ObsoleteVersionException;
+import voldemort.versioning.Occured;
+import voldemort.versioning.Version;
 import voldemort.versioning.Versioned;
 
 import com.google.common.collect.Maps;
@@ -83,6 +88,65 @@ public class StoreUtils {
         return result;
     }
 
+    /**
+     * Implements getVersions by delegating to get, for stores that have no
+     * cheaper way to find the versions.
+     */
+    public static <K, V> List<Version> getVersions(Store<K, V> storageEngine, K key) {
+        return getVersions(storageEngine.get(key));
+    }
+
+    /**
+     * Get the versions of the given versioned values
+     */
+    public static <V> List<Version> getVersions(List<Versioned<V>> versioneds) {
+        List<Version> versions = new ArrayList<Version>(versioneds.size());
+        for(Versioned<V> versioned: versioneds)
+            versions.add(versioned.getVersion());
+        return versions;
+    }
+
+    /**
+     * Implements putAll by putting each entry in turn, for stores that have no
+     * cheaper way to apply a batch.
+     */
+    public static <K, V> Map<K, VoldemortException> putAll(Store<K, V> store,
+                                                           Map<K, Versioned<V>> entries) {
+        Map<K, VoldemortException> failures = new HashMap<K, VoldemortException>();
+        for(Map.Entry<K, Versioned<V>> entry: entries.entrySet()) {
+            try {
+                store.put(entry.getKey(), entry.getValue());
+            } catch(VoldemortException e) {
+                failures.put(entry.getKey(), e);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Check a version stored for a key against the version a conditional put
+     * was based on.
+     * 
+     * @throws ObsoleteVersionException If the stored version is later than or
+     *         concurrent with the expected one
+     */
+    public static void assertCurrent(Object key, Version current, Version expected) {
+        if(current.compare(expected) != Occured.BEFORE)
+            throw new ObsoleteVersionException("Key '" + key + "' has changed, current version is "
+                                               + current + " but " + expected + " was expected.");
+    }
+
+    /**
+     * Check whether a superseding put replaces a version stored for a key
+     * 
+     * @param current The stored version
+     * @param superseded The version the put supersedes, or null if the put
+     *        does not supersede any
+     */
+    public static boolean isSuperseded(Version current, Version superseded) {
+        return superseded != null && current.compare(superseded) == Occured.BEFORE;
+    }
+
     /**
      * Returns an empty map with expected size matching the iterable size if
      * it's of type Collection. Otherwise, an empty map with the default size is
@@ -19,6 +19,9 @@ package voldemort.store.bdb;
 import static voldemort.utils.Utils.assertNotNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -61,6 +64,8 @@ public class BdbStorageEngine implements StorageEngine<ByteArray, byte[]> {
 
     private static final Logger logger = Logger.getLogger(BdbStorageEngine.class);
     private static final Hex hexCodec = new Hex();
+    // the entry count and entry size that begin every serialized vector clock
+    private static final int CLOCK_HEADER_SIZE = ByteUtils.SIZE_OF_SHORT + 1;
 
     private final String name;
     private final Database bdbDatabase;
@@ -97,7 +102,7 @@ public class BdbStorageEngine implements StorageEngine<ByteArray, byte[]> {
         ByteUtils.writeShort(keyBytes, (short) key.length, 0);
         System.arraycopy(key, 0, keyBytes, 2, key.length);
         if(clock != null)
-            System.arraycopy(clock.toBytes(), 0, keyBytes, key.length + 2, clockSize);
+            clock.toBytes(keyBytes, key.length + 2);
         return keyBytes;
     }
 
@@ -114,7 +119,7 @@ public class BdbStorageEngine implements StorageEngine<ByteArray, byte[]> {
         if(size >= bytes.length - 2)
             return null;
         else
-            return new VectorClock(ByteUtils.copy(bytes, size + 2, bytes.length));
+            return new VectorClock(bytes, size + 2);
     }
 
     static boolean isPrefix(byte[] prefix, byte[] complete) {
@@ -193,45 +198,115 @@ public class BdbStorageEngine implements StorageEngine<ByteArray, byte[]> {
         return results;
     }
 
+    /**
+     * Read only the clock at the front of each record rather than the whole
+     * value: first the fixed-size clock header, which gives the clock's length,
+     * then the clock itself.
+     */
+    public List<Version> getVersions(ByteArray key) throws PersistenceFailureException {
+        StoreUtils.assertValidKey(key);
+        Cursor cursor = null;
+        try {
+            cursor = bdbDatabase.openCursor(null, null);
+            DatabaseEntry keyEntry = new DatabaseEntry(key.get());
+            DatabaseEntry valueEntry = new DatabaseEntry();
+            valueEntry.setPartial(0, CLOCK_HEADER_SIZE, true);
+            List<Version> results = new ArrayList<Version>();
+            for(OperationStatus status = cursor.getSearchKey(keyEntry,
+                                                             valueEntry,
+                                                             LockMode.READ_UNCOMMITTED); status == OperationStatus.SUCCESS; status = cursor.getNextDup(keyEntry,
+                                                                                                                                                       valueEntry,
+                                                                                                                                                       LockMode.READ_UNCOMMITTED)) {
+                byte[] header = valueEntry.getData();
+                int numEntries = ByteUtils.readShort(header, 0);
+                int clockSize = CLOCK_HEADER_SIZE + numEntries
+                                * (ByteUtils.SIZE_OF_SHORT + header[ByteUtils.SIZE_OF_SHORT])
+                                + ByteUtils.SIZE_OF_LONG;
+                DatabaseEntry clockEntry = new DatabaseEntry();
+                clockEntry.setPartial(0, clockSize, true);
+                if(cursor.getCurrent(keyEntry, clockEntry, LockMode.READ_UNCOMMITTED) == OperationStatus.SUCCESS)
+                    results.add(new VectorClock(clockEntry.getData()));
+            }
+            return results;
+        } catch(DatabaseException e) {
+            throw new PersistenceFailureException(e);
+        } finally {
+            attemptClose(cursor);
+        }
+    }
+
     public void put(ByteArray key, Versioned<byte[]> value) throws PersistenceFailureException {
+        put(key, value, false, null, null);
+    }
+
+    public void putIfCurrent(ByteArray key, Versioned<byte[]> value, Version expected)
+            throws PersistenceFailureException {
+        put(key, value, true, expected, null);
+    }
+
+    public void putSuperseding(ByteArray key, Versioned<byte[]> value, Version superseded)
+            throws PersistenceFailureException {
+        put(key, value, false, null, superseded);
+    }
+
+    private void put(ByteArray key,
+                     Versioned<byte[]> value,
+                     boolean conditional,
+                     Version expected,
+                     Version superseded) throws PersistenceFailureException {
         StoreUtils.assertValidKey(key);
 
-        DatabaseEntry keyEntry = new DatabaseEntry(key.get());
         boolean succeeded = false;
         Transaction transaction = null;
         Cursor cursor = null;
         try {
             transaction = this.environment.beginTransaction(null, null);
-
-            // Check existing values
-            // if there is a version obsoleted by this value delete it
-            // if there is a version later than this one, throw an exception
-            DatabaseEntry valueEntry = new DatabaseEntry();
             cursor = bdbDatabase.openCursor(transaction, null);
-            for(OperationStatus status = cursor.getSearchKey(keyEntry, valueEntry, LockMode.RMW); status == OperationStatus.SUCCESS; status = cursor.getNextDup(keyEntry,
-                                                                                                                                                                valueEntry,
-                                                                                                                                                                LockMode.RMW)) {
-                VectorClock clock = new VectorClock(valueEntry.getData());
-                Occured occured = value.getVersion().compare(clock);
-                if(occured == Occured.BEFORE)
-                    throw new ObsoleteVersionException("Key '"
-                                                       + new String(hexCodec.encode(key.get()))
-                                                       + "' " + value.getVersion().toString()
-                                                       + " is obsolete," + " current version is "
-                                                       + clock + ".");
-                else if(occured == Occured.AFTER)
-                    // best effort delete of obsolete previous value!
-                    cursor.delete();
+            put(cursor, key, value, conditional, expected, superseded);
+            succeeded = true;
+        } catch(DatabaseException e) {
+            throw new PersistenceFailureException(e);
+        } finally {
+            attemptClose(cursor);
+            if(succeeded)
+                attemptCommit(transaction);
+            else
+                attemptAbort(transaction);
+        }
+    }
+
+    /**
+     * Put the whole batch in one transaction. Keys are written in sorted order
+     * so that concurrent batches take their locks in the same order. A key
+     * whose version is obsolete is left untouched and reported, the others
+     * commit together.
+     */
+    public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries)
+            throws PersistenceFailureException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        List<ByteArray> keys = new ArrayList<ByteArray>(entries.keySet());
+        Collections.sort(keys, new Comparator<ByteArray>() {
+
+            public int compare(ByteArray k1, ByteArray k2) {
+                return ByteUtils.compare(k1.get(), k2.get());
             }
+        });
 
-            // Okay so we cleaned up all the prior stuff, so now we are good to
-            // in
-            valueEntry = new DatabaseEntry(serializer.toBytes(value));
-            OperationStatus status = cursor.put(keyEntry, valueEntry);
-            if(status != OperationStatus.SUCCESS)
-                throw new PersistenceFailureException("Put operation failed with status: " + status);
+        Map<ByteArray, VoldemortException> failures = new HashMap<ByteArray, VoldemortException>();
+        boolean succeeded = false;
+        Transaction transaction = null;
+        Cursor cursor = null;
+        try {
+            transaction = this.environment.beginTransaction(null, null);
+            cursor = bdbDatabase.openCursor(transaction, null);
+            for(ByteArray key: keys) {
+                try {
+                    put(cursor, key, entries.get(key), false, null, null);
+                } catch(ObsoleteVersionException e) {
+                    failures.put(key, e);
+                }
+            }
             succeeded = true;
-
         } catch(DatabaseException e) {
             throw new PersistenceFailureException(e);
         } finally {
@@ -241,6 +316,73 @@ public class BdbStorageEngine implements StorageEngine<ByteArray, byte[]> {
             else
                 attemptAbort(transaction);
         }
+        return failures;
+    }
+
+    /*
+     * Put the value within the cursor's transaction. All the existing versions
+     * are checked before any is deleted, so a put that fails leaves the key as
+     * it was and a batch can carry on with the next key.
+     */
+    private void put(Cursor cursor,
+                     ByteArray key,
+                     Versioned<byte[]> value,
+                     boolean conditional,
+                     Version expected,
+                     Version superseded) throws DatabaseException {
+        // Check existing values
+        // if there is a version later than this one, throw an exception
+        DatabaseEntry keyEntry = new DatabaseEntry(key.get());
+        DatabaseEntry valueEntry = new DatabaseEntry();
+        // compare against the stored clocks without deserializing them
+        byte[] version = ((VectorClock) value.getVersion()).toBytes();
+        byte[] supersededVersion = superseded == null ? null
+                                                      : ((VectorClock) superseded).toBytes();
+        boolean obsoletes = false;
+        for(OperationStatus status = cursor.getSearchKey(keyEntry, valueEntry, LockMode.RMW); status == OperationStatus.SUCCESS; status = cursor.getNextDup(keyEntry,
+                                                                                                                                                            valueEntry,
+                                                                                                                                                            LockMode.RMW)) {
+            byte[] data = valueEntry.getData();
+            // the RMW lock holds this key until the put commits
+            if(conditional)
+                StoreUtils.assertCurrent(key, new VectorClock(data), expected);
+            if(isSuperseded(data, supersededVersion)) {
+                obsoletes = true;
+                continue;
+            }
+            Occured occured = VectorClock.compare(version, 0, data, 0);
+            if(occured == Occured.BEFORE)
+                throw new ObsoleteVersionException("Key '" + new String(hexCodec.encode(key.get()))
+                                                   + "' " + value.getVersion().toString()
+                                                   + " is obsolete," + " current version is "
+                                                   + new VectorClock(data) + ".");
+            else if(occured == Occured.AFTER)
+                obsoletes = true;
+        }
+
+        // if there is a version obsoleted by this value delete it
+        if(obsoletes) {
+            for(OperationStatus status = cursor.getSearchKey(keyEntry, valueEntry, LockMode.RMW); status == OperationStatus.SUCCESS; status = cursor.getNextDup(keyEntry,
+                                                                                                                                                                valueEntry,
+                                                                                                                                                                LockMode.RMW)) {
+                byte[] data = valueEntry.getData();
+                if(isSuperseded(data, supersededVersion)
+                   || VectorClock.compare(version, 0, data, 0) == Occured.AFTER)
+                    cursor.delete();
+            }
+        }
+
+        // Okay so we cleaned up all the prior stuff, so now we are good to
+        // in
+        valueEntry = new DatabaseEntry(serializer.toBytes(value));
+        OperationStatus status = cursor.put(keyEntry, valueEntry);
+        if(status != OperationStatus.SUCCESS)
+            throw new PersistenceFailureException("Put operation failed with status: " + status);
+    }
+
+    private boolean isSuperseded(byte[] data, byte[] supersededVersion) {
+        return supersededVersion != null
+               && VectorClock.compare(data, 0, supersededVersion, 0) == Occured.BEFORE;
     }
 
     public boolean delete(ByteArray key, Version version) throws PersistenceFailureException {
@@ -253,11 +395,11 @@ public class BdbStorageEngine implements StorageEngine<ByteArray, byte[]> {
             DatabaseEntry keyEntry = new DatabaseEntry(key.get());
             DatabaseEntry valueEntry = new DatabaseEntry();
             cursor = bdbDatabase.openCursor(transaction, null);
+            byte[] versionBytes = ((VectorClock) version).toBytes();
             for(OperationStatus status = cursor.getSearchKey(keyEntry, valueEntry, null); status == OperationStatus.SUCCESS; status = cursor.getNextDup(keyEntry,
                                                                                                                                                         valueEntry,
                                                                                                                                                         null)) {
-                // if version is null no comparison is necessary
-                if(new VectorClock(valueEntry.getData()).compare(version) == Occured.BEFORE) {
+                if(VectorClock.compare(valueEntry.getData(), 0, versionBytes, 0) == Occured.BEFORE) {
                     cursor.delete();
                     deletedSomething = true;
                 }
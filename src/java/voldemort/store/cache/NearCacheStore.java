@@ -0,0 +1,347 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.store.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import voldemort.VoldemortException;
+import voldemort.annotations.concurrency.Threadsafe;
+import voldemort.store.DelegatingStore;
+import voldemort.store.Store;
+import voldemort.store.StoreUtils;
+import voldemort.utils.Time;
+import voldemort.utils.Utils;
+import voldemort.versioning.Version;
+import voldemort.versioning.Versioned;
+
+/**
+ * A bounded, least-recently-used cache of get results in front of another
+ * store. Entries live for a fixed time and are invalidated by any put or
+ * delete made through this store; changes made by other clients are seen only
+ * once the entry expires. Versions are always read from the inner store.
+ * 
+ * Cached versions are copied on the way out, since the routing layer
+ * increments the clock of the value it is given on put.
+ * 
+ * A value fetched from the inner store is only cached if no put or delete of
+ * its key was made while it was being fetched. Writes are tracked by a
+ * generation per stripe of keys, so writes to unrelated keys rarely get in the
+ * way.
+ * 
+ * If revalidation is enabled an expired entry is not simply refetched: only
+ * the versions of the key are read, and if they still match the cached ones
+ * the entry is renewed without transferring the value again.
+ * 
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+@Threadsafe
+public class NearCacheStore<K, V> extends DelegatingStore<K, V> {
+
+    private static final int INVALIDATION_STRIPES = 1024;
+
+    private final Map<K, CacheEntry<V>> cache;
+    private final long ttlMs;
+    private final boolean revalidate;
+    private final Time time;
+    private final AtomicLongArray invalidations;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong revalidations;
+
+    /**
+     * Create a NearCacheStore
+     * 
+     * @param innerStore The store to cache
+     * @param maxEntries The most keys to cache, the least recently used are
+     *        evicted beyond this
+     * @param ttlMs How long an entry may be served from the cache
+     * @param revalidate If true check the versions of expired entries before
+     *        fetching the values again
+     * @param time The time implementation
+     */
+    public NearCacheStore(Store<K, V> innerStore,
+                          final int maxEntries,
+                          long ttlMs,
+                          boolean revalidate,
+                          Time time) {
+        super(innerStore);
+        if(maxEntries < 1)
+            throw new IllegalArgumentException("maxEntries must be at least 1.");
+        this.cache = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.ttlMs = ttlMs;
+        this.revalidate = revalidate;
+        this.time = Utils.notNull(time);
+        this.invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+        this.hits = new AtomicLong(0);
+        this.misses = new AtomicLong(0);
+        this.revalidations = new AtomicLong(0);
+    }
+
+    @Override
+    public List<Versioned<V>> get(K key) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        List<Versioned<V>> cached = getCached(key);
+        if(cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        long generation = getGeneration(key);
+        if(revalidate) {
+            List<Versioned<V>> revalidated = revalidate(key, generation);
+            if(revalidated != null)
+                return revalidated;
+        }
+        List<Versioned<V>> found = getInnerStore().get(key);
+        cache(key, found, generation);
+        return copy(found);
+    }
+
+    /*
+     * Versions are never served from the cache: clients build the clock of a
+     * write from them, and a stale one would make the write obsolete
+     */
+    @Override
+    public List<Version> getVersions(K key) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        return getInnerStore().getVersions(key);
+    }
+
+    @Override
+    public Map<K, List<Versioned<V>>> getAll(Iterable<K> keys) throws VoldemortException {
+        StoreUtils.assertValidKeys(keys);
+        Map<K, List<Versioned<V>>> result = StoreUtils.newEmptyHashMap(keys);
+        List<K> missing = new ArrayList<K>();
+        for(K key: keys) {
+            List<Versioned<V>> cached = getCached(key);
+            if(cached == null)
+                missing.add(key);
+            else
+                result.put(key, cached);
+        }
+        hits.addAndGet(result.size());
+        misses.addAndGet(missing.size());
+        if(missing.size() > 0) {
+            long[] generations = new long[missing.size()];
+            for(int i = 0; i < generations.length; i++)
+                generations[i] = getGeneration(missing.get(i));
+            Map<K, List<Versioned<V>>> found = getInnerStore().getAll(missing);
+            for(int i = 0; i < generations.length; i++) {
+                K key = missing.get(i);
+                List<Versioned<V>> values = found.get(key);
+                // a key that is absent from the result has no values
+                if(values == null)
+                    values = new ArrayList<Versioned<V>>(0);
+                cache(key, values, generations[i]);
+                if(values.size() > 0)
+                    result.put(key, copy(values));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void put(K key, Versioned<V> value) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        try {
+            getInnerStore().put(key, value);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<V>> entries)
+            throws VoldemortException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        try {
+            return getInnerStore().putAll(entries);
+        } finally {
+            for(K key: entries.keySet())
+                invalidate(key);
+        }
+    }
+
+    @Override
+    public void putIfCurrent(K key, Versioned<V> value, Version expected)
+            throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        try {
+            getInnerStore().putIfCurrent(key, value, expected);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public void putSuperseding(K key, Versioned<V> value, Version superseded)
+            throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        try {
+            getInnerStore().putSuperseding(key, value, superseded);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public boolean delete(K key, Version version) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        try {
+            return getInnerStore().delete(key, version);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public void close() throws VoldemortException {
+        clear();
+        super.close();
+    }
+
+    /**
+     * Remove everything from the cache
+     */
+    public void clear() {
+        synchronized(cache) {
+            for(int i = 0; i < INVALIDATION_STRIPES; i++)
+                invalidations.incrementAndGet(i);
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized(cache) {
+            return cache.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of expired entries renewed without refetching the
+     *         value
+     */
+    public long getRevalidationCount() {
+        return revalidations.get();
+    }
+
+    private List<Versioned<V>> getCached(K key) {
+        CacheEntry<V> entry;
+        synchronized(cache) {
+            entry = cache.get(key);
+            if(entry == null)
+                return null;
+            if(time.getMilliseconds() >= entry.expiresMs) {
+                // keep expired entries around to revalidate
+                if(!revalidate)
+                    cache.remove(key);
+                return null;
+            }
+        }
+        return copy(entry.values);
+    }
+
+    /*
+     * Renew an expired entry if its versions have not changed, returns null if
+     * there is no entry or it is out of date
+     */
+    private List<Versioned<V>> revalidate(K key, long generation) {
+        CacheEntry<V> entry;
+        synchronized(cache) {
+            entry = cache.get(key);
+        }
+        if(entry == null)
+            return null;
+        List<Version> current = getInnerStore().getVersions(key);
+        List<Version> cached = StoreUtils.getVersions(entry.values);
+        if(current.size() != cached.size() || !current.containsAll(cached))
+            return null;
+        revalidations.incrementAndGet();
+        cache(key, entry.values, generation);
+        return copy(entry.values);
+    }
+
+    /*
+     * Only cache the result if the key was not invalidated while it was being
+     * fetched, otherwise a concurrent put could be hidden by an older value
+     */
+    private void cache(K key, List<Versioned<V>> values, long generation) {
+        CacheEntry<V> entry = new CacheEntry<V>(copy(values), time.getMilliseconds() + ttlMs);
+        synchronized(cache) {
+            if(getGeneration(key) == generation)
+                cache.put(key, entry);
+        }
+    }
+
+    private void invalidate(K key) {
+        synchronized(cache) {
+            invalidations.incrementAndGet(getStripe(key));
+            cache.remove(key);
+        }
+    }
+
+    private long getGeneration(K key) {
+        return invalidations.get(getStripe(key));
+    }
+
+    private int getStripe(K key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (INVALIDATION_STRIPES - 1);
+    }
+
+    private List<Versioned<V>> copy(List<Versioned<V>> values) {
+        List<Versioned<V>> copies = new ArrayList<Versioned<V>>(values.size());
+        for(Versioned<V> versioned: values)
+            copies.add(versioned.cloneVersioned());
+        return copies;
+    }
+
+    private static final class CacheEntry<V> {
+
+        private final List<Versioned<V>> values;
+        private final long expiresMs;
+
+        public CacheEntry(List<Versioned<V>> values, long expiresMs) {
+            this.values = values;
+            this.expiresMs = expiresMs;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.compress;
+
+import voldemort.store.StorageEngine;
+import voldemort.utils.ClosableIterator;
+import voldemort.utils.Pair;
+import voldemort.utils.Utils;
+import voldemort.versioning.Versioned;
+
+/**
+ * A StorageEngine that compresses values on the way in and decompresses them
+ * on the way out, including those returned by {@link #entries()}
+ * 
+ * @param <K> The key type
+ */
+public class CompressingStorageEngine<K> extends CompressingStore<K> implements
+        StorageEngine<K, byte[]> {
+
+    private final StorageEngine<K, byte[]> storageEngine;
+
+    public CompressingStorageEngine(StorageEngine<K, byte[]> innerStorageEngine,
+                                    CompressionStrategy strategy,
+                                    int minSize) {
+        super(innerStorageEngine, strategy, minSize);
+        this.storageEngine = Utils.notNull(innerStorageEngine);
+    }
+
+    public ClosableIterator<Pair<K, Versioned<byte[]>>> entries() {
+        return new InflatingClosableIterator(storageEngine.entries());
+    }
+
+    private class InflatingClosableIterator implements ClosableIterator<Pair<K, Versioned<byte[]>>> {
+
+        private final ClosableIterator<Pair<K, Versioned<byte[]>>> iterator;
+
+        public InflatingClosableIterator(ClosableIterator<Pair<K, Versioned<byte[]>>> iterator) {
+            this.iterator = iterator;
+        }
+
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        public Pair<K, Versioned<byte[]>> next() {
+            Pair<K, Versioned<byte[]>> keyAndVal = iterator.next();
+            if(keyAndVal == null)
+                return null;
+            Versioned<byte[]> versioned = keyAndVal.getSecond();
+            return Pair.create(keyAndVal.getFirst(),
+                               new Versioned<byte[]>(inflate(versioned.getValue()),
+                                                     versioned.getVersion()));
+        }
+
+        public void remove() {
+            iterator.remove();
+        }
+
+        public void close() {
+            iterator.close();
+        }
+    }
+
+}
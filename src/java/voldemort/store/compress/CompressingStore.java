@@ -0,0 +1,158 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.compress;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import voldemort.VoldemortException;
+import voldemort.store.DelegatingStore;
+import voldemort.store.Store;
+import voldemort.utils.ByteUtils;
+import voldemort.versioning.Version;
+import voldemort.versioning.Versioned;
+
+/**
+ * A Store decorator that compresses values on the way in and decompresses
+ * them on the way out.
+ * 
+ * Every stored value starts with a header byte naming the codec used, so a
+ * store can be read whatever codec wrote it. Values smaller than the minimum
+ * size, or that do not get smaller, are stored with a {@link #RAW_ID} header.
+ * Compressed values follow the header with their original length. Since every
+ * value carries a header, compression must be enabled on an empty store.
+ */
+public class CompressingStore<K> extends DelegatingStore<K, byte[]> {
+
+    public static final byte RAW_ID = 0;
+
+    private static final int HEADER_SIZE = 1 + 4;
+
+    private final CompressionStrategy strategy;
+    private final int minSize;
+    private final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>();
+
+    public CompressingStore(Store<K, byte[]> innerStore, CompressionStrategy strategy, int minSize) {
+        super(innerStore);
+        this.strategy = strategy;
+        this.minSize = minSize;
+    }
+
+    public CompressingStore(Store<K, byte[]> innerStore, CompressionDefinition definition) {
+        this(innerStore,
+             CompressionStrategyFactory.get(definition.getType()),
+             definition.getMinSize());
+    }
+
+    @Override
+    public List<Versioned<byte[]>> get(K key) throws VoldemortException {
+        return inflate(super.get(key));
+    }
+
+    @Override
+    public Map<K, List<Versioned<byte[]>>> getAll(Iterable<K> keys) throws VoldemortException {
+        Map<K, List<Versioned<byte[]>>> found = super.getAll(keys);
+        Map<K, List<Versioned<byte[]>>> results = new HashMap<K, List<Versioned<byte[]>>>(found.size());
+        for(Map.Entry<K, List<Versioned<byte[]>>> entry: found.entrySet())
+            results.put(entry.getKey(), inflate(entry.getValue()));
+        return results;
+    }
+
+    @Override
+    public void put(K key, Versioned<byte[]> value) throws VoldemortException {
+        super.put(key, deflate(value));
+    }
+
+    @Override
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<byte[]>> entries)
+            throws VoldemortException {
+        Map<K, Versioned<byte[]>> deflated = new HashMap<K, Versioned<byte[]>>(entries.size());
+        for(Map.Entry<K, Versioned<byte[]>> entry: entries.entrySet())
+            deflated.put(entry.getKey(), deflate(entry.getValue()));
+        return super.putAll(deflated);
+    }
+
+    @Override
+    public void putIfCurrent(K key, Versioned<byte[]> value, Version expected)
+            throws VoldemortException {
+        super.putIfCurrent(key, deflate(value), expected);
+    }
+
+    @Override
+    public void putSuperseding(K key, Versioned<byte[]> value, Version superseded)
+            throws VoldemortException {
+        super.putSuperseding(key, deflate(value), superseded);
+    }
+
+    private List<Versioned<byte[]>> inflate(List<Versioned<byte[]>> found) {
+        List<Versioned<byte[]>> results = new ArrayList<Versioned<byte[]>>(found.size());
+        for(Versioned<byte[]> item: found)
+            results.add(new Versioned<byte[]>(inflate(item.getValue()), item.getVersion()));
+        return results;
+    }
+
+    private Versioned<byte[]> deflate(Versioned<byte[]> versioned) {
+        return new Versioned<byte[]>(deflate(versioned.getValue()), versioned.getVersion());
+    }
+
+    byte[] deflate(byte[] value) {
+        if(value.length >= minSize) {
+            int maxSize = HEADER_SIZE + strategy.getMaxCompressedLength(value.length);
+            byte[] buffer = buffers.get();
+            if(buffer == null || buffer.length < maxSize) {
+                buffer = new byte[maxSize];
+                buffers.set(buffer);
+            }
+            int size = HEADER_SIZE + strategy.compress(value, buffer, HEADER_SIZE);
+            if(size < value.length) {
+                buffer[0] = strategy.getId();
+                ByteUtils.writeInt(buffer, value.length, 1);
+                byte[] compressed = new byte[size];
+                System.arraycopy(buffer, 0, compressed, 0, size);
+                return compressed;
+            }
+        }
+        byte[] raw = new byte[value.length + 1];
+        raw[0] = RAW_ID;
+        System.arraycopy(value, 0, raw, 1, value.length);
+        return raw;
+    }
+
+    byte[] inflate(byte[] stored) {
+        if(stored.length == 0)
+            throw new VoldemortException("Stored value has no compression header.");
+        byte id = stored[0];
+        if(id == RAW_ID) {
+            byte[] value = new byte[stored.length - 1];
+            System.arraycopy(stored, 1, value, 0, value.length);
+            return value;
+        }
+        if(stored.length < HEADER_SIZE)
+            throw new VoldemortException("Compressed value is truncated.");
+        int size = ByteUtils.readInt(stored, 1);
+        if(size < 0)
+            throw new VoldemortException("Compressed value has a negative length.");
+        byte[] value = new byte[size];
+        CompressionStrategy codec = id == strategy.getId() ? strategy
+                                                          : CompressionStrategyFactory.get(id);
+        codec.decompress(stored, HEADER_SIZE, stored.length - HEADER_SIZE, value);
+        return value;
+    }
+
+}
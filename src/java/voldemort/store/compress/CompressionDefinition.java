@@ -0,0 +1,77 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.compress;
+
+import java.io.Serializable;
+
+import voldemort.utils.Utils;
+
+import com.google.common.base.Objects;
+
+/**
+ * The compression settings of a store: the codec to use and the size below
+ * which values are stored as they are.
+ */
+public class CompressionDefinition implements Serializable {
+
+    private static final long serialVersionUID = 1;
+
+    public static final int DEFAULT_MIN_SIZE = 128;
+
+    private final String type;
+    private final int minSize;
+
+    public CompressionDefinition(String type) {
+        this(type, DEFAULT_MIN_SIZE);
+    }
+
+    public CompressionDefinition(String type, int minSize) {
+        this.type = Utils.notNull(type);
+        if(minSize < 0)
+            throw new IllegalArgumentException("Compression min-size cannot be negative.");
+        this.minSize = minSize;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o)
+            return true;
+        else if(o == null || o.getClass() != CompressionDefinition.class)
+            return false;
+        CompressionDefinition def = (CompressionDefinition) o;
+        return getType().equals(def.getType()) && getMinSize() == def.getMinSize();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getType(), getMinSize());
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionDefinition(type = " + type + ", min-size = " + minSize + ")";
+    }
+
+}
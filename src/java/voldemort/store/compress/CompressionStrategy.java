@@ -0,0 +1,56 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.compress;
+
+/**
+ * A block compression codec used by {@link CompressingStore}. Implementations
+ * must be thread safe; any compressor state should be kept per thread and
+ * reused rather than allocated per value.
+ */
+public interface CompressionStrategy {
+
+    /**
+     * The name of this codec as it appears in stores.xml
+     */
+    public String getType();
+
+    /**
+     * The header byte that marks a value as compressed with this codec. Must
+     * be unique among codecs and never {@link CompressingStore#RAW_ID}.
+     */
+    public byte getId();
+
+    /**
+     * The largest output {@link #compress(byte[], byte[], int)} may produce
+     * for an input of the given length
+     */
+    public int getMaxCompressedLength(int length);
+
+    /**
+     * Compress the input into the output array starting at the given offset
+     * 
+     * @return The number of bytes written
+     */
+    public int compress(byte[] input, byte[] output, int outputOffset);
+
+    /**
+     * Decompress length bytes of input starting at offset, filling the output
+     * array exactly
+     */
+    public void decompress(byte[] input, int offset, int length, byte[] output);
+
+}
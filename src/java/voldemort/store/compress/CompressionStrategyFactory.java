@@ -0,0 +1,46 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.compress;
+
+import voldemort.VoldemortException;
+
+/**
+ * Looks up compression codecs by their stores.xml name or by the header byte
+ * they write
+ */
+public class CompressionStrategyFactory {
+
+    private static final CompressionStrategy[] STRATEGIES = { new LzfCompressionStrategy(),
+            new DeflateCompressionStrategy() };
+
+    private CompressionStrategyFactory() {}
+
+    public static CompressionStrategy get(String type) {
+        for(CompressionStrategy strategy: STRATEGIES)
+            if(strategy.getType().equals(type))
+                return strategy;
+        throw new IllegalArgumentException("No compression type '" + type + "'.");
+    }
+
+    public static CompressionStrategy get(byte id) {
+        for(CompressionStrategy strategy: STRATEGIES)
+            if(strategy.getId() == id)
+                return strategy;
+        throw new VoldemortException("Unknown compression codec " + id + " in stored value.");
+    }
+
+}
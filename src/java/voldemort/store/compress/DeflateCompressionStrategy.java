@@ -0,0 +1,88 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.compress;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import voldemort.VoldemortException;
+
+/**
+ * Compresses values with zlib deflate, reusing one Deflater and Inflater per
+ * thread. Slower than {@link LzfCompressionStrategy} but compresses better.
+ */
+public class DeflateCompressionStrategy implements CompressionStrategy {
+
+    public static final String TYPE_NAME = "deflate";
+    public static final byte ID = 2;
+
+    private final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED);
+        }
+    };
+
+    private final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+
+    public String getType() {
+        return TYPE_NAME;
+    }
+
+    public byte getId() {
+        return ID;
+    }
+
+    public int getMaxCompressedLength(int length) {
+        // the zlib bound for stored blocks
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 13;
+    }
+
+    public int compress(byte[] input, byte[] output, int outputOffset) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+        int written = deflater.deflate(output, outputOffset, output.length - outputOffset);
+        if(!deflater.finished())
+            throw new IllegalStateException("Output buffer too small for deflated value.");
+        return written;
+    }
+
+    public void decompress(byte[] input, int offset, int length, byte[] output) {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(input, offset, length);
+        try {
+            int read = inflater.inflate(output);
+            if(read != output.length || !inflater.finished())
+                throw new VoldemortException("Corrupt deflated value: expected " + output.length
+                                             + " bytes but found " + read + ".");
+        } catch(DataFormatException e) {
+            throw new VoldemortException("Corrupt deflated value.", e);
+        }
+    }
+
+}
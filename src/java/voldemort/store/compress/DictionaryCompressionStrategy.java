@@ -0,0 +1,169 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.compress;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import voldemort.VoldemortException;
+import voldemort.store.metadata.MetadataStore;
+import voldemort.utils.ByteUtils;
+import voldemort.utils.Pair;
+
+/**
+ * Deflates values against a preset dictionary trained from the store's own
+ * values, which lets small values that share field names and structure
+ * compress well even though each is too short to compress on its own.
+ * 
+ * Dictionaries are kept in the {@link MetadataStore}, and the latest one saved
+ * is current. Each compressed value starts with the id of the dictionary it
+ * was compressed with (0 for none), so a new dictionary can be added and made
+ * current at any time while values written with older ones remain readable.
+ * The id is the Adler-32 checksum of the dictionary, the same one deflate
+ * records in its output, so it names the same dictionary on every node.
+ */
+public class DictionaryCompressionStrategy implements CompressionStrategy {
+
+    public static final String TYPE_NAME = "deflate-dictionary";
+    public static final byte ID = 3;
+
+    private static final int NO_DICTIONARY = 0;
+
+    private final String storeName;
+    private final MetadataStore metadataStore;
+    private final Map<Integer, byte[]> dictionaries;
+    private volatile Pair<Integer, byte[]> current;
+
+    private final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED);
+        }
+    };
+
+    private final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+
+    public DictionaryCompressionStrategy(String storeName, MetadataStore metadataStore) {
+        this.storeName = storeName;
+        this.metadataStore = metadataStore;
+        this.dictionaries = new ConcurrentHashMap<Integer, byte[]>();
+        this.current = Pair.create(NO_DICTIONARY, (byte[]) null);
+        // saved dictionaries come oldest first
+        for(byte[] dictionary: metadataStore.getDictionaries(storeName).values()) {
+            int id = getDictionaryId(dictionary);
+            this.dictionaries.put(id, dictionary);
+            this.current = Pair.create(id, dictionary);
+        }
+    }
+
+    /**
+     * Get the id values compressed with the given dictionary are marked with
+     */
+    public static int getDictionaryId(byte[] dictionary) {
+        Adler32 checksum = new Adler32();
+        checksum.update(dictionary);
+        return (int) checksum.getValue();
+    }
+
+    public String getType() {
+        return TYPE_NAME;
+    }
+
+    public byte getId() {
+        return ID;
+    }
+
+    /**
+     * The id of the dictionary new values are compressed with, or 0 if there
+     * is none yet
+     */
+    public int getCurrentDictionaryId() {
+        return current.getFirst();
+    }
+
+    /**
+     * Save the given dictionary to the metadata store and compress all values
+     * written from now on with it
+     * 
+     * @return The id of the new dictionary
+     */
+    public synchronized int addDictionary(byte[] dictionary) {
+        metadataStore.addDictionary(storeName, dictionary);
+        int id = getDictionaryId(dictionary);
+        dictionaries.put(id, dictionary);
+        current = Pair.create(id, dictionary);
+        return id;
+    }
+
+    public int getMaxCompressedLength(int length) {
+        return 4 + length + (length >> 12) + (length >> 14) + (length >> 25) + 13;
+    }
+
+    public int compress(byte[] input, byte[] output, int outputOffset) {
+        Pair<Integer, byte[]> dictionary = current;
+        ByteUtils.writeInt(output, dictionary.getFirst(), outputOffset);
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        if(dictionary.getSecond() != null)
+            deflater.setDictionary(dictionary.getSecond());
+        deflater.setInput(input);
+        deflater.finish();
+        int written = deflater.deflate(output, outputOffset + 4, output.length - outputOffset - 4);
+        if(!deflater.finished())
+            throw new IllegalStateException("Output buffer too small for deflated value.");
+        return 4 + written;
+    }
+
+    public void decompress(byte[] input, int offset, int length, byte[] output) {
+        int id = ByteUtils.readInt(input, offset);
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(input, offset + 4, length - 4);
+        try {
+            int read = inflater.inflate(output);
+            if(inflater.needsDictionary()) {
+                byte[] dictionary = dictionaries.get(id);
+                if(dictionary == null)
+                    throw new VoldemortException("No compression dictionary " + id
+                                                 + " found for store '" + storeName + "'.");
+                inflater.setDictionary(dictionary);
+                read += inflater.inflate(output, read, output.length - read);
+            }
+            if(read != output.length || !inflater.finished())
+                throw new VoldemortException("Corrupt deflated value: expected " + output.length
+                                             + " bytes but found " + read + ".");
+        } catch(DataFormatException e) {
+            throw new VoldemortException("Corrupt deflated value.", e);
+        } catch(IllegalArgumentException e) {
+            // the dictionary does not match the one the value was deflated with
+            throw new VoldemortException("Corrupt deflated value: wrong compression dictionary "
+                                         + id + ".", e);
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import voldemort.utils.ByteArray;
+import voldemort.utils.ClosableIterator;
+import voldemort.utils.Pair;
+import voldemort.versioning.Versioned;
+
+/**
+ * Builds a preset compression dictionary from sample values.
+ * 
+ * Every 8 byte substring of the samples is counted once per sample it occurs
+ * in. Maximal runs of substrings common to enough samples become candidate
+ * segments, scored by how often their bytes recur. The best segments that
+ * are not mostly repeats of ones already chosen go into the dictionary, with
+ * the highest scoring last, since deflate encodes nearer matches more cheaply.
+ */
+public class DictionaryTrainer {
+
+    public static final int DEFAULT_DICTIONARY_SIZE = 8 * 1024;
+    public static final int DEFAULT_SAMPLE_SIZE = 1000;
+
+    /* deflate can only refer back as far as its 32k window */
+    private static final int MAX_DICTIONARY_SIZE = 32 * 1024 - 262;
+    private static final int GRAM_SIZE = 8;
+
+    private DictionaryTrainer() {}
+
+    /**
+     * Pick a random sample of the uncompressed values in a compressed store,
+     * looking at no more than ten times as many entries as are wanted
+     */
+    public static <K> List<byte[]> sample(ClosableIterator<Pair<K, Versioned<byte[]>>> entries,
+                                          CompressingStore<K> store,
+                                          int sampleSize) {
+        List<byte[]> samples = new ArrayList<byte[]>(sampleSize);
+        Random random = new Random();
+        try {
+            for(int seen = 0; seen < 10 * sampleSize && entries.hasNext(); seen++) {
+                byte[] value = store.inflate(entries.next().getSecond().getValue());
+                if(samples.size() < sampleSize) {
+                    samples.add(value);
+                } else {
+                    int slot = random.nextInt(seen + 1);
+                    if(slot < sampleSize)
+                        samples.set(slot, value);
+                }
+            }
+        } finally {
+            entries.close();
+        }
+        return samples;
+    }
+
+    public static byte[] train(List<byte[]> samples, int maxSize) {
+        if(maxSize <= 0 || maxSize > MAX_DICTIONARY_SIZE)
+            throw new IllegalArgumentException("Dictionary size must be between 1 and "
+                                               + MAX_DICTIONARY_SIZE + ".");
+        Map<Long, Integer> counts = new HashMap<Long, Integer>();
+        Set<Long> seen = new HashSet<Long>();
+        for(byte[] sample: samples) {
+            seen.clear();
+            for(int i = 0; i + GRAM_SIZE <= sample.length; i++) {
+                Long gram = gram(sample, i);
+                if(seen.add(gram)) {
+                    Integer count = counts.get(gram);
+                    counts.put(gram, count == null ? 1 : count + 1);
+                }
+            }
+        }
+
+        int minCount = Math.max(2, samples.size() / 20);
+        final Map<ByteArray, Integer> segments = new HashMap<ByteArray, Integer>();
+        for(byte[] sample: samples) {
+            int i = 0;
+            while(i + GRAM_SIZE <= sample.length) {
+                int count = counts.get(gram(sample, i));
+                if(count < minCount) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                int score = 0;
+                while(i + GRAM_SIZE <= sample.length
+                      && (count = counts.get(gram(sample, i))) >= minCount) {
+                    score += count;
+                    i++;
+                }
+                byte[] segment = new byte[i - 1 - start + GRAM_SIZE];
+                System.arraycopy(sample, start, segment, 0, segment.length);
+                ByteArray key = new ByteArray(segment);
+                if(!segments.containsKey(key))
+                    segments.put(key, score);
+            }
+        }
+
+        List<ByteArray> ranked = new ArrayList<ByteArray>(segments.keySet());
+        Collections.sort(ranked, new Comparator<ByteArray>() {
+
+            public int compare(ByteArray a, ByteArray b) {
+                return segments.get(b).compareTo(segments.get(a));
+            }
+        });
+        // skip segments that mostly repeat what is already chosen
+        Set<Long> covered = new HashSet<Long>();
+        List<byte[]> chosen = new ArrayList<byte[]>();
+        int size = 0;
+        for(ByteArray segment: ranked) {
+            if(size + segment.length() > maxSize)
+                continue;
+            byte[] bytes = segment.get();
+            int grams = bytes.length - GRAM_SIZE + 1;
+            int uncovered = 0;
+            for(int i = 0; i < grams; i++)
+                if(!covered.contains(gram(bytes, i)))
+                    uncovered++;
+            if(2 * uncovered < grams)
+                continue;
+            for(int i = 0; i < grams; i++)
+                covered.add(gram(bytes, i));
+            chosen.add(bytes);
+            size += bytes.length;
+        }
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(size);
+        for(int i = chosen.size() - 1; i >= 0; i--)
+            dictionary.write(chosen.get(i), 0, chosen.get(i).length);
+        return dictionary.toByteArray();
+    }
+
+    private static long gram(byte[] bytes, int offset) {
+        long gram = 0;
+        for(int i = 0; i < GRAM_SIZE; i++)
+            gram = (gram << 8) | (bytes[offset + i] & 0xff);
+        return gram;
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.compress;
+
+import voldemort.VoldemortException;
+
+/**
+ * An implementation of the LZF block format (as written by liblzf): a very
+ * fast member of the LZ77 family that trades some compression ratio for
+ * speed. The hash table used to find back references is kept per thread and
+ * never cleared; stale entries are harmless because every candidate match is
+ * checked against the input before it is used.
+ */
+public class LzfCompressionStrategy implements CompressionStrategy {
+
+    public static final String TYPE_NAME = "lzf";
+    public static final byte ID = 1;
+
+    private static final int HASH_LOG = 14;
+    private static final int HASH_SIZE = 1 << HASH_LOG;
+    private static final int MAX_LITERAL = 1 << 5;
+    private static final int MAX_OFFSET = 1 << 13;
+    private static final int MAX_REFERENCE = (1 << 8) + (1 << 3);
+
+    private final ThreadLocal<int[]> hashTables = new ThreadLocal<int[]>() {
+
+        @Override
+        protected int[] initialValue() {
+            return new int[HASH_SIZE];
+        }
+    };
+
+    public String getType() {
+        return TYPE_NAME;
+    }
+
+    public byte getId() {
+        return ID;
+    }
+
+    public int getMaxCompressedLength(int length) {
+        // one control byte per run of literals, plus the trailing one
+        return length + (length + MAX_LITERAL - 1) / MAX_LITERAL + 1;
+    }
+
+    public int compress(byte[] input, byte[] output, int outputOffset) {
+        int[] hashTable = hashTables.get();
+        int inEnd = input.length;
+        int inPos = 0;
+        int outPos = outputOffset + 1;
+        int literals = 0;
+        int hash = inEnd > 1 ? first(input, 0) : 0;
+        while(inPos < inEnd - 4) {
+            byte p2 = input[inPos + 2];
+            hash = ((hash << 8) | (p2 & 0xff)) & 0xffffff;
+            int slot = hashIndex(hash);
+            int ref = hashTable[slot];
+            hashTable[slot] = inPos;
+            int off;
+            if(ref < inPos && (off = inPos - ref - 1) < MAX_OFFSET && input[ref + 2] == p2
+               && input[ref + 1] == (byte) (hash >> 8) && input[ref] == (byte) (hash >> 16)) {
+                int maxLength = Math.min(inEnd - inPos - 2, MAX_REFERENCE);
+                // close the current run of literals
+                if(literals == 0)
+                    outPos--;
+                else
+                    output[outPos - literals - 1] = (byte) (literals - 1);
+                literals = 0;
+                int length = 3;
+                while(length < maxLength && input[ref + length] == input[inPos + length])
+                    length++;
+                length -= 2;
+                if(length < 7) {
+                    output[outPos++] = (byte) ((off >> 8) + (length << 5));
+                } else {
+                    output[outPos++] = (byte) ((off >> 8) + (7 << 5));
+                    output[outPos++] = (byte) (length - 7);
+                }
+                output[outPos++] = (byte) off;
+                outPos++;
+                inPos += length;
+                hash = first(input, inPos);
+                hash = ((hash << 8) | (input[inPos + 2] & 0xff)) & 0xffffff;
+                hashTable[hashIndex(hash)] = inPos++;
+                hash = ((hash << 8) | (input[inPos + 2] & 0xff)) & 0xffffff;
+                hashTable[hashIndex(hash)] = inPos++;
+            } else {
+                output[outPos++] = input[inPos++];
+                literals++;
+                if(literals == MAX_LITERAL) {
+                    output[outPos - literals - 1] = (byte) (literals - 1);
+                    literals = 0;
+                    outPos++;
+                }
+            }
+        }
+        while(inPos < inEnd) {
+            output[outPos++] = input[inPos++];
+            literals++;
+            if(literals == MAX_LITERAL) {
+                output[outPos - literals - 1] = (byte) (literals - 1);
+                literals = 0;
+                outPos++;
+            }
+        }
+        if(literals == 0)
+            outPos--;
+        else
+            output[outPos - literals - 1] = (byte) (literals - 1);
+        return outPos - outputOffset;
+    }
+
+    public void decompress(byte[] input, int offset, int length, byte[] output) {
+        int inPos = offset;
+        int inEnd = offset + length;
+        int outPos = 0;
+        try {
+            while(inPos < inEnd) {
+                int control = input[inPos++] & 0xff;
+                if(control < MAX_LITERAL) {
+                    int run = control + 1;
+                    System.arraycopy(input, inPos, output, outPos, run);
+                    inPos += run;
+                    outPos += run;
+                } else {
+                    int run = control >> 5;
+                    if(run == 7)
+                        run += input[inPos++] & 0xff;
+                    run += 2;
+                    int ref = outPos - ((control & 0x1f) << 8) - (input[inPos++] & 0xff) - 1;
+                    if(ref < 0)
+                        throw new VoldemortException("Corrupt LZF data: reference before start of output.");
+                    // references may overlap the bytes they produce
+                    for(int i = 0; i < run; i++)
+                        output[outPos++] = output[ref++];
+                }
+            }
+        } catch(IndexOutOfBoundsException e) {
+            throw new VoldemortException("Corrupt LZF data: output overrun.", e);
+        }
+        if(outPos != output.length)
+            throw new VoldemortException("Corrupt LZF data: expected " + output.length
+                                         + " bytes but found " + outPos + ".");
+    }
+
+    private static int first(byte[] input, int pos) {
+        return ((input[pos] & 0xff) << 8) | (input[pos + 1] & 0xff);
+    }
+
+    private static int hashIndex(int hash) {
+        return ((hash * 57321) >> 9) & (HASH_SIZE - 1);
+    }
+
+}
@@ -63,10 +63,10 @@ public class FilesystemStorageEngine implements StorageEngine<String, String> {
         StoreUtils.assertValidKey(key);
         File[] files = this.directory.listFiles();
         boolean deletedSomething = false;
+        byte[] versionBytes = ((VectorClock) version).toBytes();
         for(File file: files) {
             if(file.getName().startsWith(key)) {
-                VectorClock clock = getVersion(file);
-                if(clock.compare(version) == Occured.BEFORE)
+                if(VectorClock.compare(getVersionBytes(file), 0, versionBytes, 0) == Occured.BEFORE)
                     deletedSomething |= file.delete();
             }
         }
@@ -78,6 +78,15 @@ public class FilesystemStorageEngine implements StorageEngine<String, String> {
         return get(key, this.directory.listFiles());
     }
 
+    public synchronized List<Version> getVersions(String key) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        List<Version> found = new ArrayList<Version>();
+        for(File file: this.directory.listFiles())
+            if(file.getName().startsWith(key))
+                found.add(getVersion(file));
+        return found;
+    }
+
     private List<Versioned<String>> get(String key, File[] files) {
         try {
             List<Versioned<String>> found = new ArrayList<Versioned<String>>();
@@ -114,17 +123,16 @@ public class FilesystemStorageEngine implements StorageEngine<String, String> {
         StoreUtils.assertValidKey(key);
         // Check for obsolete version
         File[] files = this.directory.listFiles();
+        byte[] clock = ((VectorClock) value.getVersion()).toBytes();
         for(File file: files) {
             if(file.getName().startsWith(key)) {
-                VectorClock clock = getVersion(file);
-                if(clock.compare(value.getVersion()) == Occured.AFTER)
+                if(VectorClock.compare(getVersionBytes(file), 0, clock, 0) == Occured.AFTER)
                     throw new ObsoleteVersionException("A successor version to this exists.");
             }
         }
 
-        VectorClock clock = (VectorClock) value.getVersion();
         String path = this.directory.getAbsolutePath() + File.separator + key + '-'
-                      + new String(Hex.encodeHex(clock.toBytes()));
+                      + new String(Hex.encodeHex(clock));
         File newFile = new File(path);
         try {
             if(!newFile.createNewFile())
@@ -135,15 +143,50 @@ public class FilesystemStorageEngine implements StorageEngine<String, String> {
         }
     }
 
+    public synchronized Map<String, VoldemortException> putAll(Map<String, Versioned<String>> entries)
+            throws VoldemortException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        return StoreUtils.putAll(this, entries);
+    }
+
+    public synchronized void putIfCurrent(String key, Versioned<String> value, Version expected)
+            throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        for(Version version: getVersions(key))
+            StoreUtils.assertCurrent(key, version, expected);
+        // the condition held, so the new value supersedes everything stored
+        delete(key, value.getVersion());
+        put(key, value);
+    }
+
+    public synchronized void putSuperseding(String key,
+                                            Versioned<String> value,
+                                            Version superseded) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        // check the versions that stay before deleting any
+        for(Version version: getVersions(key))
+            if(!StoreUtils.isSuperseded(version, superseded)
+               && version.compare(value.getVersion()) == Occured.AFTER)
+                throw new ObsoleteVersionException("A successor version to this exists.");
+        delete(key, superseded);
+        put(key, value);
+    }
+
     private VectorClock getVersion(File file) {
+        int index = file.getName().lastIndexOf('-');
+        if(index <= 0)
+            return new VectorClock();
+        else
+            return new VectorClock(getVersionBytes(file));
+    }
+
+    private byte[] getVersionBytes(File file) {
         try {
             int index = file.getName().lastIndexOf('-');
             if(index <= 0)
-                return new VectorClock();
+                return new VectorClock().toBytes();
             else
-                return new VectorClock(Hex.decodeHex(file.getName()
-                                                         .substring(index + 1)
-                                                         .toCharArray()));
+                return Hex.decodeHex(file.getName().substring(index + 1).toCharArray());
         } catch(DecoderException e) {
             throw new VoldemortException(e);
         }
@@ -17,16 +17,21 @@
 package voldemort.store.gzip;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.io.IOUtils;
 
 import voldemort.VoldemortException;
 import voldemort.store.DelegatingStore;
 import voldemort.store.Store;
+import voldemort.versioning.Version;
 import voldemort.versioning.Versioned;
 
 /**
@@ -56,12 +61,58 @@ public class GzipStore<K> extends DelegatingStore<K, byte[]> implements Store<K,
         return results;
     }
 
+    @Override
+    public Map<K, List<Versioned<byte[]>>> getAll(Iterable<K> keys) throws VoldemortException {
+        Map<K, List<Versioned<byte[]>>> found = getInnerStore().getAll(keys);
+        Map<K, List<Versioned<byte[]>>> results = new HashMap<K, List<Versioned<byte[]>>>(found.size());
+        try {
+            for(Map.Entry<K, List<Versioned<byte[]>>> entry: found.entrySet()) {
+                List<Versioned<byte[]>> values = new ArrayList<Versioned<byte[]>>(entry.getValue()
+                                                                                       .size());
+                for(Versioned<byte[]> item: entry.getValue())
+                    values.add(new Versioned<byte[]>(IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(item.getValue()))),
+                                                     item.getVersion()));
+                results.put(entry.getKey(), values);
+            }
+        } catch(IOException e) {
+            throw new VoldemortException(e);
+        }
+        return results;
+    }
+
     @Override
     public void put(K key, Versioned<byte[]> value) throws VoldemortException {
+        getInnerStore().put(key, deflate(value));
+    }
+
+    @Override
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<byte[]>> entries)
+            throws VoldemortException {
+        Map<K, Versioned<byte[]>> deflated = new HashMap<K, Versioned<byte[]>>(entries.size());
+        for(Map.Entry<K, Versioned<byte[]>> entry: entries.entrySet())
+            deflated.put(entry.getKey(), deflate(entry.getValue()));
+        return getInnerStore().putAll(deflated);
+    }
+
+    @Override
+    public void putIfCurrent(K key, Versioned<byte[]> value, Version expected)
+            throws VoldemortException {
+        getInnerStore().putIfCurrent(key, deflate(value), expected);
+    }
+
+    @Override
+    public void putSuperseding(K key, Versioned<byte[]> value, Version superseded)
+            throws VoldemortException {
+        getInnerStore().putSuperseding(key, deflate(value), superseded);
+    }
+
+    private Versioned<byte[]> deflate(Versioned<byte[]> value) {
         try {
-            getInnerStore().put(key,
-                                new Versioned<byte[]>(IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(value.getValue()))),
-                                                      value.getVersion()));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+            gzip.write(value.getValue());
+            gzip.close();
+            return new Versioned<byte[]>(bytes.toByteArray(), value.getVersion());
         } catch(IOException e) {
             throw new VoldemortException(e);
         }
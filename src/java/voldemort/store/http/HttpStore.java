@@ -28,14 +28,17 @@ import java.util.Map;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
 import org.apache.commons.httpclient.methods.DeleteMethod;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.HeadMethod;
 import org.apache.commons.httpclient.methods.PutMethod;
 
 import voldemort.VoldemortException;
+import voldemort.client.protocol.WireCompression;
 import voldemort.store.Store;
 import voldemort.store.StoreUtils;
 import voldemort.store.UnreachableStoreException;
@@ -56,17 +59,32 @@ public class HttpStore implements Store<ByteArray, byte[]> {
     private static final Hex codec = new Hex();
     private static final HttpResponseCodeErrorMapper httpResponseCodeErrorMapper = new HttpResponseCodeErrorMapper();
     private static final String VERSION_EXTENSION = "X-vldmt-version";
+    private static final String EXPECTED_VERSION_EXTENSION = "X-vldmt-expected-version";
+    private static final String SUPERSEDED_VERSION_EXTENSION = "X-vldmt-superseded-version";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
 
     private final String storeName;
     private final String host;
     private final int port;
     private final HttpClient httpClient;
+    private volatile boolean wireCompression;
 
     public HttpStore(String storeName, String host, int port, HttpClient client) {
         this.storeName = storeName;
         this.host = host;
         this.port = port;
         this.httpClient = client;
+        this.wireCompression = false;
+    }
+
+    /**
+     * Deflate put bodies larger than {@link WireCompression#DEFAULT_THRESHOLD_BYTES}.
+     * Only turn this on for servers that understand a deflated request body;
+     * responses are compressed whenever the server supports it, regardless.
+     */
+    public void setWireCompression(boolean wireCompression) {
+        this.wireCompression = wireCompression;
     }
 
     public boolean delete(ByteArray key, Version version) throws VoldemortException {
@@ -107,6 +125,7 @@ public class HttpStore implements Store<ByteArray, byte[]> {
         GetMethod method = null;
         try {
             method = new GetMethod(url);
+            method.setRequestHeader(ACCEPT_ENCODING, WireCompression.HTTP_CONTENT_ENCODING);
             int response = httpClient.executeMethod(method);
             if(response != HttpURLConnection.HTTP_OK)
                 httpResponseCodeErrorMapper.throwError(response, method.getStatusText());
@@ -137,8 +156,41 @@ public class HttpStore implements Store<ByteArray, byte[]> {
         }
     }
 
+    /**
+     * A HEAD request, the versions come back as headers and no value is sent
+     */
+    public List<Version> getVersions(ByteArray key) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        String url = getUrl(key);
+        HeadMethod method = null;
+        try {
+            method = new HeadMethod(url);
+            int response = httpClient.executeMethod(method);
+            if(response != HttpURLConnection.HTTP_OK)
+                httpResponseCodeErrorMapper.throwError(response, method.getStatusText());
+            Header[] headers = method.getResponseHeaders(VERSION_EXTENSION);
+            List<Version> versions = new ArrayList<Version>(headers.length);
+            for(Header header: headers)
+                versions.add(new VectorClock(Base64.decodeBase64(header.getValue()
+                                                                       .getBytes("UTF-8"))));
+            return versions;
+        } catch(HttpException e) {
+            throw new VoldemortException(e);
+        } catch(IOException e) {
+            throw new UnreachableStoreException("Could not connect to " + url + " for " + storeName,
+                                                e);
+        } finally {
+            if(method != null)
+                method.releaseConnection();
+        }
+    }
+
     private DataInputStream createDataInputStream(GetMethod method) throws IOException {
-        return new DataInputStream(getBufferedInputStream(method.getResponseBodyAsStream()));
+        InputStream body = method.getResponseBodyAsStream();
+        Header encoding = method.getResponseHeader(CONTENT_ENCODING);
+        if(encoding != null && WireCompression.HTTP_CONTENT_ENCODING.equals(encoding.getValue()))
+            body = WireCompression.inflateBody(body);
+        return new DataInputStream(getBufferedInputStream(body));
     }
 
     public Map<ByteArray, List<Versioned<byte[]>>> getAll(Iterable<ByteArray> keys)
@@ -149,6 +201,33 @@ public class HttpStore implements Store<ByteArray, byte[]> {
     }
 
     public void put(ByteArray key, Versioned<byte[]> versioned) throws VoldemortException {
+        put(key, versioned, null, null);
+    }
+
+    public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries)
+            throws VoldemortException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        return StoreUtils.putAll(this, entries);
+    }
+
+    public void putIfCurrent(ByteArray key, Versioned<byte[]> versioned, Version expected)
+            throws VoldemortException {
+        if(expected == null)
+            throw new IllegalArgumentException("Expected version cannot be null.");
+        put(key, versioned, expected, null);
+    }
+
+    public void putSuperseding(ByteArray key, Versioned<byte[]> versioned, Version superseded)
+            throws VoldemortException {
+        if(superseded == null)
+            throw new IllegalArgumentException("Superseded version cannot be null.");
+        put(key, versioned, null, superseded);
+    }
+
+    private void put(ByteArray key,
+                     Versioned<byte[]> versioned,
+                     Version expected,
+                     Version superseded) throws VoldemortException {
         StoreUtils.assertValidKey(key);
         String url = getUrl(key);
         PutMethod method = null;
@@ -157,10 +236,35 @@ public class HttpStore implements Store<ByteArray, byte[]> {
             VectorClock clock = (VectorClock) versioned.getVersion();
             method.setRequestHeader(VERSION_EXTENSION,
                                     new String(Base64.encodeBase64(clock.toBytes()), "UTF-8"));
-            method.setRequestEntity(new ByteArrayRequestEntity(versioned.getValue()));
+            String condition = null;
+            if(expected != null) {
+                condition = EXPECTED_VERSION_EXTENSION;
+                byte[] expectedBytes = ((VectorClock) expected).toBytes();
+                method.setRequestHeader(EXPECTED_VERSION_EXTENSION,
+                                        new String(Base64.encodeBase64(expectedBytes), "UTF-8"));
+            }
+            if(superseded != null) {
+                condition = SUPERSEDED_VERSION_EXTENSION;
+                byte[] supersededBytes = ((VectorClock) superseded).toBytes();
+                method.setRequestHeader(SUPERSEDED_VERSION_EXTENSION,
+                                        new String(Base64.encodeBase64(supersededBytes), "UTF-8"));
+            }
+            byte[] body = versioned.getValue();
+            if(wireCompression && body.length >= WireCompression.DEFAULT_THRESHOLD_BYTES) {
+                byte[] deflated = WireCompression.deflateBody(body);
+                if(deflated.length < body.length) {
+                    method.setRequestHeader(CONTENT_ENCODING, WireCompression.HTTP_CONTENT_ENCODING);
+                    body = deflated;
+                }
+            }
+            method.setRequestEntity(new ByteArrayRequestEntity(body));
             int response = httpClient.executeMethod(method);
             if(response != HttpURLConnection.HTTP_OK)
                 httpResponseCodeErrorMapper.throwError(response, method.getStatusText());
+            // a server that predates the condition applies the put regardless
+            if(condition != null && method.getResponseHeader(condition) == null)
+                throw new VoldemortException("Server at " + url + " ignored the " + condition
+                                             + " header, the put may have been applied unconditionally.");
         } catch(HttpException e) {
             throw new VoldemortException(e);
         } catch(IOException e) {
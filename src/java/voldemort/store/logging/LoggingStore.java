@@ -110,6 +110,21 @@ public class LoggingStore<K, V> extends DelegatingStore<K, V> {
         }
     }
 
+    @Override
+    public List<Version> getVersions(K key) throws VoldemortException {
+        long startTimeNs = 0;
+        boolean succeeded = false;
+        if(logger.isDebugEnabled())
+            startTimeNs = time.getNanoseconds();
+        try {
+            List<Version> l = getInnerStore().getVersions(key);
+            succeeded = true;
+            return l;
+        } finally {
+            printTimedMessage("GET_VERSIONS", succeeded, startTimeNs);
+        }
+    }
+
     @Override
     public void put(K key, Versioned<V> value) throws VoldemortException {
         long startTimeNs = 0;
@@ -125,6 +140,38 @@ public class LoggingStore<K, V> extends DelegatingStore<K, V> {
         }
     }
 
+    @Override
+    public void putIfCurrent(K key, Versioned<V> value, Version expected)
+            throws VoldemortException {
+        long startTimeNs = 0;
+        boolean succeeded = false;
+        if(logger.isDebugEnabled()) {
+            startTimeNs = time.getNanoseconds();
+        }
+        try {
+            getInnerStore().putIfCurrent(key, value, expected);
+            succeeded = true;
+        } finally {
+            printTimedMessage("PUT_IF_CURRENT", succeeded, startTimeNs);
+        }
+    }
+
+    @Override
+    public void putSuperseding(K key, Versioned<V> value, Version superseded)
+            throws VoldemortException {
+        long startTimeNs = 0;
+        boolean succeeded = false;
+        if(logger.isDebugEnabled()) {
+            startTimeNs = time.getNanoseconds();
+        }
+        try {
+            getInnerStore().putSuperseding(key, value, superseded);
+            succeeded = true;
+        } finally {
+            printTimedMessage("PUT_SUPERSEDING", succeeded, startTimeNs);
+        }
+    }
+
     private void printTimedMessage(String operation, boolean success, long startNs) {
         if(logger.isDebugEnabled()) {
             double elapsedMs = (time.getNanoseconds() - startNs) / (double) Time.NS_PER_MS;
@@ -106,12 +106,46 @@ public class InMemoryStorageEngine<K, V> implements StorageEngine<K, V> {
         }
     }
 
+    public List<Version> getVersions(K key) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        List<Versioned<V>> results = map.get(key);
+        if(results == null)
+            return new ArrayList<Version>(0);
+        synchronized(results) {
+            return StoreUtils.getVersions(results);
+        }
+    }
+
     public Map<K, List<Versioned<V>>> getAll(Iterable<K> keys) throws VoldemortException {
         StoreUtils.assertValidKeys(keys);
         return StoreUtils.getAll(this, keys);
     }
 
     public void put(K key, Versioned<V> value) throws VoldemortException {
+        put(key, value, false, null, null);
+    }
+
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<V>> entries)
+            throws VoldemortException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        return StoreUtils.putAll(this, entries);
+    }
+
+    public void putIfCurrent(K key, Versioned<V> value, Version expected)
+            throws VoldemortException {
+        put(key, value, true, expected, null);
+    }
+
+    public void putSuperseding(K key, Versioned<V> value, Version superseded)
+            throws VoldemortException {
+        put(key, value, false, null, superseded);
+    }
+
+    private void put(K key,
+                     Versioned<V> value,
+                     boolean conditional,
+                     Version expected,
+                     Version superseded) {
         StoreUtils.assertValidKey(key);
 
         Version version = value.getVersion();
@@ -134,6 +168,12 @@ public class InMemoryStorageEngine<K, V> implements StorageEngine<K, V> {
                     // remove in case of success
                     List<Versioned<V>> itemsToRemove = new ArrayList<Versioned<V>>(items.size());
                     for(Versioned<V> versioned: items) {
+                        if(conditional)
+                            StoreUtils.assertCurrent(key, versioned.getVersion(), expected);
+                        if(StoreUtils.isSuperseded(versioned.getVersion(), superseded)) {
+                            itemsToRemove.add(versioned);
+                            continue;
+                        }
                         Occured occured = value.getVersion().compare(versioned.getVersion());
                         if(occured == Occured.BEFORE) {
                             throw new ObsoleteVersionException("Obsolete version for key '" + key
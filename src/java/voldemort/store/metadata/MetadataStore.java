@@ -23,6 +23,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.apache.commons.io.FileUtils;
 
@@ -49,6 +51,9 @@ public class MetadataStore implements StorageEngine<ByteArray, byte[]> {
     public static final String CLUSTER_KEY = "cluster.xml";
     public static final String STORES_KEY = "stores.xml";
     public static final Set<String> KNOWN_KEYS = ImmutableSet.of("cluster.xml", "stores.xml");
+    public static final String DICTIONARIES_DIRECTORY = "dictionaries";
+
+    private static final String DICTIONARY_SUFFIX = ".dict";
 
     private final File directory;
     private final ClusterMapper clusterMapper;
@@ -83,10 +88,29 @@ public class MetadataStore implements StorageEngine<ByteArray, byte[]> {
         throw new VoldemortException("No metadata modifications allowed (yet).");
     }
 
+    public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries)
+            throws VoldemortException {
+        throw new VoldemortException("No metadata modifications allowed (yet).");
+    }
+
+    public void putIfCurrent(ByteArray key, Versioned<byte[]> value, Version expected)
+            throws VoldemortException {
+        throw new VoldemortException("No metadata modifications allowed (yet).");
+    }
+
+    public void putSuperseding(ByteArray key, Versioned<byte[]> value, Version superseded)
+            throws VoldemortException {
+        throw new VoldemortException("No metadata modifications allowed (yet).");
+    }
+
     public void close() throws VoldemortException {
 
     }
 
+    public List<Version> getVersions(ByteArray key) throws VoldemortException {
+        return StoreUtils.getVersions(this, key);
+    }
+
     public List<Versioned<byte[]>> get(ByteArray key) throws VoldemortException {
         String keyStr = new String(key.get());
         if(!KNOWN_KEYS.contains(keyStr))
@@ -128,6 +152,60 @@ public class MetadataStore implements StorageEngine<ByteArray, byte[]> {
         return ByteUtils.getString(found.get(0).getValue(), "UTF-8");
     }
 
+    /**
+     * Get every compression dictionary saved for the given store, by the order
+     * they were saved in
+     */
+    public synchronized SortedMap<Integer, byte[]> getDictionaries(String storeName) {
+        SortedMap<Integer, byte[]> dictionaries = new TreeMap<Integer, byte[]>();
+        File[] files = getDictionaryDirectory(storeName).listFiles();
+        if(files == null)
+            return dictionaries;
+        for(File file: files) {
+            String name = file.getName();
+            if(!name.endsWith(DICTIONARY_SUFFIX))
+                continue;
+            try {
+                int id = Integer.parseInt(name.substring(0, name.length()
+                                                            - DICTIONARY_SUFFIX.length()));
+                dictionaries.put(id, FileUtils.readFileToByteArray(file));
+            } catch(NumberFormatException e) {
+                // not one of ours
+            } catch(IOException e) {
+                throw new VoldemortException("Error reading dictionary " + file.getAbsolutePath()
+                                             + ": ", e);
+            }
+        }
+        return dictionaries;
+    }
+
+    /**
+     * Save a new compression dictionary for the given store. Dictionaries are
+     * never overwritten, so values compressed with older ones stay readable.
+     * 
+     * @return The number of the new dictionary, one more than the latest
+     */
+    public synchronized int addDictionary(String storeName, byte[] dictionary) {
+        SortedMap<Integer, byte[]> existing = getDictionaries(storeName);
+        int id = existing.isEmpty() ? 1 : existing.lastKey() + 1;
+        File directory = getDictionaryDirectory(storeName);
+        File temp = new File(directory, id + DICTIONARY_SUFFIX + ".tmp");
+        try {
+            FileUtils.forceMkdir(directory);
+            FileUtils.writeByteArrayToFile(temp, dictionary);
+        } catch(IOException e) {
+            throw new VoldemortException("Error writing dictionary " + temp.getAbsolutePath()
+                                         + ": ", e);
+        }
+        if(!temp.renameTo(new File(directory, id + DICTIONARY_SUFFIX)))
+            throw new VoldemortException("Rename of " + temp.getAbsolutePath() + " failed.");
+        return id;
+    }
+
+    private File getDictionaryDirectory(String storeName) {
+        return new File(new File(this.directory, DICTIONARIES_DIRECTORY), storeName);
+    }
+
     public ClosableIterator<Pair<ByteArray, Versioned<byte[]>>> entries() {
         throw new UnsupportedOperationException("Not implemented.");
     }
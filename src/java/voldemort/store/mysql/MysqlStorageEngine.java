@@ -20,6 +20,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -143,10 +145,11 @@ public class MysqlStorageEngine implements StorageEngine<ByteArray, byte[]> {
             selectStmt.setBytes(1, key.get());
             rs = selectStmt.executeQuery();
             boolean deletedSomething = false;
+            byte[] maxVersionBytes = ((VectorClock) maxVersion).toBytes();
             while(rs.next()) {
                 byte[] theKey = rs.getBytes("key_");
                 byte[] version = rs.getBytes("version_");
-                if(new VectorClock(version).compare(maxVersion) == Occured.BEFORE) {
+                if(VectorClock.compare(version, 0, maxVersionBytes, 0) == Occured.BEFORE) {
                     delete(conn, theKey, version);
                     deletedSomething = true;
                 }
@@ -214,11 +217,53 @@ public class MysqlStorageEngine implements StorageEngine<ByteArray, byte[]> {
         return StoreUtils.get(this, key);
     }
 
+    public List<Version> getVersions(ByteArray key) throws PersistenceFailureException {
+        StoreUtils.assertValidKey(key);
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        String select = "select version_ from " + name + " where key_ = ?";
+        try {
+            conn = datasource.getConnection();
+            stmt = conn.prepareStatement(select);
+            stmt.setBytes(1, key.get());
+            rs = stmt.executeQuery();
+            List<Version> found = Lists.newArrayList();
+            while(rs.next())
+                found.add(new VectorClock(rs.getBytes("version_")));
+            return found;
+        } catch(SQLException e) {
+            throw new PersistenceFailureException("Fix me!", e);
+        } finally {
+            tryClose(rs);
+            tryClose(stmt);
+            tryClose(conn);
+        }
+    }
+
     public String getName() {
         return name;
     }
 
     public void put(ByteArray key, Versioned<byte[]> value) throws PersistenceFailureException {
+        put(key, value, false, null, null);
+    }
+
+    public void putIfCurrent(ByteArray key, Versioned<byte[]> value, Version expected)
+            throws PersistenceFailureException {
+        put(key, value, true, expected, null);
+    }
+
+    public void putSuperseding(ByteArray key, Versioned<byte[]> value, Version superseded)
+            throws PersistenceFailureException {
+        put(key, value, false, null, superseded);
+    }
+
+    private void put(ByteArray key,
+                     Versioned<byte[]> value,
+                     boolean conditional,
+                     Version expected,
+                     Version superseded) throws PersistenceFailureException {
         StoreUtils.assertValidKey(key);
         boolean doCommit = false;
         Connection conn = null;
@@ -227,6 +272,10 @@ public class MysqlStorageEngine implements StorageEngine<ByteArray, byte[]> {
         ResultSet results = null;
         String insertSql = "insert into " + name + " (key_, version_, value_) values (?, ?, ?)";
         String selectSql = "select key_, version_ from " + name + " where key_ = ?";
+        // lock the rows so the condition still holds when we insert, and so
+        // no superseded row is added behind our back
+        if(conditional || superseded != null)
+            selectSql += " for update";
         try {
             conn = datasource.getConnection();
             conn.setAutoCommit(false);
@@ -235,24 +284,30 @@ public class MysqlStorageEngine implements StorageEngine<ByteArray, byte[]> {
             select = conn.prepareStatement(selectSql);
             select.setBytes(1, key.get());
             results = select.executeQuery();
+            byte[] clock = ((VectorClock) value.getVersion()).toBytes();
             while(results.next()) {
                 byte[] thisKey = results.getBytes("key_");
-                VectorClock version = new VectorClock(results.getBytes("version_"));
-                Occured occured = value.getVersion().compare(version);
+                byte[] version = results.getBytes("version_");
+                if(conditional)
+                    StoreUtils.assertCurrent(key, new VectorClock(version), expected);
+                if(StoreUtils.isSuperseded(new VectorClock(version), superseded)) {
+                    delete(conn, thisKey, version);
+                    continue;
+                }
+                Occured occured = VectorClock.compare(clock, 0, version, 0);
                 if(occured == Occured.BEFORE)
                     throw new ObsoleteVersionException("Attempt to put version "
                                                        + value.getVersion()
-                                                       + " which is superceeded by " + version
-                                                       + ".");
+                                                       + " which is superceeded by "
+                                                       + new VectorClock(version) + ".");
                 else if(occured == Occured.AFTER)
-                    delete(conn, thisKey, version.toBytes());
+                    delete(conn, thisKey, version);
             }
 
             // Okay, cool, now put the value
             insert = conn.prepareStatement(insertSql);
             insert.setBytes(1, key.get());
-            VectorClock clock = (VectorClock) value.getVersion();
-            insert.setBytes(2, clock.toBytes());
+            insert.setBytes(2, clock);
             insert.setBytes(3, value.getValue());
             insert.executeUpdate();
             doCommit = true;
@@ -278,6 +333,101 @@ public class MysqlStorageEngine implements StorageEngine<ByteArray, byte[]> {
         }
     }
 
+    /**
+     * Put the whole batch in one transaction, checking each key with the same
+     * select statement and writing all the values with a single multi-row
+     * insert. A key whose version is obsolete is skipped and reported.
+     */
+    public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries)
+            throws PersistenceFailureException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        Map<ByteArray, VoldemortException> failures = new HashMap<ByteArray, VoldemortException>();
+        if(entries.isEmpty())
+            return failures;
+        boolean doCommit = false;
+        Connection conn = null;
+        PreparedStatement insert = null;
+        PreparedStatement select = null;
+        ResultSet results = null;
+        String selectSql = "select key_, version_ from " + name + " where key_ = ?";
+        try {
+            conn = datasource.getConnection();
+            conn.setAutoCommit(false);
+
+            // check every key for superior versions before writing anything
+            select = conn.prepareStatement(selectSql);
+            List<Pair<ByteArray, Versioned<byte[]>>> accepted = new ArrayList<Pair<ByteArray, Versioned<byte[]>>>(entries.size());
+            for(Map.Entry<ByteArray, Versioned<byte[]>> entry: entries.entrySet()) {
+                ByteArray key = entry.getKey();
+                Versioned<byte[]> value = entry.getValue();
+                select.setBytes(1, key.get());
+                results = select.executeQuery();
+                List<byte[]> obsolete = new ArrayList<byte[]>();
+                byte[] clock = ((VectorClock) value.getVersion()).toBytes();
+                boolean failed = false;
+                while(results.next()) {
+                    byte[] version = results.getBytes("version_");
+                    Occured occured = VectorClock.compare(clock, 0, version, 0);
+                    if(occured == Occured.BEFORE) {
+                        failures.put(key, new ObsoleteVersionException("Attempt to put version "
+                                                                       + value.getVersion()
+                                                                       + " which is superceeded by "
+                                                                       + new VectorClock(version)
+                                                                       + "."));
+                        failed = true;
+                        break;
+                    } else if(occured == Occured.AFTER) {
+                        obsolete.add(version);
+                    }
+                }
+                tryClose(results);
+                results = null;
+                if(!failed) {
+                    for(byte[] version: obsolete)
+                        delete(conn, key.get(), version);
+                    accepted.add(Pair.create(key, value));
+                }
+            }
+
+            if(accepted.size() > 0) {
+                StringBuilder insertSql = new StringBuilder("insert into " + name
+                                                            + " (key_, version_, value_) values ");
+                for(int i = 0; i < accepted.size(); i++)
+                    insertSql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+                insert = conn.prepareStatement(insertSql.toString());
+                int param = 1;
+                for(Pair<ByteArray, Versioned<byte[]>> pair: accepted) {
+                    VectorClock clock = (VectorClock) pair.getSecond().getVersion();
+                    insert.setBytes(param++, pair.getFirst().get());
+                    insert.setBytes(param++, clock.toBytes());
+                    insert.setBytes(param++, pair.getSecond().getValue());
+                }
+                insert.executeUpdate();
+            }
+            doCommit = true;
+        } catch(SQLException e) {
+            if(e.getErrorCode() == MYSQL_ERR_DUP_KEY || e.getErrorCode() == MYSQL_ERR_DUP_ENTRY) {
+                throw new ObsoleteVersionException("Key or value already used.");
+            } else {
+                throw new PersistenceFailureException("Fix me!", e);
+            }
+        } finally {
+            if(conn != null) {
+                try {
+                    if(doCommit)
+                        conn.commit();
+                    else
+                        conn.rollback();
+                } catch(SQLException e) {}
+            }
+            tryClose(results);
+            tryClose(insert);
+            tryClose(select);
+            tryClose(conn);
+        }
+        return failures;
+    }
+
     private void tryClose(ResultSet rs) {
         try {
             if(rs != null)
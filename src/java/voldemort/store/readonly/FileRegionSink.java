@@ -0,0 +1,39 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.store.readonly;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Receives the region of a data file that holds a value, so it can send the
+ * value on with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)} rather than reading it into memory
+ */
+public interface FileRegionSink {
+
+    /**
+     * Called while the store holds the file open for reading
+     * 
+     * @param data The data file
+     * @param position The offset of the value in the file
+     * @param size The size of the value in bytes
+     */
+    public void transfer(FileChannel data, long position, int size) throws IOException;
+
+}
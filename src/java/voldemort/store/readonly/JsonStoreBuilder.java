@@ -40,6 +40,7 @@ import voldemort.serialization.Serializer;
 import voldemort.serialization.SerializerFactory;
 import voldemort.serialization.json.EndOfFileException;
 import voldemort.serialization.json.JsonReader;
+import voldemort.serialization.json.JsonTypeSerializer;
 import voldemort.store.StoreDefinition;
 import voldemort.utils.ByteUtils;
 import voldemort.utils.Utils;
@@ -245,18 +246,16 @@ public class JsonStoreBuilder {
         @Override
         protected KeyValuePair computeNext() {
             try {
-                Object key = reader.read();
-                Object value = null;
+                byte[] keyBytes = readBytes(keySerializer);
+                byte[] valueBytes = null;
                 try {
-                    value = reader.read();
+                    valueBytes = readBytes(valueSerializer);
                 } catch(EndOfFileException e) {
                     throw new VoldemortException("Invalid file: reached end of file with key but no matching value.",
                                                  e);
                 }
-                byte[] keyBytes = keySerializer.toBytes(key);
                 byte[] keyMd5 = digest.digest(keyBytes);
                 digest.reset();
-                byte[] valueBytes = valueSerializer.toBytes(value);
 
                 return new KeyValuePair(keyBytes, keyMd5, valueBytes);
             } catch(EndOfFileException e) {
@@ -264,6 +263,17 @@ public class JsonStoreBuilder {
             }
         }
 
+        /*
+         * Json serializers can parse straight into bytes, skipping the object
+         * tree; anything else goes through the parsed object
+         */
+        private byte[] readBytes(Serializer<Object> serializer) {
+            if(serializer instanceof JsonTypeSerializer)
+                return ((JsonTypeSerializer) serializer).toBytes(reader);
+            else
+                return serializer.toBytes(reader.read());
+        }
+
     }
 
     public static class KeyMd5Comparator implements Comparator<KeyValuePair> {
@@ -330,6 +330,75 @@ public class RandomAccessFileStore implements StorageEngine<ByteArray, byte[]> {
         return StoreUtils.get(this, key);
     }
 
+    /**
+     * Read-only values are unversioned, so this only needs the index
+     */
+    public List<Version> getVersions(ByteArray key) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        RandomAccessFile index = null;
+        try {
+            fileModificationLock.readLock().lock();
+            index = getFile(indexFiles);
+            if(getValueLocation(index, key.get()) >= 0)
+                return Collections.<Version> singletonList(new VectorClock());
+            else
+                return Collections.emptyList();
+        } catch(InterruptedException e) {
+            throw new VoldemortException("Thread was interrupted.", e);
+        } catch(IOException e) {
+            throw new PersistenceFailureException(e);
+        } finally {
+            fileModificationLock.readLock().unlock();
+            if(index != null)
+                indexFiles.add(index);
+        }
+    }
+
+    /**
+     * Hand the region of the data file holding the value for the given key to
+     * the sink. This lets the socket server send a value straight from the file
+     * without copying it through the heap. Values here are unversioned, so the
+     * value is all there is to send.
+     * 
+     * @param key The key to look up
+     * @param sink The sink for the value's region of the data file
+     * @return true if the key has a value, false otherwise
+     * @throws IOException If the sink fails; failures reading the store are
+     *         thrown as {@link PersistenceFailureException}
+     */
+    public boolean transferValue(ByteArray key, FileRegionSink sink) throws IOException {
+        StoreUtils.assertValidKey(key);
+        RandomAccessFile index = null;
+        RandomAccessFile data = null;
+        try {
+            fileModificationLock.readLock().lock();
+            index = getFile(indexFiles);
+            data = getFile(dataFiles);
+            long position;
+            int size;
+            try {
+                long valueLocation = getValueLocation(index, key.get());
+                if(valueLocation < 0)
+                    return false;
+                data.seek(valueLocation);
+                size = data.readInt();
+                position = valueLocation + ByteUtils.SIZE_OF_INT;
+            } catch(IOException e) {
+                throw new PersistenceFailureException(e);
+            }
+            sink.transfer(data.getChannel(), position, size);
+            return true;
+        } catch(InterruptedException e) {
+            throw new VoldemortException("Thread was interrupted.", e);
+        } finally {
+            fileModificationLock.readLock().unlock();
+            if(index != null)
+                indexFiles.add(index);
+            if(data != null)
+                dataFiles.add(data);
+        }
+    }
+
     public Map<ByteArray, List<Versioned<byte[]>>> getAll(Iterable<ByteArray> keys)
             throws VoldemortException {
         StoreUtils.assertValidKeys(keys);
@@ -515,6 +584,21 @@ public class RandomAccessFileStore implements StorageEngine<ByteArray, byte[]> {
         throw new UnsupportedOperationException("Put is not supported on this store, it is read-only.");
     }
 
+    public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries)
+            throws VoldemortException {
+        throw new UnsupportedOperationException("Put is not supported on this store, it is read-only.");
+    }
+
+    public void putIfCurrent(ByteArray key, Versioned<byte[]> value, Version expected)
+            throws VoldemortException {
+        throw new UnsupportedOperationException("Put is not supported on this store, it is read-only.");
+    }
+
+    public void putSuperseding(ByteArray key, Versioned<byte[]> value, Version superseded)
+            throws VoldemortException {
+        throw new UnsupportedOperationException("Put is not supported on this store, it is read-only.");
+    }
+
     @JmxGetter(name = "name", description = "The name of the store.")
     public String getName() {
         return name;
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.routed;
+
+import java.io.Serializable;
+
+import com.google.common.base.Objects;
+
+/**
+ * The vector clock pruning settings of a store: the most entries a written
+ * clock may carry, and how long since the key was last written before entries
+ * may be dropped. The age is taken from the timestamp of the clock being
+ * written over.
+ * 
+ * Pruning is only safe for stores that resolve concurrent versions by
+ * timestamp (last writer wins), since a pruned clock can no longer tell which
+ * of two versions came first.
+ */
+public class ClockPruningDefinition implements Serializable {
+
+    private static final long serialVersionUID = 1;
+
+    public static final long DEFAULT_MIN_AGE_MS = 0;
+
+    private final int maxEntries;
+    private final long minAgeMs;
+
+    public ClockPruningDefinition(int maxEntries) {
+        this(maxEntries, DEFAULT_MIN_AGE_MS);
+    }
+
+    public ClockPruningDefinition(int maxEntries, long minAgeMs) {
+        if(maxEntries < 1)
+            throw new IllegalArgumentException("Clock pruning max-entries must be at least 1.");
+        if(minAgeMs < 0)
+            throw new IllegalArgumentException("Clock pruning min-age-ms cannot be negative.");
+        this.maxEntries = maxEntries;
+        this.minAgeMs = minAgeMs;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMinAgeMs() {
+        return minAgeMs;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o)
+            return true;
+        else if(o == null || o.getClass() != ClockPruningDefinition.class)
+            return false;
+        ClockPruningDefinition def = (ClockPruningDefinition) o;
+        return getMaxEntries() == def.getMaxEntries() && getMinAgeMs() == def.getMinAgeMs();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getMaxEntries(), getMinAgeMs());
+    }
+
+    @Override
+    public String toString() {
+        return "ClockPruningDefinition(max-entries = " + maxEntries + ", min-age-ms = "
+               + minAgeMs + ")";
+    }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.store.routed;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import voldemort.VoldemortException;
+import voldemort.annotations.concurrency.Threadsafe;
+import voldemort.annotations.jmx.JmxGetter;
+import voldemort.annotations.jmx.JmxManaged;
+import voldemort.annotations.jmx.JmxSetter;
+import voldemort.client.DaemonThreadFactory;
+import voldemort.cluster.Node;
+import voldemort.store.Store;
+import voldemort.store.UnreachableStoreException;
+import voldemort.utils.ByteArray;
+import voldemort.utils.Time;
+import voldemort.utils.Utils;
+import voldemort.versioning.ObsoleteVersionException;
+import voldemort.versioning.Versioned;
+
+/**
+ * A queue of pending read repairs that are applied by a single background
+ * thread. One queue may be shared by many routed stores.
+ * 
+ * Repairs for the same store, node, key and version that are submitted before
+ * the first one is applied are coalesced into one. Each pass over the queue
+ * groups the pending repairs by node and writes each node's batch with a
+ * single putAll, giving up on the rest of the batch if that node turns out to
+ * be unreachable, reporting it to the store's failure detector. The rate at
+ * which repairs are applied is capped, and once the queue is full new repairs
+ * are dropped--read repair is an optimization, the next read of the key will
+ * find the inconsistency again.
+ */
+@Threadsafe
+@JmxManaged(description = "Applies read repairs in the background.")
+public class ReadRepairQueue {
+
+    public static final int DEFAULT_MAX_PENDING_REPAIRS = 10000;
+    public static final int DEFAULT_MAX_REPAIRS_PER_SECOND = 500;
+
+    private static final Logger logger = Logger.getLogger(ReadRepairQueue.class);
+
+    private final int maxPendingRepairs;
+    private final Time time;
+    private final ExecutorService repairThread;
+
+    /* guarded by this */
+    private final Set<Repair> pending;
+    private boolean closed;
+
+    private volatile int maxRepairsPerSecond;
+    private long windowStartMs;
+    private int repairsInWindow;
+
+    private final AtomicLong queued = new AtomicLong(0);
+    private final AtomicLong coalesced = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicLong applied = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+
+    /**
+     * Create a ReadRepairQueue and start its repair thread
+     * 
+     * @param maxPendingRepairs The number of repairs that may be waiting to be
+     *        applied before new repairs are dropped
+     * @param maxRepairsPerSecond The maximum rate at which repairs are applied,
+     *        zero or less for no limit
+     * @param time The time implementation
+     */
+    public ReadRepairQueue(int maxPendingRepairs,
+                           int maxRepairsPerSecond,
+                           Time time) {
+        if(maxPendingRepairs < 1)
+            throw new IllegalArgumentException("maxPendingRepairs must be at least 1.");
+        this.maxPendingRepairs = maxPendingRepairs;
+        this.maxRepairsPerSecond = maxRepairsPerSecond;
+        this.time = Utils.notNull(time);
+        this.pending = new LinkedHashSet<Repair>();
+        this.closed = false;
+        this.repairThread = Executors.newSingleThreadExecutor(new DaemonThreadFactory("voldemort-read-repair-"));
+        this.repairThread.execute(new Runnable() {
+
+            public void run() {
+                try {
+                    while(drain())
+                        ;
+                } catch(InterruptedException e) {
+                    // we are closing
+                }
+            }
+        });
+    }
+
+    /**
+     * Queue the given repairs, they will be applied asynchronously
+     * 
+     * @param store The store whose nodes the repairs are written to
+     * @param repairs The values to write, and the node to write each to
+     */
+    public void submit(RoutedStore store, List<NodeValue<ByteArray, byte[]>> repairs) {
+        if(repairs.isEmpty())
+            return;
+        synchronized(this) {
+            for(NodeValue<ByteArray, byte[]> value: repairs) {
+                Repair repair = new Repair(store, value);
+                if(closed || pending.size() >= maxPendingRepairs) {
+                    dropped.incrementAndGet();
+                } else if(pending.contains(repair)) {
+                    coalesced.incrementAndGet();
+                } else {
+                    pending.add(repair);
+                    queued.incrementAndGet();
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Wait for repairs and apply everything currently pending
+     * 
+     * @return false if the queue has been closed
+     */
+    boolean drain() throws InterruptedException {
+        Map<Integer, List<Repair>> batches = new LinkedHashMap<Integer, List<Repair>>();
+        synchronized(this) {
+            while(pending.isEmpty() && !closed)
+                wait();
+            if(closed)
+                return false;
+            for(Iterator<Repair> i = pending.iterator(); i.hasNext();) {
+                Repair repair = i.next();
+                int nodeId = repair.value.getNodeId();
+                List<Repair> batch = batches.get(nodeId);
+                if(batch == null) {
+                    batch = new ArrayList<Repair>();
+                    batches.put(nodeId, batch);
+                }
+                batch.add(repair);
+                i.remove();
+            }
+        }
+
+        for(Map.Entry<Integer, List<Repair>> entry: batches.entrySet())
+            repair(entry.getKey(), entry.getValue());
+        return true;
+    }
+
+    private void repair(int nodeId, List<Repair> batch) throws InterruptedException {
+        List<Repair> remaining = batch;
+        while(!remaining.isEmpty()) {
+            // one putAll per store, holding at most one version of each key
+            RoutedStore routedStore = remaining.get(0).store;
+            Map<ByteArray, Versioned<byte[]>> entries = new LinkedHashMap<ByteArray, Versioned<byte[]>>();
+            List<Repair> rest = new ArrayList<Repair>();
+            for(Repair repair: remaining) {
+                ByteArray key = repair.value.getKey();
+                if(repair.store == routedStore && !entries.containsKey(key))
+                    entries.put(key, repair.value.getVersioned());
+                else
+                    rest.add(repair);
+            }
+            for(int i = 0; i < entries.size(); i++)
+                throttle();
+
+            Store<ByteArray, byte[]> store = routedStore.getInnerStores().get(nodeId);
+            try {
+                if(logger.isDebugEnabled())
+                    logger.debug("Doing read repair on node " + nodeId + " for " + entries.size()
+                                 + " keys.");
+                Map<ByteArray, VoldemortException> failures = store.putAll(entries);
+                for(Map.Entry<ByteArray, Versioned<byte[]>> entry: entries.entrySet()) {
+                    VoldemortException e = failures.get(entry.getKey());
+                    if(e == null) {
+                        applied.incrementAndGet();
+                    } else if(e instanceof ObsoleteVersionException) {
+                        // the node already has something newer, nothing to
+                        // repair
+                        applied.incrementAndGet();
+                        if(logger.isDebugEnabled())
+                            logger.debug("Read repair cancelled due to obsolete version on node "
+                                         + nodeId + " for key '" + entry.getKey()
+                                         + "' with version " + entry.getValue().getVersion()
+                                         + ": " + e.getMessage());
+                    } else {
+                        failed.incrementAndGet();
+                        logger.debug("Read repair failed: ", e);
+                    }
+                }
+            } catch(UnreachableStoreException e) {
+                // no point trying the rest of the batch
+                failed.incrementAndGet();
+                Node node = routedStore.getNode(nodeId);
+                if(node != null)
+                    routedStore.getFailureDetector().recordException(node, e);
+                dropped.addAndGet(remaining.size() - 1);
+                logger.debug("Read repair failed, node " + nodeId + " is unreachable, dropping "
+                             + remaining.size() + " repairs.", e);
+                return;
+            } catch(Exception e) {
+                failed.addAndGet(entries.size());
+                logger.debug("Read repair failed: ", e);
+            }
+            remaining = rest;
+        }
+    }
+
+    private void throttle() throws InterruptedException {
+        int maxPerSecond = this.maxRepairsPerSecond;
+        if(maxPerSecond <= 0)
+            return;
+        long now = time.getMilliseconds();
+        if(now - windowStartMs >= Time.MS_PER_SECOND) {
+            windowStartMs = now;
+            repairsInWindow = 0;
+        } else if(repairsInWindow >= maxPerSecond) {
+            Thread.sleep(windowStartMs + Time.MS_PER_SECOND - now);
+            windowStartMs = time.getMilliseconds();
+            repairsInWindow = 0;
+        }
+        repairsInWindow++;
+    }
+
+    /**
+     * Stop the repair thread, anything still pending is discarded
+     */
+    public void close() {
+        synchronized(this) {
+            closed = true;
+            dropped.addAndGet(pending.size());
+            pending.clear();
+            notifyAll();
+        }
+        repairThread.shutdownNow();
+        try {
+            repairThread.awaitTermination(1, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            // whatever, it is a daemon thread
+        }
+    }
+
+    /*
+     * A value to write back and the store it belongs to
+     */
+    private static class Repair {
+
+        private final RoutedStore store;
+        private final NodeValue<ByteArray, byte[]> value;
+
+        public Repair(RoutedStore store, NodeValue<ByteArray, byte[]> value) {
+            this.store = Utils.notNull(store);
+            this.value = Utils.notNull(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o)
+                return true;
+            if(!(o instanceof Repair))
+                return false;
+            Repair r = (Repair) o;
+            return store == r.store && value.equals(r.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(store) + value.hashCode();
+        }
+    }
+
+    @JmxGetter(name = "pendingRepairs", description = "The number of repairs waiting to be applied.")
+    public synchronized int getPendingRepairs() {
+        return pending.size();
+    }
+
+    @JmxGetter(name = "queuedRepairs", description = "The number of repairs that have been queued.")
+    public long getQueuedRepairs() {
+        return queued.get();
+    }
+
+    @JmxGetter(name = "coalescedRepairs", description = "The number of repairs that duplicated one already queued.")
+    public long getCoalescedRepairs() {
+        return coalesced.get();
+    }
+
+    @JmxGetter(name = "droppedRepairs", description = "The number of repairs discarded because the queue was full or the node was unreachable.")
+    public long getDroppedRepairs() {
+        return dropped.get();
+    }
+
+    @JmxGetter(name = "appliedRepairs", description = "The number of repairs written to their node.")
+    public long getAppliedRepairs() {
+        return applied.get();
+    }
+
+    @JmxGetter(name = "failedRepairs", description = "The number of repairs that failed with an error.")
+    public long getFailedRepairs() {
+        return failed.get();
+    }
+
+    @JmxGetter(name = "maxRepairsPerSecond", description = "The maximum rate at which repairs are applied.")
+    public int getMaxRepairsPerSecond() {
+        return maxRepairsPerSecond;
+    }
+
+    @JmxSetter(name = "maxRepairsPerSecond", description = "The maximum rate at which repairs are applied.")
+    public void setMaxRepairsPerSecond(int maxRepairsPerSecond) {
+        this.maxRepairsPerSecond = maxRepairsPerSecond;
+    }
+
+}
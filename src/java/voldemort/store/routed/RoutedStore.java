@@ -34,10 +34,13 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.log4j.Logger;
 
 import voldemort.VoldemortException;
+import voldemort.cluster.BannagePeriodFailureDetector;
+import voldemort.cluster.FailureDetector;
 import voldemort.cluster.Node;
 import voldemort.routing.RoutingStrategy;
 import voldemort.store.InsufficientOperationalNodesException;
 import voldemort.store.Store;
+import voldemort.store.StoreOperationFailureException;
 import voldemort.store.StoreUtils;
 import voldemort.store.UnreachableStoreException;
 import voldemort.utils.ByteArray;
@@ -73,9 +76,13 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
     private final ExecutorService executor;
     private final boolean repairReads;
     private final ReadRepairer<ByteArray, byte[]> readRepairer;
+    private final ReadRepairQueue readRepairQueue;
+    private final boolean ownsReadRepairQueue;
     private final long timeoutMs;
-    private final long nodeBannageMs;
+    private final FailureDetector failureDetector;
+    private final Map<Integer, Semaphore> nodePermits;
     private final Time time;
+    private volatile ClockPruningDefinition clockPruning;
 
     /**
      * Create a RoutedStoreClient
@@ -135,6 +142,145 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
                        long timeoutMs,
                        long nodeBannageMs,
                        Time time) {
+        this(name,
+             innerStores,
+             routingStrategy,
+             preferredReads,
+             requiredReads,
+             preferredWrites,
+             requiredWrites,
+             repairReads,
+             threadPool,
+             timeoutMs,
+             new BannagePeriodFailureDetector(nodeBannageMs),
+             0,
+             ReadRepairQueue.DEFAULT_MAX_REPAIRS_PER_SECOND,
+             time);
+    }
+
+    /**
+     * Create a RoutedStoreClient with its own read repair queue, if it
+     * repairs reads
+     * 
+     * @param name The name of the store
+     * @param innerStores The mapping of node to client
+     * @param routingStrategy The strategy for choosing a node given a key
+     * @param requiredReads The minimum number of reads that must complete
+     *        before the operation will return
+     * @param requiredWrites The minimum number of writes that must complete
+     *        before the operation will return
+     * @param threadPool The threadpool to use
+     * @param failureDetector The failure detector that decides which nodes
+     *        receive requests, it may be shared and is not closed with this
+     *        store
+     * @param maxInFlightPerNode The maximum number of outstanding requests to
+     *        any single node, requests beyond this fail immediately rather than
+     *        tying up the threadpool. Zero or less means no limit.
+     * @param maxRepairsPerSecond The maximum rate at which read repairs are
+     *        written back, zero or less for no limit
+     */
+    public RoutedStore(String name,
+                       Map<Integer, Store<ByteArray, byte[]>> innerStores,
+                       RoutingStrategy routingStrategy,
+                       int preferredReads,
+                       int requiredReads,
+                       int preferredWrites,
+                       int requiredWrites,
+                       boolean repairReads,
+                       ExecutorService threadPool,
+                       long timeoutMs,
+                       FailureDetector failureDetector,
+                       int maxInFlightPerNode,
+                       int maxRepairsPerSecond,
+                       Time time) {
+        this(name,
+             innerStores,
+             routingStrategy,
+             preferredReads,
+             requiredReads,
+             preferredWrites,
+             requiredWrites,
+             repairReads,
+             threadPool,
+             timeoutMs,
+             failureDetector,
+             maxInFlightPerNode,
+             repairReads ? new ReadRepairQueue(ReadRepairQueue.DEFAULT_MAX_PENDING_REPAIRS,
+                                               maxRepairsPerSecond,
+                                               time) : null,
+             true,
+             time);
+    }
+
+    /**
+     * Create a RoutedStoreClient that submits read repairs to the given queue
+     * 
+     * @param name The name of the store
+     * @param innerStores The mapping of node to client
+     * @param routingStrategy The strategy for choosing a node given a key
+     * @param requiredReads The minimum number of reads that must complete
+     *        before the operation will return
+     * @param requiredWrites The minimum number of writes that must complete
+     *        before the operation will return
+     * @param threadPool The threadpool to use
+     * @param failureDetector The failure detector that decides which nodes
+     *        receive requests, it may be shared and is not closed with this
+     *        store
+     * @param maxInFlightPerNode The maximum number of outstanding requests to
+     *        any single node, requests beyond this fail immediately rather than
+     *        tying up the threadpool. Zero or less means no limit.
+     * @param readRepairQueue The queue read repairs are submitted to, it may be
+     *        shared and is not closed with this store. Only used if
+     *        repairReads is set.
+     */
+    public RoutedStore(String name,
+                       Map<Integer, Store<ByteArray, byte[]>> innerStores,
+                       RoutingStrategy routingStrategy,
+                       int preferredReads,
+                       int requiredReads,
+                       int preferredWrites,
+                       int requiredWrites,
+                       boolean repairReads,
+                       ExecutorService threadPool,
+                       long timeoutMs,
+                       FailureDetector failureDetector,
+                       int maxInFlightPerNode,
+                       ReadRepairQueue readRepairQueue,
+                       Time time) {
+        this(name,
+             innerStores,
+             routingStrategy,
+             preferredReads,
+             requiredReads,
+             preferredWrites,
+             requiredWrites,
+             repairReads,
+             threadPool,
+             timeoutMs,
+             failureDetector,
+             maxInFlightPerNode,
+             readRepairQueue,
+             false,
+             time);
+    }
+
+    private RoutedStore(String name,
+                        Map<Integer, Store<ByteArray, byte[]>> innerStores,
+                        RoutingStrategy routingStrategy,
+                        int preferredReads,
+                        int requiredReads,
+                        int preferredWrites,
+                        int requiredWrites,
+                        boolean repairReads,
+                        ExecutorService threadPool,
+                        long timeoutMs,
+                        FailureDetector failureDetector,
+                        int maxInFlightPerNode,
+                        ReadRepairQueue readRepairQueue,
+                        boolean ownsReadRepairQueue,
+                        Time time) {
+        if(repairReads && readRepairQueue == null)
+            throw new IllegalArgumentException("A read repair queue is required to repair reads.");
         if(requiredReads < 1)
             throw new IllegalArgumentException("Cannot have a requiredReads number less than 1.");
         if(requiredWrites < 1)
@@ -158,11 +304,29 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
         this.repairReads = repairReads;
         this.executor = threadPool;
         this.readRepairer = new ReadRepairer<ByteArray, byte[]>();
+        this.readRepairQueue = readRepairQueue;
+        this.ownsReadRepairQueue = ownsReadRepairQueue;
         this.timeoutMs = timeoutMs;
-        this.nodeBannageMs = nodeBannageMs;
+        this.failureDetector = Utils.notNull(failureDetector);
+        this.nodePermits = new HashMap<Integer, Semaphore>();
+        if(maxInFlightPerNode > 0) {
+            for(Integer nodeId: innerStores.keySet())
+                this.nodePermits.put(nodeId, new Semaphore(maxInFlightPerNode));
+        }
         this.time = Utils.notNull(time);
     }
 
+    /**
+     * Prune the vector clocks of puts to this store as given, or pass null to
+     * never prune them. Only for stores that resolve concurrent versions by
+     * timestamp.
+     * 
+     * @see ClockPruningDefinition
+     */
+    public void setClockPruning(ClockPruningDefinition clockPruning) {
+        this.clockPruning = clockPruning;
+    }
+
     public boolean delete(final ByteArray key, final Version version) throws VoldemortException {
         StoreUtils.assertValidKey(key);
         final List<Node> nodes = routingStrategy.routeRequest(key.get());
@@ -189,17 +353,28 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
         final Semaphore semaphore = new Semaphore(0, false);
         // Add the operations to the pool
         for(final Node node: nodes) {
+            if(!acquirePermit(node)) {
+                failures.add(overloaded(node));
+                semaphore.release();
+                continue;
+            }
             this.executor.execute(new Runnable() {
 
                 public void run() {
                     try {
-                        boolean deleted = innerStores.get(node.getId()).delete(key, version);
+                        boolean deleted;
+                        try {
+                            deleted = innerStores.get(node.getId()).delete(key, version);
+                        } finally {
+                            // give the slot back before the success is seen
+                            releasePermit(node);
+                        }
                         successes.incrementAndGet();
                         deletedSomething.compareAndSet(false, deleted);
-                        node.getStatus().setAvailable();
+                        failureDetector.recordSuccess(node);
                     } catch(UnreachableStoreException e) {
                         failures.add(e);
-                        markUnavailable(node, e);
+                        failureDetector.recordException(node, e);
                     } catch(Exception e) {
                         failures.add(e);
                     } finally {
@@ -282,6 +457,11 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
         for(; nodeIndex < this.preferredReads; nodeIndex++) {
             final Node node = nodes.get(nodeIndex);
             if(isAvailable(node)) {
+                if(!acquirePermit(node)) {
+                    failures.add(overloaded(node));
+                    latch.countDown();
+                    continue;
+                }
                 this.executor.execute(new Runnable() {
 
                     public void run() {
@@ -296,19 +476,23 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
                                                                                     f));
                             }
                             successes.incrementAndGet();
-                            node.getStatus().setAvailable();
+                            failureDetector.recordSuccess(node);
                         } catch(UnreachableStoreException e) {
                             failures.add(e);
-                            markUnavailable(node, e);
+                            failureDetector.recordException(node, e);
                         } catch(Exception e) {
                             logger.debug("Error in get.", e);
                             failures.add(e);
                         } finally {
+                            releasePermit(node);
                             // signal that the operation is complete
                             latch.countDown();
                         }
                     }
                 });
+            } else {
+                // nothing to wait for, the serial reads below make up for it
+                latch.countDown();
             }
         }
 
@@ -325,6 +509,11 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
         // reads to make up for these.
         while(successes.get() < this.preferredReads && nodeIndex < nodes.size()) {
             Node node = nodes.get(nodeIndex);
+            nodeIndex++;
+            if(!acquirePermit(node)) {
+                failures.add(overloaded(node));
+                continue;
+            }
             try {
                 List<Versioned<byte[]>> fetched = innerStores.get(node.getId()).get(key);
                 retrieved.addAll(fetched);
@@ -333,52 +522,123 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
                         nodeValues.add(new NodeValue<ByteArray, byte[]>(node.getId(), key, f));
                 }
                 successes.incrementAndGet();
-                node.getStatus().setAvailable();
+                failureDetector.recordSuccess(node);
             } catch(UnreachableStoreException e) {
                 failures.add(e);
-                markUnavailable(node, e);
+                failureDetector.recordException(node, e);
             } catch(Exception e) {
                 logger.debug("Error in get.", e);
                 failures.add(e);
+            } finally {
+                releasePermit(node);
             }
-            nodeIndex++;
         }
 
         if(logger.isDebugEnabled())
             logger.debug("GET retrieved the following node values: " + formatNodeValues(nodeValues));
 
-        // if we have multiple values, do any necessary repairs
-        if(repairReads && retrieved.size() > 1) {
-            this.executor.execute(new Runnable() {
+        // if we have multiple values, queue any necessary repairs
+        if(repairReads && retrieved.size() > 1)
+            readRepairQueue.submit(this, readRepairer.getRepairs(nodeValues));
 
-                public void run() {
-                    for(NodeValue<ByteArray, byte[]> v: readRepairer.getRepairs(nodeValues)) {
+        if(successes.get() >= this.requiredReads)
+            return retrieved;
+        else
+            throw new InsufficientOperationalNodesException(this.requiredReads
+                                                                    + " reads required, but "
+                                                                    + successes.get()
+                                                                    + " succeeded.",
+                                                            failures);
+    }
+
+    /*
+     * The same as get, preferredReads in parallel then serial reads to make up
+     * for failures, but there is nothing to read repair since no values are
+     * fetched
+     */
+    public List<Version> getVersions(final ByteArray key) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        final List<Node> nodes = routingStrategy.routeRequest(key.get());
+
+        // quickly fail if there aren't enough nodes to meet the requirement
+        if(nodes.size() < this.requiredReads)
+            throw new InsufficientOperationalNodesException("Only " + nodes.size()
+                                                            + " nodes in preference list, but "
+                                                            + this.requiredReads
+                                                            + " reads required.");
+
+        final List<Version> retrieved = Collections.synchronizedList(new ArrayList<Version>());
+        final AtomicInteger successes = new AtomicInteger();
+        final List<Exception> failures = Collections.synchronizedList(new LinkedList<Exception>());
+
+        final CountDownLatch latch = new CountDownLatch(this.preferredReads);
+        int nodeIndex = 0;
+        for(; nodeIndex < this.preferredReads; nodeIndex++) {
+            final Node node = nodes.get(nodeIndex);
+            if(isAvailable(node)) {
+                if(!acquirePermit(node)) {
+                    failures.add(overloaded(node));
+                    latch.countDown();
+                    continue;
+                }
+                this.executor.execute(new Runnable() {
+
+                    public void run() {
                         try {
-                            if(logger.isDebugEnabled())
-                                logger.debug("Doing read repair on node " + v.getNodeId()
-                                             + " for key '" + v.getKey() + "' with version "
-                                             + v.getVersion() + ".");
-                            innerStores.get(v.getNodeId()).put(v.getKey(), v.getVersioned());
-                        } catch(ObsoleteVersionException e) {
-                            if(logger.isDebugEnabled())
-                                logger.debug("Read repair cancelled due to obsolete version on node "
-                                             + v.getNodeId()
-                                             + " for key '"
-                                             + v.getKey()
-                                             + "' with version "
-                                             + v.getVersion()
-                                             + ": "
-                                             + e.getMessage());
+                            addVersions(retrieved, innerStores.get(node.getId())
+                                                              .getVersions(key));
+                            successes.incrementAndGet();
+                            failureDetector.recordSuccess(node);
+                        } catch(UnreachableStoreException e) {
+                            failures.add(e);
+                            failureDetector.recordException(node, e);
                         } catch(Exception e) {
-                            logger.debug("Read repair failed: ", e);
+                            logger.debug("Error in getVersions.", e);
+                            failures.add(e);
+                        } finally {
+                            releasePermit(node);
+                            latch.countDown();
                         }
                     }
-                }
-            });
+                });
+            } else {
+                latch.countDown();
+            }
+        }
+
+        try {
+            boolean succeeded = latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+            if(!succeeded)
+                logger.warn("Get versions operation timed out after " + timeoutMs + " ms.");
+        } catch(InterruptedException e) {
+            throw new InsufficientOperationalNodesException("Get versions operation interrupted!",
+                                                            e);
+        }
+
+        while(successes.get() < this.preferredReads && nodeIndex < nodes.size()) {
+            Node node = nodes.get(nodeIndex);
+            nodeIndex++;
+            if(!acquirePermit(node)) {
+                failures.add(overloaded(node));
+                continue;
+            }
+            try {
+                addVersions(retrieved, innerStores.get(node.getId()).getVersions(key));
+                successes.incrementAndGet();
+                failureDetector.recordSuccess(node);
+            } catch(UnreachableStoreException e) {
+                failures.add(e);
+                failureDetector.recordException(node, e);
+            } catch(Exception e) {
+                logger.debug("Error in getVersions.", e);
+                failures.add(e);
+            } finally {
+                releasePermit(node);
+            }
         }
 
         if(successes.get() >= this.requiredReads)
-            return retrieved;
+            return new ArrayList<Version>(retrieved);
         else
             throw new InsufficientOperationalNodesException(this.requiredReads
                                                                     + " reads required, but "
@@ -387,6 +647,17 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
                                                             failures);
     }
 
+    /*
+     * Replicas that are in sync return the same versions, only keep one copy
+     */
+    private void addVersions(List<Version> retrieved, List<Version> fetched) {
+        synchronized(retrieved) {
+            for(Version version: fetched)
+                if(!retrieved.contains(version))
+                    retrieved.add(version);
+        }
+    }
+
     private String formatNodeValues(List<NodeValue<ByteArray, byte[]>> nodeValues) {
         // log all retrieved values
         StringBuilder builder = new StringBuilder();
@@ -404,8 +675,36 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
         return this.name;
     }
 
-    public void put(final ByteArray key, final Versioned<byte[]> versioned)
+    public void put(ByteArray key, Versioned<byte[]> versioned) throws VoldemortException {
+        put(key, versioned, null, null);
+    }
+
+    /**
+     * The condition is checked on the master only, which is the node that
+     * orders writes to the key; the other replicas take the value as a normal
+     * put once the master has accepted it. As with put the version of the value
+     * is incremented by the master, so for a read-modify-write it is just the
+     * expected version.
+     */
+    public void putIfCurrent(ByteArray key, Versioned<byte[]> versioned, Version expected)
             throws VoldemortException {
+        put(key, versioned, Utils.notNull(expected), null);
+    }
+
+    /**
+     * Every replica takes the value and drops the superseded versions in one
+     * operation. As with put the version of the value is incremented by the
+     * master.
+     */
+    public void putSuperseding(ByteArray key, Versioned<byte[]> versioned, Version superseded)
+            throws VoldemortException {
+        put(key, versioned, null, Utils.notNull(superseded));
+    }
+
+    private void put(final ByteArray key,
+                     final Versioned<byte[]> versioned,
+                     Version expected,
+                     Version superseded) throws VoldemortException {
         StoreUtils.assertValidKey(key);
         final List<Node> nodes = routingStrategy.routeRequest(key.get());
 
@@ -430,18 +729,38 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
         Node master = null;
         int currentNode = 0;
         Versioned<byte[]> versionedCopy = null;
+        VectorClock clock = (VectorClock) versioned.getVersion();
+        Version supersedes = superseded;
         for(; currentNode < numNodes; currentNode++) {
             Node current = nodes.get(currentNode);
             if(isAvailable(nodes.get(currentNode))) {
+                if(!acquirePermit(current)) {
+                    failures.put(current.getId(), overloaded(current));
+                    continue;
+                }
                 try {
-                    versionedCopy = incremented(versioned, current.getId());
-                    innerStores.get(current.getId()).put(key, versionedCopy);
+                    // only plain puts are pruned, the others name versions of
+                    // their own that the pruned clock would have to cover
+                    VectorClock prunedClock = clock;
+                    if(expected == null && superseded == null)
+                        prunedClock = pruned(clock, current.getId());
+                    supersedes = prunedClock != clock ? clock : superseded;
+                    versionedCopy = new Versioned<byte[]>(versioned.getValue(),
+                                                          prunedClock.incremented(current.getId(),
+                                                                                  time.getMilliseconds()));
+                    Store<ByteArray, byte[]> store = innerStores.get(current.getId());
+                    if(expected != null)
+                        store.putIfCurrent(key, versionedCopy, expected);
+                    else if(supersedes != null)
+                        store.putSuperseding(key, versionedCopy, supersedes);
+                    else
+                        store.put(key, versionedCopy);
                     successes.getAndIncrement();
-                    current.getStatus().setAvailable();
+                    failureDetector.recordSuccess(current);
                     master = current;
                     break;
                 } catch(UnreachableStoreException e) {
-                    markUnavailable(current, e);
+                    failureDetector.recordException(current, e);
                     failures.put(current.getId(), e);
                 } catch(ObsoleteVersionException e) {
                     // if this version is obsolete on the master, then bail out
@@ -449,6 +768,8 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
                     throw e;
                 } catch(Exception e) {
                     failures.put(currentNode, e);
+                } finally {
+                    releasePermit(current);
                 }
             }
         }
@@ -465,20 +786,37 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
         // permits are released when an operation is completed.
         // semaphore.acquire(n) waits for n operations to complete
         final Versioned<byte[]> finalVersionedCopy = versionedCopy;
+        final Version finalSupersedes = supersedes;
         final Semaphore semaphore = new Semaphore(0, false);
+        int attempts = 0;
         // Add the operations to the pool
         for(; currentNode < numNodes; currentNode++) {
             final Node node = nodes.get(currentNode);
             if(isAvailable(node)) {
+                attempts++;
+                if(!acquirePermit(node)) {
+                    failures.put(node.getId(), overloaded(node));
+                    semaphore.release();
+                    continue;
+                }
                 this.executor.execute(new Runnable() {
 
                     public void run() {
                         try {
-                            innerStores.get(node.getId()).put(key, finalVersionedCopy);
+                            try {
+                                Store<ByteArray, byte[]> store = innerStores.get(node.getId());
+                                if(finalSupersedes != null)
+                                    store.putSuperseding(key, finalVersionedCopy, finalSupersedes);
+                                else
+                                    store.put(key, finalVersionedCopy);
+                            } finally {
+                                // give the slot back before the success is seen
+                                releasePermit(node);
+                            }
                             successes.incrementAndGet();
-                            node.getStatus().setAvailable();
+                            failureDetector.recordSuccess(node);
                         } catch(UnreachableStoreException e) {
-                            markUnavailable(node, e);
+                            failureDetector.recordException(node, e);
                             failures.put(node.getId(), e);
                         } catch(Exception e) {
                             logger.debug("Error in get.", e);
@@ -492,8 +830,10 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
             }
         }
 
-        // Block until at least requiredwrites have accumulated
-        for(int i = 0; i < preferredWrites - 1; i++) {
+        // Block until at least requiredwrites have accumulated, a failed
+        // operation completes without adding to the successes so keep waiting
+        // on the remaining ones
+        for(int i = 0; i < attempts && successes.get() < this.preferredWrites; i++) {
             try {
                 boolean acquired = semaphore.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
                 if(!acquired)
@@ -521,15 +861,237 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
         versionedClock.incrementVersion(master.getId(), time.getMilliseconds());
     }
 
+    /*
+     * 1. Write each key to its master, the first available node in its
+     * preference list, sending one batch to each master node in parallel. Keys
+     * whose master failed for any reason other than an obsolete version move to
+     * the next node in their list and are retried in another round. A master
+     * that has not answered within the timeout may still apply its batch, so
+     * those keys fail instead: retrying them would write them again under a
+     * second master's clock and leave concurrent versions behind. 2. Write
+     * the keys the masters accepted to the rest of their preference lists, again
+     * one batch per node. 3. A key succeeded if at least requiredWrites nodes
+     * took it. Unlike put this waits for every replica, up to the timeout.
+     */
+    public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries)
+            throws VoldemortException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        Map<ByteArray, VoldemortException> failures = new HashMap<ByteArray, VoldemortException>();
+        Map<ByteArray, List<Node>> preferenceLists = new HashMap<ByteArray, List<Node>>(entries.size());
+        Map<ByteArray, Integer> masterIndexes = new HashMap<ByteArray, Integer>(entries.size());
+        List<ByteArray> pending = new ArrayList<ByteArray>(entries.size());
+        for(ByteArray key: entries.keySet()) {
+            List<Node> nodes = routingStrategy.routeRequest(key.get());
+            if(nodes.size() < this.requiredWrites) {
+                failures.put(key, new InsufficientOperationalNodesException("Only " + nodes.size()
+                                                                            + " nodes in preference list, but "
+                                                                            + this.requiredWrites
+                                                                            + " writes required."));
+            } else {
+                preferenceLists.put(key, nodes);
+                masterIndexes.put(key, 0);
+                pending.add(key);
+            }
+        }
+
+        // find a master for every key
+        Map<ByteArray, Node> masters = new HashMap<ByteArray, Node>(entries.size());
+        Map<ByteArray, Versioned<byte[]>> copies = new HashMap<ByteArray, Versioned<byte[]>>(entries.size());
+        while(pending.size() > 0) {
+            Map<Node, Map<ByteArray, Versioned<byte[]>>> batches = new HashMap<Node, Map<ByteArray, Versioned<byte[]>>>();
+            for(ByteArray key: pending) {
+                List<Node> nodes = preferenceLists.get(key);
+                int index = masterIndexes.get(key);
+                while(index < nodes.size() && !isAvailable(nodes.get(index)))
+                    index++;
+                masterIndexes.put(key, index);
+                if(index == nodes.size()) {
+                    if(!failures.containsKey(key))
+                        failures.put(key,
+                                     new InsufficientOperationalNodesException("No master node succeeded!"));
+                    continue;
+                }
+                Node master = nodes.get(index);
+                Versioned<byte[]> copy = incremented(entries.get(key), master.getId());
+                copies.put(key, copy);
+                getBatch(batches, master).put(key, copy);
+            }
+
+            Map<ByteArray, AtomicInteger> successes = newCounts(pending);
+            Map<ByteArray, VoldemortException> masterFailures = putBatches(batches, successes);
+            List<ByteArray> retry = new ArrayList<ByteArray>();
+            for(Map.Entry<Node, Map<ByteArray, Versioned<byte[]>>> batch: batches.entrySet()) {
+                for(ByteArray key: batch.getValue().keySet()) {
+                    if(successes.get(key).get() > 0) {
+                        masters.put(key, batch.getKey());
+                        failures.remove(key);
+                    } else {
+                        VoldemortException e = masterFailures.get(key);
+                        if(e == null) {
+                            // the master may still write it, so do not move on
+                            failures.put(key,
+                                         new InsufficientOperationalNodesException("Put to master node "
+                                                                                   + batch.getKey()
+                                                                                          .getId()
+                                                                                   + " timed out."));
+                            continue;
+                        }
+                        failures.put(key, e);
+                        // if this version is obsolete on the master, then
+                        // bail out for this key
+                        if(!(e instanceof ObsoleteVersionException)) {
+                            masterIndexes.put(key, masterIndexes.get(key) + 1);
+                            retry.add(key);
+                        }
+                    }
+                }
+            }
+            pending = retry;
+        }
+
+        // write the rest of the replicas
+        Map<Node, Map<ByteArray, Versioned<byte[]>>> batches = new HashMap<Node, Map<ByteArray, Versioned<byte[]>>>();
+        for(ByteArray key: masters.keySet()) {
+            List<Node> nodes = preferenceLists.get(key);
+            for(int i = masterIndexes.get(key) + 1; i < nodes.size(); i++) {
+                if(isAvailable(nodes.get(i)))
+                    getBatch(batches, nodes.get(i)).put(key, copies.get(key));
+            }
+        }
+        Map<ByteArray, AtomicInteger> successes = newCounts(masters.keySet());
+        Map<ByteArray, VoldemortException> replicaFailures = putBatches(batches, successes);
+
+        for(Map.Entry<ByteArray, Node> entry: masters.entrySet()) {
+            ByteArray key = entry.getKey();
+            // the master is one success
+            int succeeded = successes.get(key).get() + 1;
+            if(succeeded < this.requiredWrites) {
+                failures.put(key, new InsufficientOperationalNodesException(succeeded
+                                                                            + " writes succeeded, but "
+                                                                            + this.requiredWrites
+                                                                            + " are required.",
+                                                                            replicaFailures.get(key)));
+            } else {
+                // increment the version for the caller, as put does
+                VectorClock clock = (VectorClock) entries.get(key).getVersion();
+                clock.incrementVersion(entry.getValue().getId(), time.getMilliseconds());
+            }
+        }
+        return failures;
+    }
+
+    private Map<ByteArray, Versioned<byte[]>> getBatch(Map<Node, Map<ByteArray, Versioned<byte[]>>> batches,
+                                                       Node node) {
+        Map<ByteArray, Versioned<byte[]>> batch = batches.get(node);
+        if(batch == null) {
+            batch = new HashMap<ByteArray, Versioned<byte[]>>();
+            batches.put(node, batch);
+        }
+        return batch;
+    }
+
+    private Map<ByteArray, AtomicInteger> newCounts(Iterable<ByteArray> keys) {
+        Map<ByteArray, AtomicInteger> counts = new HashMap<ByteArray, AtomicInteger>();
+        for(ByteArray key: keys)
+            counts.put(key, new AtomicInteger(0));
+        return counts;
+    }
+
+    /*
+     * Send every node its batch in parallel and wait for them all, counting
+     * each key that a node took. Returns the reason each failed key failed, a
+     * batch that fails as a whole fails all of its keys.
+     */
+    private Map<ByteArray, VoldemortException> putBatches(Map<Node, Map<ByteArray, Versioned<byte[]>>> batches,
+                                                          final Map<ByteArray, AtomicInteger> successes) {
+        final Map<ByteArray, VoldemortException> failures = new ConcurrentHashMap<ByteArray, VoldemortException>();
+        final CountDownLatch latch = new CountDownLatch(batches.size());
+        for(Map.Entry<Node, Map<ByteArray, Versioned<byte[]>>> batch: batches.entrySet()) {
+            final Node node = batch.getKey();
+            final Map<ByteArray, Versioned<byte[]>> entries = batch.getValue();
+            if(!acquirePermit(node)) {
+                VoldemortException e = overloaded(node);
+                for(ByteArray key: entries.keySet())
+                    failures.put(key, e);
+                latch.countDown();
+                continue;
+            }
+            this.executor.execute(new Runnable() {
+
+                public void run() {
+                    try {
+                        Map<ByteArray, VoldemortException> failed;
+                        try {
+                            failed = innerStores.get(node.getId()).putAll(entries);
+                        } finally {
+                            // give the slot back before the successes are seen
+                            releasePermit(node);
+                        }
+                        failures.putAll(failed);
+                        for(ByteArray key: entries.keySet()) {
+                            if(!failed.containsKey(key))
+                                successes.get(key).incrementAndGet();
+                        }
+                        failureDetector.recordSuccess(node);
+                    } catch(UnreachableStoreException e) {
+                        failureDetector.recordException(node, e);
+                        for(ByteArray key: entries.keySet())
+                            failures.put(key, e);
+                    } catch(VoldemortException e) {
+                        logger.debug("Error in put all.", e);
+                        for(ByteArray key: entries.keySet())
+                            failures.put(key, e);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+
+        try {
+            if(!latch.await(timeoutMs, TimeUnit.MILLISECONDS))
+                logger.warn("Put all operation timed out after " + timeoutMs + " ms.");
+        } catch(InterruptedException e) {
+            throw new InsufficientOperationalNodesException("Put all operation interrupted", e);
+        }
+        return failures;
+    }
+
     private boolean isAvailable(Node node) {
-        return !node.getStatus().isUnavailable(this.nodeBannageMs);
+        return failureDetector.isAvailable(node);
     }
 
-    private void markUnavailable(Node node, Exception e) {
-        logger.warn("Could not connect to node " + node.getId() + " at " + node.getHost()
-                    + " marking as unavailable for " + this.nodeBannageMs + " ms.");
-        logger.debug(e);
-        node.getStatus().setUnavailable();
+    /*
+     * Take one of the in-flight slots for the node without blocking, so that a
+     * slow node can only ever tie up a bounded number of threads
+     */
+    private boolean acquirePermit(Node node) {
+        Semaphore permits = nodePermits.get(node.getId());
+        return permits == null || permits.tryAcquire();
+    }
+
+    private void releasePermit(Node node) {
+        Semaphore permits = nodePermits.get(node.getId());
+        if(permits != null)
+            permits.release();
+    }
+
+    private VoldemortException overloaded(Node node) {
+        return new StoreOperationFailureException("Too many requests in flight to node "
+                                                  + node.getId() + ", failing fast.");
+    }
+
+    /*
+     * A pruned clock does not come after the versions the unpruned one did, so
+     * the caller puts it superseding the unpruned clock; otherwise those
+     * versions would stay on as concurrent ones.
+     */
+    private VectorClock pruned(VectorClock clock, int nodeId) {
+        ClockPruningDefinition pruning = this.clockPruning;
+        if(pruning == null
+           || time.getMilliseconds() - clock.getTimestamp() < pruning.getMinAgeMs())
+            return clock;
+        return clock.pruned(pruning.getMaxEntries(), nodeId);
     }
 
     private Versioned<byte[]> incremented(Versioned<byte[]> versioned, int nodeId) {
@@ -539,6 +1101,8 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
     }
 
     public void close() {
+        if(ownsReadRepairQueue && readRepairQueue != null)
+            readRepairQueue.close();
         this.executor.shutdown();
         try {
             if(!this.executor.awaitTermination(10, TimeUnit.SECONDS))
@@ -559,7 +1123,22 @@ public class RoutedStore implements Store<ByteArray, byte[]> {
             throw exception;
     }
 
+    public ReadRepairQueue getReadRepairQueue() {
+        return this.readRepairQueue;
+    }
+
+    public FailureDetector getFailureDetector() {
+        return this.failureDetector;
+    }
+
     Map<Integer, Store<ByteArray, byte[]>> getInnerStores() {
         return this.innerStores;
     }
+
+    Node getNode(int nodeId) {
+        for(Node node: routingStrategy.getNodes())
+            if(node.getId() == nodeId)
+                return node;
+        return null;
+    }
 }
@@ -78,6 +78,10 @@ public class SerializingStore<K, V> implements Store<K, V> {
         return results;
     }
 
+    public List<Version> getVersions(K key) throws VoldemortException {
+        return store.getVersions(keyToBytes(key));
+    }
+
     public Map<K, List<Versioned<V>>> getAll(Iterable<K> keys) throws VoldemortException {
         StoreUtils.assertValidKeys(keys);
         Map<ByteArray, K> byteKeyToKey = keysToBytes(keys);
@@ -104,6 +108,41 @@ public class SerializingStore<K, V> implements Store<K, V> {
                                                          value.getVersion()));
     }
 
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<V>> entries)
+            throws VoldemortException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        Map<ByteArray, K> byteKeyToKey = Maps.newHashMapWithExpectedSize(entries.size());
+        Map<ByteArray, Versioned<byte[]>> byteEntries = Maps.newHashMapWithExpectedSize(entries.size());
+        for(Map.Entry<K, Versioned<V>> entry: entries.entrySet()) {
+            ByteArray key = keyToBytes(entry.getKey());
+            Versioned<V> value = entry.getValue();
+            byteKeyToKey.put(key, entry.getKey());
+            byteEntries.put(key, new Versioned<byte[]>(valueSerializer.toBytes(value.getValue()),
+                                                       value.getVersion()));
+        }
+        Map<ByteArray, VoldemortException> storeResult = store.putAll(byteEntries);
+        Map<K, VoldemortException> result = Maps.newHashMapWithExpectedSize(storeResult.size());
+        for(Map.Entry<ByteArray, VoldemortException> mapEntry: storeResult.entrySet())
+            result.put(byteKeyToKey.get(mapEntry.getKey()), mapEntry.getValue());
+        return result;
+    }
+
+    public void putIfCurrent(K key, Versioned<V> value, Version expected)
+            throws VoldemortException {
+        store.putIfCurrent(keyToBytes(key),
+                           new Versioned<byte[]>(valueSerializer.toBytes(value.getValue()),
+                                                 value.getVersion()),
+                           expected);
+    }
+
+    public void putSuperseding(K key, Versioned<V> value, Version superseded)
+            throws VoldemortException {
+        store.putSuperseding(keyToBytes(key),
+                             new Versioned<byte[]>(valueSerializer.toBytes(value.getValue()),
+                                                   value.getVersion()),
+                             superseded);
+    }
+
     public void close() {
         store.close();
     }
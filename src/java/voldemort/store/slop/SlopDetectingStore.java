@@ -17,12 +17,15 @@
 package voldemort.store.slop;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import voldemort.VoldemortException;
 import voldemort.cluster.Node;
 import voldemort.routing.RoutingStrategy;
 import voldemort.store.DelegatingStore;
+import voldemort.store.InvalidMetadataException;
 import voldemort.store.Store;
 import voldemort.utils.ByteArray;
 import voldemort.utils.Utils;
@@ -97,4 +100,50 @@ public class SlopDetectingStore extends DelegatingStore<ByteArray, byte[]> {
         }
     }
 
+    @Override
+    public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries)
+            throws VoldemortException {
+        Map<ByteArray, Versioned<byte[]>> local = new HashMap<ByteArray, Versioned<byte[]>>();
+        Map<ByteArray, VoldemortException> failures = new HashMap<ByteArray, VoldemortException>();
+        for(Map.Entry<ByteArray, Versioned<byte[]>> entry: entries.entrySet()) {
+            if(isLocal(entry.getKey())) {
+                local.put(entry.getKey(), entry.getValue());
+            } else {
+                try {
+                    put(entry.getKey(), entry.getValue());
+                } catch(VoldemortException e) {
+                    failures.put(entry.getKey(), e);
+                }
+            }
+        }
+        failures.putAll(getInnerStore().putAll(local));
+        return failures;
+    }
+
+    /**
+     * A slop is replayed as a plain put, so the condition can only be checked
+     * by a node that holds the key.
+     */
+    @Override
+    public void putIfCurrent(ByteArray key, Versioned<byte[]> value, Version expected)
+            throws VoldemortException {
+        if(!isLocal(key))
+            throw new InvalidMetadataException("Node " + localNode.getId()
+                                               + " does not hold this key, so cannot check the condition.");
+        getInnerStore().putIfCurrent(key, value, expected);
+    }
+
+    /**
+     * A slop is replayed as a plain put, which would leave the superseded
+     * versions in place, so only a node that holds the key takes these.
+     */
+    @Override
+    public void putSuperseding(ByteArray key, Versioned<byte[]> value, Version superseded)
+            throws VoldemortException {
+        if(!isLocal(key))
+            throw new InvalidMetadataException("Node " + localNode.getId()
+                                               + " does not hold this key, so cannot supersede its versions.");
+        getInnerStore().putSuperseding(key, value, superseded);
+    }
+
 }
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import voldemort.VoldemortException;
 import voldemort.store.DelegatingStore;
@@ -144,6 +145,21 @@ public class SloppyStore extends DelegatingStore<ByteArray, byte[]> {
         }
     }
 
+    /**
+     * Attempt the batch on the inner store, if the node cannot be reached fall
+     * back to putting each entry so that each is recorded as slop.
+     */
+    @Override
+    public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries)
+            throws VoldemortException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        try {
+            return getInnerStore().putAll(entries);
+        } catch(UnreachableStoreException e) {
+            return StoreUtils.putAll(this, entries);
+        }
+    }
+
     public List<Store<ByteArray, Slop>> getBackupStores() {
         return new ArrayList<Store<ByteArray, Slop>>(backupStores);
     }
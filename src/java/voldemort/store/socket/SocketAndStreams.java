@@ -23,9 +23,12 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
 
+import voldemort.client.protocol.RequestFormat;
+import voldemort.client.protocol.VoldemortNativeRequestFormat;
+
 /**
  * A wrapper class that wraps a socket with its DataInputStream and
- * DataOutputStream
+ * DataOutputStream, and the request format spoken over it
  * 
  * @author jay
  * 
@@ -37,6 +40,7 @@ public class SocketAndStreams {
     private final Socket socket;
     private final DataInputStream inputStream;
     private final DataOutputStream outputStream;
+    private RequestFormat requestFormat;
 
     public SocketAndStreams(Socket socket) throws IOException {
         this(socket, DEFAULT_BUFFER_SIZE);
@@ -48,6 +52,7 @@ public class SocketAndStreams {
                                                                        bufferSizeBytes));
         this.outputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
                                                                           bufferSizeBytes));
+        this.requestFormat = new VoldemortNativeRequestFormat();
     }
 
     public Socket getSocket() {
@@ -62,4 +67,12 @@ public class SocketAndStreams {
         return outputStream;
     }
 
+    public RequestFormat getRequestFormat() {
+        return requestFormat;
+    }
+
+    public void setRequestFormat(RequestFormat requestFormat) {
+        this.requestFormat = requestFormat;
+    }
+
 }
@@ -21,6 +21,7 @@ import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 import org.apache.log4j.Logger;
 
 import voldemort.VoldemortException;
+import voldemort.client.protocol.RequestFormatType;
 import voldemort.store.UnreachableStoreException;
 
 /**
@@ -54,6 +55,21 @@ public class SocketPool {
         this.pool = new GenericKeyedObjectPool(objFactory, config);
     }
 
+    /**
+     * Set the request format new connections will ask the server for.
+     * Connections already in the pool keep the format they were opened with.
+     */
+    public void setRequestFormatType(RequestFormatType requestFormatType) {
+        this.objFactory.setRequestFormatType(requestFormatType);
+    }
+
+    /**
+     * Ask servers to compress values on connections opened from now on
+     */
+    public void setWireCompression(boolean wireCompression) {
+        this.objFactory.setWireCompression(wireCompression);
+    }
+
     public SocketAndStreams checkout(SocketDestination destination) {
         try {
             return (SocketAndStreams) pool.borrowObject(destination);
@@ -16,13 +16,23 @@
 
 package voldemort.store.socket;
 
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.pool.KeyedPoolableObjectFactory;
 import org.apache.log4j.Logger;
 
+import voldemort.client.protocol.RequestFormatFactory;
+import voldemort.client.protocol.RequestFormatType;
+import voldemort.client.protocol.WireCompression;
+
 /**
  * A Factory for creating sockets
  * 
@@ -33,8 +43,17 @@ public class SocketPoolableObjectFactory implements KeyedPoolableObjectFactory {
 
     public static final Logger logger = Logger.getLogger(SocketPoolableObjectFactory.class);
 
+    /**
+     * How long to wait for the answer to a protocol option before deciding
+     * the server predates the handshake
+     */
+    public static final int NEGOTIATION_TIMEOUT_MS = 1000;
+
     private final int timeoutMs;
     private final int socketBufferSize;
+    private volatile RequestFormatType requestFormatType;
+    private volatile boolean wireCompression;
+    private final ConcurrentMap<SocketDestination, Boolean> nativeOnly;
     public final AtomicInteger created;
     public final AtomicInteger destroyed;
 
@@ -43,6 +62,8 @@ public class SocketPoolableObjectFactory implements KeyedPoolableObjectFactory {
         this.created = new AtomicInteger(0);
         this.destroyed = new AtomicInteger(0);
         this.socketBufferSize = socketBufferSize;
+        this.requestFormatType = RequestFormatType.VOLDEMORT_NATIVE;
+        this.nativeOnly = new ConcurrentHashMap<SocketDestination, Boolean>();
     }
 
     public void activateObject(Object key, Object value) throws Exception {
@@ -65,6 +86,31 @@ public class SocketPoolableObjectFactory implements KeyedPoolableObjectFactory {
 
     public Object makeObject(Object key) throws Exception {
         SocketDestination dest = (SocketDestination) key;
+        SocketAndStreams sands = connect(dest);
+        if(!nativeOnly.containsKey(dest)) {
+            try {
+                negotiate(sands, dest);
+                return sands;
+            } catch(SocketTimeoutException e) {
+                logger.warn(dest.getHost() + ":" + dest.getPort()
+                            + " did not answer the protocol handshake, it is probably an older"
+                            + " server. Reconnecting in the native format.");
+            } catch(EOFException e) {
+                logger.warn(dest.getHost() + ":" + dest.getPort()
+                            + " closed the connection during the protocol handshake, it is"
+                            + " probably an older server. Reconnecting in the native format.");
+            }
+            // the old server is stuck reading our codes as a request
+            nativeOnly.put(dest, Boolean.TRUE);
+            destroyObject(dest, sands);
+            sands = connect(dest);
+        }
+        sands.setRequestFormat(RequestFormatFactory.getRequestFormat(RequestFormatType.VOLDEMORT_NATIVE,
+                                                                     null));
+        return sands;
+    }
+
+    private SocketAndStreams connect(SocketDestination dest) throws IOException {
         Socket socket = new Socket();
         socket.setReceiveBufferSize(this.socketBufferSize);
         socket.setSendBufferSize(this.socketBufferSize);
@@ -85,7 +131,45 @@ public class SocketPoolableObjectFactory implements KeyedPoolableObjectFactory {
             logger.debug("Created socket " + numCreated + " for " + dest.getHost() + ":"
                          + dest.getPort());
 
-        return new SocketAndStreams(socket);
+        return new SocketAndStreams(socket, socketBufferSize);
+    }
+
+    /*
+     * Ask the server for our request format and compression, doing without
+     * whichever it does not support. Connections that want neither skip this
+     * so they still work against servers that know nothing of the handshake.
+     * Such a server does not answer at all, it takes our code for the start of
+     * a request, so the answer is only waited for briefly.
+     */
+    private void negotiate(SocketAndStreams sands, SocketDestination dest) throws IOException {
+        Socket socket = sands.getSocket();
+        socket.setSoTimeout(timeoutMs > 0 ? Math.min(timeoutMs, NEGOTIATION_TIMEOUT_MS)
+                                          : NEGOTIATION_TIMEOUT_MS);
+        RequestFormatType type = requestFormatType;
+        if(type != RequestFormatType.VOLDEMORT_NATIVE && !offer(sands, type.getCode())) {
+            logger.warn(dest.getHost() + ":" + dest.getPort() + " does not support the "
+                        + type.getDisplayName() + " request format, using the native format.");
+            type = RequestFormatType.VOLDEMORT_NATIVE;
+        }
+        WireCompression compression = null;
+        if(wireCompression) {
+            if(offer(sands, WireCompression.DEFLATE_CODE))
+                compression = new WireCompression();
+            else
+                logger.warn(dest.getHost() + ":" + dest.getPort()
+                            + " does not support wire compression.");
+        }
+        socket.setSoTimeout(timeoutMs);
+        sands.setRequestFormat(RequestFormatFactory.getRequestFormat(type, compression));
+    }
+
+    private boolean offer(SocketAndStreams sands, String code) throws IOException {
+        DataOutputStream outputStream = sands.getOutputStream();
+        outputStream.write(code.getBytes("UTF-8"));
+        outputStream.flush();
+        byte[] response = new byte[2];
+        sands.getInputStream().readFully(response);
+        return "ok".equals(new String(response, "UTF-8"));
     }
 
     public boolean validateObject(Object key, Object value) {
@@ -97,6 +181,22 @@ public class SocketPoolableObjectFactory implements KeyedPoolableObjectFactory {
         return isValid;
     }
 
+    public RequestFormatType getRequestFormatType() {
+        return requestFormatType;
+    }
+
+    public void setRequestFormatType(RequestFormatType requestFormatType) {
+        this.requestFormatType = requestFormatType;
+    }
+
+    public boolean isWireCompression() {
+        return wireCompression;
+    }
+
+    public void setWireCompression(boolean wireCompression) {
+        this.wireCompression = wireCompression;
+    }
+
     public int getTimeout() {
         return this.timeoutMs;
     }
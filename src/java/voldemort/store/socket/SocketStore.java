@@ -16,25 +16,19 @@
 
 package voldemort.store.socket;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
 
 import voldemort.VoldemortException;
-import voldemort.serialization.VoldemortOpCode;
-import voldemort.store.ErrorCodeMapper;
+import voldemort.client.protocol.RequestFormat;
 import voldemort.store.Store;
 import voldemort.store.StoreUtils;
 import voldemort.utils.ByteArray;
-import voldemort.utils.ByteUtils;
 import voldemort.utils.Utils;
-import voldemort.versioning.VectorClock;
 import voldemort.versioning.Version;
 import voldemort.versioning.Versioned;
 
@@ -48,7 +42,6 @@ import voldemort.versioning.Versioned;
 public class SocketStore implements Store<ByteArray, byte[]> {
 
     private static final Logger logger = Logger.getLogger(SocketStore.class);
-    private final ErrorCodeMapper errorCodeMapper = new ErrorCodeMapper();
 
     private final String name;
     private final SocketPool pool;
@@ -68,18 +61,10 @@ public class SocketStore implements Store<ByteArray, byte[]> {
         StoreUtils.assertValidKey(key);
         SocketAndStreams sands = pool.checkout(destination);
         try {
-            DataOutputStream outputStream = sands.getOutputStream();
-            outputStream.writeByte(VoldemortOpCode.DELETE_OP_CODE);
-            outputStream.writeUTF(name);
-            outputStream.writeInt(key.length());
-            outputStream.write(key.get());
-            VectorClock clock = (VectorClock) version;
-            outputStream.writeShort(clock.sizeInBytes());
-            outputStream.write(clock.toBytes());
-            outputStream.flush();
-            DataInputStream inputStream = sands.getInputStream();
-            checkException(inputStream);
-            return inputStream.readBoolean();
+            RequestFormat requestFormat = sands.getRequestFormat();
+            requestFormat.writeDeleteRequest(sands.getOutputStream(), name, key, version);
+            sands.getOutputStream().flush();
+            return requestFormat.readDeleteResponse(sands.getInputStream());
         } catch(IOException e) {
             close(sands.getSocket());
             throw new VoldemortException(e);
@@ -100,26 +85,26 @@ public class SocketStore implements Store<ByteArray, byte[]> {
         StoreUtils.assertValidKey(key);
         SocketAndStreams sands = pool.checkout(destination);
         try {
-            DataOutputStream outputStream = sands.getOutputStream();
-            outputStream.writeByte(VoldemortOpCode.GET_OP_CODE);
-            outputStream.writeUTF(name);
-            outputStream.writeInt(key.length());
-            outputStream.write(key.get());
-            outputStream.flush();
-            DataInputStream inputStream = sands.getInputStream();
-            checkException(inputStream);
-            int resultSize = inputStream.readInt();
-            List<Versioned<byte[]>> results = new ArrayList<Versioned<byte[]>>(resultSize);
-            for(int i = 0; i < resultSize; i++) {
-                int valueSize = inputStream.readInt();
-                byte[] bytes = new byte[valueSize];
-                ByteUtils.read(inputStream, bytes);
-                VectorClock clock = new VectorClock(bytes);
-                results.add(new Versioned<byte[]>(ByteUtils.copy(bytes,
-                                                                 clock.sizeInBytes(),
-                                                                 bytes.length), clock));
-            }
-            return results;
+            RequestFormat requestFormat = sands.getRequestFormat();
+            requestFormat.writeGetRequest(sands.getOutputStream(), name, key);
+            sands.getOutputStream().flush();
+            return requestFormat.readGetResponse(sands.getInputStream());
+        } catch(IOException e) {
+            close(sands.getSocket());
+            throw new VoldemortException(e);
+        } finally {
+            pool.checkin(destination, sands);
+        }
+    }
+
+    public List<Version> getVersions(ByteArray key) throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        SocketAndStreams sands = pool.checkout(destination);
+        try {
+            RequestFormat requestFormat = sands.getRequestFormat();
+            requestFormat.writeGetVersionsRequest(sands.getOutputStream(), name, key);
+            sands.getOutputStream().flush();
+            return requestFormat.readGetVersionsResponse(sands.getInputStream());
         } catch(IOException e) {
             close(sands.getSocket());
             throw new VoldemortException(e);
@@ -132,18 +117,10 @@ public class SocketStore implements Store<ByteArray, byte[]> {
         StoreUtils.assertValidKey(key);
         SocketAndStreams sands = pool.checkout(destination);
         try {
-            DataOutputStream outputStream = sands.getOutputStream();
-            outputStream.writeByte(VoldemortOpCode.PUT_OP_CODE);
-            outputStream.writeUTF(name);
-            outputStream.writeInt(key.length());
-            outputStream.write(key.get());
-            VectorClock clock = (VectorClock) value.getVersion();
-            outputStream.writeInt(value.getValue().length + clock.sizeInBytes());
-            outputStream.write(clock.toBytes());
-            outputStream.write(value.getValue());
-            outputStream.flush();
-            DataInputStream inputStream = sands.getInputStream();
-            checkException(inputStream);
+            RequestFormat requestFormat = sands.getRequestFormat();
+            requestFormat.writePutRequest(sands.getOutputStream(), name, key, value, null);
+            sands.getOutputStream().flush();
+            requestFormat.readPutResponse(sands.getInputStream());
         } catch(IOException e) {
             close(sands.getSocket());
             throw new VoldemortException(e);
@@ -152,18 +129,65 @@ public class SocketStore implements Store<ByteArray, byte[]> {
         }
     }
 
-    public String getName() {
-        return name;
+    public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries)
+            throws VoldemortException {
+        StoreUtils.assertValidKeys(entries.keySet());
+        SocketAndStreams sands = pool.checkout(destination);
+        try {
+            RequestFormat requestFormat = sands.getRequestFormat();
+            requestFormat.writePutAllRequest(sands.getOutputStream(), name, entries);
+            sands.getOutputStream().flush();
+            return requestFormat.readPutAllResponse(sands.getInputStream());
+        } catch(IOException e) {
+            close(sands.getSocket());
+            throw new VoldemortException(e);
+        } finally {
+            pool.checkin(destination, sands);
+        }
     }
 
-    private void checkException(DataInputStream inputStream) throws IOException {
-        short retCode = inputStream.readShort();
-        if(retCode != 0) {
-            String error = inputStream.readUTF();
-            throw errorCodeMapper.getError(retCode, error);
+    public void putIfCurrent(ByteArray key, Versioned<byte[]> value, Version expected)
+            throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        SocketAndStreams sands = pool.checkout(destination);
+        try {
+            RequestFormat requestFormat = sands.getRequestFormat();
+            requestFormat.writePutRequest(sands.getOutputStream(), name, key, value, expected);
+            sands.getOutputStream().flush();
+            requestFormat.readPutResponse(sands.getInputStream());
+        } catch(IOException e) {
+            close(sands.getSocket());
+            throw new VoldemortException(e);
+        } finally {
+            pool.checkin(destination, sands);
         }
     }
 
+    public void putSuperseding(ByteArray key, Versioned<byte[]> value, Version superseded)
+            throws VoldemortException {
+        StoreUtils.assertValidKey(key);
+        SocketAndStreams sands = pool.checkout(destination);
+        try {
+            RequestFormat requestFormat = sands.getRequestFormat();
+            requestFormat.writePutSupersedingRequest(sands.getOutputStream(),
+                                                     name,
+                                                     key,
+                                                     value,
+                                                     superseded);
+            sands.getOutputStream().flush();
+            requestFormat.readPutResponse(sands.getInputStream());
+        } catch(IOException e) {
+            close(sands.getSocket());
+            throw new VoldemortException(e);
+        } finally {
+            pool.checkin(destination, sands);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
     private void close(Socket socket) {
         try {
             socket.close();
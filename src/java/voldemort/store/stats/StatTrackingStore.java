@@ -82,6 +82,24 @@ public class StatTrackingStore<K, V> extends DelegatingStore<K, V> {
         }
     }
 
+    /*
+     * A version lookup is a cheap get, so it is counted as one
+     */
+    @Override
+    public List<Version> getVersions(K key) throws VoldemortException {
+        callsToGet++;
+        long start = System.nanoTime();
+        try {
+            return super.getVersions(key);
+        } catch(VoldemortException e) {
+            exceptionsThrown++;
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            avgGetCompletionTime += (elapsed - avgGetCompletionTime) / callsToGet;
+        }
+    }
+
     @Override
     public void put(K key, Versioned<V> value) throws VoldemortException {
         callsToPut++;
@@ -97,6 +115,38 @@ public class StatTrackingStore<K, V> extends DelegatingStore<K, V> {
         }
     }
 
+    @Override
+    public void putIfCurrent(K key, Versioned<V> value, Version expected)
+            throws VoldemortException {
+        callsToPut++;
+        long start = System.nanoTime();
+        try {
+            super.putIfCurrent(key, value, expected);
+        } catch(VoldemortException e) {
+            exceptionsThrown++;
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            avgPutCompletionTime += (elapsed - avgPutCompletionTime) / callsToPut;
+        }
+    }
+
+    @Override
+    public void putSuperseding(K key, Versioned<V> value, Version superseded)
+            throws VoldemortException {
+        callsToPut++;
+        long start = System.nanoTime();
+        try {
+            super.putSuperseding(key, value, superseded);
+        } catch(VoldemortException e) {
+            exceptionsThrown++;
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            avgPutCompletionTime += (elapsed - avgPutCompletionTime) / callsToPut;
+        }
+    }
+
     @JmxGetter(name = "numberOfCallsToGet", description = "The number of calls to GET since the last reset.")
     public int getNumberOfCallsToGet() {
         return callsToGet;
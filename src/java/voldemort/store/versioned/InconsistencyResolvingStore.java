@@ -16,12 +16,15 @@
 
 package voldemort.store.versioned;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import voldemort.VoldemortException;
 import voldemort.store.DelegatingStore;
 import voldemort.store.Store;
 import voldemort.versioning.InconsistencyResolver;
+import voldemort.versioning.Occured;
+import voldemort.versioning.Version;
 import voldemort.versioning.Versioned;
 
 /**
@@ -45,4 +48,24 @@ public class InconsistencyResolvingStore<K, V> extends DelegatingStore<K, V> {
         return resolver.resolveConflicts(super.get(key));
     }
 
+    /**
+     * There are no values for the resolver to look at, so only drop the
+     * versions that are superseded by another one
+     */
+    @Override
+    public List<Version> getVersions(K key) throws VoldemortException {
+        List<Version> versions = super.getVersions(key);
+        List<Version> resolved = new ArrayList<Version>(versions.size());
+        for(Version version: versions) {
+            boolean superseded = resolved.contains(version);
+            for(Version other: versions)
+                // equal clocks compare as BEFORE, but they are the same version
+                if(!version.equals(other) && version.compare(other) == Occured.BEFORE)
+                    superseded = true;
+            if(!superseded)
+                resolved.add(version);
+        }
+        return resolved;
+    }
+
 }
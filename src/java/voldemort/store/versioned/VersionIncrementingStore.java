@@ -16,11 +16,15 @@
 
 package voldemort.store.versioned;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import voldemort.VoldemortException;
 import voldemort.store.DelegatingStore;
 import voldemort.store.Store;
 import voldemort.utils.Time;
 import voldemort.versioning.VectorClock;
+import voldemort.versioning.Version;
 import voldemort.versioning.Versioned;
 
 /**
@@ -51,4 +55,34 @@ public class VersionIncrementingStore<K, V> extends DelegatingStore<K, V> implem
         super.put(key, value);
     }
 
+    @Override
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<V>> entries)
+            throws VoldemortException {
+        Map<K, Versioned<V>> incremented = new HashMap<K, Versioned<V>>(entries.size());
+        for(Map.Entry<K, Versioned<V>> entry: entries.entrySet()) {
+            Versioned<V> value = entry.getValue().cloneVersioned();
+            ((VectorClock) value.getVersion()).incrementVersion(nodeId, time.getMilliseconds());
+            incremented.put(entry.getKey(), value);
+        }
+        return super.putAll(incremented);
+    }
+
+    @Override
+    public void putIfCurrent(K key, Versioned<V> value, Version expected)
+            throws VoldemortException {
+        value = value.cloneVersioned();
+        VectorClock clock = (VectorClock) value.getVersion();
+        clock.incrementVersion(nodeId, time.getMilliseconds());
+        super.putIfCurrent(key, value, expected);
+    }
+
+    @Override
+    public void putSuperseding(K key, Versioned<V> value, Version superseded)
+            throws VoldemortException {
+        value = value.cloneVersioned();
+        VectorClock clock = (VectorClock) value.getVersion();
+        clock.incrementVersion(nodeId, time.getMilliseconds());
+        super.putSuperseding(key, value, superseded);
+    }
+
 }
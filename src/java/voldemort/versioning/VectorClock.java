@@ -16,6 +16,10 @@
 
 package voldemort.versioning;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -23,14 +27,15 @@ import java.util.List;
 import voldemort.annotations.concurrency.NotThreadsafe;
 import voldemort.utils.ByteUtils;
 
-import com.google.common.collect.Lists;
-
 /**
  * A vector of the number of writes mastered by each node. The vector is stored
  * sparely, since, in general, writes will be mastered by only one node. This
  * means implicitly all the versions are at zero, but we only actually store
  * those greater than zero.
  * 
+ * The entries are kept in parallel primitive arrays sorted by node id, along
+ * with the largest version, so the serialized size is known without a scan.
+ * 
  * @author jay
  * 
  */
@@ -39,10 +44,23 @@ public class VectorClock implements Version, Serializable {
 
     private static final long serialVersionUID = 1;
 
+    /* The java serialized form is the original list of ClockEntry objects */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("versions", List.class),
+            new ObjectStreamField("timestamp", Long.TYPE) };
+
     private static final int MAX_NUMBER_OF_VERSIONS = Short.MAX_VALUE;
 
-    /* A sorted list of live versions ordered from least to greatest */
-    private final List<ClockEntry> versions;
+    private static final short[] EMPTY_NODE_IDS = new short[0];
+    private static final long[] EMPTY_VERSIONS = new long[0];
+
+    /* The node ids, sorted from least to greatest, and their versions */
+    private short[] nodeIds;
+    private long[] versions;
+    private int size;
+
+    /* The largest version, or -1 if there are no entries */
+    private long maxVersion;
 
     /*
      * The time of the last update on the server on which the update was
@@ -54,11 +72,11 @@ public class VectorClock implements Version, Serializable {
      * Construct an empty VectorClock
      */
     public VectorClock() {
-        this(new ArrayList<ClockEntry>(0), System.currentTimeMillis());
+        this(System.currentTimeMillis());
     }
 
     public VectorClock(long timestamp) {
-        this(new ArrayList<ClockEntry>(0), timestamp);
+        this(EMPTY_NODE_IDS, EMPTY_VERSIONS, 0, -1, timestamp);
     }
 
     /**
@@ -68,7 +86,16 @@ public class VectorClock implements Version, Serializable {
      * @param timestamp The timestamp to prepopulate
      */
     public VectorClock(List<ClockEntry> versions, long timestamp) {
+        this(new short[versions.size()], new long[versions.size()], 0, -1, timestamp);
+        for(ClockEntry entry: versions)
+            append(entry.getNodeId(), entry.getVersion());
+    }
+
+    private VectorClock(short[] nodeIds, long[] versions, int size, long maxVersion, long timestamp) {
+        this.nodeIds = nodeIds;
         this.versions = versions;
+        this.size = size;
+        this.maxVersion = maxVersion;
         this.timestamp = timestamp;
     }
 
@@ -91,6 +118,28 @@ public class VectorClock implements Version, Serializable {
      * @param offset The offset to start reading from
      */
     public VectorClock(byte[] bytes, int offset) {
+        int numEntries = checkSerialized(bytes, offset);
+        int versionSize = bytes[offset + 2];
+        int entrySize = ByteUtils.SIZE_OF_SHORT + versionSize;
+
+        this.nodeIds = new short[numEntries];
+        this.versions = new long[numEntries];
+        this.maxVersion = -1;
+        int index = 3 + offset;
+        for(int i = 0; i < numEntries; i++) {
+            short nodeId = ByteUtils.readShort(bytes, index);
+            long version = ByteUtils.readBytes(bytes, index + ByteUtils.SIZE_OF_SHORT, versionSize);
+            append(nodeId, version);
+            index += entrySize;
+        }
+        this.timestamp = ByteUtils.readLong(bytes, index);
+    }
+
+    /*
+     * Check that the bytes hold a whole serialized clock at the offset, and
+     * return its number of entries
+     */
+    private static int checkSerialized(byte[] bytes, int offset) {
         if(bytes == null || bytes.length <= offset)
             throw new IllegalArgumentException("Invalid byte array for serialization--no bytes to read.");
         int numEntries = ByteUtils.readShort(bytes, offset);
@@ -101,44 +150,85 @@ public class VectorClock implements Version, Serializable {
         if(bytes.length < minimumBytes)
             throw new IllegalArgumentException("Too few bytes: expected at least " + minimumBytes
                                                + " but found only " + bytes.length + ".");
+        return numEntries;
+    }
 
-        this.versions = new ArrayList<ClockEntry>(numEntries);
-        int index = 3 + offset;
-        for(int i = 0; i < numEntries; i++) {
-            short nodeId = ByteUtils.readShort(bytes, index);
-            long version = ByteUtils.readBytes(bytes, index + ByteUtils.SIZE_OF_SHORT, versionSize);
-            this.versions.add(new ClockEntry(nodeId, version));
-            index += entrySize;
-        }
-        this.timestamp = ByteUtils.readLong(bytes, index);
+    /*
+     * Add an entry after all the current ones, the arrays must have room
+     */
+    private void append(short nodeId, long version) {
+        checkEntry(nodeId, version);
+        nodeIds[size] = nodeId;
+        versions[size] = version;
+        size++;
+        if(version > maxVersion)
+            maxVersion = version;
+    }
+
+    private static void checkEntry(short nodeId, long version) {
+        if(nodeId < 0)
+            throw new IllegalArgumentException("Node id " + nodeId + " is not in the range (0, "
+                                               + Short.MAX_VALUE + ").");
+        if(version < 1)
+            throw new IllegalArgumentException("Version " + version + " is not in the range (1, "
+                                               + Short.MAX_VALUE + ").");
     }
 
     public byte[] toBytes() {
         byte[] serialized = new byte[sizeInBytes()];
+        toBytes(serialized, 0);
+        return serialized;
+    }
+
+    /**
+     * Write the serialized clock into the given array
+     * 
+     * @param buffer The array to write to, which must have at least
+     *        {@link #sizeInBytes()} bytes after the offset
+     * @param offset The offset to start writing at
+     * @return The number of bytes written
+     */
+    public int toBytes(byte[] buffer, int offset) {
         // write the number of versions
-        ByteUtils.writeShort(serialized, (short) versions.size(), 0);
+        ByteUtils.writeShort(buffer, (short) size, offset);
         // write the size of each version in bytes
-        byte versionSize = ByteUtils.numberOfBytesRequired(getMaxVersion());
-        serialized[2] = versionSize;
+        byte versionSize = ByteUtils.numberOfBytesRequired(maxVersion);
+        buffer[offset + 2] = versionSize;
 
         int clockEntrySize = ByteUtils.SIZE_OF_SHORT + versionSize;
-        int start = 3;
-        for(ClockEntry v: versions) {
-            ByteUtils.writeShort(serialized, v.getNodeId(), start);
-            ByteUtils.writeBytes(serialized,
-                                 v.getVersion(),
-                                 start + ByteUtils.SIZE_OF_SHORT,
-                                 versionSize);
+        int start = offset + 3;
+        for(int i = 0; i < size; i++) {
+            ByteUtils.writeShort(buffer, nodeIds[i], start);
+            ByteUtils.writeBytes(buffer, versions[i], start + ByteUtils.SIZE_OF_SHORT, versionSize);
             start += clockEntrySize;
         }
-        ByteUtils.writeLong(serialized, this.timestamp, start);
-        return serialized;
+        ByteUtils.writeLong(buffer, this.timestamp, start);
+        return start + ByteUtils.SIZE_OF_LONG - offset;
     }
 
     public int sizeInBytes() {
-        byte versionSize = ByteUtils.numberOfBytesRequired(getMaxVersion());
-        return ByteUtils.SIZE_OF_SHORT + 1 + this.versions.size()
-               * (ByteUtils.SIZE_OF_SHORT + versionSize) + ByteUtils.SIZE_OF_LONG;
+        byte versionSize = ByteUtils.numberOfBytesRequired(maxVersion);
+        return ByteUtils.SIZE_OF_SHORT + 1 + size * (ByteUtils.SIZE_OF_SHORT + versionSize)
+               + ByteUtils.SIZE_OF_LONG;
+    }
+
+    /*
+     * The index of the node, or (-(insertion point) - 1) if it has no entry
+     */
+    private int indexOf(int node) {
+        int low = 0;
+        int high = size - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            int midNode = nodeIds[mid];
+            if(midNode < node)
+                low = mid + 1;
+            else if(midNode > node)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
     }
 
     /**
@@ -147,36 +237,57 @@ public class VectorClock implements Version, Serializable {
      * @param node The node
      */
     public void incrementVersion(int node, long time) {
-        if(node < 0 || node > Short.MAX_VALUE)
-            throw new IllegalArgumentException(node
-                                               + " is outside the acceptable range of node ids.");
-
+        checkNode(node);
         this.timestamp = time;
 
-        // stop on the index greater or equal to the node
-        boolean found = false;
-        int index = 0;
-        for(; index < versions.size(); index++) {
-            if(versions.get(index).getNodeId() == node) {
-                found = true;
-                break;
-            } else if(versions.get(index).getNodeId() > node) {
-                found = false;
-                break;
-            }
-        }
-
-        if(found) {
-            versions.set(index, versions.get(index).incremented());
-        } else if(index < versions.size() - 1) {
-            versions.add(index, new ClockEntry((short) node, (short) 1));
+        int index = indexOf(node);
+        if(index >= 0) {
+            long version = ++versions[index];
+            if(version > maxVersion)
+                maxVersion = version;
         } else {
             // we don't already have a version for this, so add it
-            if(versions.size() > MAX_NUMBER_OF_VERSIONS)
+            if(size >= MAX_NUMBER_OF_VERSIONS)
                 throw new IllegalStateException("Vector clock is full!");
-            versions.add(index, new ClockEntry((short) node, (short) 1));
+            index = -(index + 1);
+            if(size == nodeIds.length) {
+                int capacity = size + 1;
+                nodeIds = copyOf(nodeIds, capacity, index);
+                versions = copyOf(versions, capacity, index);
+            } else {
+                System.arraycopy(nodeIds, index, nodeIds, index + 1, size - index);
+                System.arraycopy(versions, index, versions, index + 1, size - index);
+            }
+            nodeIds[index] = (short) node;
+            versions[index] = 1;
+            size++;
+            if(maxVersion < 1)
+                maxVersion = 1;
         }
+    }
+
+    private static void checkNode(int node) {
+        if(node < 0 || node > Short.MAX_VALUE)
+            throw new IllegalArgumentException(node
+                                               + " is outside the acceptable range of node ids.");
+    }
+
+    /*
+     * Copy the array into one of the given length, leaving a one element gap at
+     * the given index
+     */
+    private short[] copyOf(short[] array, int length, int gap) {
+        short[] copy = new short[length];
+        System.arraycopy(array, 0, copy, 0, gap);
+        System.arraycopy(array, gap, copy, gap + 1, size - gap);
+        return copy;
+    }
 
+    private long[] copyOf(long[] array, int length, int gap) {
+        long[] copy = new long[length];
+        System.arraycopy(array, 0, copy, 0, gap);
+        System.arraycopy(array, gap, copy, gap + 1, size - gap);
+        return copy;
     }
 
     /**
@@ -187,14 +298,86 @@ public class VectorClock implements Version, Serializable {
      *         nodeId
      */
     public VectorClock incremented(int nodeId, long time) {
-        VectorClock copyClock = this.clone();
+        checkNode(nodeId);
+        // size the copy for a new entry so the increment never reallocates
+        int capacity = indexOf(nodeId) >= 0 ? size : size + 1;
+        VectorClock copyClock = copy(capacity);
         copyClock.incrementVersion(nodeId, time);
         return copyClock;
     }
 
+    /**
+     * Get a clock with at most the given number of entries, dropping those
+     * with the smallest versions. The entry of the given node is always kept,
+     * and if it has none a slot is left for it, so the result can be
+     * incremented on that node without going over the limit.
+     * 
+     * A pruned clock no longer dominates the versions it was derived from, so
+     * this is only safe where concurrent versions are resolved without the
+     * clock, e.g. by timestamp.
+     * 
+     * @param maxEntries The maximum number of entries to keep
+     * @param nodeId The node whose entry is kept
+     * @return This clock if it is within the limit, otherwise a pruned copy
+     */
+    public VectorClock pruned(int maxEntries, int nodeId) {
+        if(maxEntries < 1)
+            throw new IllegalArgumentException("A pruned clock must keep at least one entry.");
+        checkNode(nodeId);
+        int nodeIndex = indexOf(nodeId);
+        int limit = nodeIndex >= 0 ? maxEntries : maxEntries - 1;
+        if(size <= limit)
+            return this;
+
+        // pick the entries to keep, the node's own first then the largest
+        boolean[] keep = new boolean[size];
+        int kept = 0;
+        if(nodeIndex >= 0) {
+            keep[nodeIndex] = true;
+            kept++;
+        }
+        for(; kept < limit; kept++) {
+            int best = -1;
+            for(int i = 0; i < size; i++)
+                if(!keep[i] && (best < 0 || versions[i] > versions[best]))
+                    best = i;
+            keep[best] = true;
+        }
+
+        VectorClock pruned = new VectorClock(new short[maxEntries],
+                                             new long[maxEntries],
+                                             0,
+                                             -1,
+                                             timestamp);
+        for(int i = 0; i < size; i++)
+            if(keep[i])
+                pruned.append(nodeIds[i], versions[i]);
+        return pruned;
+    }
+
     @Override
     public VectorClock clone() {
-        return new VectorClock(Lists.newArrayList(versions), this.timestamp);
+        return copy(size);
+    }
+
+    private VectorClock copy(int capacity) {
+        short[] newNodeIds = new short[capacity];
+        long[] newVersions = new long[capacity];
+        System.arraycopy(nodeIds, 0, newNodeIds, 0, size);
+        System.arraycopy(versions, 0, newVersions, 0, size);
+        return new VectorClock(newNodeIds, newVersions, size, maxVersion, timestamp);
+    }
+
+    /**
+     * Get the entries of this clock, ordered by node id
+     * 
+     * @return A new list of the entries
+     */
+    public List<ClockEntry> getEntries() {
+        List<ClockEntry> entries = new ArrayList<ClockEntry>(size);
+        for(int i = 0; i < size; i++)
+            entries.add(new ClockEntry(nodeIds[i], versions[i]));
+        return entries;
     }
 
     @Override
@@ -206,64 +389,71 @@ public class VectorClock implements Version, Serializable {
         if(!object.getClass().equals(VectorClock.class))
             return false;
         VectorClock clock = (VectorClock) object;
-        return versions.equals(clock.versions);
+        if(size != clock.size)
+            return false;
+        for(int i = 0; i < size; i++)
+            if(nodeIds[i] != clock.nodeIds[i] || versions[i] != clock.versions[i])
+                return false;
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return versions.hashCode();
+        // the same as the hash code of the list of entries
+        int hashCode = 1;
+        for(int i = 0; i < size; i++)
+            hashCode = 31 * hashCode + (nodeIds[i] + (((int) versions[i]) << 16));
+        return hashCode;
     }
 
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
         builder.append("version(");
-        if(this.versions.size() > 0) {
-            for(int i = 0; i < this.versions.size() - 1; i++) {
-                builder.append(this.versions.get(i));
+        for(int i = 0; i < size; i++) {
+            if(i > 0)
                 builder.append(", ");
-            }
-            builder.append(this.versions.get(this.versions.size() - 1));
+            builder.append(nodeIds[i]);
+            builder.append(':');
+            builder.append(versions[i]);
         }
         builder.append(")");
         return builder.toString();
     }
 
     public long getMaxVersion() {
-        long max = -1;
-        for(ClockEntry entry: versions)
-            if(entry.getVersion() > max)
-                max = entry.getVersion();
-        return max;
+        return maxVersion;
     }
 
     public VectorClock merge(VectorClock clock) {
-        VectorClock newClock = new VectorClock();
+        VectorClock newClock = new VectorClock(new short[size + clock.size],
+                                               new long[size + clock.size],
+                                               0,
+                                               -1,
+                                               System.currentTimeMillis());
         int i = 0;
         int j = 0;
-        while(i < this.versions.size() && j < clock.versions.size()) {
-            ClockEntry v1 = this.versions.get(i);
-            ClockEntry v2 = clock.versions.get(j);
-            if(v1.getNodeId() == v2.getNodeId()) {
-                newClock.versions.add(new ClockEntry(v1.getNodeId(),
-                                                     (short) Math.max(v1.getVersion(),
-                                                                      v2.getVersion())));
+        while(i < this.size && j < clock.size) {
+            short n1 = this.nodeIds[i];
+            short n2 = clock.nodeIds[j];
+            if(n1 == n2) {
+                newClock.append(n1, Math.max(this.versions[i], clock.versions[j]));
                 i++;
                 j++;
-            } else if(v1.getNodeId() < v2.getNodeId()) {
-                newClock.versions.add(v1.clone());
+            } else if(n1 < n2) {
+                newClock.append(n1, this.versions[i]);
                 i++;
             } else {
-                newClock.versions.add(v2.clone());
+                newClock.append(n2, clock.versions[j]);
                 j++;
             }
         }
 
         // Okay now there may be leftovers on one or the other list remaining
-        for(int k = i; k < this.versions.size(); k++)
-            newClock.versions.add(this.versions.get(k).clone());
-        for(int k = j; k < clock.versions.size(); k++)
-            newClock.versions.add(clock.versions.get(k).clone());
+        for(int k = i; k < this.size; k++)
+            newClock.append(this.nodeIds[k], this.versions[k]);
+        for(int k = j; k < clock.size; k++)
+            newClock.append(clock.nodeIds[k], clock.versions[k]);
 
         return newClock;
     }
@@ -295,17 +485,19 @@ public class VectorClock implements Version, Serializable {
         int p1 = 0;
         int p2 = 0;
 
-        while(p1 < v1.versions.size() && p2 < v2.versions.size()) {
-            ClockEntry ver1 = v1.versions.get(p1);
-            ClockEntry ver2 = v2.versions.get(p2);
-            if(ver1.getNodeId() == ver2.getNodeId()) {
-                if(ver1.getVersion() > ver2.getVersion())
+        while(p1 < v1.size && p2 < v2.size) {
+            short node1 = v1.nodeIds[p1];
+            short node2 = v2.nodeIds[p2];
+            if(node1 == node2) {
+                long ver1 = v1.versions[p1];
+                long ver2 = v2.versions[p2];
+                if(ver1 > ver2)
                     v1Bigger = true;
-                else if(ver2.getVersion() > ver1.getVersion())
+                else if(ver2 > ver1)
                     v2Bigger = true;
                 p1++;
                 p2++;
-            } else if(ver1.getNodeId() > ver2.getNodeId()) {
+            } else if(node1 > node2) {
                 // since ver1 is bigger that means it is missing a version that
                 // ver2 has
                 v2Bigger = true;
@@ -319,11 +511,69 @@ public class VectorClock implements Version, Serializable {
         }
 
         /* Okay, now check for left overs */
-        if(p1 < v1.versions.size())
+        if(p1 < v1.size)
             v1Bigger = true;
-        else if(p2 < v2.versions.size())
+        else if(p2 < v2.size)
             v2Bigger = true;
 
+        return occured(v1Bigger, v2Bigger);
+    }
+
+    /**
+     * Compare two serialized VectorClocks entry by entry, without
+     * deserializing either of them. The result is the same as
+     * {@link #compare(VectorClock, VectorClock)} on the two clocks. Any bytes
+     * after each clock are ignored.
+     * 
+     * @param bytes1 The bytes holding the first VectorClock
+     * @param offset1 The offset of the first VectorClock
+     * @param bytes2 The bytes holding the second VectorClock
+     * @param offset2 The offset of the second VectorClock
+     */
+    public static Occured compare(byte[] bytes1, int offset1, byte[] bytes2, int offset2) {
+        int numEntries1 = checkSerialized(bytes1, offset1);
+        int numEntries2 = checkSerialized(bytes2, offset2);
+        int versionSize1 = bytes1[offset1 + 2];
+        int versionSize2 = bytes2[offset2 + 2];
+        int entrySize1 = ByteUtils.SIZE_OF_SHORT + versionSize1;
+        int entrySize2 = ByteUtils.SIZE_OF_SHORT + versionSize2;
+        int p1 = offset1 + 3;
+        int p2 = offset2 + 3;
+        int end1 = p1 + numEntries1 * entrySize1;
+        int end2 = p2 + numEntries2 * entrySize2;
+
+        boolean v1Bigger = false;
+        boolean v2Bigger = false;
+        while(p1 < end1 && p2 < end2) {
+            short node1 = ByteUtils.readShort(bytes1, p1);
+            short node2 = ByteUtils.readShort(bytes2, p2);
+            if(node1 == node2) {
+                long ver1 = ByteUtils.readBytes(bytes1, p1 + ByteUtils.SIZE_OF_SHORT, versionSize1);
+                long ver2 = ByteUtils.readBytes(bytes2, p2 + ByteUtils.SIZE_OF_SHORT, versionSize2);
+                if(ver1 > ver2)
+                    v1Bigger = true;
+                else if(ver2 > ver1)
+                    v2Bigger = true;
+                p1 += entrySize1;
+                p2 += entrySize2;
+            } else if(node1 > node2) {
+                v2Bigger = true;
+                p2 += entrySize2;
+            } else {
+                v1Bigger = true;
+                p1 += entrySize1;
+            }
+        }
+
+        if(p1 < end1)
+            v1Bigger = true;
+        else if(p2 < end2)
+            v2Bigger = true;
+
+        return occured(v1Bigger, v2Bigger);
+    }
+
+    private static Occured occured(boolean v1Bigger, boolean v2Bigger) {
         /* This is the case where they are equal, return BEFORE arbitrarily */
         if(!v1Bigger && !v2Bigger)
             return Occured.BEFORE;
@@ -342,4 +592,26 @@ public class VectorClock implements Version, Serializable {
         return this.timestamp;
     }
 
+    private void writeObject(ObjectOutputStream output) throws IOException {
+        ObjectOutputStream.PutField fields = output.putFields();
+        fields.put("versions", getEntries());
+        fields.put("timestamp", timestamp);
+        output.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = input.readFields();
+        List<ClockEntry> entries = (List<ClockEntry>) fields.get("versions", null);
+        if(entries == null)
+            throw new IOException("Missing entries for vector clock.");
+        this.nodeIds = new short[entries.size()];
+        this.versions = new long[entries.size()];
+        this.size = 0;
+        this.maxVersion = -1;
+        for(ClockEntry entry: entries)
+            append(entry.getNodeId(), entry.getVersion());
+        this.timestamp = fields.get("timestamp", 0L);
+    }
+
 }
@@ -42,6 +42,8 @@ import org.xml.sax.SAXException;
 import voldemort.client.RoutingTier;
 import voldemort.serialization.SerializerDefinition;
 import voldemort.store.StoreDefinition;
+import voldemort.store.compress.CompressionDefinition;
+import voldemort.store.routed.ClockPruningDefinition;
 
 /**
  * Parses a stores.xml file
@@ -66,6 +68,12 @@ public class StoreDefinitionsMapper {
     public final static String STORE_REQUIRED_READS_ELMT = "required-reads";
     public final static String STORE_PREFERRED_READS_ELMT = "preferred-reads";
     public final static String STORE_RETENTION_POLICY_ELMT = "retention-days";
+    public final static String STORE_COMPRESSION_ELMT = "compression";
+    public final static String STORE_COMPRESSION_TYPE_ELMT = "type";
+    public final static String STORE_COMPRESSION_MIN_SIZE_ELMT = "min-size";
+    public final static String STORE_CLOCK_PRUNING_ELMT = "clock-pruning";
+    public final static String STORE_CLOCK_PRUNING_MAX_ENTRIES_ELMT = "max-entries";
+    public final static String STORE_CLOCK_PRUNING_MIN_AGE_ELMT = "min-age-ms";
     private final static String STORE_VERSION_ATTR = "version";
 
     private final Schema schema;
@@ -141,6 +149,8 @@ public class StoreDefinitionsMapper {
         Integer retentionPolicyDays = null;
         if(retention != null)
             retentionPolicyDays = Integer.parseInt(retention.getText());
+        CompressionDefinition valueCompression = readCompression(store.getChild(STORE_COMPRESSION_ELMT));
+        ClockPruningDefinition clockPruning = readClockPruning(store.getChild(STORE_CLOCK_PRUNING_ELMT));
 
         return new StoreDefinition(name,
                                    storeType,
@@ -152,7 +162,31 @@ public class StoreDefinitionsMapper {
                                    requiredReads,
                                    preferredWrites,
                                    requiredWrites,
-                                   retentionPolicyDays);
+                                   retentionPolicyDays,
+                                   valueCompression,
+                                   clockPruning);
+    }
+
+    private ClockPruningDefinition readClockPruning(Element elmt) {
+        if(elmt == null)
+            return null;
+        int maxEntries = Integer.parseInt(elmt.getChildText(STORE_CLOCK_PRUNING_MAX_ENTRIES_ELMT));
+        String minAge = elmt.getChildText(STORE_CLOCK_PRUNING_MIN_AGE_ELMT);
+        if(minAge == null)
+            return new ClockPruningDefinition(maxEntries);
+        else
+            return new ClockPruningDefinition(maxEntries, Long.parseLong(minAge));
+    }
+
+    private CompressionDefinition readCompression(Element elmt) {
+        if(elmt == null)
+            return null;
+        String type = elmt.getChildText(STORE_COMPRESSION_TYPE_ELMT);
+        String minSize = elmt.getChildText(STORE_COMPRESSION_MIN_SIZE_ELMT);
+        if(minSize == null)
+            return new CompressionDefinition(type);
+        else
+            return new CompressionDefinition(type, Integer.parseInt(minSize));
     }
 
     private SerializerDefinition readSerializer(Element elmt) {
@@ -221,6 +255,22 @@ public class StoreDefinitionsMapper {
         if(storeDefinition.hasRetentionPeriod())
             store.addContent(new Element(STORE_RETENTION_POLICY_ELMT).setText(Integer.toString(storeDefinition.getRetentionDays())));
 
+        if(storeDefinition.hasValueCompression()) {
+            CompressionDefinition def = storeDefinition.getValueCompression();
+            Element compression = new Element(STORE_COMPRESSION_ELMT);
+            compression.addContent(new Element(STORE_COMPRESSION_TYPE_ELMT).setText(def.getType()));
+            compression.addContent(new Element(STORE_COMPRESSION_MIN_SIZE_ELMT).setText(Integer.toString(def.getMinSize())));
+            store.addContent(compression);
+        }
+
+        if(storeDefinition.hasClockPruning()) {
+            ClockPruningDefinition def = storeDefinition.getClockPruning();
+            Element pruning = new Element(STORE_CLOCK_PRUNING_ELMT);
+            pruning.addContent(new Element(STORE_CLOCK_PRUNING_MAX_ENTRIES_ELMT).setText(Integer.toString(def.getMaxEntries())));
+            pruning.addContent(new Element(STORE_CLOCK_PRUNING_MIN_AGE_ELMT).setText(Long.toString(def.getMinAgeMs())));
+            store.addContent(pruning);
+        }
+
         return store;
     }
 
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import voldemort.cluster.Node;
+import voldemort.versioning.VectorClock;
+
+/**
+ * Shared fixtures for the benchmarks. Everything is seeded so runs are
+ * comparable.
+ */
+public class BenchmarkUtils {
+
+    public static final long SEED = 19580427L;
+
+    private BenchmarkUtils() {}
+
+    public static byte[][] randomKeys(Random random, int count, int size) {
+        byte[][] keys = new byte[count][];
+        for(int i = 0; i < count; i++)
+            keys[i] = randomBytes(random, size);
+        return keys;
+    }
+
+    public static byte[] randomBytes(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * A clock with an entry for each of the nodes 0 to numEntries - 1, each
+     * incremented a random number of times up to maxVersion
+     */
+    public static VectorClock randomClock(Random random, int numEntries, int maxVersion) {
+        VectorClock clock = new VectorClock(System.currentTimeMillis());
+        for(int node = 0; node < numEntries; node++) {
+            int increments = 1 + random.nextInt(maxVersion);
+            for(int i = 0; i < increments; i++)
+                clock.incrementVersion(node, clock.getTimestamp());
+        }
+        return clock;
+    }
+
+    /**
+     * Nodes with the given number of partitions each, assigned round robin
+     */
+    public static List<Node> nodes(int numNodes, int partitionsPerNode) {
+        List<List<Integer>> partitions = new ArrayList<List<Integer>>(numNodes);
+        for(int i = 0; i < numNodes; i++)
+            partitions.add(new ArrayList<Integer>(partitionsPerNode));
+        for(int p = 0; p < numNodes * partitionsPerNode; p++)
+            partitions.get(p % numNodes).add(p);
+        List<Node> nodes = new ArrayList<Node>(numNodes);
+        for(int i = 0; i < numNodes; i++)
+            nodes.add(new Node(i, "localhost", 8080 + i, 6666 + i, partitions.get(i)));
+        return nodes;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import voldemort.utils.ByteUtils;
+import voldemort.utils.FnvHashFunction;
+
+/**
+ * The key hashes used for routing and for read-only store lookups, by key
+ * size
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HashBenchmark {
+
+    @Param( { "8", "64", "1024" })
+    public int keySize;
+
+    private final FnvHashFunction fnv = new FnvHashFunction();
+    private byte[] key;
+
+    @Setup
+    public void setUp() {
+        key = BenchmarkUtils.randomBytes(new Random(BenchmarkUtils.SEED), keySize);
+    }
+
+    @Benchmark
+    public int fnvHash() {
+        return fnv.hash(key);
+    }
+
+    @Benchmark
+    public byte[] md5() {
+        return ByteUtils.md5(key);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import voldemort.cluster.Node;
+import voldemort.routing.ConsistentRoutingStrategy;
+
+/**
+ * Consistent hashing lookups, by cluster size and replication factor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RoutingBenchmark {
+
+    private static final int NUM_KEYS = 1024;
+
+    @Param( { "3", "12", "48" })
+    public int nodes;
+
+    @Param( { "1", "3" })
+    public int replicationFactor;
+
+    @Param( { "16", "256" })
+    public int partitionsPerNode;
+
+    private ConsistentRoutingStrategy strategy;
+    private byte[][] keys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkUtils.SEED);
+        strategy = new ConsistentRoutingStrategy(BenchmarkUtils.nodes(nodes, partitionsPerNode),
+                                                 Math.min(replicationFactor, nodes));
+        keys = BenchmarkUtils.randomKeys(random, NUM_KEYS, 16);
+    }
+
+    @Benchmark
+    public List<Node> routeRequest() {
+        next = (next + 1) & (NUM_KEYS - 1);
+        return strategy.routeRequest(keys[next]);
+    }
+
+    @Benchmark
+    public int getMasterPartition() {
+        next = (next + 1) & (NUM_KEYS - 1);
+        return strategy.getMasterPartition(keys[next]);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import voldemort.serialization.IdentitySerializer;
+import voldemort.serialization.VersionedSerializer;
+import voldemort.serialization.json.JsonTypeDefinition;
+import voldemort.serialization.json.JsonTypeSerializer;
+import voldemort.versioning.Versioned;
+
+/**
+ * The json serializer on a flat and a nested schema, and the versioned
+ * serializer that wraps every stored value, by value size
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SerializationBenchmark {
+
+    private static final String RECORD_TYPE = "{\"id\":\"int64\", \"name\":\"string\", "
+                                              + "\"score\":\"float64\", \"tags\":[\"string\"]}";
+
+    /* The number of tags in the json record and the bytes in the raw value */
+    @Param( { "1", "16", "256" })
+    public int size;
+
+    private JsonTypeSerializer intSerializer;
+    private JsonTypeSerializer recordSerializer;
+    private VersionedSerializer<byte[]> versionedSerializer;
+
+    private Map<String, Object> record;
+    private byte[] recordBytes;
+    private byte[] intBytes;
+    private Versioned<byte[]> versioned;
+    private byte[] versionedBytes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkUtils.SEED);
+        intSerializer = new JsonTypeSerializer(JsonTypeDefinition.fromJson("\"int32\""));
+        recordSerializer = new JsonTypeSerializer(JsonTypeDefinition.fromJson(RECORD_TYPE));
+        versionedSerializer = new VersionedSerializer<byte[]>(new IdentitySerializer());
+
+        List<String> tags = new ArrayList<String>(size);
+        for(int i = 0; i < size; i++)
+            tags.add("tag-" + random.nextInt(1000));
+        record = new HashMap<String, Object>();
+        record.put("id", random.nextLong());
+        record.put("name", "name-" + random.nextInt());
+        record.put("score", random.nextDouble());
+        record.put("tags", tags);
+        recordBytes = recordSerializer.toBytes(record);
+        intBytes = intSerializer.toBytes(random.nextInt());
+
+        versioned = new Versioned<byte[]>(BenchmarkUtils.randomBytes(random, size),
+                                          BenchmarkUtils.randomClock(random, 3, 100));
+        versionedBytes = versionedSerializer.toBytes(versioned);
+    }
+
+    @Benchmark
+    public byte[] jsonIntToBytes() {
+        return intSerializer.toBytes(12345);
+    }
+
+    @Benchmark
+    public Object jsonIntToObject() {
+        return intSerializer.toObject(intBytes);
+    }
+
+    @Benchmark
+    public byte[] jsonRecordToBytes() {
+        return recordSerializer.toBytes(record);
+    }
+
+    @Benchmark
+    public Object jsonRecordToObject() {
+        return recordSerializer.toObject(recordBytes);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object jsonRecordLazyField() {
+        return ((Map<String, Object>) recordSerializer.toLazyObject(recordBytes)).get("score");
+    }
+
+    @Benchmark
+    public byte[] versionedToBytes() {
+        return versionedSerializer.toBytes(versioned);
+    }
+
+    @Benchmark
+    public Versioned<byte[]> versionedToObject() {
+        return versionedSerializer.toObject(versionedBytes);
+    }
+}
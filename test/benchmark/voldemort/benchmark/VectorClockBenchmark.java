@@ -0,0 +1,116 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import voldemort.versioning.Occured;
+import voldemort.versioning.VectorClock;
+
+/**
+ * Serialization, comparison and increments of vector clocks, by number of
+ * entries
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class VectorClockBenchmark {
+
+    @Param( { "1", "3", "10", "50" })
+    public int entries;
+
+    /* Versions over 255 need two bytes per entry */
+    @Param( { "100", "1000" })
+    public int maxVersion;
+
+    private VectorClock clock;
+    private VectorClock successor;
+    private byte[] clockBytes;
+    private byte[] successorBytes;
+    private int incrementNode;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkUtils.SEED);
+        clock = BenchmarkUtils.randomClock(random, entries, maxVersion);
+        successor = clock.incremented(entries / 2, System.currentTimeMillis());
+        clockBytes = clock.toBytes();
+        successorBytes = successor.toBytes();
+        incrementNode = entries / 2;
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return clock.toBytes();
+    }
+
+    @Benchmark
+    public VectorClock fromBytes() {
+        return new VectorClock(clockBytes);
+    }
+
+    @Benchmark
+    public int sizeInBytes() {
+        return clock.sizeInBytes();
+    }
+
+    @Benchmark
+    public Occured compare() {
+        return clock.compare(successor);
+    }
+
+    @Benchmark
+    public Occured compareBytes() {
+        return VectorClock.compare(clockBytes, 0, successorBytes, 0);
+    }
+
+    @Benchmark
+    public Occured deserializeAndCompare() {
+        return new VectorClock(clockBytes).compare(new VectorClock(successorBytes));
+    }
+
+    @Benchmark
+    public VectorClock incremented() {
+        return clock.incremented(incrementNode, 0L);
+    }
+
+    @Benchmark
+    public VectorClock incrementedNewNode() {
+        return clock.incremented(entries + 1, 0L);
+    }
+
+    @Benchmark
+    public VectorClock merge() {
+        return clock.merge(successor);
+    }
+}
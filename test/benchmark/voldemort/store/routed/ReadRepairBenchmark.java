@@ -0,0 +1,95 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.routed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import voldemort.benchmark.BenchmarkUtils;
+import voldemort.utils.ByteArray;
+import voldemort.versioning.VectorClock;
+import voldemort.versioning.Versioned;
+
+/**
+ * Computing read repairs from the values returned by each replica, when all
+ * replicas agree and when some are stale. In this package since NodeValue is
+ * package private.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ReadRepairBenchmark {
+
+    @Param( { "2", "3", "6" })
+    public int replicas;
+
+    @Param( { "1", "5" })
+    public int clockEntries;
+
+    private final ReadRepairer<ByteArray, byte[]> repairer = new ReadRepairer<ByteArray, byte[]>();
+    private List<NodeValue<ByteArray, byte[]>> consistent;
+    private List<NodeValue<ByteArray, byte[]>> stale;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkUtils.SEED);
+        ByteArray key = new ByteArray(BenchmarkUtils.randomBytes(random, 16));
+        byte[] value = BenchmarkUtils.randomBytes(random, 64);
+        VectorClock clock = BenchmarkUtils.randomClock(random, clockEntries, 100);
+        VectorClock newer = clock.incremented(0, System.currentTimeMillis());
+
+        consistent = new ArrayList<NodeValue<ByteArray, byte[]>>(replicas);
+        stale = new ArrayList<NodeValue<ByteArray, byte[]>>(replicas);
+        for(int node = 0; node < replicas; node++) {
+            consistent.add(new NodeValue<ByteArray, byte[]>(node,
+                                                            key,
+                                                            new Versioned<byte[]>(value, clock)));
+            // every other replica missed the latest write
+            VectorClock version = node % 2 == 0 ? newer : clock;
+            stale.add(new NodeValue<ByteArray, byte[]>(node,
+                                                       key,
+                                                       new Versioned<byte[]>(value, version)));
+        }
+    }
+
+    @Benchmark
+    public List<NodeValue<ByteArray, byte[]>> consistentReplicas() {
+        return repairer.getRepairs(consistent);
+    }
+
+    @Benchmark
+    public List<NodeValue<ByteArray, byte[]>> staleReplicas() {
+        return repairer.getRepairs(stale);
+    }
+}
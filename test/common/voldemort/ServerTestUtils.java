@@ -30,6 +30,7 @@ import org.mortbay.jetty.Server;
 import org.mortbay.jetty.servlet.Context;
 import org.mortbay.jetty.servlet.ServletHolder;
 
+import voldemort.client.protocol.RequestFormatType;
 import voldemort.cluster.Cluster;
 import voldemort.cluster.Node;
 import voldemort.server.VoldemortConfig;
@@ -88,7 +89,20 @@ public class ServerTestUtils {
     }
 
     public static SocketStore getSocketStore(String storeName, int port) {
+        return getSocketStore(storeName, port, RequestFormatType.VOLDEMORT_NATIVE);
+    }
+
+    public static SocketStore getSocketStore(String storeName, int port, RequestFormatType type) {
+        return getSocketStore(storeName, port, type, false);
+    }
+
+    public static SocketStore getSocketStore(String storeName,
+                                             int port,
+                                             RequestFormatType type,
+                                             boolean wireCompression) {
         SocketPool socketPool = new SocketPool(1, 2, 1000, 32 * 1024);
+        socketPool.setRequestFormatType(type);
+        socketPool.setWireCompression(wireCompression);
         return new SocketStore(storeName, "localhost", port, socketPool);
     }
 
@@ -163,11 +177,24 @@ public class ServerTestUtils {
                                                      String baseDir,
                                                      String clusterFile,
                                                      String storeFile) throws IOException {
+        return createServerConfig(nodeId, baseDir, clusterFile, storeFile, new Props());
+    }
+
+    /**
+     * Create the config for a server with its home under the given base
+     * directory, applying the given properties on top of the test defaults
+     */
+    public static VoldemortConfig createServerConfig(int nodeId,
+                                                     String baseDir,
+                                                     String clusterFile,
+                                                     String storeFile,
+                                                     Props serverProps) throws IOException {
         Props props = new Props();
         props.put("node.id", nodeId);
         props.put("voldemort.home", baseDir + "/node-" + nodeId);
         props.put("bdb.cache.size", 1 * 1024 * 1024);
         props.put("jmx.enable", "false");
+        props.putAll(serverProps);
         VoldemortConfig config = new VoldemortConfig(props);
 
         // clean and reinit metadata dir.
@@ -47,6 +47,11 @@ public class DoNothingStore<K, V> implements Store<K, V> {
         return null;
     }
 
+    public List<Version> getVersions(K key) throws VoldemortException {
+        // do nothing
+        return null;
+    }
+
     public String getName() {
         return name;
     }
@@ -60,6 +65,21 @@ public class DoNothingStore<K, V> implements Store<K, V> {
     // Do nothing
     }
 
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<V>> entries)
+            throws VoldemortException {
+        return null;
+    }
+
+    public void putIfCurrent(K key, Versioned<V> value, Version expected)
+            throws VoldemortException {
+    // Do nothing
+    }
+
+    public void putSuperseding(K key, Versioned<V> value, Version superseded)
+            throws VoldemortException {
+    // Do nothing
+    }
+
     public Map<K, List<Versioned<V>>> getAll(Iterable<K> keys) throws VoldemortException {
         return null;
     }
@@ -52,6 +52,10 @@ public class FailingStore<K, V> implements Store<K, V> {
         throw exception;
     }
 
+    public List<Version> getVersions(K key) throws VoldemortException {
+        throw exception;
+    }
+
     public String getName() {
         return name;
     }
@@ -64,6 +68,21 @@ public class FailingStore<K, V> implements Store<K, V> {
         throw exception;
     }
 
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<V>> entries)
+            throws VoldemortException {
+        throw exception;
+    }
+
+    public void putIfCurrent(K key, Versioned<V> value, Version expected)
+            throws VoldemortException {
+        throw exception;
+    }
+
+    public void putSuperseding(K key, Versioned<V> value, Version superseded)
+            throws VoldemortException {
+        throw exception;
+    }
+
     public Map<K, List<Versioned<V>>> getAll(Iterable<K> keys) throws VoldemortException {
         throw exception;
     }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.store;
+
+import java.util.List;
+import java.util.Map;
+
+import voldemort.VoldemortException;
+import voldemort.versioning.Version;
+import voldemort.versioning.Versioned;
+
+/**
+ * A store whose faults can be switched on and off while it is in use. It can
+ * delay every operation, like a {@link SleepyStore}, and fail every operation,
+ * like a {@link FailingStore}.
+ */
+public class FaultInjectingStore<K, V> extends DelegatingStore<K, V> {
+
+    private volatile long delayMs;
+    private volatile boolean failing;
+
+    public FaultInjectingStore(Store<K, V> innerStore) {
+        super(innerStore);
+        this.delayMs = 0;
+        this.failing = false;
+    }
+
+    public long getDelayMs() {
+        return delayMs;
+    }
+
+    /**
+     * @param delayMs How long to sleep before each operation, 0 for no delay
+     */
+    public void setDelayMs(long delayMs) {
+        this.delayMs = delayMs;
+    }
+
+    public boolean isFailing() {
+        return failing;
+    }
+
+    /**
+     * @param failing If true, every operation throws an exception after the
+     *        delay
+     */
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    @Override
+    public boolean delete(K key, Version version) throws VoldemortException {
+        injectFaults();
+        return getInnerStore().delete(key, version);
+    }
+
+    @Override
+    public Map<K, List<Versioned<V>>> getAll(Iterable<K> keys) throws VoldemortException {
+        injectFaults();
+        return getInnerStore().getAll(keys);
+    }
+
+    @Override
+    public List<Versioned<V>> get(K key) throws VoldemortException {
+        injectFaults();
+        return getInnerStore().get(key);
+    }
+
+    @Override
+    public List<Version> getVersions(K key) throws VoldemortException {
+        injectFaults();
+        return getInnerStore().getVersions(key);
+    }
+
+    @Override
+    public void put(K key, Versioned<V> value) throws VoldemortException {
+        injectFaults();
+        getInnerStore().put(key, value);
+    }
+
+    @Override
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<V>> entries)
+            throws VoldemortException {
+        injectFaults();
+        return getInnerStore().putAll(entries);
+    }
+
+    @Override
+    public void putIfCurrent(K key, Versioned<V> value, Version expected)
+            throws VoldemortException {
+        injectFaults();
+        getInnerStore().putIfCurrent(key, value, expected);
+    }
+
+    @Override
+    public void putSuperseding(K key, Versioned<V> value, Version superseded)
+            throws VoldemortException {
+        injectFaults();
+        getInnerStore().putSuperseding(key, value, superseded);
+    }
+
+    private void injectFaults() {
+        long delay = delayMs;
+        if(delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch(InterruptedException e) {
+                throw new VoldemortException(e);
+            }
+        }
+        if(failing)
+            throw new VoldemortException("Injected failure in store '" + getName() + "'.");
+    }
+
+}
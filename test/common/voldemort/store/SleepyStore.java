@@ -17,6 +17,7 @@
 package voldemort.store;
 
 import java.util.List;
+import java.util.Map;
 
 import voldemort.VoldemortException;
 import voldemort.versioning.Version;
@@ -51,6 +52,16 @@ public class SleepyStore<K, V> extends DelegatingStore<K, V> {
         }
     }
 
+    @Override
+    public List<Version> getVersions(K key) throws VoldemortException {
+        try {
+            Thread.sleep(sleepTimeMs);
+            return getInnerStore().getVersions(key);
+        } catch(InterruptedException e) {
+            throw new VoldemortException(e);
+        }
+    }
+
     @Override
     public void put(K key, Versioned<V> value) throws VoldemortException {
         try {
@@ -61,4 +72,37 @@ public class SleepyStore<K, V> extends DelegatingStore<K, V> {
         }
     }
 
+    @Override
+    public Map<K, VoldemortException> putAll(Map<K, Versioned<V>> entries)
+            throws VoldemortException {
+        try {
+            Thread.sleep(sleepTimeMs);
+            return getInnerStore().putAll(entries);
+        } catch(InterruptedException e) {
+            throw new VoldemortException(e);
+        }
+    }
+
+    @Override
+    public void putIfCurrent(K key, Versioned<V> value, Version expected)
+            throws VoldemortException {
+        try {
+            Thread.sleep(sleepTimeMs);
+            getInnerStore().putIfCurrent(key, value, expected);
+        } catch(InterruptedException e) {
+            throw new VoldemortException(e);
+        }
+    }
+
+    @Override
+    public void putSuperseding(K key, Versioned<V> value, Version superseded)
+            throws VoldemortException {
+        try {
+            Thread.sleep(sleepTimeMs);
+            getInnerStore().putSuperseding(key, value, superseded);
+        } catch(InterruptedException e) {
+            throw new VoldemortException(e);
+        }
+    }
+
 }
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance;
+
+import java.io.PrintStream;
+
+/**
+ * A fixed-size histogram of latencies with bounded relative error, in the
+ * style of Gil Tene's HdrHistogram. Values are bucketed by their leading bit,
+ * and each bucket is split linearly into enough sub-buckets to keep the given
+ * number of significant decimal digits, so memory depends only on the range
+ * and precision and not on the number of values recorded.
+ * 
+ * Values are plain longs, the caller picks the unit (the workload driver
+ * records microseconds). Values above the highest trackable value are clamped
+ * to it.
+ * 
+ * This class is thread safe, all access is synchronized. Recording from many
+ * threads into one histogram is contended, use a {@link LatencyRecorder} to
+ * give each thread its own.
+ */
+public class LatencyHistogram {
+
+    private final long highestTrackableValue;
+    private final int significantDigits;
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final int subBucketCount;
+    private final long subBucketMask;
+    private final int leadingZeroCountBase;
+    private final long[] counts;
+
+    private long totalCount;
+    private long min;
+    private long max;
+    private double sum;
+    private double sumOfSquares;
+
+    /**
+     * Create a histogram
+     * 
+     * @param highestTrackableValue The largest value that can be recorded
+     * @param significantDigits The number of significant decimal digits to
+     *        keep, from 1 to 5
+     */
+    public LatencyHistogram(long highestTrackableValue, int significantDigits) {
+        if(highestTrackableValue < 2)
+            throw new IllegalArgumentException("Highest trackable value must be at least 2.");
+        if(significantDigits < 1 || significantDigits > 5)
+            throw new IllegalArgumentException("Significant digits must be between 1 and 5.");
+        this.highestTrackableValue = highestTrackableValue;
+        this.significantDigits = significantDigits;
+
+        long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+        int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution)
+                                                      / Math.log(2));
+        this.subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+        this.subBucketCount = 1 << subBucketCountMagnitude;
+        this.subBucketHalfCount = subBucketCount / 2;
+        this.subBucketMask = subBucketCount - 1;
+        this.leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+
+        long smallestUntrackableValue = subBucketCount;
+        int bucketCount = 1;
+        while(smallestUntrackableValue <= highestTrackableValue) {
+            if(smallestUntrackableValue > Long.MAX_VALUE / 2) {
+                bucketCount++;
+                break;
+            }
+            smallestUntrackableValue <<= 1;
+            bucketCount++;
+        }
+        this.counts = new long[(bucketCount + 1) * subBucketHalfCount];
+        reset();
+    }
+
+    /**
+     * Record a single value
+     * 
+     * @param value The value, negative values are recorded as 0
+     */
+    public synchronized void record(long value) {
+        recordCount(value, 1);
+    }
+
+    /**
+     * Record a value, correcting for coordinated omission. A load generator
+     * that waits for each request before sending the next stops sending while
+     * the system under test stalls, so the requests that would have been sent
+     * during the stall are never measured. If the value exceeds the expected
+     * interval between requests, this also records the latencies those missed
+     * requests would have seen: value - interval, value - 2 * interval, and so
+     * on down to the interval.
+     * 
+     * Where the intended start time of each request is known it is better to
+     * measure from it instead, see {@link PerformanceTest}.
+     * 
+     * @param value The value
+     * @param expectedInterval The expected interval between values, or 0 to
+     *        do no correction
+     */
+    public synchronized void recordWithExpectedInterval(long value, long expectedInterval) {
+        recordCount(value, 1);
+        if(expectedInterval <= 0)
+            return;
+        long missing = value - expectedInterval;
+        for(; missing >= expectedInterval; missing -= expectedInterval)
+            recordCount(missing, 1);
+    }
+
+    /**
+     * Add all the values recorded in the given histogram to this one. The two
+     * histograms must have been created with the same parameters.
+     * 
+     * @param other The histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        if(other == this)
+            throw new IllegalArgumentException("Can't add a histogram to itself.");
+        if(other.highestTrackableValue != highestTrackableValue
+           || other.significantDigits != significantDigits)
+            throw new IllegalArgumentException("Histograms have different ranges or precision.");
+        LatencyHistogram copy = other.copy();
+        synchronized(this) {
+            for(int i = 0; i < counts.length; i++)
+                counts[i] += copy.counts[i];
+            if(copy.totalCount > 0) {
+                min = Math.min(min, copy.min);
+                max = Math.max(max, copy.max);
+            }
+            totalCount += copy.totalCount;
+            sum += copy.sum;
+            sumOfSquares += copy.sumOfSquares;
+        }
+    }
+
+    /**
+     * @return A new histogram with the same parameters and contents as this
+     *         one
+     */
+    public synchronized LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram(highestTrackableValue, significantDigits);
+        System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+        copy.totalCount = totalCount;
+        copy.min = min;
+        copy.max = max;
+        copy.sum = sum;
+        copy.sumOfSquares = sumOfSquares;
+        return copy;
+    }
+
+    /**
+     * Atomically copy this histogram and reset it
+     * 
+     * @return The values recorded since the last reset
+     */
+    public synchronized LatencyHistogram drain() {
+        LatencyHistogram copy = copy();
+        reset();
+        return copy;
+    }
+
+    public synchronized void reset() {
+        for(int i = 0; i < counts.length; i++)
+            counts[i] = 0;
+        totalCount = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+        sum = 0.0;
+        sumOfSquares = 0.0;
+    }
+
+    public synchronized long getCount() {
+        return totalCount;
+    }
+
+    public synchronized long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized double getMean() {
+        return totalCount == 0 ? 0.0 : sum / totalCount;
+    }
+
+    public synchronized double getStdDeviation() {
+        if(totalCount == 0)
+            return 0.0;
+        double mean = sum / totalCount;
+        return Math.sqrt(Math.max(0.0, sumOfSquares / totalCount - mean * mean));
+    }
+
+    /**
+     * Get the value at the given quantile. The result is the highest value
+     * equivalent (within the histogram's precision) to the true quantile, or
+     * 0 if nothing has been recorded.
+     * 
+     * @param quantile The quantile, between 0.0 and 1.0
+     * @return The value at that quantile
+     */
+    public synchronized long getQuantile(double quantile) {
+        if(quantile < 0.0 || quantile > 1.0)
+            throw new IllegalArgumentException("Quantile must be between 0.0 and 1.0");
+        if(totalCount == 0)
+            return 0;
+        long countAtQuantile = Math.max(1, (long) Math.ceil(quantile * totalCount));
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if(seen >= countAtQuantile)
+                return Math.min(max, highestEquivalentValue(valueFromIndex(i)));
+        }
+        return max;
+    }
+
+    /**
+     * Print the percentile distribution in the text format of HdrHistogram's
+     * outputPercentileDistribution, which its plotting tools read. The
+     * percentiles reported get closer together towards the tail, with five
+     * steps for each halving of the distance to 100%.
+     * 
+     * @param out The stream to print to
+     * @param outputScale The values are divided by this, e.g. 1000.0 to print
+     *        microsecond values as milliseconds
+     */
+    public synchronized void writePercentiles(PrintStream out, double outputScale) {
+        String lineFormat = "%12." + significantDigits + "f %2.12f %10d %14.2f%n";
+        String lastLineFormat = "%12." + significantDigits + "f %2.12f %10d%n";
+        out.printf("%12s %14s %10s %14s%n%n",
+                   "Value",
+                   "Percentile",
+                   "TotalCount",
+                   "1/(1-Percentile)");
+
+        double percentile = 0.0;
+        long seen = 0;
+        for(int i = 0; i < counts.length && seen < totalCount; i++) {
+            if(counts[i] == 0)
+                continue;
+            seen += counts[i];
+            long value = Math.min(max, highestEquivalentValue(valueFromIndex(i)));
+            while(seen < totalCount && 100.0 * seen >= percentile * totalCount) {
+                out.printf(lineFormat,
+                           value / outputScale,
+                           percentile / 100.0,
+                           seen,
+                           1.0 / (1.0 - percentile / 100.0));
+                double halvings = Math.floor(Math.log(100.0 / (100.0 - percentile)) / Math.log(2));
+                percentile += 100.0 / (5 * Math.pow(2, halvings + 1));
+            }
+        }
+        if(totalCount > 0)
+            out.printf(lastLineFormat, max / outputScale, 1.0, totalCount);
+
+        String valueFormat = "%12." + significantDigits + "f";
+        out.printf("#[Mean    = " + valueFormat + ", StdDeviation   = " + valueFormat + "]%n",
+                   getMean() / outputScale,
+                   getStdDeviation() / outputScale);
+        out.printf("#[Max     = " + valueFormat + ", Total count    = %12d]%n",
+                   max / outputScale,
+                   totalCount);
+        out.printf("#[Buckets = %12d, SubBuckets     = %12d]%n",
+                   counts.length / subBucketHalfCount - 1,
+                   subBucketCount);
+    }
+
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    public int getSignificantDigits() {
+        return significantDigits;
+    }
+
+    /* Must be called with the lock held */
+    void recordCount(long value, long count) {
+        if(value < 0)
+            value = 0;
+        else if(value > highestTrackableValue)
+            value = highestTrackableValue;
+        counts[countsIndex(value)] += count;
+        totalCount += count;
+        sum += (double) value * count;
+        sumOfSquares += (double) value * value * count;
+        if(value < min)
+            min = value;
+        if(value > max)
+            max = value;
+    }
+
+    private int countsIndex(long value) {
+        int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        int bucketBaseIndex = (bucketIndex + 1) << subBucketHalfCountMagnitude;
+        return bucketBaseIndex + subBucketIndex - subBucketHalfCount;
+    }
+
+    private long valueFromIndex(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if(bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        return ((long) subBucketIndex) << bucketIndex;
+    }
+
+    private long highestEquivalentValue(long value) {
+        int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        long lowest = ((long) subBucketIndex) << bucketIndex;
+        int rangeMagnitude = subBucketIndex >= subBucketCount ? bucketIndex + 1 : bucketIndex;
+        return lowest + (1L << rangeMagnitude) - 1;
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records latencies from many threads without contention by giving each
+ * thread its own {@link LatencyHistogram}. The per-thread histograms are
+ * merged when a snapshot is taken, which also resets them, so successive
+ * snapshots cover successive intervals. Everything recorded is also kept in a
+ * running total.
+ */
+public class LatencyRecorder {
+
+    private final long highestTrackableValue;
+    private final int significantDigits;
+    private final List<LatencyHistogram> histograms;
+    private final ThreadLocal<LatencyHistogram> threadHistogram;
+    private final LatencyHistogram total;
+
+    public LatencyRecorder(long highestTrackableValue, int significantDigits) {
+        this.highestTrackableValue = highestTrackableValue;
+        this.significantDigits = significantDigits;
+        this.histograms = new CopyOnWriteArrayList<LatencyHistogram>();
+        this.total = newHistogram();
+        this.threadHistogram = new ThreadLocal<LatencyHistogram>() {
+
+            @Override
+            protected LatencyHistogram initialValue() {
+                LatencyHistogram histogram = newHistogram();
+                histograms.add(histogram);
+                return histogram;
+            }
+        };
+    }
+
+    public void record(long value) {
+        threadHistogram.get().record(value);
+    }
+
+    /**
+     * Record a value, correcting for coordinated omission
+     * 
+     * @see LatencyHistogram#recordWithExpectedInterval(long, long)
+     */
+    public void recordWithExpectedInterval(long value, long expectedInterval) {
+        threadHistogram.get().recordWithExpectedInterval(value, expectedInterval);
+    }
+
+    /**
+     * Merge and reset the values recorded by every thread since the last
+     * snapshot, and add them to the total
+     * 
+     * @return The values recorded in the interval
+     */
+    public synchronized LatencyHistogram intervalSnapshot() {
+        LatencyHistogram interval = newHistogram();
+        for(LatencyHistogram histogram: histograms)
+            interval.add(histogram.drain());
+        total.add(interval);
+        return interval;
+    }
+
+    /**
+     * @return All the values recorded so far, including any not yet in a
+     *         snapshot
+     */
+    public synchronized LatencyHistogram getTotal() {
+        LatencyHistogram all = total.copy();
+        for(LatencyHistogram histogram: histograms)
+            all.add(histogram);
+        return all;
+    }
+
+    /**
+     * Forget everything recorded so far
+     */
+    public synchronized void reset() {
+        for(LatencyHistogram histogram: histograms)
+            histogram.reset();
+        total.reset();
+    }
+
+    private LatencyHistogram newHistogram() {
+        return new LatencyHistogram(highestTrackableValue, significantDigits);
+    }
+
+}
@@ -16,22 +16,43 @@
 
 package voldemort.performance;
 
+import java.io.PrintStream;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
-import voldemort.TestUtils;
 import voldemort.utils.Time;
 
+/**
+ * Runs an operation many times from a pool of threads and reports latency
+ * statistics. Latencies are recorded in nanoseconds into per-thread
+ * histograms, so memory does not grow with the number of requests.
+ * 
+ * If a target rate is given, request i is scheduled to start at start + i /
+ * rate and its latency is measured from that intended start time rather than
+ * from when a thread got around to it. Time spent queued behind slow requests
+ * is therefore counted, as a real client sending at that rate would see it,
+ * instead of being hidden by the benchmark slowing down with the system
+ * (coordinated omission).
+ */
 public abstract class PerformanceTest {
 
+    public static final long MAX_LATENCY_NS = Time.SECONDS_PER_HOUR * Time.NS_PER_SECOND;
+    public static final int SIGNIFICANT_DIGITS = 3;
+    public static final String CSV_HEADER = "elapsed_sec,count,ops_per_sec,mean_ms,"
+                                            + "p50_ms,p90_ms,p99_ms,p999_ms,max_ms";
+
     private final AtomicInteger numberOfFailures = new AtomicInteger(0);
     private long elapsedTimeNs;
-    private long[] operationTimes;
+    private LatencyRecorder recorder;
+    private LatencyHistogram operationTimes;
     private volatile boolean hasCompleted;
     private int numberOfThreads;
+    private PrintStream intervalOutput;
+    private long intervalMs;
 
     public abstract void doOperation(int index) throws Exception;
 
@@ -43,45 +64,97 @@ public abstract class PerformanceTest {
     // override me to do stuff
     }
 
+    /**
+     * Print a CSV line of statistics for each interval while running. The
+     * columns are given by {@link #CSV_HEADER}.
+     * 
+     * @param out The stream to print to, or null for no interval output
+     * @param intervalMs The length of an interval
+     */
+    public void setIntervalOutput(PrintStream out, long intervalMs) {
+        if(out != null && intervalMs <= 0)
+            throw new IllegalArgumentException("Interval must be positive.");
+        this.intervalOutput = out;
+        this.intervalMs = intervalMs;
+    }
+
     public void run(int numRequests, int numThreads) {
+        run(numRequests, numThreads, 0.0);
+    }
+
+    /**
+     * Run the test
+     * 
+     * @param numRequests The number of operations to do
+     * @param numThreads The number of threads to do them from
+     * @param targetOpsPerSecond The rate to issue operations at, or 0 to go as
+     *        fast as possible
+     */
+    public void run(final int numRequests, int numThreads, double targetOpsPerSecond) {
         setUp();
         try {
             this.numberOfThreads = numThreads;
             this.hasCompleted = false;
             this.numberOfFailures.set(0);
-            this.operationTimes = new long[numRequests];
+            this.recorder = new LatencyRecorder(MAX_LATENCY_NS, SIGNIFICANT_DIGITS);
             ExecutorService executor = Executors.newFixedThreadPool(numThreads);
             final CountDownLatch latch = new CountDownLatch(numRequests);
             final AtomicInteger index = new AtomicInteger(0);
+            final long intervalNs = targetOpsPerSecond > 0 ? (long) (Time.NS_PER_SECOND / targetOpsPerSecond)
+                                                          : 0;
 
-            long start = System.nanoTime();
-            for(int i = 0; i < numRequests; i++) {
+            final long start = System.nanoTime();
+            // each thread takes the next request until there are none left
+            for(int i = 0; i < numThreads; i++) {
                 executor.execute(new Runnable() {
 
                     public void run() {
-                        int current = index.getAndIncrement();
-                        long begin = System.nanoTime();
-                        try {
-                            doOperation(current);
-                        } catch(Exception e) {
-                            numberOfFailures.getAndIncrement();
-                            e.printStackTrace();
-                        } finally {
-                            operationTimes[current] = System.nanoTime() - begin;
-                            latch.countDown();
+                        int current;
+                        while((current = index.getAndIncrement()) < numRequests) {
+                            long begin;
+                            if(intervalNs > 0) {
+                                begin = start + current * intervalNs;
+                                long now;
+                                while((now = System.nanoTime()) < begin)
+                                    LockSupport.parkNanos(begin - now);
+                            } else {
+                                begin = System.nanoTime();
+                            }
+                            try {
+                                doOperation(current);
+                            } catch(Exception e) {
+                                numberOfFailures.getAndIncrement();
+                                e.printStackTrace();
+                            } finally {
+                                recorder.record(System.nanoTime() - begin);
+                                latch.countDown();
+                            }
                         }
                     }
                 });
             }
 
+            if(intervalOutput != null)
+                intervalOutput.println(CSV_HEADER);
             try {
-                latch.await();
+                long lastNs = start;
+                while(!latch.await(intervalOutput == null ? Long.MAX_VALUE : intervalMs,
+                                   TimeUnit.MILLISECONDS)) {
+                    long now = System.nanoTime();
+                    printInterval(recorder.intervalSnapshot(), now - start, now - lastNs);
+                    lastNs = now;
+                }
+                if(intervalOutput != null) {
+                    long now = System.nanoTime();
+                    printInterval(recorder.intervalSnapshot(), now - start, now - lastNs);
+                }
             } catch(InterruptedException e) {
                 e.printStackTrace();
             }
 
-            this.hasCompleted = true;
             this.elapsedTimeNs = System.nanoTime() - start;
+            this.operationTimes = recorder.getTotal();
+            this.hasCompleted = true;
             executor.shutdownNow();
             try {
                 executor.awaitTermination(1, TimeUnit.SECONDS);
@@ -94,7 +167,7 @@ public abstract class PerformanceTest {
     public void printStats() {
         if(!hasCompleted)
             throw new RuntimeException("Hasn't finished running yet!");
-        System.out.println("Total number of operations: " + this.operationTimes.length);
+        System.out.println("Total number of operations: " + this.operationTimes.getCount());
         System.out.println("Total elapsed seconds: " + this.elapsedTimeNs
                            / (double) Time.NS_PER_SECOND);
         System.out.println("Number of failures: " + this.numberOfFailures.get());
@@ -104,30 +177,60 @@ public abstract class PerformanceTest {
         System.out.println("Median time: " + getOperationTimeMsQuantile(0.5d) + " ms");
         System.out.println("1st percentile: " + getOperationTimeMsQuantile(0.01d) + " ms");
         System.out.println("99th percentile: " + getOperationTimeMsQuantile(0.99d) + " ms");
+        System.out.println("99.9th percentile: " + getOperationTimeMsQuantile(0.999d) + " ms");
+        System.out.println("Max time: " + this.operationTimes.getMax() / (double) Time.NS_PER_MS
+                           + " ms");
+    }
+
+    /**
+     * Print the full latency distribution, in milliseconds, in HdrHistogram's
+     * percentile distribution format so runs from different builds can be
+     * plotted against each other
+     */
+    public void writePercentiles(PrintStream out) {
+        getOperationTimes().writePercentiles(out, Time.NS_PER_MS);
+    }
+
+    /**
+     * @return The latencies of all operations, in nanoseconds
+     */
+    public LatencyHistogram getOperationTimes() {
+        if(!hasCompleted)
+            throw new RuntimeException("Hasn't finished running yet!");
+        return this.operationTimes.copy();
     }
 
     public double getOperationsPerSecond() {
         if(!hasCompleted)
             throw new RuntimeException("Hasn't finished running yet!");
         double elapsedSeconds = this.elapsedTimeNs / (double) Time.NS_PER_SECOND;
-        return this.operationTimes.length / elapsedSeconds;
+        return this.operationTimes.getCount() / elapsedSeconds;
     }
 
     public double getOperationTimeMsQuantile(double quantile) {
         if(!hasCompleted)
             throw new RuntimeException("Hasn't finished running yet!");
-        return TestUtils.quantile(this.operationTimes, quantile) / (double) Time.NS_PER_MS;
+        return this.operationTimes.getQuantile(quantile) / (double) Time.NS_PER_MS;
     }
 
     public double getAverageOperationTimeMs() {
         if(!hasCompleted)
             throw new RuntimeException("Hasn't finished running yet!");
+        return this.operationTimes.getMean() / Time.NS_PER_MS;
+    }
 
-        double sum = 0.0;
-        for(int i = 0; i < this.operationTimes.length; i++)
-            sum += this.operationTimes[i];
-        sum /= Time.NS_PER_MS;
-        return sum / this.operationTimes.length;
+    private void printInterval(LatencyHistogram interval, long elapsedNs, long intervalNs) {
+        double ms = Time.NS_PER_MS;
+        intervalOutput.printf("%.3f,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                              elapsedNs / (double) Time.NS_PER_SECOND,
+                              interval.getCount(),
+                              interval.getCount() * (double) Time.NS_PER_SECOND / intervalNs,
+                              interval.getMean() / ms,
+                              interval.getQuantile(0.5) / ms,
+                              interval.getQuantile(0.9) / ms,
+                              interval.getQuantile(0.99) / ms,
+                              interval.getQuantile(0.999) / ms,
+                              interval.getMax() / ms);
     }
 
 }
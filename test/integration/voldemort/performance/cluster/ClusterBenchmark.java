@@ -0,0 +1,240 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.cluster;
+
+import static voldemort.utils.Utils.croak;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import voldemort.client.RoutingTier;
+import voldemort.client.SocketStoreClientFactory;
+import voldemort.client.StoreClient;
+import voldemort.client.StoreClientFactory;
+import voldemort.performance.LatencyHistogram;
+import voldemort.performance.workload.Operation;
+import voldemort.performance.workload.StoreClientWorkloadStore;
+import voldemort.performance.workload.Workload;
+import voldemort.performance.workload.WorkloadRunner;
+import voldemort.performance.workload.WorkloadStats;
+import voldemort.serialization.SerializerDefinition;
+import voldemort.store.StoreDefinition;
+import voldemort.store.bdb.BdbStorageConfiguration;
+import voldemort.utils.Props;
+import voldemort.utils.Time;
+
+/**
+ * Runs a {@link Workload} through the socket client against a
+ * {@link LocalCluster}, first with every node healthy and then with a fault
+ * injected into one node, to measure what quorums, failure detection and read
+ * repair cost over the real network path. The scenarios, run in order, are:
+ * 
+ * <ul>
+ * <li>baseline - No faults</li>
+ * <li>slow - Every operation on the fault node is delayed</li>
+ * <li>failing - Every operation on the fault node returns an error</li>
+ * <li>down - The fault node is stopped</li>
+ * <li>recovered - The fault node is restarted; reads of keys written while it
+ * was down or failing find it stale and repair it</li>
+ * </ul>
+ * 
+ * The properties understood, in addition to those of {@link Workload} and
+ * {@link WorkloadRunner} (which apply to every scenario, except that only the
+ * first loads the records), are:
+ * 
+ * <ul>
+ * <li>nodes - The number of servers (3)</li>
+ * <li>replication.factor, required.reads, required.writes, preferred.reads,
+ * preferred.writes - The store's routing (3, 2, 2, unset, unset)</li>
+ * <li>storage.engine - The store's storage engine (bdb)</li>
+ * <li>forked - Run each server in its own JVM rather than this one (false)</li>
+ * <li>forked.jvm.args - Comma separated arguments for forked JVMs (none)</li>
+ * <li>scenarios - Comma separated scenarios to run (all of them)</li>
+ * <li>fault.node - The node to inject faults into (the last one)</li>
+ * <li>slow.delay.ms - The delay of the slow scenario (20)</li>
+ * <li>client.threads, client.socket.timeout.ms, client.routing.timeout.ms,
+ * client.node.bannage.ms - Socket client settings (20, 5000, 5000, 1000)</li>
+ * <li>server.* - Server properties, with the prefix removed; the defaults
+ * turn off the http server and verbose logging</li>
+ * </ul>
+ * 
+ * The harness needs nothing but this machine: servers listen on free loopback
+ * ports and keep their data under a temporary directory that is deleted at the
+ * end.
+ */
+public class ClusterBenchmark {
+
+    public static final String STORE_NAME = "test";
+    public static final List<String> SCENARIOS = Collections.unmodifiableList(Arrays.asList("baseline",
+                                                                                         "slow",
+                                                                                         "failing",
+                                                                                         "down",
+                                                                                         "recovered"));
+
+    private final Props props;
+    private final LocalCluster cluster;
+    private final ClusterNode faultNode;
+    private final long slowDelayMs;
+
+    public ClusterBenchmark(Props props) throws Exception {
+        this.props = props;
+        int numNodes = props.getInt("nodes", 3);
+        Integer preferredReads = props.containsKey("preferred.reads") ? props.getInt("preferred.reads")
+                                                                     : null;
+        Integer preferredWrites = props.containsKey("preferred.writes") ? props.getInt("preferred.writes")
+                                                                       : null;
+        StoreDefinition storeDef = new StoreDefinition(STORE_NAME,
+                                                       props.getString("storage.engine",
+                                                                       BdbStorageConfiguration.TYPE_NAME),
+                                                       new SerializerDefinition("string"),
+                                                       new SerializerDefinition("identity"),
+                                                       RoutingTier.CLIENT,
+                                                       props.getInt("replication.factor", 3),
+                                                       preferredReads,
+                                                       props.getInt("required.reads", 2),
+                                                       preferredWrites,
+                                                       props.getInt("required.writes", 2),
+                                                       null);
+
+        Props serverProps = new Props();
+        serverProps.put("http.enable", "false");
+        serverProps.put("enable.verbose.logging", "false");
+        for(Map.Entry<String, String> entry: props.entrySet())
+            if(entry.getKey().startsWith("server."))
+                serverProps.put(entry.getKey().substring("server.".length()), entry.getValue());
+
+        this.cluster = new LocalCluster(numNodes,
+                                        storeDef,
+                                        serverProps,
+                                        props.getBoolean("forked", false),
+                                        props.getList("forked.jvm.args",
+                                                      Collections.<String> emptyList()));
+        this.faultNode = cluster.getNode(props.getInt("fault.node", numNodes - 1));
+        this.slowDelayMs = props.getLong("slow.delay.ms", 20);
+    }
+
+    /**
+     * Start the cluster, run the scenarios, print a summary, and stop the
+     * cluster
+     */
+    public void run() throws Exception {
+        List<String> scenarios = props.getList("scenarios", SCENARIOS);
+        for(String scenario: scenarios)
+            if(!SCENARIOS.contains(scenario))
+                throw new IllegalArgumentException("Unknown scenario '" + scenario + "'.");
+
+        System.out.println("Starting " + cluster.getNumberOfNodes() + " nodes.");
+        cluster.start();
+        int clientThreads = props.getInt("client.threads", 20);
+        ExecutorService executor = Executors.newFixedThreadPool(clientThreads);
+        try {
+            StoreClientFactory factory = new SocketStoreClientFactory(executor,
+                                                                      clientThreads,
+                                                                      clientThreads
+                                                                              * cluster.getNumberOfNodes(),
+                                                                      props.getInt("client.socket.timeout.ms",
+                                                                                   5000),
+                                                                      props.getInt("client.routing.timeout.ms",
+                                                                                   5000),
+                                                                      props.getInt("client.node.bannage.ms",
+                                                                                   1000),
+                                                                      cluster.getBootstrapUrls());
+            StoreClient<String, byte[]> client = factory.getStoreClient(STORE_NAME);
+            StoreClientWorkloadStore store = new StoreClientWorkloadStore(client);
+            Workload workload = new Workload(props);
+
+            List<WorkloadStats> results = new ArrayList<WorkloadStats>();
+            for(int i = 0; i < scenarios.size(); i++) {
+                String scenario = scenarios.get(i);
+                injectFaults(scenario);
+                System.out.println();
+                System.out.println("SCENARIO " + scenario);
+                Props runProps = new Props();
+                runProps.putAll(props);
+                if(i > 0)
+                    runProps.put("load", "false");
+                results.add(new WorkloadRunner(workload, store, runProps, System.out).run());
+            }
+
+            System.out.println();
+            printSummary(scenarios, results);
+        } finally {
+            executor.shutdownNow();
+            cluster.stop();
+        }
+    }
+
+    private void injectFaults(String scenario) {
+        faultNode.setDelayMs("slow".equals(scenario) ? slowDelayMs : 0);
+        faultNode.setFailing("failing".equals(scenario));
+        boolean down = "down".equals(scenario);
+        if(down && faultNode.isRunning())
+            faultNode.stop();
+        else if(!down && !faultNode.isRunning())
+            faultNode.start();
+    }
+
+    private void printSummary(List<String> scenarios, List<WorkloadStats> results) {
+        System.out.printf("%-10s %12s %9s %27s %27s%n",
+                          "scenario",
+                          "ops/sec",
+                          "failures",
+                          "read avg/99%/99.9% ms",
+                          "write avg/99%/99.9% ms");
+        for(int i = 0; i < results.size(); i++) {
+            WorkloadStats stats = results.get(i);
+            LatencyHistogram reads = stats.getLatencies(Operation.READ);
+            LatencyHistogram writes = stats.getLatencies(Operation.UPDATE);
+            writes.add(stats.getLatencies(Operation.INSERT));
+            writes.add(stats.getLatencies(Operation.READ_MODIFY_WRITE));
+            long failures = 0;
+            for(Operation operation: Operation.values())
+                failures += stats.getFailures(operation);
+            System.out.printf("%-10s %12.1f %9d %27s %27s%n",
+                              scenarios.get(i),
+                              stats.getOperationCount() / stats.getElapsedSeconds(),
+                              failures,
+                              summarize(reads),
+                              summarize(writes));
+        }
+    }
+
+    private String summarize(LatencyHistogram latencies) {
+        double us = Time.US_PER_MS;
+        return String.format("%.3f/%.3f/%.3f",
+                             latencies.getMean() / us,
+                             latencies.getQuantile(0.99) / us,
+                             latencies.getQuantile(0.999) / us);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length > 1)
+            croak("USAGE: java " + ClusterBenchmark.class.getName() + " [benchmark.properties]");
+
+        Props props = args.length == 0 ? new Props() : new Props(new File(args[0]));
+        new ClusterBenchmark(props).run();
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.cluster;
+
+/**
+ * One server of a {@link LocalCluster}, with controls to inject faults into
+ * it. Faults apply to the benchmark store only and persist across restarts.
+ */
+public interface ClusterNode {
+
+    public int getId();
+
+    /**
+     * Start the server and wait for it to accept requests
+     */
+    public void start();
+
+    /**
+     * Stop the server; clients see connections refused until it is started
+     * again
+     */
+    public void stop();
+
+    public boolean isRunning();
+
+    /**
+     * Make every operation on the store wait this long before running, 0 for
+     * no delay
+     */
+    public void setDelayMs(long delayMs);
+
+    /**
+     * Make every operation on the store fail with an error response
+     */
+    public void setFailing(boolean failing);
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.cluster;
+
+import voldemort.VoldemortException;
+import voldemort.server.VoldemortConfig;
+import voldemort.server.VoldemortServer;
+import voldemort.store.FaultInjectingStore;
+import voldemort.store.Store;
+import voldemort.utils.ByteArray;
+
+/**
+ * A node running in this JVM. The server's store is wrapped in a
+ * {@link FaultInjectingStore} in its store map, which the socket server looks
+ * stores up in on every request.
+ * 
+ * A stopped node is restarted with a new server over the same data directory,
+ * so a persistent storage engine keeps its data across restarts and an
+ * in-memory one loses it.
+ */
+public class EmbeddedClusterNode implements ClusterNode {
+
+    private final VoldemortConfig config;
+    private final String storeName;
+    private VoldemortServer server;
+    private FaultInjectingStore<ByteArray, byte[]> store;
+    private long delayMs;
+    private boolean failing;
+
+    public EmbeddedClusterNode(VoldemortConfig config, String storeName) {
+        this.config = config;
+        this.storeName = storeName;
+    }
+
+    public int getId() {
+        return config.getNodeId();
+    }
+
+    public synchronized void start() {
+        if(server != null)
+            throw new IllegalStateException("Node " + getId() + " is already running.");
+        VoldemortServer newServer = new VoldemortServer(config);
+        newServer.start();
+        Store<ByteArray, byte[]> inner = newServer.getStoreMap().get(storeName);
+        if(inner == null) {
+            newServer.stop();
+            throw new VoldemortException("Node " + getId() + " has no store named '" + storeName
+                                         + "'.");
+        }
+        FaultInjectingStore<ByteArray, byte[]> faulty = new FaultInjectingStore<ByteArray, byte[]>(inner);
+        faulty.setDelayMs(delayMs);
+        faulty.setFailing(failing);
+        newServer.getStoreMap().put(storeName, faulty);
+        this.store = faulty;
+        this.server = newServer;
+    }
+
+    public synchronized void stop() {
+        if(server == null)
+            throw new IllegalStateException("Node " + getId() + " is not running.");
+        try {
+            server.stop();
+        } finally {
+            server = null;
+            store = null;
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    public synchronized void setDelayMs(long delayMs) {
+        this.delayMs = delayMs;
+        if(store != null)
+            store.setDelayMs(delayMs);
+    }
+
+    public synchronized void setFailing(boolean failing) {
+        this.failing = failing;
+        if(store != null)
+            store.setFailing(failing);
+    }
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.cluster;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import voldemort.ServerTestUtils;
+import voldemort.VoldemortException;
+import voldemort.utils.Props;
+
+/**
+ * A node running in its own JVM, so servers don't share a heap, garbage
+ * collector or JIT with each other or with the client. The child runs an
+ * {@link EmbeddedClusterNode} and takes commands on its standard input, one
+ * per line, answering each with a line of its own. Everything else it prints
+ * is passed through to standard error. The child exits when its standard
+ * input closes, so it does not outlive the benchmark.
+ * 
+ * The child uses this JVM's java binary and classpath.
+ */
+public class ForkedClusterNode implements ClusterNode {
+
+    private static final String RESPONSE_PREFIX = "voldemort-node: ";
+    private static final String STARTED = RESPONSE_PREFIX + "started";
+    private static final String OK = RESPONSE_PREFIX + "ok";
+    private static final String EXITED = RESPONSE_PREFIX + "exited";
+    private static final long START_TIMEOUT_SEC = 120;
+    private static final long COMMAND_TIMEOUT_SEC = 30;
+
+    private final int nodeId;
+    private final List<String> command;
+    private Process process;
+    private PrintWriter commands;
+    private BlockingQueue<String> responses;
+    private long delayMs;
+    private boolean failing;
+
+    public ForkedClusterNode(int nodeId,
+                             String baseDir,
+                             String clusterFile,
+                             String storesFile,
+                             String storeName,
+                             Props serverProps,
+                             List<String> jvmArgs) {
+        this.nodeId = nodeId;
+        this.command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator
+                    + "java");
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ForkedClusterNode.class.getName());
+        command.add(Integer.toString(nodeId));
+        command.add(baseDir);
+        command.add(clusterFile);
+        command.add(storesFile);
+        command.add(storeName);
+        for(Map.Entry<String, String> entry: serverProps.entrySet())
+            command.add(entry.getKey() + "=" + entry.getValue());
+    }
+
+    public int getId() {
+        return nodeId;
+    }
+
+    public synchronized void start() {
+        if(process != null)
+            throw new IllegalStateException("Node " + nodeId + " is already running.");
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        try {
+            process = builder.start();
+        } catch(IOException e) {
+            throw new VoldemortException("Could not fork node " + nodeId + ".", e);
+        }
+        commands = new PrintWriter(new OutputStreamWriter(process.getOutputStream()), true);
+        responses = new LinkedBlockingQueue<String>();
+        Thread reader = new Thread(new OutputReader(process, responses), "node-" + nodeId
+                                                                         + "-output");
+        reader.setDaemon(true);
+        reader.start();
+
+        awaitResponse(STARTED, START_TIMEOUT_SEC);
+        sendCommand("delay " + delayMs);
+        sendCommand("fail " + failing);
+    }
+
+    public synchronized void stop() {
+        if(process == null)
+            throw new IllegalStateException("Node " + nodeId + " is not running.");
+        try {
+            process.destroy();
+            process.waitFor();
+        } catch(InterruptedException e) {
+            throw new VoldemortException(e);
+        } finally {
+            process = null;
+            commands = null;
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return process != null;
+    }
+
+    public synchronized void setDelayMs(long delayMs) {
+        this.delayMs = delayMs;
+        if(process != null)
+            sendCommand("delay " + delayMs);
+    }
+
+    public synchronized void setFailing(boolean failing) {
+        this.failing = failing;
+        if(process != null)
+            sendCommand("fail " + failing);
+    }
+
+    private void sendCommand(String line) {
+        commands.println(line);
+        awaitResponse(OK, COMMAND_TIMEOUT_SEC);
+    }
+
+    private void awaitResponse(String expected, long timeoutSec) {
+        String response;
+        try {
+            response = responses.poll(timeoutSec, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            throw new VoldemortException(e);
+        }
+        if(!expected.equals(response))
+            throw new VoldemortException("Node " + nodeId + " answered '" + response
+                                         + "' when expecting '" + expected + "'.");
+    }
+
+    /**
+     * Copies the child's output to standard error, except for responses
+     */
+    private class OutputReader implements Runnable {
+
+        private final Process child;
+        private final BlockingQueue<String> queue;
+
+        public OutputReader(Process child, BlockingQueue<String> queue) {
+            this.child = child;
+            this.queue = queue;
+        }
+
+        public void run() {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(child.getInputStream()));
+            try {
+                String line;
+                while((line = reader.readLine()) != null) {
+                    if(line.startsWith(RESPONSE_PREFIX))
+                        queue.add(line);
+                    else
+                        System.err.println("[node " + nodeId + "] " + line);
+                }
+            } catch(IOException e) {
+                // the child has gone away
+            } finally {
+                queue.add(EXITED);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 5) {
+            System.err.println("USAGE: java " + ForkedClusterNode.class.getName()
+                               + " node_id base_dir cluster.xml stores.xml store_name [key=value]*");
+            System.exit(1);
+        }
+
+        int nodeId = Integer.parseInt(args[0]);
+        Props serverProps = new Props();
+        for(int i = 5; i < args.length; i++) {
+            int split = args[i].indexOf('=');
+            serverProps.put(args[i].substring(0, split), args[i].substring(split + 1));
+        }
+        EmbeddedClusterNode node = new EmbeddedClusterNode(ServerTestUtils.createServerConfig(nodeId,
+                                                                                              args[1],
+                                                                                              args[2],
+                                                                                              args[3],
+                                                                                              serverProps),
+                                                           args[4]);
+        node.start();
+        System.out.println(STARTED);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while((line = in.readLine()) != null) {
+            String[] parts = line.trim().split("\\s+");
+            if(parts.length == 2 && parts[0].equals("delay")) {
+                node.setDelayMs(Long.parseLong(parts[1]));
+                System.out.println(OK);
+            } else if(parts.length == 2 && parts[0].equals("fail")) {
+                node.setFailing(Boolean.parseBoolean(parts[1]));
+                System.out.println(OK);
+            } else {
+                System.out.println(RESPONSE_PREFIX + "unknown command '" + line + "'");
+            }
+        }
+
+        // the parent has gone away
+        node.stop();
+        System.exit(0);
+    }
+
+}
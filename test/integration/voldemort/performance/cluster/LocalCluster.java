@@ -0,0 +1,132 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.cluster;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import voldemort.ServerTestUtils;
+import voldemort.TestUtils;
+import voldemort.cluster.Cluster;
+import voldemort.cluster.Node;
+import voldemort.store.StoreDefinition;
+import voldemort.utils.Props;
+import voldemort.xml.ClusterMapper;
+import voldemort.xml.StoreDefinitionsMapper;
+
+/**
+ * A cluster of servers on free loopback ports of this machine, each with its
+ * own home directory under a fresh temporary directory, either all in this JVM
+ * or each in a forked JVM.
+ */
+public class LocalCluster {
+
+    private final Cluster cluster;
+    private final File baseDir;
+    private final List<ClusterNode> nodes;
+
+    /**
+     * Create the cluster's configuration; no servers are started
+     * 
+     * @param numNodes The number of servers
+     * @param storeDef The store to serve
+     * @param serverProps Server properties to apply over the test defaults
+     * @param forked If true, run each server in its own JVM
+     * @param jvmArgs Extra arguments for forked JVMs
+     */
+    public LocalCluster(int numNodes,
+                        StoreDefinition storeDef,
+                        Props serverProps,
+                        boolean forked,
+                        List<String> jvmArgs) throws IOException {
+        this.cluster = ServerTestUtils.getLocalCluster(numNodes);
+        this.baseDir = TestUtils.createTempDir();
+        File clusterFile = new File(baseDir, "cluster.xml");
+        File storesFile = new File(baseDir, "stores.xml");
+        FileUtils.writeStringToFile(clusterFile, new ClusterMapper().writeCluster(cluster));
+        FileUtils.writeStringToFile(storesFile,
+                                    new StoreDefinitionsMapper().writeStoreList(Collections.singletonList(storeDef)));
+
+        this.nodes = new ArrayList<ClusterNode>(numNodes);
+        for(Node node: cluster.getNodes()) {
+            if(forked)
+                nodes.add(new ForkedClusterNode(node.getId(),
+                                                baseDir.getAbsolutePath(),
+                                                clusterFile.getAbsolutePath(),
+                                                storesFile.getAbsolutePath(),
+                                                storeDef.getName(),
+                                                serverProps,
+                                                jvmArgs));
+            else
+                nodes.add(new EmbeddedClusterNode(ServerTestUtils.createServerConfig(node.getId(),
+                                                                                     baseDir.getAbsolutePath(),
+                                                                                     clusterFile.getAbsolutePath(),
+                                                                                     storesFile.getAbsolutePath(),
+                                                                                     serverProps),
+                                                  storeDef.getName()));
+        }
+    }
+
+    /**
+     * Start every server that is not running
+     */
+    public void start() {
+        for(ClusterNode node: nodes)
+            if(!node.isRunning())
+                node.start();
+    }
+
+    /**
+     * Stop every running server and delete the cluster's files
+     */
+    public void stop() throws IOException {
+        for(ClusterNode node: nodes)
+            if(node.isRunning())
+                node.stop();
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public ClusterNode getNode(int nodeId) {
+        return nodes.get(nodeId);
+    }
+
+    public int getNumberOfNodes() {
+        return nodes.size();
+    }
+
+    /**
+     * @return The socket urls of all the servers, for bootstrapping a client
+     */
+    public String[] getBootstrapUrls() {
+        String[] urls = new String[cluster.getNumberOfNodes()];
+        int i = 0;
+        for(Node node: cluster.getNodes())
+            urls[i++] = node.getSocketUrl().toString();
+        return urls;
+    }
+
+}
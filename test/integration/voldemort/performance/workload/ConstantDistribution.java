@@ -0,0 +1,37 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.workload;
+
+import java.util.Random;
+
+/**
+ * A distribution that always returns the same value
+ */
+public class ConstantDistribution implements Distribution {
+
+    private final long value;
+
+    public ConstantDistribution(long value) {
+        this.value = value;
+    }
+
+    public long next(Random random) {
+        return value;
+    }
+
+}
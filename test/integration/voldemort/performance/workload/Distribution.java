@@ -0,0 +1,37 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.workload;
+
+import java.util.Random;
+
+/**
+ * A source of random longs drawn from some distribution. Implementations are
+ * thread safe, the caller supplies the random number generator so that each
+ * thread can use its own.
+ */
+public interface Distribution {
+
+    /**
+     * Draw the next value
+     * 
+     * @param random The source of randomness to use
+     * @return The next value from the distribution
+     */
+    public long next(Random random);
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.workload;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A distribution skewed towards the most recently inserted items: the most
+ * recent insert is the most popular, and popularity falls off along a Zipfian
+ * curve with age. The number of items is read from a shared counter of
+ * inserts, so the distribution follows the workload as it grows.
+ */
+public class LatestDistribution implements Distribution {
+
+    private final AtomicLong insertCount;
+    private final ZipfianDistribution zipfian;
+
+    /**
+     * Create a latest distribution
+     * 
+     * @param insertCount The number of items inserted so far; values are in
+     *        [0, insertCount)
+     * @param theta The Zipfian skew
+     */
+    public LatestDistribution(AtomicLong insertCount, double theta) {
+        this.insertCount = insertCount;
+        long items = Math.max(1, insertCount.get());
+        this.zipfian = new ZipfianDistribution(0, items - 1, theta, false);
+    }
+
+    public long next(Random random) {
+        long inserted = Math.max(1, insertCount.get());
+        /*
+         * Never shrink the Zipfian below a count another thread has already
+         * seen, shrinking means recomputing zeta from scratch
+         */
+        long items = Math.max(inserted, zipfian.getItemCount());
+        return Math.max(0, inserted - 1 - zipfian.nextRank(random, items));
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.workload;
+
+/**
+ * The kinds of operation a {@link Workload} can issue
+ */
+public enum Operation {
+    /** Get an existing key */
+    READ,
+    /** Overwrite an existing key with a new value */
+    UPDATE,
+    /** Write a key that has not been written before */
+    INSERT,
+    /** Get an existing key then write a new value over the version read */
+    READ_MODIFY_WRITE;
+}
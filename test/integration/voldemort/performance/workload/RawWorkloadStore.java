@@ -0,0 +1,69 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.workload;
+
+import java.util.List;
+
+import voldemort.store.Store;
+import voldemort.utils.ByteArray;
+import voldemort.utils.ByteUtils;
+import voldemort.versioning.VectorClock;
+import voldemort.versioning.Versioned;
+
+/**
+ * Runs a workload directly against a {@link Store}, such as a storage engine,
+ * bypassing the client. Keys are UTF-8 encoded, and every write increments the
+ * clock of the version it replaces under the given node id, as the client
+ * would.
+ */
+public class RawWorkloadStore implements WorkloadStore {
+
+    private final Store<ByteArray, byte[]> store;
+    private final int nodeId;
+
+    public RawWorkloadStore(Store<ByteArray, byte[]> store, int nodeId) {
+        this.store = store;
+        this.nodeId = nodeId;
+    }
+
+    public Versioned<byte[]> read(String key) {
+        List<Versioned<byte[]>> found = store.get(toBytes(key));
+        return found.size() == 0 ? null : found.get(0);
+    }
+
+    public void write(String key, Versioned<byte[]> previous, byte[] value) {
+        if(previous == null)
+            previous = read(key);
+        VectorClock clock;
+        if(previous == null)
+            clock = new VectorClock();
+        else
+            clock = (VectorClock) previous.getVersion();
+        store.put(toBytes(key),
+                  new Versioned<byte[]>(value, clock.incremented(nodeId, System.currentTimeMillis())));
+    }
+
+    public void close() {
+        store.close();
+    }
+
+    private ByteArray toBytes(String key) {
+        return new ByteArray(ByteUtils.getBytes(key, "UTF-8"));
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.workload;
+
+import voldemort.client.StoreClient;
+import voldemort.versioning.Versioned;
+
+/**
+ * Runs a workload against a {@link StoreClient}
+ */
+public class StoreClientWorkloadStore implements WorkloadStore {
+
+    private final StoreClient<String, byte[]> client;
+
+    public StoreClientWorkloadStore(StoreClient<String, byte[]> client) {
+        this.client = client;
+    }
+
+    public Versioned<byte[]> read(String key) {
+        return client.get(key);
+    }
+
+    public void write(String key, Versioned<byte[]> previous, byte[] value) {
+        if(previous == null)
+            client.put(key, value);
+        else
+            client.put(key, new Versioned<byte[]>(value, previous.getVersion()));
+    }
+
+    public void close() {}
+
+}
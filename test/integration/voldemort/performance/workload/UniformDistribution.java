@@ -0,0 +1,55 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.workload;
+
+import java.util.Random;
+
+/**
+ * A distribution that picks every value in [min, max] with equal probability
+ */
+public class UniformDistribution implements Distribution {
+
+    private final long min;
+    private final long range;
+
+    public UniformDistribution(long min, long max) {
+        if(max < min)
+            throw new IllegalArgumentException("max must not be less than min.");
+        this.min = min;
+        this.range = max - min + 1;
+    }
+
+    public long next(Random random) {
+        return min + nextLong(random, range);
+    }
+
+    /**
+     * A uniform random long in [0, n)
+     */
+    static long nextLong(Random random, long n) {
+        if(n <= Integer.MAX_VALUE)
+            return random.nextInt((int) n);
+        long bits, value;
+        do {
+            bits = random.nextLong() >>> 1;
+            value = bits % n;
+        } while(bits - value + (n - 1) < 0);
+        return value;
+    }
+
+}
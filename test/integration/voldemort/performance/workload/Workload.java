@@ -0,0 +1,186 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.workload;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import voldemort.utils.ConfigurationException;
+import voldemort.utils.Props;
+
+/**
+ * A description of the traffic to send to a store: the mix of operations, how
+ * keys are chosen, and how large values are. The properties understood are:
+ * 
+ * <ul>
+ * <li>record.count - The number of keys written in the load phase (1000)</li>
+ * <li>read.proportion, update.proportion, insert.proportion,
+ * read.modify.write.proportion - The operation mix; proportions are relative
+ * to their sum (0.95, 0.05, 0, 0)</li>
+ * <li>key.distribution - uniform, zipfian or latest (zipfian). Uniform and
+ * zipfian choose among the loaded records, latest favours the most recent
+ * inserts</li>
+ * <li>zipfian.theta - The skew of the zipfian and latest distributions (0.99)</li>
+ * <li>key.prefix - Prepended to the record number to make the key (user)</li>
+ * <li>value.size.distribution - constant, uniform or zipfian (constant). For
+ * zipfian the smallest sizes are the most common</li>
+ * <li>value.size.min, value.size.max - The range of value sizes in bytes; a
+ * constant size uses the max (1, 1024)</li>
+ * </ul>
+ * 
+ * Instances are thread safe; each thread supplies its own {@link Random}.
+ */
+public class Workload {
+
+    private final long recordCount;
+    private final String keyPrefix;
+    private final double[] cumulativeProportions;
+    private final Distribution keys;
+    private final Distribution valueSizes;
+    private final AtomicLong insertCount;
+
+    public Workload(Props props) {
+        this.recordCount = props.getLong("record.count", 1000);
+        if(recordCount < 1)
+            throw new ConfigurationException("record.count must be positive.");
+        this.keyPrefix = props.getString("key.prefix", "user");
+        this.insertCount = new AtomicLong(0);
+
+        double[] proportions = new double[Operation.values().length];
+        proportions[Operation.READ.ordinal()] = props.getDouble("read.proportion", 0.95);
+        proportions[Operation.UPDATE.ordinal()] = props.getDouble("update.proportion", 0.05);
+        proportions[Operation.INSERT.ordinal()] = props.getDouble("insert.proportion", 0.0);
+        proportions[Operation.READ_MODIFY_WRITE.ordinal()] = props.getDouble("read.modify.write.proportion",
+                                                                             0.0);
+        this.cumulativeProportions = new double[proportions.length];
+        double total = 0.0;
+        for(int i = 0; i < proportions.length; i++) {
+            if(proportions[i] < 0.0)
+                throw new ConfigurationException("Operation proportions must not be negative.");
+            total += proportions[i];
+            cumulativeProportions[i] = total;
+        }
+        if(total <= 0.0)
+            throw new ConfigurationException("At least one operation proportion must be positive.");
+        for(int i = 0; i < cumulativeProportions.length; i++)
+            cumulativeProportions[i] /= total;
+
+        double theta = props.getDouble("zipfian.theta", ZipfianDistribution.DEFAULT_THETA);
+        String keyDistribution = props.getString("key.distribution", "zipfian");
+        if("uniform".equals(keyDistribution))
+            this.keys = new UniformDistribution(0, recordCount - 1);
+        else if("zipfian".equals(keyDistribution))
+            this.keys = new ZipfianDistribution(0, recordCount - 1, theta, true);
+        else if("latest".equals(keyDistribution))
+            this.keys = new LatestDistribution(insertCount, theta);
+        else
+            throw new ConfigurationException("Unknown key distribution '" + keyDistribution
+                                             + "'.");
+
+        int minSize = props.getInt("value.size.min", 1);
+        int maxSize = props.getInt("value.size.max", 1024);
+        if(minSize < 0 || maxSize < minSize)
+            throw new ConfigurationException("Invalid value size range [" + minSize + ", "
+                                             + maxSize + "].");
+        String sizeDistribution = props.getString("value.size.distribution", "constant");
+        if("constant".equals(sizeDistribution))
+            this.valueSizes = new ConstantDistribution(maxSize);
+        else if("uniform".equals(sizeDistribution))
+            this.valueSizes = new UniformDistribution(minSize, maxSize);
+        else if("zipfian".equals(sizeDistribution))
+            this.valueSizes = new ZipfianDistribution(minSize, maxSize, theta, false);
+        else
+            throw new ConfigurationException("Unknown value size distribution '"
+                                             + sizeDistribution + "'.");
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return The number of keys inserted so far, including the load phase
+     */
+    public long getInsertCount() {
+        return insertCount.get();
+    }
+
+    /**
+     * Record that the load phase has already been done, so that inserts
+     * continue after the loaded records
+     */
+    public void markLoaded() {
+        while(true) {
+            long current = insertCount.get();
+            if(current >= recordCount || insertCount.compareAndSet(current, recordCount))
+                return;
+        }
+    }
+
+    public Operation nextOperation(Random random) {
+        double d = random.nextDouble();
+        Operation[] operations = Operation.values();
+        for(int i = 0; i < cumulativeProportions.length; i++)
+            if(d < cumulativeProportions[i])
+                return operations[i];
+        return operations[operations.length - 1];
+    }
+
+    /**
+     * @return An existing key chosen from the key distribution
+     */
+    public String nextKey(Random random) {
+        return makeKey(keys.next(random));
+    }
+
+    /**
+     * @return The next key of the load phase, or null if all the records have
+     *         been handed out
+     */
+    public String nextLoadKey() {
+        while(true) {
+            long current = insertCount.get();
+            if(current >= recordCount)
+                return null;
+            if(insertCount.compareAndSet(current, current + 1))
+                return makeKey(current);
+        }
+    }
+
+    /**
+     * @return A key that has not been inserted before
+     */
+    public String nextInsertKey() {
+        return makeKey(insertCount.getAndIncrement());
+    }
+
+    /**
+     * @return A random value with a size chosen from the value size
+     *         distribution
+     */
+    public byte[] nextValue(Random random) {
+        byte[] value = new byte[(int) valueSizes.next(random)];
+        random.nextBytes(value);
+        return value;
+    }
+
+    private String makeKey(long index) {
+        return keyPrefix + index;
+    }
+
+}
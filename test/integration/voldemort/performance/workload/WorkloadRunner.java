@@ -0,0 +1,261 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.workload;
+
+import static voldemort.utils.Utils.croak;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import voldemort.client.SocketStoreClientFactory;
+import voldemort.client.StoreClient;
+import voldemort.client.StoreClientFactory;
+import voldemort.utils.ConfigurationException;
+import voldemort.utils.Props;
+import voldemort.utils.Time;
+import voldemort.versioning.Versioned;
+
+/**
+ * Drives a {@link Workload} against a {@link WorkloadStore} in three phases:
+ * 
+ * <ol>
+ * <li>Load - insert the workload's records as fast as possible</li>
+ * <li>Warmup - run the operation mix without recording anything, to let the
+ * JIT, caches and connection pools settle</li>
+ * <li>Run - run the operation mix, reporting throughput and latency
+ * percentiles every interval and in total at the end</li>
+ * </ol>
+ * 
+ * The properties understood, in addition to those of {@link Workload}, are:
+ * 
+ * <ul>
+ * <li>threads - The number of client threads (8)</li>
+ * <li>target.throughput - The total operations per second to aim for, split
+ * evenly between threads; 0 means as fast as possible (0). When throttled,
+ * latency is measured from when each operation was scheduled to start, so
+ * operations delayed behind a slow one are charged for the wait</li>
+ * <li>load - Whether to run the load phase, turn this off if the records are
+ * already there (true)</li>
+ * <li>warmup.seconds - The length of the warmup phase (0)</li>
+ * <li>run.seconds - The length of the run phase, 0 for no limit (60)</li>
+ * <li>operation.count - The number of operations in the run phase, 0 for no
+ * limit; the phase ends at whichever limit is reached first (0)</li>
+ * <li>report.interval.seconds - How often to report (10)</li>
+ * </ul>
+ */
+public class WorkloadRunner {
+
+    private final Workload workload;
+    private final WorkloadStore store;
+    private final PrintStream out;
+    private final int numThreads;
+    private final double targetThroughput;
+    private final boolean load;
+    private final long warmupMs;
+    private final long runMs;
+    private final long operationCount;
+    private final long reportIntervalMs;
+
+    public WorkloadRunner(Workload workload, WorkloadStore store, Props props, PrintStream out) {
+        this.workload = workload;
+        this.store = store;
+        this.out = out;
+        this.numThreads = props.getInt("threads", 8);
+        this.targetThroughput = props.getDouble("target.throughput", 0.0);
+        this.load = props.getBoolean("load", true);
+        this.warmupMs = props.getLong("warmup.seconds", 0) * Time.MS_PER_SECOND;
+        this.runMs = props.getLong("run.seconds", 60) * Time.MS_PER_SECOND;
+        this.operationCount = props.getLong("operation.count", 0);
+        this.reportIntervalMs = props.getLong("report.interval.seconds", 10) * Time.MS_PER_SECOND;
+        if(numThreads < 1)
+            throw new ConfigurationException("threads must be positive.");
+        if(reportIntervalMs < 1)
+            throw new ConfigurationException("report.interval.seconds must be positive.");
+        if(runMs == 0 && operationCount == 0)
+            throw new ConfigurationException("One of run.seconds or operation.count must be set.");
+    }
+
+    /**
+     * Run all the phases and print their results
+     * 
+     * @return The statistics of the run phase
+     */
+    public WorkloadStats run() throws InterruptedException {
+        if(load) {
+            WorkloadStats loadStats = new WorkloadStats("LOAD");
+            runPhase(loadStats, true, 0, 0);
+            loadStats.printTotals(out);
+        } else {
+            workload.markLoaded();
+        }
+
+        if(warmupMs > 0) {
+            out.println("Warming up for " + warmupMs / Time.MS_PER_SECOND + " seconds.");
+            runPhase(null, false, warmupMs, 0);
+        }
+
+        WorkloadStats runStats = new WorkloadStats("RUN");
+        runPhase(runStats, false, runMs, operationCount);
+        runStats.printTotals(out);
+        return runStats;
+    }
+
+    private void runPhase(WorkloadStats stats, boolean loading, long durationMs, long maxOperations)
+            throws InterruptedException {
+        long deadlineNs = durationMs > 0 ? System.nanoTime() + durationMs * Time.NS_PER_MS
+                                        : Long.MAX_VALUE;
+        AtomicLong remaining = new AtomicLong(maxOperations > 0 ? maxOperations : Long.MAX_VALUE);
+        long intervalNs = 0;
+        if(!loading && targetThroughput > 0)
+            intervalNs = (long) (numThreads * Time.NS_PER_SECOND / targetThroughput);
+
+        CountDownLatch done = new CountDownLatch(numThreads);
+        for(int i = 0; i < numThreads; i++) {
+            Thread thread = new Thread(new Worker(stats,
+                                                  loading,
+                                                  deadlineNs,
+                                                  remaining,
+                                                  intervalNs,
+                                                  done), "workload-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        while(!done.await(reportIntervalMs, TimeUnit.MILLISECONDS))
+            if(stats != null)
+                stats.reportInterval(out);
+    }
+
+    private void execute(Operation operation, String key, Random random) {
+        switch(operation) {
+            case READ:
+                store.read(key);
+                break;
+            case UPDATE:
+            case INSERT:
+                store.write(key, null, workload.nextValue(random));
+                break;
+            case READ_MODIFY_WRITE:
+                Versioned<byte[]> previous = store.read(key);
+                store.write(key, previous, workload.nextValue(random));
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final WorkloadStats stats;
+        private final boolean loading;
+        private final long deadlineNs;
+        private final AtomicLong remaining;
+        private final long intervalNs;
+        private final CountDownLatch done;
+        private final Random random;
+
+        public Worker(WorkloadStats stats,
+                      boolean loading,
+                      long deadlineNs,
+                      AtomicLong remaining,
+                      long intervalNs,
+                      CountDownLatch done) {
+            this.stats = stats;
+            this.loading = loading;
+            this.deadlineNs = deadlineNs;
+            this.remaining = remaining;
+            this.intervalNs = intervalNs;
+            this.done = done;
+            this.random = new Random();
+        }
+
+        public void run() {
+            try {
+                long nextStartNs = System.nanoTime();
+                while(System.nanoTime() < deadlineNs && remaining.getAndDecrement() > 0) {
+                    long startNs;
+                    if(intervalNs > 0) {
+                        startNs = nextStartNs;
+                        waitUntil(startNs);
+                        nextStartNs += intervalNs;
+                    } else {
+                        startNs = System.nanoTime();
+                    }
+
+                    Operation operation;
+                    String key;
+                    if(loading) {
+                        operation = Operation.INSERT;
+                        key = workload.nextLoadKey();
+                        if(key == null)
+                            break;
+                    } else {
+                        operation = workload.nextOperation(random);
+                        if(operation == Operation.INSERT)
+                            key = workload.nextInsertKey();
+                        else
+                            key = workload.nextKey(random);
+                    }
+
+                    try {
+                        execute(operation, key, random);
+                        if(stats != null)
+                            stats.recordSuccess(operation, System.nanoTime() - startNs);
+                    } catch(Exception e) {
+                        if(stats != null)
+                            stats.recordFailure(operation);
+                    }
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private void waitUntil(long timeNs) {
+            long now;
+            while((now = System.nanoTime()) < timeNs)
+                LockSupport.parkNanos(timeNs - now);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if(args.length != 3)
+            croak("USAGE: java " + WorkloadRunner.class.getName()
+                  + " bootstrap_url store_name workload.properties");
+
+        String url = args[0];
+        String storeName = args[1];
+        Props props = new Props(new File(args[2]));
+
+        System.err.println("Bootstraping cluster data.");
+        StoreClientFactory factory = new SocketStoreClientFactory(url);
+        StoreClient<String, byte[]> client = factory.getStoreClient(storeName);
+
+        Workload workload = new Workload(props);
+        WorkloadStore store = new StoreClientWorkloadStore(client);
+        new WorkloadRunner(workload, store, props, System.out).run();
+        store.close();
+        System.exit(0);
+    }
+
+}
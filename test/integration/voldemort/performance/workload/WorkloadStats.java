@@ -0,0 +1,177 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.workload;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import voldemort.performance.LatencyHistogram;
+import voldemort.performance.LatencyRecorder;
+import voldemort.utils.Time;
+
+/**
+ * Latency and failure counts per operation for one phase of a workload,
+ * reported both per interval and in total. Latencies are kept in
+ * microseconds.
+ */
+public class WorkloadStats {
+
+    public static final long MAX_LATENCY_US = 60 * Time.US_PER_SECOND;
+    public static final int SIGNIFICANT_DIGITS = 3;
+
+    private static final double[] QUANTILES = { 0.5, 0.95, 0.99, 0.999 };
+
+    private final String name;
+    private final LatencyRecorder[] intervals;
+    private final LatencyHistogram[] totals;
+    private final AtomicLong[] intervalFailures;
+    private final long[] totalFailures;
+    private final long startNs;
+    private long lastReportNs;
+
+    public WorkloadStats(String name) {
+        int numOperations = Operation.values().length;
+        this.name = name;
+        this.intervals = new LatencyRecorder[numOperations];
+        this.totals = new LatencyHistogram[numOperations];
+        this.intervalFailures = new AtomicLong[numOperations];
+        this.totalFailures = new long[numOperations];
+        for(int i = 0; i < numOperations; i++) {
+            intervals[i] = new LatencyRecorder(MAX_LATENCY_US, SIGNIFICANT_DIGITS);
+            totals[i] = new LatencyHistogram(MAX_LATENCY_US, SIGNIFICANT_DIGITS);
+            intervalFailures[i] = new AtomicLong(0);
+        }
+        this.startNs = System.nanoTime();
+        this.lastReportNs = startNs;
+    }
+
+    /**
+     * Record a successful operation
+     * 
+     * @param operation The operation
+     * @param latencyNs The time taken, measured from when the operation was
+     *        meant to start if it was throttled
+     */
+    public void recordSuccess(Operation operation, long latencyNs) {
+        intervals[operation.ordinal()].record(latencyNs / Time.NS_PER_US);
+    }
+
+    public void recordFailure(Operation operation) {
+        intervalFailures[operation.ordinal()].incrementAndGet();
+    }
+
+    /**
+     * Fold the current interval into the totals and print a line summarizing
+     * it
+     */
+    public synchronized void reportInterval(PrintStream out) {
+        long now = System.nanoTime();
+        double intervalSeconds = (now - lastReportNs) / (double) Time.NS_PER_SECOND;
+        lastReportNs = now;
+
+        StringBuilder builder = new StringBuilder();
+        long operations = 0;
+        for(Operation operation: Operation.values()) {
+            int i = operation.ordinal();
+            LatencyHistogram interval = intervals[i].intervalSnapshot();
+            long failures = intervalFailures[i].getAndSet(0);
+            totals[i].add(interval);
+            totalFailures[i] += failures;
+            operations += interval.getCount() + failures;
+            if(interval.getCount() + failures > 0)
+                builder.append("; " + operation + " " + summarize(interval, failures, false));
+        }
+        out.printf("[%s %6.1f sec] %d operations; %.1f ops/sec%s%n",
+                   name,
+                   (now - startNs) / (double) Time.NS_PER_SECOND,
+                   operations,
+                   operations / intervalSeconds,
+                   builder);
+    }
+
+    /**
+     * Print the statistics for the whole phase. Any interval not yet reported
+     * is included.
+     */
+    public synchronized void printTotals(PrintStream out) {
+        reportInterval(out);
+        double elapsedSeconds = getElapsedSeconds();
+        out.println(name + " elapsed seconds: " + elapsedSeconds);
+        out.println(name + " operations/second: " + getOperationCount() / elapsedSeconds);
+        for(Operation operation: Operation.values()) {
+            int i = operation.ordinal();
+            if(totals[i].getCount() + totalFailures[i] > 0)
+                out.println(name + " " + operation + " "
+                            + summarize(totals[i], totalFailures[i], true));
+        }
+    }
+
+    /**
+     * @return The time from the start of the phase to the last report
+     */
+    public synchronized double getElapsedSeconds() {
+        return (lastReportNs - startNs) / (double) Time.NS_PER_SECOND;
+    }
+
+    /**
+     * @return The latencies recorded for the given operation in reported
+     *         intervals
+     */
+    public synchronized LatencyHistogram getLatencies(Operation operation) {
+        return totals[operation.ordinal()].copy();
+    }
+
+    /**
+     * @return The number of failures of the given operation in reported
+     *         intervals
+     */
+    public synchronized long getFailures(Operation operation) {
+        return totalFailures[operation.ordinal()];
+    }
+
+    /**
+     * @return The number of operations, successful or not, in reported
+     *         intervals
+     */
+    public synchronized long getOperationCount() {
+        long count = 0;
+        for(int i = 0; i < totals.length; i++)
+            count += totals[i].getCount() + totalFailures[i];
+        return count;
+    }
+
+    private String summarize(LatencyHistogram latencies, long failures, boolean full) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("count=" + latencies.getCount());
+        builder.append(", failures=" + failures);
+        builder.append(String.format(", avg=%.3f ms", latencies.getMean() / Time.US_PER_MS));
+        if(full)
+            builder.append(", min=" + toMs(latencies.getMin()) + " ms");
+        for(double quantile: QUANTILES)
+            if(full || quantile < 0.999)
+                builder.append(", " + (quantile * 100) + "%=" + toMs(latencies.getQuantile(quantile))
+                               + " ms");
+        builder.append(", max=" + toMs(latencies.getMax()) + " ms");
+        return builder.toString();
+    }
+
+    private double toMs(long us) {
+        return us / (double) Time.US_PER_MS;
+    }
+
+}
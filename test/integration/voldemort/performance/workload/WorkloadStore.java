@@ -0,0 +1,49 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.workload;
+
+import voldemort.versioning.Versioned;
+
+/**
+ * The operations a workload needs from the thing under test. Adapters exist
+ * for a {@link voldemort.client.StoreClient} and for a raw
+ * {@link voldemort.store.Store}.
+ */
+public interface WorkloadStore {
+
+    /**
+     * Get the value for the given key
+     * 
+     * @param key The key
+     * @return The value, or null if there is none
+     */
+    public Versioned<byte[]> read(String key);
+
+    /**
+     * Write a value for the given key
+     * 
+     * @param key The key
+     * @param previous The version previously read for this key, or null to
+     *        overwrite whatever is there
+     * @param value The new value
+     */
+    public void write(String key, Versioned<byte[]> previous, byte[] value);
+
+    public void close();
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance.workload;
+
+import java.util.Random;
+
+/**
+ * A Zipfian distribution over [min, max], where the probability of the i-th
+ * most popular item is proportional to 1/i^theta. Values are generated in
+ * constant time using the method from Gray et al., "Quickly Generating
+ * Billion-Record Synthetic Databases" (SIGMOD 1994), as in YCSB.
+ * 
+ * Unscrambled, the most popular item is min, the next most popular min + 1,
+ * and so on. Scrambled, the ranks are hashed over the range so the hot items
+ * are spread across the key space instead of clustered at the start of it.
+ * 
+ * The number of items can also be grown while generating, see
+ * {@link #nextRank(Random, long)}. The zeta constant is extended
+ * incrementally so growth is cheap.
+ */
+public class ZipfianDistribution implements Distribution {
+
+    public static final double DEFAULT_THETA = 0.99;
+
+    private static final long FNV_OFFSET_BASIS_64 = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME_64 = 1099511628211L;
+
+    private final long min;
+    private final long items;
+    private final boolean scrambled;
+    private final double theta;
+    private final double alpha;
+    private final double zeta2;
+    private volatile State state;
+
+    public ZipfianDistribution(long min, long max) {
+        this(min, max, DEFAULT_THETA, false);
+    }
+
+    /**
+     * Create a Zipfian distribution
+     * 
+     * @param min The smallest value
+     * @param max The largest value
+     * @param theta The skew, strictly between 0 and 1; larger is more skewed
+     * @param scrambled If true, spread the popular values over the range
+     */
+    public ZipfianDistribution(long min, long max, double theta, boolean scrambled) {
+        if(max < min)
+            throw new IllegalArgumentException("max must not be less than min.");
+        if(theta <= 0.0 || theta >= 1.0)
+            throw new IllegalArgumentException("theta must be strictly between 0 and 1.");
+        this.min = min;
+        this.items = max - min + 1;
+        this.scrambled = scrambled;
+        this.theta = theta;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zeta2 = zeta(0, 0.0, 2, theta);
+        this.state = new State(items, zeta(0, 0.0, items, theta));
+    }
+
+    public long next(Random random) {
+        long rank = nextRank(random, items);
+        if(scrambled)
+            rank = Math.abs(fnv(rank) % items);
+        return min + rank;
+    }
+
+    /**
+     * Draw a rank from a Zipfian distribution over the given number of items,
+     * ignoring min, max and scrambling. The item count may differ between
+     * calls; growing it extends the zeta constant from the previous count,
+     * while shrinking it recomputes it from scratch.
+     * 
+     * @param random The source of randomness
+     * @param itemCount The number of items to choose from
+     * @return A rank in [0, itemCount), 0 being the most popular
+     */
+    public long nextRank(Random random, long itemCount) {
+        if(itemCount < 1)
+            throw new IllegalArgumentException("Item count must be positive.");
+        State current = state;
+        if(current.items != itemCount)
+            current = resize(itemCount);
+
+        double u = random.nextDouble();
+        double uz = u * current.zetan;
+        if(uz < 1.0)
+            return 0;
+        if(uz < 1.0 + Math.pow(0.5, theta))
+            return Math.min(1, itemCount - 1);
+        long rank = (long) (itemCount * Math.pow(current.eta * u - current.eta + 1, alpha));
+        return Math.max(0, Math.min(rank, itemCount - 1));
+    }
+
+    /**
+     * @return The item count of the most recent call to
+     *         {@link #nextRank(Random, long)}
+     */
+    long getItemCount() {
+        return state.items;
+    }
+
+    private synchronized State resize(long itemCount) {
+        State current = state;
+        if(current.items == itemCount)
+            return current;
+        double zetan;
+        if(itemCount > current.items)
+            zetan = zeta(current.items, current.zetan, itemCount, theta);
+        else
+            zetan = zeta(0, 0.0, itemCount, theta);
+        current = new State(itemCount, zetan);
+        state = current;
+        return current;
+    }
+
+    /**
+     * Extend zeta(from) = fromZeta to zeta(to), where zeta(n) is the sum of
+     * 1/i^theta for i in [1, n]
+     */
+    private static double zeta(long from, double fromZeta, long to, double theta) {
+        double sum = fromZeta;
+        for(long i = from; i < to; i++)
+            sum += 1.0 / Math.pow(i + 1, theta);
+        return sum;
+    }
+
+    private static long fnv(long value) {
+        long hash = FNV_OFFSET_BASIS_64;
+        for(int i = 0; i < 8; i++) {
+            hash ^= value & 0xFF;
+            hash *= FNV_PRIME_64;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    private final class State {
+
+        final long items;
+        final double zetan;
+        final double eta;
+
+        State(long items, double zetan) {
+            this.items = items;
+            this.zetan = zetan;
+            this.eta = (1.0 - Math.pow(2.0 / items, 1.0 - theta)) / (1.0 - zeta2 / zetan);
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.client;
+
+import static voldemort.TestUtils.getClock;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import voldemort.VoldemortException;
+import voldemort.serialization.StringSerializer;
+import voldemort.store.DelegatingStore;
+import voldemort.store.Store;
+import voldemort.store.memory.InMemoryStorageEngine;
+import voldemort.store.versioned.VersionIncrementingStore;
+import voldemort.utils.SystemTime;
+import voldemort.versioning.ObsoleteVersionException;
+import voldemort.versioning.VectorClock;
+import voldemort.versioning.Versioned;
+
+public class DefaultStoreClientTest extends TestCase {
+
+    private InMemoryStorageEngine<String, String> engine;
+    private DefaultStoreClient<String, String> client;
+
+    @Override
+    public void setUp() {
+        engine = new InMemoryStorageEngine<String, String>("test");
+        // blind writes must not read the value
+        Store<String, String> incrementing = new VersionIncrementingStore<String, String>(engine,
+                                                                                          1,
+                                                                                          SystemTime.INSTANCE);
+        DelegatingStore<String, String> noGets = new DelegatingStore<String, String>(incrementing) {
+
+            @Override
+            public List<Versioned<String>> get(String key) throws VoldemortException {
+                throw new VoldemortException("Unexpected get of '" + key + "'.");
+            }
+        };
+        client = new DefaultStoreClient<String, String>(noGets,
+                                                        new StringSerializer(),
+                                                        new StringSerializer(),
+                                                        null);
+    }
+
+    public void testPutUsesCurrentVersion() {
+        engine.put("a", new Versioned<String>("1", getClock(1)));
+        client.put("a", "2");
+        List<Versioned<String>> found = engine.get("a");
+        assertEquals(1, found.size());
+        assertEquals("2", found.get(0).getValue());
+        assertEquals(getClock(1, 1), found.get(0).getVersion());
+    }
+
+    public void testPutSupersedesConcurrentVersions() {
+        engine.put("a", new Versioned<String>("1", getClock(1)));
+        engine.put("a", new Versioned<String>("2", getClock(2)));
+        VectorClock merged = getClock(1, 1, 2);
+        client.put("a", "3");
+        List<Versioned<String>> found = engine.get("a");
+        assertEquals(1, found.size());
+        assertEquals(merged, found.get(0).getVersion());
+    }
+
+    public void testPutIfCurrent() {
+        client.put("a", "1");
+        Versioned<String> read = engine.get("a").get(0);
+        Versioned<String> stale = read.cloneVersioned();
+        read.setObject("2");
+        client.putIfCurrent("a", read);
+        try {
+            stale.setObject("3");
+            client.putIfCurrent("a", stale);
+            fail("Update based on a stale read succeeded.");
+        } catch(ObsoleteVersionException e) {
+            // this is good
+        }
+        assertEquals("2", engine.get("a").get(0).getValue());
+    }
+
+    public void testDelete() {
+        assertFalse(client.delete("a"));
+        engine.put("a", new Versioned<String>("1", getClock(1)));
+        engine.put("a", new Versioned<String>("2", getClock(2)));
+        assertTrue(client.delete("a"));
+        assertEquals(0, engine.get("a").size());
+    }
+
+}
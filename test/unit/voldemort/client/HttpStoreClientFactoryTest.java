@@ -53,6 +53,17 @@ public class HttpStoreClientFactoryTest extends AbstractStoreClientFactoryTest {
         context.destroy();
     }
 
+    public void testDefaultPermitsLeaveThreadsForOtherNodes() throws Exception {
+        HttpStoreClientFactory factory = new HttpStoreClientFactory(4, getValidBootstrapUrl());
+        try {
+            int permits = factory.getMaxInFlightPerNode();
+            assertTrue(permits > 0);
+            assertTrue("One node should not be able to hold every routing thread.", permits < 4);
+        } finally {
+            factory.close();
+        }
+    }
+
     @Override
     protected StoreClientFactory getFactory(String... bootstrapUrls) {
         return new HttpStoreClientFactory(4, bootstrapUrls);
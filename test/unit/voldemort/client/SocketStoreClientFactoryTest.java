@@ -74,6 +74,18 @@ public class SocketStoreClientFactoryTest extends AbstractStoreClientFactoryTest
                                             bootstrapUrls);
     }
 
+    public void testDefaultPermitsLeaveThreadsForOtherNodes() throws Exception {
+        SocketStoreClientFactory factory = new SocketStoreClientFactory(getValidBootstrapUrl());
+        try {
+            int permits = factory.getMaxInFlightPerNode();
+            assertTrue(permits > 0);
+            assertTrue("One node should not be able to hold every routing thread.",
+                       permits < SocketStoreClientFactory.DEFAULT_NUM_THREADS);
+        } finally {
+            factory.close();
+        }
+    }
+
     @Override
     protected String getValidBootstrapUrl() throws URISyntaxException {
         return getLocalNode().getSocketUrl().toString();
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.client.protocol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import voldemort.TestUtils;
+import voldemort.versioning.VectorClock;
+import voldemort.versioning.Versioned;
+
+public class VersionedReaderTest extends TestCase {
+
+    public void testReadsClocksAndValuesBackToBack() throws IOException {
+        // a clock with many entries outgrows the initial scratch buffer
+        int[] nodes = new int[100];
+        for(int i = 0; i < nodes.length; i++)
+            nodes[i] = i;
+        VectorClock[] clocks = { TestUtils.getClock(), TestUtils.getClock(nodes),
+                TestUtils.getClock(1, 1, 2) };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        for(VectorClock clock: clocks) {
+            byte[] value = TestUtils.randomBytes(10);
+            output.write(clock.toBytes());
+            output.write(value);
+            output.write(clock.toBytes());
+        }
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        VersionedReader reader = new VersionedReader();
+        for(VectorClock clock: clocks) {
+            Versioned<byte[]> versioned = reader.readVersioned(input, clock.sizeInBytes() + 10);
+            assertEquals(clock, versioned.getVersion());
+            assertEquals(10, versioned.getValue().length);
+            assertEquals(clock, reader.readClock(input, clock.sizeInBytes()));
+        }
+        assertEquals(-1, input.read());
+    }
+
+    public void testClockLargerThanValue() {
+        VectorClock clock = TestUtils.getClock(1, 2, 3);
+        byte[] bytes = new byte[100];
+        System.arraycopy(clock.toBytes(), 0, bytes, 0, clock.sizeInBytes());
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            new VersionedReader().readVersioned(input, 5);
+            fail("A clock that overruns its value should be rejected.");
+        } catch(IOException e) {
+            // this is good
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.cluster;
+
+import java.net.ConnectException;
+
+import junit.framework.TestCase;
+import voldemort.MockTime;
+import voldemort.store.UnreachableStoreException;
+
+import com.google.common.collect.ImmutableList;
+
+public class AdaptiveFailureDetectorTest extends TestCase {
+
+    private static final long WINDOW_MS = 1000;
+    private static final long MIN_BACKOFF_MS = 10000;
+    private static final long MAX_BACKOFF_MS = 30000;
+
+    private MockTime time;
+    private Node node;
+    private boolean nodeIsUp;
+    private AdaptiveFailureDetector detector;
+
+    @Override
+    public void setUp() {
+        this.time = new MockTime();
+        this.node = new Node(1, "test", 1, 1, ImmutableList.of(1), new NodeStatus(time));
+        this.nodeIsUp = false;
+        this.detector = new AdaptiveFailureDetector(new NodeVerifier() {
+
+            public void verify(Node node) throws Exception {
+                if(!nodeIsUp)
+                    throw new UnreachableStoreException("down");
+            }
+        }, 0.5, 4, WINDOW_MS, MIN_BACKOFF_MS, MAX_BACKOFF_MS, time);
+    }
+
+    @Override
+    public void tearDown() {
+        this.detector.close();
+    }
+
+    public void testStaysAvailableUntilThresholdCrossed() {
+        assertTrue(detector.isAvailable(node));
+        assertEquals(1.0, detector.getHealth(node), 0.0001);
+
+        // not enough requests to act on
+        recordFailures(3);
+        assertTrue(detector.isAvailable(node));
+        assertEquals(0.0, detector.getHealth(node), 0.0001);
+
+        // 3 of 6 succeeded, right at the threshold
+        recordSuccesses(3);
+        assertTrue(detector.isAvailable(node));
+        assertEquals(0.5, detector.getHealth(node), 0.0001);
+
+        recordFailures(1);
+        assertFalse(detector.isAvailable(node));
+        assertEquals(0.0, detector.getHealth(node), 0.0001);
+    }
+
+    public void testWindowExpires() {
+        recordFailures(3);
+        time.addMilliseconds(WINDOW_MS);
+        recordFailures(3);
+        assertTrue("Failures from the previous window should not count.",
+                   detector.isAvailable(node));
+    }
+
+    public void testConnectionRefusedMarksDownImmediately() {
+        detector.recordException(node, new UnreachableStoreException("refused",
+                                                                     new ConnectException()));
+        assertFalse(detector.isAvailable(node));
+    }
+
+    public void testProbeBacksOffAndRecovers() {
+        recordFailures(4);
+        assertFalse(detector.isAvailable(node));
+        assertEquals(MIN_BACKOFF_MS, detector.getBackoffMs(node));
+
+        detector.probe(node);
+        assertFalse(detector.isAvailable(node));
+        assertEquals(2 * MIN_BACKOFF_MS, detector.getBackoffMs(node));
+
+        detector.probe(node);
+        assertEquals("Backoff should be capped.", MAX_BACKOFF_MS, detector.getBackoffMs(node));
+
+        nodeIsUp = true;
+        detector.probe(node);
+        assertTrue(detector.isAvailable(node));
+        assertEquals(MIN_BACKOFF_MS, detector.getBackoffMs(node));
+        assertEquals(1.0, detector.getHealth(node), 0.0001);
+    }
+
+    public void testSuccessRestoresNode() {
+        recordFailures(4);
+        assertFalse(detector.isAvailable(node));
+        detector.recordSuccess(node);
+        assertTrue(detector.isAvailable(node));
+    }
+
+    public void testStateIsKeptByNodeId() {
+        Node copy = new Node(1, "test", 1, 1, ImmutableList.of(1), new NodeStatus(time));
+        recordFailures(4);
+        assertFalse("Another client's copy of the node should see it as down.",
+                    detector.isAvailable(copy));
+        detector.recordSuccess(copy);
+        assertTrue(detector.isAvailable(node));
+    }
+
+    private void recordFailures(int count) {
+        for(int i = 0; i < count; i++)
+            detector.recordException(node, new UnreachableStoreException("no go"));
+    }
+
+    private void recordSuccesses(int count) {
+        for(int i = 0; i < count; i++)
+            detector.recordSuccess(node);
+    }
+
+}
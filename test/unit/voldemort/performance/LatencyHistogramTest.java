@@ -0,0 +1,156 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import voldemort.TestUtils;
+
+public class LatencyHistogramTest extends TestCase {
+
+    private static final long MAX = 3600L * 1000 * 1000;
+
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram(MAX, 3);
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0, histogram.getMean());
+        assertEquals(0, histogram.getQuantile(0.99));
+    }
+
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram(MAX, 3);
+        for(int i = 1; i <= 1000; i++)
+            histogram.record(i);
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5, histogram.getMean(), 0.0001);
+        assertEquals(500, histogram.getQuantile(0.5));
+        assertEquals(990, histogram.getQuantile(0.99));
+        assertEquals(1000, histogram.getQuantile(1.0));
+    }
+
+    public void testQuantilesWithinPrecision() {
+        Random random = new Random(1234);
+        long[] values = new long[100000];
+        LatencyHistogram histogram = new LatencyHistogram(MAX, 2);
+        for(int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * Math.log(MAX));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for(double quantile: new double[] { 0.01, 0.5, 0.9, 0.99, 0.999 }) {
+            long expected = TestUtils.quantile(values, quantile);
+            long found = histogram.getQuantile(quantile);
+            assertTrue("Quantile " + quantile + " was " + found + " but expected " + expected,
+                       Math.abs(found - expected) <= expected / 100 + 1);
+        }
+    }
+
+    public void testOutOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram(1000, 2);
+        histogram.record(-5);
+        histogram.record(1000000);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(1000, histogram.getMax());
+    }
+
+    public void testAddAndDrain() {
+        LatencyHistogram first = new LatencyHistogram(MAX, 3);
+        LatencyHistogram second = new LatencyHistogram(MAX, 3);
+        for(int i = 0; i < 100; i++) {
+            first.record(i);
+            second.record(1000 + i);
+        }
+        first.add(second);
+        assertEquals(200, first.getCount());
+        assertEquals(0, first.getMin());
+        assertEquals(1099, first.getMax());
+        assertEquals(99, first.getQuantile(0.5));
+
+        LatencyHistogram drained = first.drain();
+        assertEquals(200, drained.getCount());
+        assertEquals(1099, drained.getMax());
+        assertEquals(0, first.getCount());
+        assertEquals(0, first.getMax());
+
+        try {
+            first.add(new LatencyHistogram(MAX, 2));
+            fail("Added histograms of different precision.");
+        } catch(IllegalArgumentException e) {
+            // this is good
+        }
+    }
+
+    public void testCoordinatedOmissionCorrection() {
+        LatencyHistogram histogram = new LatencyHistogram(MAX, 3);
+        histogram.recordWithExpectedInterval(50, 100);
+        assertEquals(1, histogram.getCount());
+        histogram.recordWithExpectedInterval(1000, 100);
+        // 1000 plus the missed requests at 900, 800, ..., 100
+        assertEquals(11, histogram.getCount());
+        assertEquals(50, histogram.getMin());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500, histogram.getQuantile(0.5));
+        histogram.recordWithExpectedInterval(1000, 0);
+        assertEquals(12, histogram.getCount());
+    }
+
+    public void testWritePercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram(MAX, 3);
+        for(int i = 1; i <= 1000; i++)
+            histogram.record(i * 1000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes);
+        histogram.writePercentiles(out, 1000.0);
+        out.flush();
+        String[] lines = bytes.toString().split("\r?\n");
+
+        assertEquals("Value", lines[0].trim().split("\\s+")[0]);
+        assertEquals("", lines[1]);
+        String[] first = lines[2].trim().split("\\s+");
+        assertEquals(1.0, Double.parseDouble(first[0]), 0.001);
+        assertEquals(0.0, Double.parseDouble(first[1]), 0.0);
+        assertEquals("1", first[2]);
+
+        double lastPercentile = -1.0;
+        int i = 2;
+        for(; !lines[i].startsWith("#"); i++) {
+            String[] fields = lines[i].trim().split("\\s+");
+            double percentile = Double.parseDouble(fields[1]);
+            assertTrue("Percentiles should increase.", percentile > lastPercentile);
+            lastPercentile = percentile;
+        }
+        String[] last = lines[i - 1].trim().split("\\s+");
+        assertEquals(3, last.length);
+        assertEquals(1000.0, Double.parseDouble(last[0]), 0.001);
+        assertEquals(1.0, Double.parseDouble(last[1]), 0.0);
+        assertEquals("1000", last[2]);
+        assertTrue(lines[i].startsWith("#[Mean    ="));
+        assertTrue(lines[i + 1].contains("Total count    =         1000"));
+        assertTrue(lines[i + 2].startsWith("#[Buckets ="));
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.performance;
+
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+public class LatencyRecorderTest extends TestCase {
+
+    public void testMergesThreads() throws Exception {
+        final LatencyRecorder recorder = new LatencyRecorder(1000000, 3);
+        int numThreads = 4;
+        final CountDownLatch done = new CountDownLatch(numThreads);
+        for(int t = 0; t < numThreads; t++) {
+            final int offset = t * 1000;
+            new Thread(new Runnable() {
+
+                public void run() {
+                    for(int i = 1; i <= 1000; i++)
+                        recorder.record(offset + i);
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        LatencyHistogram total = recorder.getTotal();
+        assertEquals(4000, total.getCount());
+        assertEquals(1, total.getMin());
+        assertEquals(4000, total.getMax());
+        assertEquals(2000.5, total.getMean(), 0.0001);
+    }
+
+    public void testIntervalSnapshots() {
+        LatencyRecorder recorder = new LatencyRecorder(1000000, 3);
+        for(int i = 0; i < 10; i++)
+            recorder.record(10);
+        LatencyHistogram first = recorder.intervalSnapshot();
+        assertEquals(10, first.getCount());
+        assertEquals(10, first.getMax());
+
+        recorder.record(500);
+        LatencyHistogram second = recorder.intervalSnapshot();
+        assertEquals(1, second.getCount());
+        assertEquals(500, second.getMin());
+        assertEquals(0, recorder.intervalSnapshot().getCount());
+
+        recorder.record(7);
+        LatencyHistogram total = recorder.getTotal();
+        assertEquals(12, total.getCount());
+        assertEquals(7, total.getMin());
+        assertEquals(500, total.getMax());
+
+        recorder.reset();
+        assertEquals(0, recorder.getTotal().getCount());
+    }
+
+}
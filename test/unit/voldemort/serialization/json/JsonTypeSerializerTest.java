@@ -20,7 +20,11 @@ import static java.util.Arrays.asList;
 import static voldemort.TestUtils.quote;
 import static voldemort.serialization.json.JsonTypeDefinition.fromJson;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Map;
 
@@ -140,6 +144,137 @@ public class JsonTypeSerializerTest extends TestCase {
                       m);
     }
 
+    public void testWireFormat() throws Exception {
+        Map<String, Object> m = Maps.newHashMap();
+        m.put("name", "jay");
+        m.put("ids", asList(1L, null));
+        m.put("ok", true);
+        m.put("born", new Date(1234L));
+        m.put("nested", null);
+        JsonTypeSerializer serializer = getSerializer("{\"name\":\"string\", \"ids\":[\"int64\"], \"ok\":\"boolean\", "
+                                                      + "\"born\":\"date\", \"nested\":{\"x\":\"int16\"}}");
+
+        // fields are written in sorted order
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(expected);
+        output.writeByte(1);
+        output.writeLong(1234L);
+        output.writeShort(2);
+        output.writeLong(1L);
+        output.writeLong(Long.MIN_VALUE);
+        output.writeShort(3);
+        output.write("jay".getBytes("UTF-8"));
+        output.writeByte(-1);
+        output.writeByte(1);
+        output.flush();
+        assertTrue(Arrays.equals(expected.toByteArray(), serializer.toBytes(m)));
+        assertEquals(m, serializer.toObject(expected.toByteArray()));
+    }
+
+    public void testLazyObject() {
+        String typeDef = "{\"name\":\"string\", \"ids\":[\"int64\"], \"tags\":[\"string\"], "
+                         + "\"ok\":\"boolean\", \"nested\":{\"x\":\"int16\", \"y\":\"bytes\"}, "
+                         + "\"empty\":{\"z\":\"int32\"}, \"count\":\"int32\"}";
+        Map<String, Object> nested = Maps.newHashMap();
+        nested.put("x", (short) 7);
+        nested.put("y", null);
+        Map<String, Object> m = Maps.newHashMap();
+        m.put("name", "jay");
+        m.put("ids", asList(1L, 2L, null));
+        m.put("tags", asList("a", null, "bc"));
+        m.put("ok", false);
+        m.put("nested", nested);
+        m.put("empty", null);
+        m.put("count", 42);
+
+        JsonTypeSerializer serializer = getSerializer(0, quote("string"), 1, typeDef);
+        byte[] bytes = serializer.toBytes(m);
+        Map<String, Object> lazy = (Map<String, Object>) serializer.toLazyObject(bytes);
+        assertEquals(42, lazy.get("count"));
+        assertEquals((short) 7, ((Map<String, Object>) lazy.get("nested")).get("x"));
+        assertNull(lazy.get("empty"));
+        assertNull(lazy.get("not-a-field"));
+        assertTrue(lazy.containsKey("ok"));
+        assertEquals(m.size(), lazy.size());
+        assertEquals(m, lazy);
+        assertEquals(serializer.toObject(bytes), lazy);
+
+        // non-object values are decoded immediately
+        assertEquals("hello", getSerializer(quote("string")).toLazyObject(getSerializer(quote("string")).toBytes("hello")));
+
+        byte[] truncated = new byte[bytes.length - 3];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        try {
+            ((Map<String, Object>) serializer.toLazyObject(truncated)).get("name");
+            fail("Truncated value should not decode.");
+        } catch(SerializationException e) {
+            // this is good
+        }
+    }
+
+    public void testToBytesFromReader() {
+        String typeDef = "{\"name\":\"string\", \"ids\":[\"int64\"], \"ok\":\"boolean\", "
+                         + "\"nested\":{\"x\":\"int32\", \"y\":[\"float64\"]}, "
+                         + "\"empty\":{\"z\":\"int32\"}, \"small\":\"int32\"}";
+        String json = " {'small': 3, \"nested\": {\"y\": [1.5, null, -2], \"x\": 7}, "
+                      + "\"ids\": [1, null, 123456789], \"name\": \"jay\", "
+                      + "\"empty\": null, \"ok\": true}\n"
+                      + "{\"ids\": [], \"name\": null, \"nested\": null, \"ok\": null, "
+                      + "\"empty\": {\"z\": -5}, \"small\": null} ";
+        JsonTypeSerializer serializer = getSerializer(0, quote("string"), 1, typeDef);
+        JsonReader objects = new JsonReader(new StringReader(json));
+        JsonReader direct = new JsonReader(new StringReader(json));
+        for(int i = 0; i < 2; i++)
+            assertTrue(Arrays.equals(serializer.toBytes(objects.read()),
+                                     serializer.toBytes(direct)));
+        try {
+            serializer.toBytes(direct);
+            fail("Should be at end of input.");
+        } catch(EndOfFileException e) {
+            // this is good
+        }
+
+        assertTrue(Arrays.equals(getSerializer(quote("int32")).toBytes(-17),
+                                 getSerializer(quote("int32")).toBytes(new JsonReader(new StringReader("-17")))));
+        // parsed objects hold ints and doubles, which only the direct path
+        // narrows or widens
+        assertToBytesFromReader(quote("int8"), (byte) -3, "-3");
+        assertToBytesFromReader(quote("int16"), (short) 300, "300");
+        assertToBytesFromReader(quote("float32"), 0.25f, "0.25");
+        assertToBytesFromReader(quote("date"), new Date(1234567890123L), "1234567890123");
+        assertToBytesFromReader("[\"int64\"]", asList(12345678901L, null), "[12345678901, null]");
+    }
+
+    public void testBadToBytesFromReader() {
+        assertToBytesFromReaderFails("{\"name\":\"string\"}", "{}");
+        assertToBytesFromReaderFails("{\"name\":\"string\"}", "{\"name\":\"a\", \"name\":\"b\"}");
+        assertToBytesFromReaderFails("{\"name\":\"string\"}", "{\"name\":\"a\", \"other\":1}");
+        assertToBytesFromReaderFails("[\"string\"]", "[123]");
+        assertToBytesFromReaderFails(quote("string"), "true");
+        assertToBytesFromReaderFails(quote("boolean"), "1");
+        assertToBytesFromReaderFails(quote("int8"), "200");
+        assertToBytesFromReaderFails(quote("int8"), Byte.toString(Byte.MIN_VALUE));
+        assertToBytesFromReaderFails(quote("int32"), "1.5");
+        assertToBytesFromReaderFails(quote("int32"), "\"12\"");
+        assertToBytesFromReaderFails(quote("int64"), Long.toString(Long.MIN_VALUE));
+        assertToBytesFromReaderFails(quote("bytes"), "\"abc\"");
+    }
+
+    private void assertToBytesFromReader(String typeDef, Object expected, String json) {
+        JsonTypeSerializer serializer = getSerializer(typeDef);
+        assertTrue(Arrays.equals(serializer.toBytes(expected),
+                                 serializer.toBytes(new JsonReader(new StringReader(json)))));
+    }
+
+    private void assertToBytesFromReaderFails(String typeDef, String json) {
+        try {
+            getSerializer(typeDef).toBytes(new JsonReader(new StringReader(json)));
+            fail("Invalid serialization of " + json + " allowed.");
+        } catch(SerializationException e) {
+            // this is good
+        }
+    }
+
     public void testBadToObjectInput() {
         assertToObjectFails(quote("int32"), new byte[] { 1, 2, 3 });
         assertToObjectFails(quote("string"), new byte[] {});
@@ -1,5 +1,10 @@
 package voldemort.serialization.protobuf;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
 import junit.framework.TestCase;
 import voldemort.serialization.DefaultSerializerFactory;
 import voldemort.serialization.Serializer;
@@ -35,6 +40,11 @@ public class ProtoBufSerializerTest extends TestCase {
         public byte[] toByteArray() {
             return bytes;
         }
+
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+            output.write(bytes);
+        }
     }
 
     private static class MessageWithNoParseFrom extends AbstractMessageStub {
@@ -73,6 +83,14 @@ public class ProtoBufSerializerTest extends TestCase {
         assertEquals(message.bytes, serializer.toBytes(message));
     }
 
+    public void testWriteTo() throws IOException {
+        ProtoBufSerializer<MessageStub> serializer = createSerializer();
+        MessageStub message = new MessageStub(new byte[] { 23, 34, 22, 23 });
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        serializer.writeTo(message, output);
+        assertTrue(Arrays.equals(message.bytes, output.toByteArray()));
+    }
+
     private ProtoBufSerializer<MessageStub> createSerializer() {
         return new ProtoBufSerializer<MessageStub>("java=" + MessageStub.class.getName());
     }
@@ -1,12 +1,16 @@
 package voldemort.serialization.thrift;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 
 import junit.framework.TestCase;
 import voldemort.serialization.DefaultSerializerFactory;
+import voldemort.serialization.SerializationException;
 import voldemort.serialization.Serializer;
 import voldemort.serialization.SerializerDefinition;
 
@@ -95,7 +99,7 @@ public class ThriftSerializerTest extends TestCase {
         fail("IllegalArgumentException should have been thrown for non-Java Thrift client");
     }
 
-    public void testSerializerRoundtrip() {
+    private MockMessage createMessage() {
         MockMessage message = new MockMessage();
         message.name = "abc";
         Map<String, Integer> strToIntMap = new HashMap<String, Integer>();
@@ -110,7 +114,11 @@ public class ThriftSerializerTest extends TestCase {
         message.strSet = new HashSet<String>();
         message.strSet.add("hello");
         message.strSet.add("world");
+        return message;
+    }
 
+    public void testSerializerRoundtrip() {
+        MockMessage message = createMessage();
         ThriftSerializer<MockMessage> serializer = new ThriftSerializer<MockMessage>("java=voldemort.serialization.thrift.MockMessage,protocol=binary");
         byte[] b = serializer.toBytes(message);
         MockMessage message2 = serializer.toObject(b);
@@ -126,4 +134,31 @@ public class ThriftSerializerTest extends TestCase {
 
         assertEquals(message, message2);
     }
+
+    public void testSerializerReuse() throws IOException {
+        MockMessage message = createMessage();
+        MockMessage empty = new MockMessage();
+        for(String protocol: new String[] { "binary", "json" }) {
+            ThriftSerializer<MockMessage> serializer = new ThriftSerializer<MockMessage>("java=voldemort.serialization.thrift.MockMessage,protocol="
+                                                                                         + protocol);
+            byte[] b = serializer.toBytes(message);
+            byte[] e = serializer.toBytes(empty);
+            assertEquals(message, serializer.toObject(b));
+            assertEquals(empty, serializer.toObject(e));
+            assertEquals(message, serializer.toObject(b));
+            assertTrue(Arrays.equals(b, serializer.toBytes(message)));
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            serializer.writeTo(message, output);
+            assertTrue(Arrays.equals(b, output.toByteArray()));
+
+            try {
+                serializer.toObject(new byte[] { 1, 2, 3 });
+                fail("Bad bytes should not deserialize.");
+            } catch(SerializationException ex) {
+                // this is good
+            }
+            assertEquals(message, serializer.toObject(b));
+        }
+    }
 }
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.server.antientropy;
+
+import static voldemort.TestUtils.getClock;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import voldemort.MockTime;
+import voldemort.VoldemortException;
+import voldemort.ServerTestUtils;
+import voldemort.TestUtils;
+import voldemort.client.RoutingTier;
+import voldemort.cluster.Cluster;
+import voldemort.serialization.SerializerDefinition;
+import voldemort.store.StorageEngine;
+import voldemort.store.StoreDefinition;
+import voldemort.store.compress.CompressingStorageEngine;
+import voldemort.store.compress.DictionaryCompressionStrategy;
+import voldemort.store.memory.InMemoryStorageConfiguration;
+import voldemort.store.memory.InMemoryStorageEngine;
+import voldemort.store.metadata.MetadataStore;
+import voldemort.utils.ByteArray;
+import voldemort.utils.ClosableIterator;
+import voldemort.utils.Pair;
+import voldemort.versioning.Versioned;
+
+import com.google.common.collect.ImmutableMap;
+
+public class AntiEntropyJobTest extends TestCase {
+
+    private static final String STORE_NAME = "test";
+
+    private StorageEngine<ByteArray, byte[]> engine0;
+    private StorageEngine<ByteArray, byte[]> engine1;
+    private AntiEntropyStore store0;
+    private AntiEntropyStore store1;
+    private Cluster cluster;
+    private List<StoreDefinition> storeDefs;
+    private MockTime time;
+
+    @Override
+    public void setUp() {
+        cluster = ServerTestUtils.getLocalCluster(2, new int[] { 1, 2, 3, 4 });
+        SerializerDefinition serDef = new SerializerDefinition("identity");
+        storeDefs = Collections.singletonList(new StoreDefinition(STORE_NAME,
+                                                                                       InMemoryStorageConfiguration.TYPE_NAME,
+                                                                                       serDef,
+                                                                                       serDef,
+                                                                                       RoutingTier.CLIENT,
+                                                                                       2,
+                                                                                       2,
+                                                                                       1,
+                                                                                       2,
+                                                                                       1,
+                                                                                       null));
+        engine0 = new InMemoryStorageEngine<ByteArray, byte[]>(STORE_NAME);
+        engine1 = new InMemoryStorageEngine<ByteArray, byte[]>(STORE_NAME);
+        time = new MockTime();
+        store0 = new AntiEntropyStore(0,
+                                      cluster,
+                                      storeDefs,
+                                      ImmutableMap.of(STORE_NAME, engine0),
+                                      6,
+                                      1000,
+                                      time);
+        store1 = new AntiEntropyStore(1,
+                                      cluster,
+                                      storeDefs,
+                                      ImmutableMap.of(STORE_NAME, engine1),
+                                      6,
+                                      1000,
+                                      time);
+    }
+
+    public void testReplicasConverge() {
+        for(int i = 0; i < 100; i++) {
+            ByteArray key = new ByteArray(("key" + i).getBytes());
+            Versioned<byte[]> value = new Versioned<byte[]>(("value" + i).getBytes(), getClock(1));
+            if(i % 10 != 0)
+                engine0.put(key, value);
+            if(i % 10 != 5)
+                engine1.put(key, value);
+        }
+        // a newer version on one side replaces the older one on the other
+        ByteArray updated = new ByteArray("key1".getBytes());
+        engine1.put(updated, new Versioned<byte[]>("newer".getBytes(), getClock(1, 1)));
+
+        assertEquals(2, store0.getSharedPartitions(STORE_NAME, 1).size());
+        assertEquals(Collections.singleton(1), store0.getPeers(STORE_NAME));
+
+        AntiEntropyJob job0 = new AntiEntropyJob(store0,
+                                                 ImmutableMap.of(STORE_NAME, engine0),
+                                                 ImmutableMap.of(1, store1));
+        AntiEntropyJob job1 = new AntiEntropyJob(store1,
+                                                 ImmutableMap.of(STORE_NAME, engine1),
+                                                 ImmutableMap.of(0, store0));
+        job0.run();
+        job1.run();
+
+        for(int i = 0; i < 100; i++) {
+            ByteArray key = new ByteArray(("key" + i).getBytes());
+            assertEquals(1, engine0.get(key).size());
+            assertEquals(1, engine1.get(key).size());
+        }
+        assertEquals("newer", new String(engine0.get(updated).get(0).getValue()));
+
+        Map<Integer, HashTree> trees0 = store0.getHashTrees(STORE_NAME, true);
+        Map<Integer, HashTree> trees1 = store1.getHashTrees(STORE_NAME, true);
+        for(Integer partition: trees0.keySet())
+            assertEquals(trees0.get(partition).getRootHash(), trees1.get(partition).getRootHash());
+
+        // nothing left to repair
+        assertEquals(0, job0.repair(STORE_NAME, trees0, 1, store1));
+    }
+
+    public void testEntriesArePagedFromOneScan() {
+        final AtomicInteger scans = new AtomicInteger(0);
+        StorageEngine<ByteArray, byte[]> countingEngine = new InMemoryStorageEngine<ByteArray, byte[]>(STORE_NAME) {
+
+            @Override
+            public ClosableIterator<Pair<ByteArray, Versioned<byte[]>>> entries() {
+                scans.incrementAndGet();
+                return super.entries();
+            }
+        };
+        for(int i = 0; i < 1000; i++)
+            countingEngine.put(new ByteArray(("key" + i).getBytes()),
+                               new Versioned<byte[]>(("value" + i).getBytes(), getClock(1)));
+        AntiEntropyStore pagingStore = new AntiEntropyStore(1,
+                                                            cluster,
+                                                            storeDefs,
+                                                            ImmutableMap.of(STORE_NAME,
+                                                                            countingEngine),
+                                                            6,
+                                                            1000,
+                                                            100,
+                                                            time);
+        // build the trees up front, they are cached
+        pagingStore.getHashTrees(STORE_NAME, false);
+        int scansBefore = scans.get();
+
+        AntiEntropyJob job0 = new AntiEntropyJob(store0,
+                                                 ImmutableMap.of(STORE_NAME, engine0),
+                                                 ImmutableMap.of(1, pagingStore));
+        assertEquals(1000, job0.repair(STORE_NAME,
+                                       store0.getHashTrees(STORE_NAME, true),
+                                       1,
+                                       pagingStore));
+        assertEquals("Every page should come from the same scan.", scansBefore + 1, scans.get());
+        assertEquals(0, pagingStore.getOpenScans());
+    }
+
+    public void testIdleScansAreClosed() {
+        for(int i = 0; i < 100; i++)
+            engine1.put(new ByteArray(("key" + i).getBytes()),
+                        new Versioned<byte[]>(("value" + i).getBytes(), getClock(1)));
+        AntiEntropyStore pagingStore = new AntiEntropyStore(1,
+                                                            cluster,
+                                                            storeDefs,
+                                                            ImmutableMap.of(STORE_NAME, engine1),
+                                                            6,
+                                                            1000,
+                                                            100,
+                                                            time);
+        Map<Integer, List<Integer>> leaves = new HashMap<Integer, List<Integer>>();
+        for(int partition: pagingStore.getHashTrees(STORE_NAME, false).keySet()) {
+            List<Integer> all = new ArrayList<Integer>();
+            for(int leaf = 0; leaf < 64; leaf++)
+                all.add(leaf);
+            leaves.put(partition, all);
+        }
+        ByteArray request = AntiEntropyStore.entriesRequest(STORE_NAME, 6, leaves);
+        long scanId = AntiEntropyStore.readEntries(pagingStore.get(request).get(0).getValue(),
+                                                   new ArrayList<Pair<ByteArray, Versioned<byte[]>>>());
+        assertTrue(scanId != 0);
+        assertEquals(1, pagingStore.getOpenScans());
+
+        time.addMilliseconds(AntiEntropyStore.MAX_SCAN_IDLE_MS + 1);
+        try {
+            pagingStore.get(AntiEntropyStore.moreEntriesRequest(STORE_NAME, 6, scanId));
+            fail("An idle scan should have been closed.");
+        } catch(VoldemortException e) {
+            // this is good
+        }
+        assertEquals(0, pagingStore.getOpenScans());
+    }
+
+    public void testDictionaryCompressedValuesAreRecompressed() throws Exception {
+        File dir0 = TestUtils.createTempDir();
+        File dir1 = TestUtils.createTempDir();
+        try {
+            // each node has trained a dictionary of its own
+            DictionaryCompressionStrategy strategy0 = new DictionaryCompressionStrategy(STORE_NAME,
+                                                                                        new MetadataStore(dir0));
+            DictionaryCompressionStrategy strategy1 = new DictionaryCompressionStrategy(STORE_NAME,
+                                                                                        new MetadataStore(dir1));
+            String record = "{\"name\": \"value\", \"description\": \"a value with some structure\"}";
+            strategy0.addDictionary(record.getBytes());
+            strategy1.addDictionary(("{\"id\": 1, " + record.substring(1)).getBytes());
+            CompressingStorageEngine<ByteArray> compressed0 = new CompressingStorageEngine<ByteArray>(engine0,
+                                                                                                     strategy0,
+                                                                                                     0);
+            CompressingStorageEngine<ByteArray> compressed1 = new CompressingStorageEngine<ByteArray>(engine1,
+                                                                                                     strategy1,
+                                                                                                     0);
+            AntiEntropyStore peer = new AntiEntropyStore(1,
+                                                         cluster,
+                                                         storeDefs,
+                                                         ImmutableMap.of(STORE_NAME, compressed1),
+                                                         6,
+                                                         1000,
+                                                         time);
+            AntiEntropyStore local = new AntiEntropyStore(0,
+                                                          cluster,
+                                                          storeDefs,
+                                                          ImmutableMap.of(STORE_NAME, compressed0),
+                                                          6,
+                                                          1000,
+                                                          time);
+            ByteArray key = new ByteArray("key".getBytes());
+            byte[] value = record.getBytes();
+            compressed1.put(key, new Versioned<byte[]>(value, getClock(1)));
+
+            AntiEntropyJob job = new AntiEntropyJob(local,
+                                                    ImmutableMap.of(STORE_NAME, compressed0),
+                                                    ImmutableMap.of(1, peer));
+            assertEquals(1, job.repair(STORE_NAME, local.getHashTrees(STORE_NAME, true), 1, peer));
+            assertTrue(TestUtils.bytesEqual(value, compressed0.get(key).get(0).getValue()));
+            assertFalse(TestUtils.bytesEqual(engine0.get(key).get(0).getValue(),
+                                             engine1.get(key).get(0).getValue()));
+        } finally {
+            FileUtils.deleteDirectory(dir0);
+            FileUtils.deleteDirectory(dir1);
+        }
+    }
+
+    public void testWritesAreRejected() {
+        try {
+            store0.put(new ByteArray("a".getBytes()), new Versioned<byte[]>(new byte[0]));
+            fail("Expected an exception.");
+        } catch(RuntimeException e) {
+            // this is good
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.server.antientropy;
+
+import static voldemort.TestUtils.getClock;
+import junit.framework.TestCase;
+import voldemort.TestUtils;
+
+public class HashTreeTest extends TestCase {
+
+    public void testEmptyTreesAreEqual() {
+        assertEquals(new HashTree(5).getRootHash(), new HashTree(5).getRootHash());
+    }
+
+    public void testOrderDoesNotMatter() {
+        HashTree forward = new HashTree(6);
+        HashTree backward = new HashTree(6);
+        byte[][] keys = new byte[100][];
+        for(int i = 0; i < keys.length; i++)
+            keys[i] = TestUtils.randomBytes(10);
+        byte[] version = getClock(1, 2).toBytes();
+        for(int i = 0; i < keys.length; i++)
+            forward.add(keys[i], version);
+        for(int i = keys.length - 1; i >= 0; i--)
+            backward.add(keys[i], version);
+        for(int node = 0; node < forward.getNumNodes(); node++)
+            assertEquals(forward.getHash(node), backward.getHash(node));
+    }
+
+    public void testDifferenceIsConfinedToOnePath() {
+        HashTree a = new HashTree(8);
+        HashTree b = new HashTree(8);
+        byte[] version = getClock(1).toBytes();
+        for(int i = 0; i < 50; i++) {
+            byte[] key = TestUtils.randomBytes(10);
+            a.add(key, version);
+            b.add(key, version);
+        }
+        byte[] key = "different".getBytes();
+        a.add(key, version);
+        b.add(key, getClock(1, 1).toBytes());
+
+        assertFalse(a.getRootHash() == b.getRootHash());
+        int differingLeaves = 0;
+        for(int leaf = 0; leaf < a.getNumLeaves(); leaf++) {
+            int node = a.getLeafNode(leaf);
+            if(a.getHash(node) != b.getHash(node)) {
+                assertEquals(a.getLeaf(key), leaf);
+                differingLeaves++;
+            }
+        }
+        assertEquals(1, differingLeaves);
+
+        int differingNodes = 0;
+        for(int node = 0; node < a.getNumNodes(); node++)
+            if(a.getHash(node) != b.getHash(node))
+                differingNodes++;
+        assertEquals(a.getDepth() + 1, differingNodes);
+    }
+
+    public void testLeafNumbering() {
+        HashTree tree = new HashTree(3);
+        assertEquals(8, tree.getNumLeaves());
+        assertEquals(15, tree.getNumNodes());
+        assertFalse(tree.isLeafNode(6));
+        assertTrue(tree.isLeafNode(7));
+        assertEquals(7, tree.getLeafNode(0));
+        assertEquals(7, tree.getLeaf(14));
+    }
+
+    public void testInvalidDepth() {
+        try {
+            new HashTree(HashTree.MAX_DEPTH + 1);
+            fail("Expected an exception.");
+        } catch(IllegalArgumentException e) {
+            // this is good
+        }
+    }
+
+}
@@ -20,13 +20,17 @@ import static voldemort.TestUtils.getClock;
 import static voldemort.TestUtils.randomLetters;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
 import junit.framework.TestCase;
 import voldemort.TestUtils;
+import voldemort.VoldemortException;
 import voldemort.versioning.ObsoleteVersionException;
 import voldemort.versioning.VectorClock;
 import voldemort.versioning.Version;
@@ -244,6 +248,96 @@ public abstract class AbstractStoreTest<K, V> extends TestCase {
         assertEquals(0, store.get(key).size());
     }
 
+    public void testGetVersions() {
+        K key = getKey();
+        Store<K, V> store = getStore();
+        VectorClock c1 = getClock(1, 1);
+        VectorClock c2 = getClock(1, 2);
+        assertEquals(0, store.getVersions(key).size());
+
+        store.put(key, new Versioned<V>(getValue(), c1));
+        store.put(key, new Versioned<V>(getValue(), c2));
+        List<Version> versions = store.getVersions(key);
+        assertEquals(2, versions.size());
+        assertTrue(versions.contains(c1));
+        assertTrue(versions.contains(c2));
+
+        store.delete(key, c1);
+        assertEquals(Collections.singletonList(c2), store.getVersions(key));
+    }
+
+    public void testPutIfCurrent() {
+        K key = getKey();
+        Store<K, V> store = getStore();
+        VectorClock c1 = getClock(1);
+        store.putIfCurrent(key, new Versioned<V>(getValue(), c1), new VectorClock());
+        try {
+            store.putIfCurrent(key, new Versioned<V>(getValue(), getClock(2)), new VectorClock());
+            fail("Put of an absent key succeeded after the key was written.");
+        } catch(ObsoleteVersionException e) {
+            // this is good
+        }
+
+        VectorClock c2 = getClock(1, 1);
+        store.putIfCurrent(key, new Versioned<V>(getValue(), c2), c1);
+        assertEquals(Collections.singletonList(c2), store.getVersions(key));
+
+        // a concurrent update based on the same version loses
+        try {
+            store.putIfCurrent(key, new Versioned<V>(getValue(), getClock(1, 2)), c1);
+            fail("Put based on a stale version succeeded.");
+        } catch(ObsoleteVersionException e) {
+            // this is good
+        }
+        assertEquals(Collections.singletonList(c2), store.getVersions(key));
+    }
+
+    public void testPutSuperseding() {
+        K key = getKey();
+        Store<K, V> store = getStore();
+        VectorClock c1 = getClock(1, 1);
+        VectorClock c2 = getClock(2);
+        store.put(key, new Versioned<V>(getValue(), c1));
+        store.put(key, new Versioned<V>(getValue(), c2));
+
+        // c3 does not come after c1, but replaces it anyway
+        VectorClock c3 = getClock(3);
+        store.putSuperseding(key, new Versioned<V>(getValue(), c3), c1);
+        assertEquals(new HashSet<Version>(Arrays.asList(c2, c3)),
+                     new HashSet<Version>(store.getVersions(key)));
+
+        // the versions that are not superseded still make a put obsolete
+        try {
+            store.putSuperseding(key, new Versioned<V>(getValue(), getClock()), c3);
+            fail("Put of a version before a stored one succeeded.");
+        } catch(ObsoleteVersionException e) {
+            // this is good
+        }
+        assertEquals(new HashSet<Version>(Arrays.asList(c2, c3)),
+                     new HashSet<Version>(store.getVersions(key)));
+    }
+
+    public void testPutAll() {
+        Store<K, V> store = getStore();
+        int putCount = 5;
+        List<K> keys = getKeys(putCount);
+        List<V> values = getValues(putCount);
+        store.put(keys.get(0), new Versioned<V>(values.get(0), getClock(1, 1)));
+
+        Map<K, Versioned<V>> entries = new HashMap<K, Versioned<V>>();
+        for(int i = 0; i < putCount; i++)
+            entries.put(keys.get(i), new Versioned<V>(values.get(i), getClock(1)));
+        Map<K, VoldemortException> failures = store.putAll(entries);
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(keys.get(0)) instanceof ObsoleteVersionException);
+
+        for(int i = 1; i < putCount; i++) {
+            List<Versioned<V>> found = store.get(keys.get(i));
+            assertEquals(1, found.size());
+            assertTrue(valuesEqual(values.get(i), found.get(0).getValue()));
+        }
+    }
+
     public void testGetAll() throws Exception {
         Store<K, V> store = getStore();
         int putCount = 10;
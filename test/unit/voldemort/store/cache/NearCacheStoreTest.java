@@ -0,0 +1,186 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.store.cache;
+
+import static voldemort.TestUtils.getClock;
+
+import java.util.List;
+
+import voldemort.MockTime;
+import voldemort.client.DefaultStoreClient;
+import voldemort.serialization.StringSerializer;
+import voldemort.store.AbstractByteArrayStoreTest;
+import voldemort.store.Store;
+import voldemort.store.memory.InMemoryStorageEngine;
+import voldemort.store.versioned.VersionIncrementingStore;
+import voldemort.utils.ByteArray;
+import voldemort.versioning.VectorClock;
+import voldemort.versioning.Versioned;
+
+public class NearCacheStoreTest extends AbstractByteArrayStoreTest {
+
+    private static final long TTL_MS = 1000;
+
+    private MockTime time;
+    private InMemoryStorageEngine<ByteArray, byte[]> inner;
+    private NearCacheStore<ByteArray, byte[]> cache;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        time = new MockTime();
+        inner = new InMemoryStorageEngine<ByteArray, byte[]>("test");
+        cache = new NearCacheStore<ByteArray, byte[]>(inner, 3, TTL_MS, false, time);
+    }
+
+    @Override
+    public Store<ByteArray, byte[]> getStore() {
+        return new NearCacheStore<ByteArray, byte[]>(new InMemoryStorageEngine<ByteArray, byte[]>("test"),
+                                                     100,
+                                                     TTL_MS,
+                                                     false,
+                                                     new MockTime());
+    }
+
+    public void testCachedUntilExpired() {
+        ByteArray key = ByteArray.valueOf("a");
+        inner.put(key, new Versioned<byte[]>("1".getBytes(), getClock(1)));
+        assertEquals("1", value(cache.get(key)));
+        // a change made by someone else is not seen until the entry expires
+        inner.put(key, new Versioned<byte[]>("2".getBytes(), getClock(1, 1)));
+        assertEquals("1", value(cache.get(key)));
+        time.addMilliseconds(TTL_MS);
+        assertEquals("2", value(cache.get(key)));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    public void testLocalWritesInvalidate() {
+        ByteArray key = ByteArray.valueOf("a");
+        cache.put(key, new Versioned<byte[]>("1".getBytes(), getClock(1)));
+        assertEquals("1", value(cache.get(key)));
+        cache.put(key, new Versioned<byte[]>("2".getBytes(), getClock(1, 1)));
+        assertEquals("2", value(cache.get(key)));
+        cache.delete(key, getClock(1, 1, 1));
+        assertEquals(0, cache.get(key).size());
+    }
+
+    public void testCachedClocksAreCopied() {
+        ByteArray key = ByteArray.valueOf("a");
+        inner.put(key, new Versioned<byte[]>("1".getBytes(), getClock(1)));
+        VectorClock clock = (VectorClock) cache.get(key).get(0).getVersion();
+        clock.incrementVersion(2, time.getMilliseconds());
+        assertEquals(getClock(1), cache.get(key).get(0).getVersion());
+    }
+
+    public void testLeastRecentlyUsedAreEvicted() {
+        for(int i = 0; i < 4; i++) {
+            ByteArray key = ByteArray.valueOf(Integer.toString(i));
+            inner.put(key, new Versioned<byte[]>(key.get(), getClock(1)));
+            cache.get(key);
+        }
+        assertEquals(3, cache.size());
+        inner.delete(ByteArray.valueOf("0"), getClock(1, 1));
+        inner.delete(ByteArray.valueOf("3"), getClock(1, 1));
+        assertEquals(0, cache.get(ByteArray.valueOf("0")).size());
+        assertEquals(1, cache.get(ByteArray.valueOf("3")).size());
+    }
+
+    public void testRevalidation() {
+        cache = new NearCacheStore<ByteArray, byte[]>(inner, 3, TTL_MS, true, time);
+        ByteArray key = ByteArray.valueOf("a");
+        inner.put(key, new Versioned<byte[]>("1".getBytes(), getClock(1)));
+        assertEquals("1", value(cache.get(key)));
+
+        // unchanged, so renewed without a get
+        time.addMilliseconds(TTL_MS);
+        assertEquals("1", value(cache.get(key)));
+        assertEquals(1, cache.getRevalidationCount());
+
+        // changed, so fetched again
+        inner.put(key, new Versioned<byte[]>("2".getBytes(), getClock(1, 1)));
+        time.addMilliseconds(TTL_MS);
+        assertEquals("2", value(cache.get(key)));
+        assertEquals(1, cache.getRevalidationCount());
+    }
+
+    public void testConcurrentWritesOnlyBlockCachingOfTheirKey() {
+        final ByteArray key = ByteArray.valueOf("a");
+        final ByteArray[] writeDuringGet = new ByteArray[1];
+        inner = new InMemoryStorageEngine<ByteArray, byte[]>("test") {
+
+            @Override
+            public List<Versioned<byte[]>> get(ByteArray k) {
+                List<Versioned<byte[]>> found = super.get(k);
+                if(writeDuringGet[0] != null) {
+                    ByteArray written = writeDuringGet[0];
+                    writeDuringGet[0] = null;
+                    cache.put(written, new Versioned<byte[]>(written.get(), getClock(1, 1)));
+                }
+                return found;
+            }
+        };
+        cache = new NearCacheStore<ByteArray, byte[]>(inner, 3, TTL_MS, false, time);
+        inner.put(key, new Versioned<byte[]>("1".getBytes(), getClock(1)));
+
+        // a write to another key does not stop the value being cached
+        writeDuringGet[0] = ByteArray.valueOf("b");
+        cache.get(key);
+        assertEquals(1, cache.size());
+
+        // a write to the same key does
+        cache.clear();
+        writeDuringGet[0] = key;
+        cache.get(key);
+        assertEquals(0, cache.size());
+    }
+
+    public void testPutAfterAnotherClientWrites() {
+        InMemoryStorageEngine<String, String> engine = new InMemoryStorageEngine<String, String>("test");
+        Store<String, String> incrementing = new VersionIncrementingStore<String, String>(engine,
+                                                                                          1,
+                                                                                          time);
+        Store<String, String> cached = new NearCacheStore<String, String>(incrementing,
+                                                                          3,
+                                                                          TTL_MS,
+                                                                          false,
+                                                                          time);
+        DefaultStoreClient<String, String> client = new DefaultStoreClient<String, String>(cached,
+                                                                                           new StringSerializer(),
+                                                                                           new StringSerializer(),
+                                                                                           null);
+        DefaultStoreClient<String, String> other = new DefaultStoreClient<String, String>(incrementing,
+                                                                                          new StringSerializer(),
+                                                                                          new StringSerializer(),
+                                                                                          null);
+        client.put("a", "1");
+        assertEquals("1", client.getValue("a"));
+        other.put("a", "2");
+        // the clock of the write must come from the store, not the cache
+        client.put("a", "3");
+        List<Versioned<String>> found = engine.get("a");
+        assertEquals(1, found.size());
+        assertEquals("3", found.get(0).getValue());
+    }
+
+    private String value(List<Versioned<byte[]>> found) {
+        assertEquals(1, found.size());
+        return new String(found.get(0).getValue());
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.compress;
+
+import java.util.List;
+
+import voldemort.store.AbstractByteArrayStoreTest;
+import voldemort.store.Store;
+import voldemort.store.memory.InMemoryStorageEngine;
+import voldemort.utils.ByteArray;
+import voldemort.versioning.Versioned;
+
+public class CompressingStoreTest extends AbstractByteArrayStoreTest {
+
+    private InMemoryStorageEngine<ByteArray, byte[]> inner;
+    private CompressingStore<ByteArray> store;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        this.inner = new InMemoryStorageEngine<ByteArray, byte[]>("test");
+        this.store = new CompressingStore<ByteArray>(inner, new CompressionDefinition("lzf", 0));
+    }
+
+    @Override
+    public Store<ByteArray, byte[]> getStore() {
+        return store;
+    }
+
+    public void testLargeValuesAreCompressed() {
+        byte[] value = new byte[10 * 1024];
+        ByteArray key = new ByteArray(new byte[] { 1 });
+        store.put(key, new Versioned<byte[]>(value));
+        byte[] stored = inner.get(key).get(0).getValue();
+        assertEquals(LzfCompressionStrategy.ID, stored[0]);
+        assertTrue("Value was not compressed.", stored.length < value.length);
+        assertEquals(value.length, store.get(key).get(0).getValue().length);
+    }
+
+    public void testSmallValuesAreStoredRaw() {
+        CompressingStore<ByteArray> thresholded = new CompressingStore<ByteArray>(inner,
+                                                                                  new CompressionDefinition("lzf"));
+        byte[] value = new byte[CompressionDefinition.DEFAULT_MIN_SIZE - 1];
+        ByteArray key = new ByteArray(new byte[] { 2 });
+        thresholded.put(key, new Versioned<byte[]>(value));
+        byte[] stored = inner.get(key).get(0).getValue();
+        assertEquals(CompressingStore.RAW_ID, stored[0]);
+        assertEquals(value.length + 1, stored.length);
+    }
+
+    public void testReadsValuesWrittenByOtherCodecs() {
+        CompressingStore<ByteArray> deflating = new CompressingStore<ByteArray>(inner,
+                                                                                new CompressionDefinition("deflate",
+                                                                                                          0));
+        byte[] value = new byte[4096];
+        ByteArray key = new ByteArray(new byte[] { 3 });
+        deflating.put(key, new Versioned<byte[]>(value));
+        List<Versioned<byte[]>> found = store.get(key);
+        assertEquals(1, found.size());
+        assertEquals(value.length, found.get(0).getValue().length);
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.compress;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import voldemort.TestUtils;
+import voldemort.VoldemortException;
+
+public class CompressionStrategyTest extends TestCase {
+
+    private static final int[] SIZES = { 0, 1, 2, 3, 4, 5, 31, 32, 33, 100, 1024, 65537 };
+
+    public void testLzfRoundTrip() {
+        assertRoundTrips(new LzfCompressionStrategy());
+    }
+
+    public void testDeflateRoundTrip() {
+        assertRoundTrips(new DeflateCompressionStrategy());
+    }
+
+    public void testLzfCompressesRepetitiveData() {
+        CompressionStrategy lzf = new LzfCompressionStrategy();
+        byte[] input = repetitive(64 * 1024);
+        byte[] output = new byte[lzf.getMaxCompressedLength(input.length)];
+        int size = lzf.compress(input, output, 0);
+        assertTrue("Expected at least 4x compression but got " + input.length + " -> " + size,
+                   size * 4 < input.length);
+    }
+
+    public void testLzfRejectsCorruptData() {
+        CompressionStrategy lzf = new LzfCompressionStrategy();
+        // a back reference with nothing before it
+        byte[] corrupt = { (byte) 0x20, 0 };
+        try {
+            lzf.decompress(corrupt, 0, corrupt.length, new byte[3]);
+            fail("Corrupt data should not decompress.");
+        } catch(VoldemortException e) {
+            // this is good
+        }
+    }
+
+    public void testFactory() {
+        assertEquals(LzfCompressionStrategy.ID,
+                     CompressionStrategyFactory.get(LzfCompressionStrategy.TYPE_NAME).getId());
+        assertEquals(DeflateCompressionStrategy.TYPE_NAME,
+                     CompressionStrategyFactory.get(DeflateCompressionStrategy.ID).getType());
+        try {
+            CompressionStrategyFactory.get("snappy");
+            fail("Unknown compression type should fail.");
+        } catch(IllegalArgumentException e) {
+            // this is good
+        }
+    }
+
+    private void assertRoundTrips(CompressionStrategy strategy) {
+        Random random = new Random(42);
+        for(int size: SIZES) {
+            byte[] randomBytes = new byte[size];
+            random.nextBytes(randomBytes);
+            assertRoundTrip(strategy, randomBytes);
+            assertRoundTrip(strategy, repetitive(size));
+            assertRoundTrip(strategy, new byte[size]);
+        }
+    }
+
+    private void assertRoundTrip(CompressionStrategy strategy, byte[] input) {
+        byte[] output = new byte[3 + strategy.getMaxCompressedLength(input.length)];
+        int size = strategy.compress(input, output, 3);
+        byte[] restored = new byte[input.length];
+        strategy.decompress(output, 3, size, restored);
+        assertTrue(strategy.getType() + " did not round trip " + input.length + " bytes.",
+                   TestUtils.bytesEqual(input, restored));
+    }
+
+    private byte[] repetitive(int size) {
+        byte[] json = "{\"id\": 12345, \"name\": \"some name\", \"tags\": [\"a\", \"b\"]}".getBytes();
+        byte[] bytes = new byte[size];
+        for(int i = 0; i < size; i++)
+            bytes[i] = json[i % json.length];
+        return bytes;
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.compress;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import voldemort.TestUtils;
+import voldemort.VoldemortException;
+import voldemort.store.memory.InMemoryStorageEngine;
+import voldemort.store.metadata.MetadataStore;
+import voldemort.utils.ByteArray;
+import voldemort.utils.ByteUtils;
+import voldemort.versioning.Versioned;
+
+public class DictionaryCompressionStrategyTest extends TestCase {
+
+    private File metadataDir;
+    private MetadataStore metadataStore;
+    private InMemoryStorageEngine<ByteArray, byte[]> engine;
+    private Random random;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        metadataDir = TestUtils.createTempDir();
+        metadataStore = new MetadataStore(metadataDir);
+        engine = new InMemoryStorageEngine<ByteArray, byte[]>("test");
+        random = new Random(1234);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+        FileUtils.deleteDirectory(metadataDir);
+    }
+
+    public void testTrainingShrinksSmallValues() {
+        DictionaryCompressionStrategy strategy = new DictionaryCompressionStrategy("test",
+                                                                                   metadataStore);
+        CompressingStore<ByteArray> store = new CompressingStore<ByteArray>(engine, strategy, 0);
+        assertEquals(0, strategy.getCurrentDictionaryId());
+
+        for(int i = 0; i < 500; i++)
+            store.put(new ByteArray(Integer.toString(i).getBytes()),
+                      new Versioned<byte[]>(record()));
+        ByteArray untrainedKey = new ByteArray("untrained".getBytes());
+        byte[] untrainedValue = record();
+        store.put(untrainedKey, new Versioned<byte[]>(untrainedValue));
+        int untrainedSize = engine.get(untrainedKey).get(0).getValue().length;
+
+        List<byte[]> samples = DictionaryTrainer.sample(engine.entries(), store, 200);
+        assertEquals(200, samples.size());
+        byte[] dictionary = DictionaryTrainer.train(samples, DictionaryTrainer.DEFAULT_DICTIONARY_SIZE);
+        assertTrue(dictionary.length > 0);
+        assertTrue(dictionary.length <= DictionaryTrainer.DEFAULT_DICTIONARY_SIZE);
+        int id = DictionaryCompressionStrategy.getDictionaryId(dictionary);
+        assertEquals(id, strategy.addDictionary(dictionary));
+        assertEquals(id, strategy.getCurrentDictionaryId());
+
+        ByteArray trainedKey = new ByteArray("trained".getBytes());
+        store.put(trainedKey, new Versioned<byte[]>(untrainedValue));
+        int trainedSize = engine.get(trainedKey).get(0).getValue().length;
+        assertTrue("Dictionary did not help: " + untrainedSize + " -> " + trainedSize,
+                   trainedSize * 3 < untrainedSize * 2);
+
+        // values written before the dictionary still read back
+        assertTrue(TestUtils.bytesEqual(untrainedValue, store.get(untrainedKey)
+                                                             .get(0)
+                                                             .getValue()));
+        assertTrue(TestUtils.bytesEqual(untrainedValue, store.get(trainedKey).get(0).getValue()));
+    }
+
+    public void testDictionariesAreReloadedAndRotated() {
+        DictionaryCompressionStrategy strategy = new DictionaryCompressionStrategy("test",
+                                                                                   metadataStore);
+        CompressingStore<ByteArray> store = new CompressingStore<ByteArray>(engine, strategy, 0);
+        List<byte[]> samples = new ArrayList<byte[]>();
+        for(int i = 0; i < 100; i++)
+            samples.add(record());
+        strategy.addDictionary(DictionaryTrainer.train(samples, 1024));
+        ByteArray first = new ByteArray("first".getBytes());
+        byte[] firstValue = record();
+        store.put(first, new Versioned<byte[]>(firstValue));
+
+        byte[] secondDictionary = DictionaryTrainer.train(samples, 2048);
+        strategy.addDictionary(secondDictionary);
+        ByteArray second = new ByteArray("second".getBytes());
+        byte[] secondValue = record();
+        store.put(second, new Versioned<byte[]>(secondValue));
+
+        // a restarted server sees both dictionaries and uses the newest
+        DictionaryCompressionStrategy reloaded = new DictionaryCompressionStrategy("test",
+                                                                                   metadataStore);
+        assertEquals(DictionaryCompressionStrategy.getDictionaryId(secondDictionary),
+                     reloaded.getCurrentDictionaryId());
+        CompressingStore<ByteArray> reopened = new CompressingStore<ByteArray>(engine, reloaded, 0);
+        assertTrue(TestUtils.bytesEqual(firstValue, reopened.get(first).get(0).getValue()));
+        assertTrue(TestUtils.bytesEqual(secondValue, reopened.get(second).get(0).getValue()));
+    }
+
+    public void testIdsNameTheSameDictionaryOnEveryNode() throws Exception {
+        List<byte[]> samples = new ArrayList<byte[]>();
+        for(int i = 0; i < 100; i++)
+            samples.add(record());
+        byte[] first = DictionaryTrainer.train(samples, 1024);
+        byte[] second = ("{\"member_id\": " + new String(first)).getBytes();
+        DictionaryCompressionStrategy strategy = new DictionaryCompressionStrategy("test",
+                                                                                   metadataStore);
+        strategy.addDictionary(first);
+        strategy.addDictionary(second);
+        CompressingStore<ByteArray> store = new CompressingStore<ByteArray>(engine, strategy, 0);
+        byte[] value = record();
+        byte[] compressed = store.deflate(value);
+
+        // another node that saved only the second dictionary, under number 1
+        File otherDir = TestUtils.createTempDir();
+        try {
+            DictionaryCompressionStrategy other = new DictionaryCompressionStrategy("test",
+                                                                                    new MetadataStore(otherDir));
+            CompressingStore<ByteArray> otherStore = new CompressingStore<ByteArray>(engine,
+                                                                                     other,
+                                                                                     0);
+            other.addDictionary(second);
+            assertTrue(TestUtils.bytesEqual(value, otherStore.inflate(compressed)));
+
+            // a node without the dictionary fails instead of guessing
+            strategy.addDictionary(first);
+            byte[] withFirst = store.deflate(value);
+            try {
+                otherStore.inflate(withFirst);
+                fail("Inflated a value without its dictionary.");
+            } catch(VoldemortException e) {
+                // expected
+            }
+        } finally {
+            FileUtils.deleteDirectory(otherDir);
+        }
+    }
+
+    public void testWrongDictionaryIsReported() {
+        List<byte[]> samples = new ArrayList<byte[]>();
+        for(int i = 0; i < 100; i++)
+            samples.add(record());
+        byte[] first = DictionaryTrainer.train(samples, 1024);
+        byte[] second = ("{\"member_id\": " + new String(first)).getBytes();
+        DictionaryCompressionStrategy strategy = new DictionaryCompressionStrategy("test",
+                                                                                   metadataStore);
+        strategy.addDictionary(first);
+        strategy.addDictionary(second);
+        CompressingStore<ByteArray> store = new CompressingStore<ByteArray>(engine, strategy, 0);
+        byte[] compressed = store.deflate(record());
+        assertEquals(DictionaryCompressionStrategy.ID, compressed[0]);
+
+        // name the other dictionary in place of the one the value was deflated with
+        ByteUtils.writeInt(compressed, DictionaryCompressionStrategy.getDictionaryId(first), 5);
+        try {
+            store.inflate(compressed);
+            fail("Inflated a value with the wrong dictionary.");
+        } catch(VoldemortException e) {
+            // expected
+        }
+    }
+
+    private byte[] record() {
+        return ("{\"member_id\": " + random.nextInt(1000000) + ", \"first_name\": \""
+                + TestUtils.randomLetters(8) + "\", \"last_name\": \"" + TestUtils.randomLetters(10)
+                + "\", \"headline\": \"" + TestUtils.randomLetters(20)
+                + "\", \"connections\": " + random.nextInt(500) + ", \"is_premium\": "
+                + random.nextBoolean() + ", \"location\": {\"country\": \"us\", \"postal_code\": \""
+                + random.nextInt(99999) + "\"}}").getBytes();
+    }
+
+}
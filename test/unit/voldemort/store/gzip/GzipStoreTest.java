@@ -0,0 +1,54 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.gzip;
+
+import java.util.List;
+
+import voldemort.store.AbstractByteArrayStoreTest;
+import voldemort.store.Store;
+import voldemort.store.memory.InMemoryStorageEngine;
+import voldemort.utils.ByteArray;
+import voldemort.versioning.Versioned;
+
+public class GzipStoreTest extends AbstractByteArrayStoreTest {
+
+    private InMemoryStorageEngine<ByteArray, byte[]> inner;
+    private GzipStore<ByteArray> store;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        this.inner = new InMemoryStorageEngine<ByteArray, byte[]>("test");
+        this.store = new GzipStore<ByteArray>(inner);
+    }
+
+    @Override
+    public Store<ByteArray, byte[]> getStore() {
+        return store;
+    }
+
+    public void testStoresCompressedValues() {
+        byte[] value = new byte[10 * 1024];
+        ByteArray key = new ByteArray(new byte[] { 1 });
+        store.put(key, new Versioned<byte[]>(value));
+        List<Versioned<byte[]>> stored = inner.get(key);
+        assertEquals(1, stored.size());
+        assertTrue("Value was not compressed.", stored.get(0).getValue().length < value.length);
+        assertEquals(value.length, store.get(key).get(0).getValue().length);
+    }
+
+}
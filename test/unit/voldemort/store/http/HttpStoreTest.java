@@ -16,14 +16,26 @@
 
 package voldemort.store.http;
 
+import java.io.IOException;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.commons.httpclient.HttpClient;
 import org.mortbay.jetty.Server;
 import org.mortbay.jetty.servlet.Context;
+import org.mortbay.jetty.servlet.ServletHolder;
 
 import voldemort.ServerTestUtils;
+import voldemort.TestUtils;
+import voldemort.VoldemortException;
 import voldemort.VoldemortTestConstants;
 import voldemort.cluster.Cluster;
 import voldemort.cluster.Node;
+import voldemort.server.http.StoreServlet;
 import voldemort.store.AbstractByteArrayStoreTest;
 import voldemort.store.Store;
 import voldemort.store.UnreachableStoreException;
@@ -87,6 +99,77 @@ public class HttpStoreTest extends AbstractByteArrayStoreTest {
                          UnreachableStoreException.class);
     }
 
+    public void testCompressedValues() {
+        httpStore.setWireCompression(true);
+        byte[] value = new byte[64 * 1024];
+        for(int i = 0; i < value.length; i++)
+            value[i] = (byte) ('a' + i % 8);
+        for(int size: new int[] { 10, 1024, value.length }) {
+            byte[] bytes = new byte[size];
+            System.arraycopy(value, 0, bytes, 0, size);
+            ByteArray key = new ByteArray(("key" + size).getBytes());
+            httpStore.put(key, new Versioned<byte[]>(bytes));
+            List<Versioned<byte[]>> found = httpStore.get(key);
+            assertEquals(1, found.size());
+            assertTrue(TestUtils.bytesEqual(bytes, found.get(0).getValue()));
+        }
+    }
+
+    public void testConditionalPutFailsAgainstServerIgnoringTheCondition() throws Exception {
+        Cluster cluster = ServerTestUtils.getLocalCluster(1);
+        int port = ServerTestUtils.findFreePort();
+        Server oldServer = new Server(port);
+        Context oldContext = new Context(oldServer, "/", Context.NO_SESSIONS);
+        // a servlet that does not know about conditional puts
+        StoreServlet servlet = new StoreServlet(ServerTestUtils.getStores("users",
+                                                                          new ClusterMapper().writeCluster(cluster),
+                                                                          VoldemortTestConstants.getSimpleStoreDefinitionsXml())) {
+
+            private static final long serialVersionUID = 1;
+
+            @Override
+            protected void doPut(HttpServletRequest request, HttpServletResponse response)
+                    throws ServletException, IOException {
+                super.doPut(new HttpServletRequestWrapper(request) {
+
+                    @Override
+                    public String getHeader(String name) {
+                        return name.startsWith("X-vldmt-") && !name.equals("X-vldmt-version") ? null
+                                                                                             : super.getHeader(name);
+                    }
+                }, response);
+            }
+        };
+        oldContext.addServlet(new ServletHolder(servlet), "/*");
+        oldServer.start();
+        HttpStore oldStore = ServerTestUtils.getHttpStore("users", port);
+        try {
+            ByteArray key = new ByteArray("key".getBytes());
+            oldStore.put(key, new Versioned<byte[]>("1".getBytes(), TestUtils.getClock(1)));
+            try {
+                oldStore.putIfCurrent(key,
+                                      new Versioned<byte[]>("2".getBytes(), TestUtils.getClock(1, 1)),
+                                      TestUtils.getClock(1));
+                fail("A put whose condition was ignored succeeded.");
+            } catch(VoldemortException e) {
+                // expected
+            }
+            try {
+                oldStore.putSuperseding(key,
+                                        new Versioned<byte[]>("3".getBytes(),
+                                                              TestUtils.getClock(1, 1, 1)),
+                                        TestUtils.getClock(1, 1));
+                fail("A put whose condition was ignored succeeded.");
+            } catch(VoldemortException e) {
+                // expected
+            }
+        } finally {
+            oldStore.close();
+            oldServer.stop();
+            oldContext.destroy();
+        }
+    }
+
     @Override
     public void tearDown() throws Exception {
         super.tearDown();
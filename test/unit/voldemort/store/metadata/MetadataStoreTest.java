@@ -16,12 +16,37 @@
 
 package voldemort.store.metadata;
 
+import java.io.File;
+import java.util.SortedMap;
+
 import junit.framework.TestCase;
 
+import org.apache.commons.io.FileUtils;
+
+import voldemort.TestUtils;
+
 public class MetadataStoreTest extends TestCase {
 
     public void testToWrite() {
 
     }
 
+    public void testDictionaries() throws Exception {
+        File directory = TestUtils.createTempDir();
+        try {
+            MetadataStore store = new MetadataStore(directory);
+            assertTrue(store.getDictionaries("test").isEmpty());
+            assertEquals(1, store.addDictionary("test", new byte[] { 1, 2 }));
+            assertEquals(2, store.addDictionary("test", new byte[] { 3 }));
+            assertEquals(1, store.addDictionary("other", new byte[] { 4 }));
+
+            SortedMap<Integer, byte[]> dictionaries = new MetadataStore(directory).getDictionaries("test");
+            assertEquals(2, dictionaries.size());
+            assertTrue(TestUtils.bytesEqual(new byte[] { 1, 2 }, dictionaries.get(1)));
+            assertTrue(TestUtils.bytesEqual(new byte[] { 3 }, dictionaries.get(2)));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
 }
@@ -4,16 +4,26 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import junit.framework.TestCase;
+import voldemort.ServerTestUtils;
 import voldemort.TestUtils;
 import voldemort.VoldemortException;
 import voldemort.cluster.Node;
+import voldemort.serialization.DefaultSerializerFactory;
+import voldemort.serialization.Serializer;
+import voldemort.serialization.SerializerDefinition;
+import voldemort.server.socket.SocketServer;
 import voldemort.store.Store;
+import voldemort.store.serialized.SerializingStore;
+import voldemort.utils.ByteArray;
 import voldemort.utils.Utils;
 import voldemort.versioning.Versioned;
 
@@ -109,6 +119,52 @@ public class RandomAccessFileStoreTest extends TestCase {
         testData.delete();
     }
 
+    /**
+     * Values sent straight from the data file should match those read through
+     * the store
+     */
+    @SuppressWarnings("unchecked")
+    public void testTransferValuesOverSocket() throws Exception {
+        RandomAccessStoreTestInstance testData = RandomAccessStoreTestInstance.create(dir,
+                                                                                      TEST_SIZE,
+                                                                                      1,
+                                                                                      1);
+        RandomAccessFileStore engine = new RandomAccessFileStore("test",
+                                                                 new File(testData.getBaseDir(),
+                                                                          "nodes/0"),
+                                                                 1,
+                                                                 3,
+                                                                 1000,
+                                                                 100 * 1024);
+        ConcurrentMap<String, Store<ByteArray, byte[]>> stores = new ConcurrentHashMap<String, Store<ByteArray, byte[]>>();
+        stores.put("test", engine);
+        Map<String, RandomAccessFileStore> transferable = new HashMap<String, RandomAccessFileStore>();
+        transferable.put("test", engine);
+        int port = ServerTestUtils.findFreePort();
+        SocketServer server = new SocketServer(stores, transferable, port, 2, 2, 32 * 1024);
+        server.start();
+        server.awaitStartupCompletion();
+        Serializer<String> serializer = (Serializer<String>) new DefaultSerializerFactory().getSerializer(new SerializerDefinition("json",
+                                                                                                                                   "'string'"));
+        Store<String, String> store = new SerializingStore<String, String>(ServerTestUtils.getSocketStore("test",
+                                                                                                         port),
+                                                                           serializer,
+                                                                           serializer);
+        try {
+            for(Map.Entry<String, String> entry: testData.getData().entrySet()) {
+                List<Versioned<String>> found = store.get(entry.getKey());
+                assertEquals(1, found.size());
+                assertEquals(entry.getValue(), found.get(0).getValue());
+            }
+            assertEquals(0, store.get("not-a-key-in-the-store").size());
+        } finally {
+            store.close();
+            server.shutdown();
+            engine.close();
+            testData.delete();
+        }
+    }
+
     public void testOpenInvalidStoreFails() throws Exception {
         // empty is okay
         testOpenInvalidStoreFails(0, 0, true);
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.store.routed;
+
+import static java.util.Arrays.asList;
+import static voldemort.TestUtils.getClock;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import voldemort.ServerTestUtils;
+import voldemort.VoldemortException;
+import voldemort.cluster.BannagePeriodFailureDetector;
+import voldemort.cluster.Cluster;
+import voldemort.cluster.FailureDetector;
+import voldemort.cluster.Node;
+import voldemort.routing.RouteToAllStrategy;
+import voldemort.store.DelegatingStore;
+import voldemort.store.FailingStore;
+import voldemort.store.Store;
+import voldemort.store.UnreachableStoreException;
+import voldemort.store.memory.InMemoryStorageEngine;
+import voldemort.utils.ByteArray;
+import voldemort.utils.SystemTime;
+import voldemort.versioning.Versioned;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+
+@SuppressWarnings("unchecked")
+public class ReadRepairQueueTest extends TestCase {
+
+    private Cluster cluster;
+    private Map<Integer, Store<ByteArray, byte[]>> stores;
+    private FailureDetector failureDetector;
+    private ExecutorService threadPool;
+    private ReadRepairQueue queue;
+
+    @Override
+    public void setUp() {
+        cluster = ServerTestUtils.getLocalCluster(3);
+        stores = Maps.newHashMap();
+        stores.put(0, new InMemoryStorageEngine<ByteArray, byte[]>("test"));
+        stores.put(1, new InMemoryStorageEngine<ByteArray, byte[]>("test"));
+        stores.put(2, new FailingStore<ByteArray, byte[]>("test",
+                                                          new UnreachableStoreException("no go")));
+        failureDetector = new BannagePeriodFailureDetector(10000);
+        threadPool = Executors.newFixedThreadPool(1);
+    }
+
+    @Override
+    public void tearDown() {
+        if(queue != null)
+            queue.close();
+        threadPool.shutdownNow();
+    }
+
+    public void testDuplicatesAreCoalesced() throws Exception {
+        queue = new ReadRepairQueue(100, 0, SystemTime.INSTANCE);
+        RoutedStore store = getStore(stores);
+        queue.submit(store, asList(repair(0, "a", 1), repair(0, "a", 1), repair(1, "a", 1)));
+        waitForRepairs(2);
+        assertEquals(2, queue.getQueuedRepairs());
+        assertEquals(1, queue.getCoalescedRepairs());
+        assertEquals(0, queue.getDroppedRepairs());
+        assertEquals(1, stores.get(0).get(ByteArray.valueOf("a")).size());
+        assertEquals(1, stores.get(1).get(ByteArray.valueOf("a")).size());
+    }
+
+    public void testRepairsForDifferentStoresAreKeptApart() throws Exception {
+        queue = new ReadRepairQueue(100, 0, SystemTime.INSTANCE);
+        Map<Integer, Store<ByteArray, byte[]>> otherStores = Maps.newHashMap(stores);
+        otherStores.put(0, new InMemoryStorageEngine<ByteArray, byte[]>("other"));
+        queue.submit(getStore(stores), asList(repair(0, "a", 1)));
+        queue.submit(getStore(otherStores), asList(repair(0, "a", 1)));
+        waitForRepairs(2);
+        assertEquals(0, queue.getCoalescedRepairs());
+        assertEquals(1, stores.get(0).get(ByteArray.valueOf("a")).size());
+        assertEquals(1, otherStores.get(0).get(ByteArray.valueOf("a")).size());
+    }
+
+    public void testFullQueueDrops() throws Exception {
+        queue = new ReadRepairQueue(1, 0, SystemTime.INSTANCE);
+        queue.submit(getStore(stores), asList(repair(0, "a", 1), repair(0, "b", 1)));
+        waitForRepairs(1);
+        assertEquals(1, queue.getQueuedRepairs());
+        assertEquals(1, queue.getDroppedRepairs());
+    }
+
+    public void testUnreachableNodeDropsBatch() throws Exception {
+        queue = new ReadRepairQueue(100, 0, SystemTime.INSTANCE);
+        queue.submit(getStore(stores), asList(repair(2, "a", 1),
+                                              repair(2, "b", 1),
+                                              repair(0, "a", 1)));
+        waitForRepairs(2);
+        assertEquals(1, queue.getAppliedRepairs());
+        assertEquals(1, queue.getFailedRepairs());
+        assertEquals(1, queue.getDroppedRepairs());
+        Node unreachable = Iterables.get(cluster.getNodes(), 2);
+        assertFalse("The unreachable node should be reported to the failure detector.",
+                    failureDetector.isAvailable(unreachable));
+    }
+
+    public void testObsoleteRepairIsHarmless() throws Exception {
+        queue = new ReadRepairQueue(100, 0, SystemTime.INSTANCE);
+        stores.get(0).put(ByteArray.valueOf("a"), new Versioned<byte[]>(new byte[] { 2 },
+                                                                        getClock(1, 1)));
+        queue.submit(getStore(stores), asList(repair(0, "a", 1)));
+        waitForRepairs(1);
+        assertEquals(1, queue.getAppliedRepairs());
+        assertEquals(2, stores.get(0).get(ByteArray.valueOf("a")).get(0).getValue()[0]);
+    }
+
+    public void testNodeBatchIsOnePutAll() throws Exception {
+        queue = new ReadRepairQueue(100, 0, SystemTime.INSTANCE);
+        final AtomicInteger puts = new AtomicInteger(0);
+        final AtomicInteger putAlls = new AtomicInteger(0);
+        stores.put(0, new DelegatingStore<ByteArray, byte[]>(stores.get(0)) {
+
+            @Override
+            public void put(ByteArray key, Versioned<byte[]> value) {
+                puts.incrementAndGet();
+                super.put(key, value);
+            }
+
+            @Override
+            public Map<ByteArray, VoldemortException> putAll(Map<ByteArray, Versioned<byte[]>> entries) {
+                putAlls.incrementAndGet();
+                return super.putAll(entries);
+            }
+        });
+        queue.submit(getStore(stores), asList(repair(0, "a", 1),
+                                              repair(0, "b", 1),
+                                              repair(0, "c", 1),
+                                              repair(0, "d", 1)));
+        waitForRepairs(4);
+        assertEquals(4, queue.getAppliedRepairs());
+        assertEquals(1, putAlls.get());
+        assertEquals(0, puts.get());
+    }
+
+    private RoutedStore getStore(Map<Integer, Store<ByteArray, byte[]>> innerStores) {
+        return new RoutedStore("test",
+                               innerStores,
+                               new RouteToAllStrategy(cluster.getNodes()),
+                               1,
+                               1,
+                               1,
+                               1,
+                               true,
+                               threadPool,
+                               1000L,
+                               failureDetector,
+                               0,
+                               queue,
+                               SystemTime.INSTANCE);
+    }
+
+    private NodeValue<ByteArray, byte[]> repair(int nodeId, String key, int clockNode) {
+        return new NodeValue<ByteArray, byte[]>(nodeId,
+                                                ByteArray.valueOf(key),
+                                                new Versioned<byte[]>(new byte[] { 1 },
+                                                                      getClock(clockNode)));
+    }
+
+    private void waitForRepairs(int count) throws InterruptedException {
+        for(int i = 0; i < 100; i++) {
+            if(queue.getAppliedRepairs() + queue.getFailedRepairs() >= count)
+                return;
+            Thread.sleep(10);
+        }
+        fail("Repairs were not applied.");
+    }
+
+}
@@ -21,8 +21,16 @@ import static voldemort.VoldemortTestConstants.getNineNodeCluster;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import voldemort.VoldemortException;
+import voldemort.client.AbstractStoreClientFactory;
+import voldemort.client.SocketStoreClientFactory;
+import voldemort.cluster.BannagePeriodFailureDetector;
 import voldemort.cluster.Cluster;
 import voldemort.cluster.Node;
 import voldemort.routing.RouteToAllStrategy;
@@ -36,13 +44,16 @@ import voldemort.store.UnreachableStoreException;
 import voldemort.store.memory.InMemoryStorageEngine;
 import voldemort.store.versioned.InconsistencyResolvingStore;
 import voldemort.utils.ByteArray;
+import voldemort.utils.SystemTime;
 import voldemort.utils.Utils;
 import voldemort.versioning.Occured;
+import voldemort.versioning.Version;
 import voldemort.versioning.VectorClock;
 import voldemort.versioning.VectorClockInconsistencyResolver;
 import voldemort.versioning.Versioned;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
 /**
@@ -173,6 +184,45 @@ public class RoutedStoreTest extends AbstractByteArrayStoreTest {
         testBasicOperations(cluster.getNumberOfNodes() - 2, cluster.getNumberOfNodes() - 2, 2, 4);
     }
 
+    public void testPutAllWithFailures() {
+        int failures = 2;
+        RoutedStore routedStore = getStore(cluster,
+                                           1,
+                                           cluster.getNumberOfNodes() - failures,
+                                           4,
+                                           failures,
+                                           0,
+                                           new RouteToAllStrategy(cluster.getNodes()),
+                                           new UnreachableStoreException("no go"));
+        ByteArray otherKey = ByteArray.valueOf("kreps");
+        Map<ByteArray, Versioned<byte[]>> entries = Maps.newHashMap();
+        entries.put(aKey, new Versioned<byte[]>(aValue, getClock(1)));
+        entries.put(otherKey, new Versioned<byte[]>(aValue, getClock(1)));
+
+        // the failing masters are skipped, the rest take the batch
+        assertEquals(0, routedStore.putAll(entries).size());
+        assertNEqual(routedStore, cluster.getNumberOfNodes() - failures, aKey, entries.get(aKey));
+        assertNEqual(routedStore,
+                     cluster.getNumberOfNodes() - failures,
+                     otherKey,
+                     entries.get(otherKey));
+
+        // with too few nodes every key fails
+        routedStore = getStore(cluster,
+                               1,
+                               cluster.getNumberOfNodes(),
+                               4,
+                               failures,
+                               0,
+                               new RouteToAllStrategy(cluster.getNodes()),
+                               new UnreachableStoreException("no go"));
+        entries.put(aKey, new Versioned<byte[]>(aValue, getClock(1)));
+        entries.put(otherKey, new Versioned<byte[]>(aValue, getClock(1)));
+        Map<ByteArray, VoldemortException> failed = routedStore.putAll(entries);
+        assertEquals(2, failed.size());
+        assertTrue(failed.get(aKey) instanceof InsufficientOperationalNodesException);
+    }
+
     public void testBasicOperationFailure(int reads, int writes, int failures, int threads) {
         VectorClock clock = getClock(1);
         Versioned<byte[]> versioned = new Versioned<byte[]>(aValue, clock);
@@ -223,6 +273,43 @@ public class RoutedStoreTest extends AbstractByteArrayStoreTest {
                      copy.compare(found.get(0).getVersion()));
     }
 
+    public void testPutPrunesClock() {
+        RoutedStore routedStore = getStore(cluster,
+                                           cluster.getNumberOfNodes(),
+                                           cluster.getNumberOfNodes(),
+                                           4,
+                                           0);
+        routedStore.setClockPruning(new ClockPruningDefinition(3));
+        Store<ByteArray, byte[]> store = new InconsistencyResolvingStore<ByteArray, byte[]>(routedStore,
+                                                                                            new VectorClockInconsistencyResolver<byte[]>());
+        VectorClock clock = getClock(1, 2, 3, 3, 4, 4, 4, 5, 5, 5, 5);
+        store.put(aKey, new Versioned<byte[]>(getValue(), clock.clone()));
+        List<Versioned<byte[]>> found = store.get(aKey);
+        assertEquals(1, found.size());
+        VectorClock stored = (VectorClock) found.get(0).getVersion();
+        assertEquals(3, stored.getEntries().size());
+
+        // the pruned write replaces the versions the unpruned clock covered
+        VectorClock next = getClock(6, 7);
+        store.put(aKey, new Versioned<byte[]>(getValue(), stored.merge(next)));
+        for(Store<ByteArray, byte[]> inner: routedStore.getInnerStores().values()) {
+            List<Versioned<byte[]>> versions = inner.get(aKey);
+            assertEquals(1, versions.size());
+            assertEquals(3, ((VectorClock) versions.get(0).getVersion()).getEntries().size());
+        }
+
+        // conditional puts are never pruned
+        ByteArray otherKey = ByteArray.valueOf("other");
+        routedStore.setClockPruning(null);
+        store.put(otherKey, new Versioned<byte[]>(getValue(), getClock(1, 2, 3, 4, 5, 6)));
+        routedStore.setClockPruning(new ClockPruningDefinition(3));
+        Version current = store.get(otherKey).get(0).getVersion();
+        routedStore.putIfCurrent(otherKey, new Versioned<byte[]>(getValue(), current), current);
+        found = store.get(otherKey);
+        assertEquals(1, found.size());
+        assertTrue(((VectorClock) found.get(0).getVersion()).getEntries().size() >= 6);
+    }
+
     public void testObsoleteMasterFails() {
     // write me
     }
@@ -307,6 +394,25 @@ public class RoutedStoreTest extends AbstractByteArrayStoreTest {
      * See Issue #89: Sequential retrieval in RoutedStore.get doesn't consider
      * repairReads.
      */
+    public void testNoRepairQueueWithoutReadRepair() {
+        Map<Integer, Store<ByteArray, byte[]>> subStores = Maps.newHashMap();
+        for(Node n: cluster.getNodes())
+            subStores.put(n.getId(), new InMemoryStorageEngine<ByteArray, byte[]>("test"));
+        RoutedStore routedStore = new RoutedStore("test",
+                                                  subStores,
+                                                  new RouteToAllStrategy(cluster.getNodes()),
+                                                  1,
+                                                  1,
+                                                  1,
+                                                  false,
+                                                  1000L);
+        try {
+            assertNull(routedStore.getReadRepairQueue());
+        } finally {
+            routedStore.close();
+        }
+    }
+
     public void testReadRepairWithFailures() throws InterruptedException {
         Cluster cluster = getNineNodeCluster();
         // Disable node 1 so that the first put also goes to the last node
@@ -350,6 +456,140 @@ public class RoutedStoreTest extends AbstractByteArrayStoreTest {
         }
     }
 
+    public void testUnavailableNodeDoesNotDelayReads() {
+        Map<Integer, Store<ByteArray, byte[]>> subStores = Maps.newHashMap();
+        for(Node n: cluster.getNodes())
+            subStores.put(n.getId(), new InMemoryStorageEngine<ByteArray, byte[]>("test"));
+        int numNodes = cluster.getNumberOfNodes();
+        long timeoutMs = 10000L;
+        ExecutorService threadPool = Executors.newFixedThreadPool(numNodes);
+        RoutedStore routedStore = new RoutedStore("test",
+                                                  subStores,
+                                                  new RouteToAllStrategy(cluster.getNodes()),
+                                                  numNodes,
+                                                  numNodes - 1,
+                                                  numNodes,
+                                                  numNodes - 1,
+                                                  true,
+                                                  threadPool,
+                                                  timeoutMs,
+                                                  new BannagePeriodFailureDetector(timeoutMs),
+                                                  numNodes,
+                                                  0,
+                                                  SystemTime.INSTANCE);
+        try {
+            routedStore.put(aKey, new Versioned<byte[]>(aValue));
+            // a banned node among the preferred reads is skipped, not waited
+            // for until the timeout
+            Iterables.get(cluster.getNodes(), 0).getStatus().setUnavailable();
+            long start = System.currentTimeMillis();
+            assertEquals(numNodes - 1, routedStore.get(aKey).size());
+            assertEquals(1, routedStore.getVersions(aKey).size());
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue("Reads took " + elapsed + " ms.", elapsed < timeoutMs / 2);
+        } finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    public void testSlowNodeOnlyHoldsItsPermits() {
+        ExecutorService threadPool = Executors.newFixedThreadPool(2);
+        try {
+            // without a bulkhead the slow node would take over both threads
+            // and every later request would time out
+            assertSlowNodeDoesNotBlockRequests(threadPool, 1, 5);
+        } finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    public void testSlowNodeCannotHoldEveryDefaultThread() {
+        ExecutorService threadPool = new ThreadPoolExecutor(SocketStoreClientFactory.DEFAULT_NUM_THREADS,
+                                                            SocketStoreClientFactory.DEFAULT_NUM_THREADS,
+                                                            10000L,
+                                                            TimeUnit.MILLISECONDS,
+                                                            new LinkedBlockingQueue<Runnable>(SocketStoreClientFactory.DEFAULT_MAX_QUEUED_REQUESTS));
+        try {
+            assertSlowNodeDoesNotBlockRequests(threadPool,
+                                               AbstractStoreClientFactory.getDefaultMaxInFlightPerNode(threadPool),
+                                               2 * SocketStoreClientFactory.DEFAULT_NUM_THREADS);
+        } finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    private void assertSlowNodeDoesNotBlockRequests(ExecutorService threadPool,
+                                                    int maxInFlightPerNode,
+                                                    int requests) {
+        Map<Integer, Store<ByteArray, byte[]>> subStores = Maps.newHashMap();
+        for(Node n: cluster.getNodes())
+            subStores.put(n.getId(), new InMemoryStorageEngine<ByteArray, byte[]>("test"));
+        // the last node in the preference list hangs on every request
+        Node slowNode = Iterables.getLast(cluster.getNodes());
+        subStores.put(slowNode.getId(),
+                      new SleepyStore<ByteArray, byte[]>(10000,
+                                                         new InMemoryStorageEngine<ByteArray, byte[]>("test")));
+        int numNodes = cluster.getNumberOfNodes();
+        RoutedStore routedStore = new RoutedStore("test",
+                                                  subStores,
+                                                  new RouteToAllStrategy(cluster.getNodes()),
+                                                  numNodes - 1,
+                                                  numNodes - 1,
+                                                  numNodes - 1,
+                                                  numNodes - 1,
+                                                  true,
+                                                  threadPool,
+                                                  1000L,
+                                                  new BannagePeriodFailureDetector(10000L),
+                                                  maxInFlightPerNode,
+                                                  0,
+                                                  SystemTime.INSTANCE);
+        for(int i = 0; i < requests; i++) {
+            ByteArray key = ByteArray.valueOf(Integer.toString(i));
+            routedStore.put(key, new Versioned<byte[]>(aValue));
+            assertEquals(numNodes - 1, routedStore.get(key).size());
+        }
+    }
+
+    public void testPutAllDoesNotMoveOnFromATimedOutMaster() throws Exception {
+        Map<Integer, Store<ByteArray, byte[]>> subStores = Maps.newHashMap();
+        for(Node n: cluster.getNodes())
+            subStores.put(n.getId(), new InMemoryStorageEngine<ByteArray, byte[]>("test"));
+        // the master answers only after the timeout, but still takes the batch
+        Node master = cluster.getNodes().iterator().next();
+        subStores.put(master.getId(),
+                      new SleepyStore<ByteArray, byte[]>(500,
+                                                         new InMemoryStorageEngine<ByteArray, byte[]>("test")));
+        ExecutorService threadPool = Executors.newFixedThreadPool(cluster.getNumberOfNodes());
+        RoutedStore routedStore = new RoutedStore("test",
+                                                  subStores,
+                                                  new RouteToAllStrategy(cluster.getNodes()),
+                                                  1,
+                                                  1,
+                                                  1,
+                                                  1,
+                                                  false,
+                                                  threadPool,
+                                                  100L,
+                                                  new BannagePeriodFailureDetector(10000L),
+                                                  0,
+                                                  0,
+                                                  SystemTime.INSTANCE);
+        try {
+            Map<ByteArray, VoldemortException> failures = routedStore.putAll(ImmutableMap.of(aKey,
+                                                                                             new Versioned<byte[]>(aValue)));
+            assertTrue(failures.get(aKey) instanceof InsufficientOperationalNodesException);
+            Thread.sleep(1000);
+            // no second master wrote the key under its own clock
+            for(Map.Entry<Integer, Store<ByteArray, byte[]>> entry: subStores.entrySet()) {
+                int expected = entry.getKey() == master.getId() ? 1 : 0;
+                assertEquals(expected, entry.getValue().get(aKey).size());
+            }
+        } finally {
+            routedStore.close();
+        }
+    }
+
     public void testStoreTimeouts() {
     /*
      * Cluster cluster = getThreeNodeThreePartitionCluster(); RoutingStrategy
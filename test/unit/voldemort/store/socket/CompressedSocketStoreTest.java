@@ -0,0 +1,72 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package voldemort.store.socket;
+
+import java.util.List;
+
+import voldemort.ServerTestUtils;
+import voldemort.TestUtils;
+import voldemort.client.protocol.RequestFormatType;
+import voldemort.store.Store;
+import voldemort.utils.ByteArray;
+import voldemort.versioning.Versioned;
+
+/**
+ * Runs the socket store tests with wire compression negotiated
+ */
+public class CompressedSocketStoreTest extends SocketStoreTest {
+
+    @Override
+    protected boolean isWireCompressed() {
+        return true;
+    }
+
+    public void testCompressibleValues() {
+        assertCompressibleValuesRoundTrip(getStore());
+    }
+
+    public void testCompressibleValuesOverProtocolBuffers() {
+        SocketStore store = ServerTestUtils.getSocketStore("test",
+                                                           getSocketPort(),
+                                                           RequestFormatType.PROTOCOL_BUFFERS,
+                                                           true);
+        try {
+            assertCompressibleValuesRoundTrip(store);
+        } finally {
+            store.close();
+        }
+    }
+
+    private void assertCompressibleValuesRoundTrip(Store<ByteArray, byte[]> store) {
+        String json = "{\"name\": \"value\", \"count\": 42}";
+        StringBuilder builder = new StringBuilder();
+        while(builder.length() < 64 * 1024)
+            builder.append(json);
+        byte[] value = builder.toString().getBytes();
+        for(int size: new int[] { 0, 10, 1023, 1024, 4096, value.length }) {
+            byte[] bytes = new byte[size];
+            System.arraycopy(value, 0, bytes, 0, size);
+            ByteArray key = new ByteArray(TestUtils.randomBytes(8));
+            store.put(key, new Versioned<byte[]>(bytes));
+            List<Versioned<byte[]>> found = store.get(key);
+            assertEquals(1, found.size());
+            assertTrue("Value of size " + size + " was not preserved.",
+                       TestUtils.bytesEqual(bytes, found.get(0).getValue()));
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2008-2009 LinkedIn, Inc
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package voldemort.store.socket;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import voldemort.VoldemortException;
+import voldemort.client.protocol.ProtoBufRequestFormat;
+import voldemort.client.protocol.RequestFormatType;
+import voldemort.client.protocol.VoldemortNativeRequestFormat;
+import voldemort.store.Store;
+import voldemort.utils.ByteArray;
+import voldemort.versioning.Versioned;
+
+/**
+ * Runs the socket store tests over the protocol buffers request format
+ */
+public class ProtoBufSocketStoreTest extends SocketStoreTest {
+
+    @Override
+    protected RequestFormatType getRequestFormatType() {
+        return RequestFormatType.PROTOCOL_BUFFERS;
+    }
+
+    public void testNegotiatesRequestFormat() {
+        SocketPool pool = new SocketPool(1, 2, 1000, 32 * 1024);
+        pool.setRequestFormatType(RequestFormatType.PROTOCOL_BUFFERS);
+        SocketDestination destination = new SocketDestination("localhost", getSocketPort());
+        SocketAndStreams sands = pool.checkout(destination);
+        try {
+            assertTrue(sands.getRequestFormat() instanceof ProtoBufRequestFormat);
+        } finally {
+            pool.checkin(destination, sands);
+            pool.close();
+        }
+    }
+
+    public void testFallsBackToNativeWithoutHandshake() throws Exception {
+        // a server from before the handshake reads our code as the start of a
+        // request and never answers
+        final ServerSocket server = new ServerSocket(0);
+        final List<Socket> accepted = new CopyOnWriteArrayList<Socket>();
+        Thread acceptor = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    while(true)
+                        accepted.add(server.accept());
+                } catch(IOException e) {
+                    // closed
+                }
+            }
+        };
+        acceptor.start();
+        SocketPool pool = new SocketPool(2, 2, 10000, 32 * 1024);
+        pool.setRequestFormatType(RequestFormatType.PROTOCOL_BUFFERS);
+        SocketDestination destination = new SocketDestination("localhost", server.getLocalPort());
+        try {
+            long start = System.currentTimeMillis();
+            SocketAndStreams sands = pool.checkout(destination);
+            assertTrue(sands.getRequestFormat() instanceof VoldemortNativeRequestFormat);
+            assertTrue("Fallback should not wait for the socket timeout.",
+                       System.currentTimeMillis() - start < 5000);
+            assertEquals(2, pool.getNumberSocketsCreated());
+
+            // the next connection does not try again
+            SocketAndStreams another = pool.checkout(destination);
+            assertTrue(another.getRequestFormat() instanceof VoldemortNativeRequestFormat);
+            assertEquals(3, pool.getNumberSocketsCreated());
+            pool.checkin(destination, sands);
+            pool.checkin(destination, another);
+        } finally {
+            pool.close();
+            server.close();
+            for(Socket socket: accepted)
+                socket.close();
+        }
+    }
+
+    public void testUnknownStore() {
+        // both stores share the pool's single connection
+        SocketPool pool = new SocketPool(1, 1, 1000, 32 * 1024);
+        pool.setRequestFormatType(RequestFormatType.PROTOCOL_BUFFERS);
+        Store<ByteArray, byte[]> unknown = new SocketStore("not-a-store",
+                                                           "localhost",
+                                                           getSocketPort(),
+                                                           pool);
+        Store<ByteArray, byte[]> known = new SocketStore("test", "localhost", getSocketPort(), pool);
+        ByteArray key = new ByteArray(new byte[] { 1 });
+        try {
+            unknown.put(key, new Versioned<byte[]>(new byte[] { 2 }));
+            fail("Put to an unknown store should fail.");
+        } catch(VoldemortException e) {
+            // this is good
+        }
+        try {
+            known.put(key, new Versioned<byte[]>(new byte[] { 2 }));
+            assertEquals(1, known.get(key).size());
+            assertEquals(1, pool.getNumberSocketsCreated());
+        } finally {
+            pool.close();
+        }
+    }
+
+}
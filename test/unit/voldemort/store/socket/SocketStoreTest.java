@@ -28,6 +28,7 @@ import org.apache.log4j.Logger;
 import voldemort.ServerTestUtils;
 import voldemort.TestUtils;
 import voldemort.VoldemortTestConstants;
+import voldemort.client.protocol.RequestFormatType;
 import voldemort.server.socket.SocketServer;
 import voldemort.store.AbstractByteArrayStoreTest;
 import voldemort.store.Store;
@@ -50,7 +51,22 @@ public class SocketStoreTest extends AbstractByteArrayStoreTest {
                                                        VoldemortTestConstants.getSimpleStoreDefinitionsXml(),
                                                        "test",
                                                        socketPort);
-        socketStore = ServerTestUtils.getSocketStore("test", socketPort);
+        socketStore = ServerTestUtils.getSocketStore("test",
+                                                     socketPort,
+                                                     getRequestFormatType(),
+                                                     isWireCompressed());
+    }
+
+    protected int getSocketPort() {
+        return socketPort;
+    }
+
+    protected RequestFormatType getRequestFormatType() {
+        return RequestFormatType.VOLDEMORT_NATIVE;
+    }
+
+    protected boolean isWireCompressed() {
+        return false;
     }
 
     @Override
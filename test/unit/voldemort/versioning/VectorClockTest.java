@@ -17,6 +17,12 @@
 package voldemort.versioning;
 
 import static voldemort.TestUtils.getClock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import junit.framework.TestCase;
 import voldemort.TestUtils;
 
@@ -104,4 +110,97 @@ public class VectorClockTest extends TestCase {
                              clocks[n + 1]);
         }
     }
+
+    public void testSerializationAtOffset() {
+        VectorClock clock = getClock(1, 1, 2, 300, 300);
+        byte[] bytes = new byte[clock.sizeInBytes() + 5];
+        assertEquals(clock.sizeInBytes(), clock.toBytes(bytes, 3));
+        assertEquals(clock, new VectorClock(bytes, 3));
+        assertEquals(clock.getTimestamp(), new VectorClock(bytes, 3).getTimestamp());
+    }
+
+    public void testIncrementedIsCopy() {
+        VectorClock clock = getClock(1, 3);
+        VectorClock incremented = clock.incremented(2, 55L);
+        assertEquals(getClock(1, 3), clock);
+        assertEquals(getClock(1, 2, 3), incremented);
+        assertEquals(55L, incremented.getTimestamp());
+        assertEquals(getClock(1, 2, 2, 3), incremented.incremented(2, 56L));
+        assertEquals(getClock(1, 2, 3), incremented);
+        VectorClock cloned = clock.clone();
+        cloned.incrementVersion(1, 57L);
+        assertEquals(getClock(1, 3), clock);
+        assertEquals(getClock(1, 1, 3), cloned);
+    }
+
+    public void testLargeVersions() {
+        VectorClock big = getClock(1);
+        for(int i = 0; i < 70000; i++)
+            big.incrementVersion(2, System.currentTimeMillis());
+        assertEquals(70000, big.getMaxVersion());
+        assertEquals(big, getClock(2).merge(big));
+        assertEquals(big, new VectorClock(big.toBytes()));
+        assertEquals(big.toBytes().length, big.sizeInBytes());
+    }
+
+    public void testJavaSerialization() throws Exception {
+        VectorClock clock = getClock(1, 1, 2, 4);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(clock);
+        output.close();
+        ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        VectorClock copy = (VectorClock) input.readObject();
+        assertEquals(clock, copy);
+        assertEquals(clock.getTimestamp(), copy.getTimestamp());
+        assertEquals(clock.getEntries(), copy.getEntries());
+        copy.incrementVersion(3, System.currentTimeMillis());
+        assertEquals(getClock(1, 1, 2, 3, 4), copy);
+    }
+
+    public void testSerializedComparisons() {
+        VectorClock big = getClock(1, 2);
+        for(int i = 0; i < 300; i++)
+            big.incrementVersion(3, System.currentTimeMillis());
+        VectorClock[] clocks = { getClock(), getClock(1), getClock(2), getClock(1, 1, 2),
+                getClock(1, 1, 2, 3), getClock(1, 1, 3), getClock(2, 2), getClock(1, 2, 2, 3),
+                big, getClock(1, 2, 3) };
+        for(VectorClock c1: clocks) {
+            for(VectorClock c2: clocks) {
+                byte[] bytes1 = c1.toBytes();
+                // put the second clock at an offset, with trailing bytes
+                byte[] bytes2 = new byte[c2.sizeInBytes() + 7];
+                c2.toBytes(bytes2, 4);
+                assertEquals(c1 + " vs " + c2,
+                             c1.compare(c2),
+                             VectorClock.compare(bytes1, 0, bytes2, 4));
+            }
+        }
+
+        try {
+            VectorClock.compare(getClock(1).toBytes(), 0, new byte[] { 0, 5, 1 }, 0);
+            fail("Truncated clock should not compare.");
+        } catch(IllegalArgumentException e) {
+            // this is good
+        }
+    }
+
+    public void testPruned() {
+        VectorClock clock = getClock(1, 2, 2, 3, 3, 3, 4, 4, 4, 4);
+        assertSame(clock, clock.pruned(4, 1));
+        assertSame(clock, clock.pruned(5, 7));
+        assertEquals(getClock(1, 3, 3, 3, 4, 4, 4, 4), clock.pruned(3, 1));
+        assertEquals(getClock(3, 3, 3, 4, 4, 4, 4), clock.pruned(3, 5));
+        assertEquals(getClock(4, 4, 4, 4, 5), clock.pruned(2, 5).incremented(5, 1L));
+        assertEquals(getClock(2, 2), clock.pruned(1, 2));
+        assertEquals(getClock(), clock.pruned(1, 5));
+        assertEquals(clock.getTimestamp(), clock.pruned(2, 1).getTimestamp());
+        assertEquals(getClock(1, 2, 2, 3, 3, 3, 4, 4, 4, 4), clock);
+        try {
+            clock.pruned(0, 1);
+            fail("Pruning to nothing should fail.");
+        } catch(IllegalArgumentException e) {
+            // this is good
+        }
+    }
 }
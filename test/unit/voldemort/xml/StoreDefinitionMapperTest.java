@@ -24,6 +24,8 @@ import java.util.List;
 import junit.framework.TestCase;
 import voldemort.VoldemortTestConstants;
 import voldemort.store.StoreDefinition;
+import voldemort.store.compress.CompressionDefinition;
+import voldemort.store.routed.ClockPruningDefinition;
 
 public class StoreDefinitionMapperTest extends TestCase {
 
@@ -71,6 +73,24 @@ public class StoreDefinitionMapperTest extends TestCase {
         assertEquals(storeDefs, mapper.readStoreList(new StringReader(written)));
     }
 
+    public void testCompressionStore() {
+        StoreDefinitionsMapper mapper = new StoreDefinitionsMapper();
+        List<StoreDefinition> storeDefs = mapper.readStoreList(new StringReader(VoldemortTestConstants.getStoreDefinitionsWithCompressionXml()));
+        assertEquals(new CompressionDefinition("lzf", 64), storeDefs.get(0).getValueCompression());
+        assertEquals(new CompressionDefinition("deflate"), storeDefs.get(1).getValueCompression());
+        String written = mapper.writeStoreList(storeDefs);
+        assertEquals(storeDefs, mapper.readStoreList(new StringReader(written)));
+    }
+
+    public void testClockPruningStore() {
+        StoreDefinitionsMapper mapper = new StoreDefinitionsMapper();
+        List<StoreDefinition> storeDefs = mapper.readStoreList(new StringReader(VoldemortTestConstants.getStoreDefinitionsWithClockPruningXml()));
+        assertEquals(new ClockPruningDefinition(10, 3600000L), storeDefs.get(0).getClockPruning());
+        assertEquals(new ClockPruningDefinition(4), storeDefs.get(1).getClockPruning());
+        String written = mapper.writeStoreList(storeDefs);
+        assertEquals(storeDefs, mapper.readStoreList(new StringReader(written)));
+    }
+
     private void assertEqual(List<StoreDefinition> l1, List<StoreDefinition> l2) {
         assertEquals(l1.size(), l2.size());
         for(int i = 0; i < l1.size(); i++) {